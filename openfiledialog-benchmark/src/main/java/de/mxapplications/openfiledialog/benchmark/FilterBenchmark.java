@@ -0,0 +1,83 @@
+package de.mxapplications.openfiledialog.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import de.mxapplications.openfiledialog.core.CompactListing;
+import de.mxapplications.openfiledialog.core.DirectoryEntry;
+import de.mxapplications.openfiledialog.core.EntryFilter;
+import de.mxapplications.openfiledialog.core.NameFilter;
+import de.mxapplications.openfiledialog.core.SortOrder;
+
+/**
+ * Measures filtering: listing a folder with an {@link EntryFilter} for images and videos, which rejects most documents by their
+ * name before an entry is created, and checking every name of a listed folder against the query of the filter field, as
+ * {@link NameFilter} does for the rows and the CompactListing of the paged listing.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 5)
+@Fork(1)
+public class FilterBenchmark {
+    private static final EntryFilter MEDIA_FILTER = new EntryFilter.Builder().addExtensions("jpg", "png").addMimeTypes("video/*").build();
+    //Typed into the filter field, matches about a tenth of the names
+    private static final String QUERY = NameFilter.fold("Report");
+
+    @Param({"10", "1000", "100000", "1000000"})
+    public int entries;
+
+    private GeneratedFolder mFolder;
+    private List<ListingBenchmark.Row> mRows;
+    private CompactListing mListing;
+
+    @Setup
+    public void list() {
+        mFolder = new GeneratedFolder(entries);
+        mRows = ListingBenchmark.listRows(mFolder, SortOrder.DEFAULT);
+        mListing = ListingBenchmark.listCompact(mFolder, false);
+    }
+
+    @Benchmark
+    public int listFiltered() {
+        final int[] accepted = {0};
+        mFolder.list(GeneratedFolder.PATH, MEDIA_FILTER.needsMetadata(), new ListingBenchmark.Visitor(MEDIA_FILTER) {
+            @Override
+            void accept(DirectoryEntry entry) {
+                accepted[0]++;
+            }
+        });
+        return accepted[0];
+    }
+
+    @Benchmark
+    public int filterRows() {
+        int matches = 0;
+        for (ListingBenchmark.Row row : mRows) {
+            if (row.mFoldedName.contains(QUERY)) matches++;
+        }
+        return matches;
+    }
+
+    @Benchmark
+    public int filterCompact() {
+        int matches = 0;
+        for (int i = 0; i < mListing.size(); i++) {
+            if (mListing.nameContains(i, QUERY)) matches++;
+        }
+        return matches;
+    }
+}
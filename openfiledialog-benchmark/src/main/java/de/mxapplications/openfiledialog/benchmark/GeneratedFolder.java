@@ -0,0 +1,104 @@
+package de.mxapplications.openfiledialog.benchmark;
+
+import java.util.Random;
+
+import de.mxapplications.openfiledialog.core.DirectoryEntry;
+import de.mxapplications.openfiledialog.core.DirectoryLister;
+import de.mxapplications.openfiledialog.core.EntryFilter;
+
+/**
+ * A DirectoryLister that generates a single folder with the given number of children in memory, so the benchmarks measure the
+ * work of the library rather than the storage. The names look like those of a real folder of a phone: camera photos and videos,
+ * documents with numbers, folders, and a few hidden files, in no particular order. The same number of children always gives the
+ * same names.
+ * <p>Like the listers of the library, it checks the names with the {@link EntryFilter} of a
+ * {@link DirectoryLister.FilteringVisitor} before it creates an entry.</p>
+ */
+class GeneratedFolder implements DirectoryLister {
+    static final String PATH = "/storage/emulated/0/Generated";
+    private static final String[] DOCUMENT_NAMES = {"Invoice", "Report", "Notes", "Scan", "Letter", "Draft"};
+    private static final String[] DOCUMENT_EXTENSIONS = {".pdf", ".txt", ".docx", ".csv"};
+
+    private final String[] mNames;
+    private final boolean[] mDirectories;
+    private final long[] mSizes;
+    private final long[] mLastModified;
+
+    /***
+     * Generates the children.
+     * @param entries The number of children.
+     */
+    GeneratedFolder(int entries) {
+        mNames = new String[entries];
+        mDirectories = new boolean[entries];
+        mSizes = new long[entries];
+        mLastModified = new long[entries];
+        Random random = new Random(entries);
+        for (int i = 0; i < entries; i++) {
+            int kind = random.nextInt(100);
+            if (kind < 10) {
+                mNames[i] = "Folder " + i;
+                mDirectories[i] = true;
+            } else if (kind < 12) {
+                mNames[i] = ".hidden" + i;
+            } else if (kind < 60) {
+                mNames[i] = String.format("IMG_2016%02d%02d_%06d.jpg", 1 + random.nextInt(12), 1 + random.nextInt(28), i);
+            } else if (kind < 70) {
+                mNames[i] = String.format("VID_2016%02d%02d_%06d.mp4", 1 + random.nextInt(12), 1 + random.nextInt(28), i);
+            } else {
+                mNames[i] = DOCUMENT_NAMES[random.nextInt(DOCUMENT_NAMES.length)] + " " + i
+                        + DOCUMENT_EXTENSIONS[random.nextInt(DOCUMENT_EXTENSIONS.length)];
+            }
+            mSizes[i] = mDirectories[i] ? 4096 : random.nextInt(8 * 1024 * 1024);
+            mLastModified[i] = 1450000000000L + random.nextInt(1000000000);
+        }
+    }
+
+    /***
+     * Returns the name of a child.
+     * @param position The position of the child.
+     * @return The name.
+     */
+    String getName(int position) {
+        return mNames[position];
+    }
+
+    /***
+     * Returns the number of children.
+     * @return The number of children.
+     */
+    int size() {
+        return mNames.length;
+    }
+
+    @Override
+    public boolean list(String path, boolean readMetadata, Visitor visitor) {
+        if (!path.equals(PATH)) return false;
+        EntryFilter filter = visitor instanceof FilteringVisitor ? ((FilteringVisitor) visitor).getFilter() : null;
+        for (int i = 0; i < mNames.length; i++) {
+            if (filter != null && filter.matchName(mNames[i]) == EntryFilter.NameMatch.REJECT) continue;
+            DirectoryEntry entry = readMetadata
+                    ? new DirectoryEntry(mNames[i], mDirectories[i], mSizes[i], mLastModified[i])
+                    : new DirectoryEntry(mNames[i], mDirectories[i], DirectoryEntry.UNKNOWN, DirectoryEntry.UNKNOWN);
+            if (!visitor.visit(entry)) break;
+        }
+        return true;
+    }
+
+    @Override
+    public long getLastModified(String path) {
+        return path.equals(PATH) ? 1 : 0;
+    }
+
+    @Override
+    public DirectoryEntry getEntry(String path, String name, boolean readMetadata) {
+        if (!path.equals(PATH)) return null;
+        for (int i = 0; i < mNames.length; i++) {
+            if (mNames[i].equals(name)) {
+                return new DirectoryEntry(name, mDirectories[i], readMetadata ? mSizes[i] : DirectoryEntry.UNKNOWN,
+                        readMetadata ? mLastModified[i] : DirectoryEntry.UNKNOWN);
+            }
+        }
+        return null;
+    }
+}
@@ -0,0 +1,130 @@
+package de.mxapplications.openfiledialog.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import de.mxapplications.openfiledialog.core.CompactListing;
+import de.mxapplications.openfiledialog.core.DirectoryEntry;
+import de.mxapplications.openfiledialog.core.DirectoryLister;
+import de.mxapplications.openfiledialog.core.EntryFilter;
+import de.mxapplications.openfiledialog.core.NameFilter;
+import de.mxapplications.openfiledialog.core.SortOrder;
+
+/**
+ * Measures listing a folder: reading the children from a {@link DirectoryLister} and creating what the dialog keeps of them,
+ * either a row per child with its path, sort key and folded name, as the normal listing does, or a {@link CompactListing}, as the
+ * paged listing does.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 5)
+@Fork(1)
+public class ListingBenchmark {
+    @Param({"10", "1000", "100000", "1000000"})
+    public int entries;
+
+    private GeneratedFolder mFolder;
+
+    @Setup
+    public void generate() {
+        mFolder = new GeneratedFolder(entries);
+    }
+
+    @Benchmark
+    public List<Row> listRows() {
+        return listRows(mFolder, SortOrder.DEFAULT);
+    }
+
+    @Benchmark
+    public CompactListing listCompact() {
+        return listCompact(mFolder, false);
+    }
+
+    /***
+     * Lists the folder into a row per child that the default filter accepts, with sort keys for the given order.
+     */
+    static List<Row> listRows(GeneratedFolder folder, final SortOrder sortOrder) {
+        final List<Row> rows = new ArrayList<>();
+        folder.list(GeneratedFolder.PATH, sortOrder.needsMetadata(), new Visitor(EntryFilter.DEFAULT) {
+            @Override
+            void accept(DirectoryEntry entry) {
+                rows.add(new Row(GeneratedFolder.PATH, entry, sortOrder));
+            }
+        });
+        return rows;
+    }
+
+    /***
+     * Lists the children of the folder that the default filter accepts into a CompactListing, in the order they are listed in.
+     */
+    static CompactListing listCompact(GeneratedFolder folder, boolean readMetadata) {
+        final CompactListing.Builder builder = new CompactListing.Builder(GeneratedFolder.PATH, 64);
+        folder.list(GeneratedFolder.PATH, readMetadata, new Visitor(EntryFilter.DEFAULT) {
+            @Override
+            void accept(DirectoryEntry entry) {
+                builder.add(entry.getName(), entry.isDirectory(), entry.getSize(), entry.getLastModified());
+            }
+        });
+        return builder.build();
+    }
+
+    /**
+     * What the dialog keeps of a child in the normal listing, like its FileItem: the path, the sort key and the folded name.
+     */
+    static final class Row {
+        final String mPath;
+        final boolean mDirectory;
+        final SortOrder.SortKey mSortKey;
+        final String mFoldedName;
+
+        Row(String parentPath, DirectoryEntry entry, SortOrder sortOrder) {
+            String name = entry.getName();
+            this.mPath = parentPath.endsWith(File.separator) ? parentPath + name : parentPath + File.separator + name;
+            this.mDirectory = entry.isDirectory();
+            this.mSortKey = sortOrder.createKey(name, entry.isDirectory(), entry.getSize(), entry.getLastModified());
+            String foldedName = NameFilter.fold(name);
+            //Sorting by name already folds the name, the same String is used for both
+            this.mFoldedName = foldedName.equals(mSortKey.getText()) ? mSortKey.getText() : foldedName;
+        }
+    }
+
+    /**
+     * Hands the children that the filter accepts to {@link #accept(DirectoryEntry)}.
+     */
+    abstract static class Visitor implements DirectoryLister.FilteringVisitor {
+        private final EntryFilter mFilter;
+
+        Visitor(EntryFilter filter) {
+            this.mFilter = filter;
+        }
+
+        @Override
+        public EntryFilter getFilter() {
+            return mFilter;
+        }
+
+        @Override
+        public boolean visit(DirectoryEntry entry) {
+            if (mFilter.accept(entry)) accept(entry);
+            return true;
+        }
+
+        abstract void accept(DirectoryEntry entry);
+    }
+}
@@ -0,0 +1,66 @@
+package de.mxapplications.openfiledialog.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.File;
+import java.util.concurrent.TimeUnit;
+
+import de.mxapplications.openfiledialog.core.CompactListing;
+
+/**
+ * Measures building the paths the dialog navigates to: into every child of a folder and back up again, with the same String
+ * operations as navigate() of the dialog, and the path of every row of a {@link CompactListing}, which the paged listing builds
+ * when a row is bound.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 5)
+@Fork(1)
+public class NavigationBenchmark {
+    @Param({"10", "1000", "100000", "1000000"})
+    public int entries;
+
+    private GeneratedFolder mFolder;
+    private CompactListing mListing;
+
+    @Setup
+    public void list() {
+        mFolder = new GeneratedFolder(entries);
+        mListing = ListingBenchmark.listCompact(mFolder, false);
+    }
+
+    @Benchmark
+    public void navigateIntoAndUp(Blackhole blackhole) {
+        for (int i = 0; i < mFolder.size(); i++) {
+            String path = GeneratedFolder.PATH + File.separator + mFolder.getName(i);
+            blackhole.consume(path);
+            blackhole.consume(parentPath(path));
+        }
+    }
+
+    @Benchmark
+    public void compactPaths(Blackhole blackhole) {
+        for (int i = 0; i < mListing.size(); i++) {
+            blackhole.consume(mListing.getPath(i));
+        }
+    }
+
+    private static String parentPath(String path) {
+        int separator = path.lastIndexOf(File.separator);
+        if (path.equals(File.separator) || separator < 0) return null;
+        return separator == 0 ? File.separator : path.substring(0, separator);
+    }
+}
@@ -0,0 +1,72 @@
+package de.mxapplications.openfiledialog.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import de.mxapplications.openfiledialog.core.CompactListing;
+import de.mxapplications.openfiledialog.core.SortOrder;
+import de.mxapplications.openfiledialog.core.Sorting;
+
+/**
+ * Measures sorting a listed folder: the rows of the normal listing with {@link Sorting}, which sorts large folders in parallel,
+ * and a {@link CompactListing} with {@link CompactListing#sorted(SortOrder)}. The rows are copied before every sort, which is
+ * part of the measured time.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 5)
+@Fork(1)
+public class SortingBenchmark {
+    @Param({"10", "1000", "100000", "1000000"})
+    public int entries;
+
+    @Param({"NAME", "NATURAL", "SIZE"})
+    public SortOrder.Mode mode;
+
+    private List<ListingBenchmark.Row> mRows;
+    private CompactListing mListing;
+    private Comparator<ListingBenchmark.Row> mComparator;
+    private SortOrder mSortOrder;
+
+    @Setup
+    public void list() {
+        GeneratedFolder folder = new GeneratedFolder(entries);
+        mSortOrder = new SortOrder(mode, true, false);
+        mRows = ListingBenchmark.listRows(folder, mSortOrder);
+        mListing = ListingBenchmark.listCompact(folder, mSortOrder.needsMetadata());
+        mComparator = new Comparator<ListingBenchmark.Row>() {
+            @Override
+            public int compare(ListingBenchmark.Row lhs, ListingBenchmark.Row rhs) {
+                return mSortOrder.compare(lhs.mSortKey, rhs.mSortKey);
+            }
+        };
+    }
+
+    @Benchmark
+    public List<ListingBenchmark.Row> sortRows() {
+        List<ListingBenchmark.Row> rows = new ArrayList<>(mRows);
+        Sorting.sort(rows, mComparator);
+        return rows;
+    }
+
+    @Benchmark
+    public CompactListing sortCompact() {
+        return mListing.sorted(mSortOrder);
+    }
+}
@@ -0,0 +1,218 @@
+package de.mxapplications.openfiledialog.core;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+/**
+ * DirectoryLister that lets ZIP and JAR archives be browsed like folders. Every other folder is listed by the DirectoryLister it
+ * wraps, and the archives in it are reported as folders. A path that leads into an archive, e.g. "/sdcard/docs.zip/2019/report.pdf",
+ * is listed from the {@link ZipArchiveIndex} of the archive, which is read on the first visit and kept for the next ones until
+ * the archive is modified. {@link #openStream(String)} opens such a path, or any plain file.
+ * <p>Archives are recognized by the extensions {@link #ARCHIVE_EXTENSIONS}. Archives inside archives are reported as files.</p>
+ */
+public class ArchiveDirectoryLister implements DirectoryLister {
+    /***
+     * The extensions of the files that are browsed as archives.
+     */
+    public static final String[] ARCHIVE_EXTENSIONS = {".zip", ".jar"};
+
+    private final DirectoryLister mDirectoryLister;
+    private final Map<String, ZipArchiveIndex> mIndexes;
+
+    /***
+     * Constructs an ArchiveDirectoryLister.
+     * @param directoryLister The DirectoryLister that lists the folders outside of archives.
+     * @param maxIndexes The number of archives whose index is kept, the one that has been used least recently is dropped.
+     */
+    public ArchiveDirectoryLister(DirectoryLister directoryLister, final int maxIndexes) {
+        this.mDirectoryLister = directoryLister;
+        this.mIndexes = new LinkedHashMap<String, ZipArchiveIndex>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, ZipArchiveIndex> eldest) {
+                return size() > maxIndexes;
+            }
+        };
+    }
+
+    /***
+     * Returns if a file is browsed as an archive, by its name.
+     * @param name The name or path of the file.
+     * @return True if it has one of the {@link #ARCHIVE_EXTENSIONS}.
+     */
+    public static boolean isArchiveName(String name) {
+        return hasArchiveExtension(name, name.length());
+    }
+
+    private static boolean hasArchiveExtension(String path, int end) {
+        for (String extension : ARCHIVE_EXTENSIONS) {
+            if (path.regionMatches(true, end - extension.length(), extension, 0, extension.length())) return true;
+        }
+        return false;
+    }
+
+    /***
+     * Opens a file for reading, either a plain one or one inside an archive.
+     * @param path The absolute path of the file, e.g. one the dialog has returned.
+     * @return The stream, it also closes the archive when it is closed.
+     * @throws IOException If the file doesn't exist or can't be read.
+     */
+    public static InputStream openStream(String path) throws IOException {
+        int split = findArchive(path);
+        if (split < 0) return new FileInputStream(path);
+        final ZipFile zipFile = new ZipFile(path.substring(0, split));
+        ZipEntry entry = zipFile.getEntry(path.substring(split + 1).replace(File.separatorChar, '/'));
+        if (entry == null || entry.isDirectory()) {
+            zipFile.close();
+            throw new FileNotFoundException(path);
+        }
+        return new FilterInputStream(zipFile.getInputStream(entry)) {
+            @Override
+            public void close() throws IOException {
+                try {
+                    super.close();
+                } finally {
+                    zipFile.close();
+                }
+            }
+        };
+    }
+
+    /***
+     * Returns the index of an archive, reading it if it hasn't been read yet or the archive has been modified since.
+     * @param archivePath The absolute path of the archive.
+     * @return The index.
+     * @throws IOException If the archive can't be read.
+     */
+    public ZipArchiveIndex getIndex(String archivePath) throws IOException {
+        File archive = new File(archivePath);
+        ZipArchiveIndex index;
+        synchronized (mIndexes) {
+            index = mIndexes.get(archivePath);
+        }
+        if (index != null && index.isCurrent(archive)) return index;
+        //Read outside the lock so other archives can be listed meanwhile
+        index = ZipArchiveIndex.read(archive);
+        synchronized (mIndexes) {
+            mIndexes.put(archivePath, index);
+        }
+        return index;
+    }
+
+    @Override
+    public boolean list(String path, boolean readMetadata, final Visitor visitor) {
+        int split = findArchive(path);
+        if (split < 0) return mDirectoryLister.list(path, readMetadata, wrap(visitor));
+        CompactListing listing = getListing(path, split);
+        if (listing == null) return false;
+        EntryFilter filter = visitor instanceof FilteringVisitor ? ((FilteringVisitor) visitor).getFilter() : null;
+        for (int i = 0; i < listing.size(); i++) {
+            if (filter != null) {
+                EntryFilter.NameMatch nameMatch = filter.matchName(listing.getName(i));
+                if (nameMatch == EntryFilter.NameMatch.REJECT || (nameMatch == EntryFilter.NameMatch.FOLDER_ONLY && !listing.isDirectory(i))) continue;
+            }
+            if (!visitor.visit(new DirectoryEntry(listing.getName(i), listing.isDirectory(i), listing.getSize(i), listing.getLastModified(i)))) break;
+        }
+        return true;
+    }
+
+    @Override
+    public long getLastModified(String path) {
+        int split = findArchive(path);
+        if (split < 0) return mDirectoryLister.getLastModified(path);
+        //An archive only changes as a whole
+        return getListing(path, split) != null ? new File(path.substring(0, split)).lastModified() : 0;
+    }
+
+    @Override
+    public DirectoryEntry getEntry(String path, String name, boolean readMetadata) {
+        int split = findArchive(path);
+        if (split < 0) return asFolder(mDirectoryLister.getEntry(path, name, readMetadata));
+        CompactListing listing = getListing(path, split);
+        int position = listing != null ? listing.indexOf(name) : -1;
+        if (position < 0) return null;
+        return new DirectoryEntry(name, listing.isDirectory(position), listing.getSize(position), listing.getLastModified(position));
+    }
+
+    private CompactListing getListing(String path, int split) {
+        try {
+            String folder = split == path.length() ? "" : path.substring(split + 1).replace(File.separatorChar, '/');
+            return getIndex(path.substring(0, split)).getFolder(folder);
+        } catch (IOException e) {
+            return null;
+        }
+    }
+
+    /***
+     * Reports the archives among the children as folders. If the filter of a FilteringVisitor would hide the archives by their
+     * name, the wrapped lister gets a filter that also allows the archive extensions, so it still skips the other children by
+     * their name and the archives pass as folders.
+     */
+    private Visitor wrap(Visitor visitor) {
+        EntryFilter filter = visitor instanceof FilteringVisitor ? ((FilteringVisitor) visitor).getFilter() : null;
+        if (filter != null) {
+            for (String extension : ARCHIVE_EXTENSIONS) {
+                if (filter.matchName("archive" + extension) != EntryFilter.NameMatch.ACCEPT) {
+                    filter = filter.withExtensions(ARCHIVE_EXTENSIONS);
+                    break;
+                }
+            }
+        }
+        return new ArchiveVisitor(visitor, filter);
+    }
+
+    private static DirectoryEntry asFolder(DirectoryEntry entry) {
+        if (entry == null || entry.isDirectory() || !isArchiveName(entry.getName())) return entry;
+        return new DirectoryEntry(entry.getName(), true, entry.getSize(), entry.getLastModified());
+    }
+
+    /***
+     * Returns the end of the path of the archive that a path leads into: the position of the separator after it, or the length
+     * of the path if it is the archive itself. -1 if the path doesn't lead into an archive.
+     */
+    private static int findArchive(String path) {
+        int end = path.indexOf(File.separatorChar, 1);
+        while (true) {
+            int partEnd = end < 0 ? path.length() : end;
+            if (hasArchiveExtension(path, partEnd) && new File(path.substring(0, partEnd)).isFile()) return partEnd;
+            if (end < 0) return -1;
+            end = path.indexOf(File.separatorChar, end + 1);
+        }
+    }
+
+    /***
+     * The visitor the wrapped lister gets, see {@link #wrap(Visitor)}. It passes on the stats of the children the wrapped lister
+     * has read.
+     */
+    private static final class ArchiveVisitor implements CountingVisitor {
+        private final Visitor mVisitor;
+        private final EntryFilter mFilter;
+
+        ArchiveVisitor(Visitor visitor, EntryFilter filter) {
+            this.mVisitor = visitor;
+            this.mFilter = filter;
+        }
+
+        @Override
+        public EntryFilter getFilter() {
+            return mFilter;
+        }
+
+        @Override
+        public void onStat() {
+            if (mVisitor instanceof CountingVisitor) ((CountingVisitor) mVisitor).onStat();
+        }
+
+        @Override
+        public boolean visit(DirectoryEntry entry) {
+            return mVisitor.visit(asFolder(entry));
+        }
+    }
+}
@@ -0,0 +1,687 @@
+package de.mxapplications.openfiledialog.core;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.concurrent.Executor;
+
+/**
+ * A file browser without a user interface: the current folder with the history of the folders before and after it, the order and
+ * the filter the children are listed with, and the files that are selected. It only depends on a {@link DirectoryLister}, so the
+ * same engine that OpenFileDialog shows runs on a plain JVM, e.g. in tools that index folders or in benchmarks.
+ * <p>All folders are listed by the Browser's {@link DirectoryLoader}, either on the calling thread with {@link #list()} or
+ * {@link #iterator()}, which return an immutable, sorted and filtered {@link CompactListing}, or in the background with
+ * {@link #load(DirectoryLoader.SnapshotListener, DirectoryLoader.Listener)}, which delivers the children in growing batches. Both
+ * take a folder from the {@link ListingCache} set with {@link #setListingCache(ListingCache)} or from the prefetched listings of
+ * {@link #setPrefetching(Executor, int, ListingCache)} if it is there, and store a new listing in the cache. The current folder
+ * can be listed into the cache ahead of its load with {@link #preload()}, and likely next folders with {@link #prefetch(Collection)}.</p>
+ * <p>Besides the folder, the Browser knows what is shown instead of it: the results of a {@link #search(String, String, int, int,
+ * DirectoryWalker, DirectoryLoader.Listener) search} or the storage volumes, see {@link #showStorageRoots()}. It merges the changes
+ * that a watcher reports for the loaded folder into its rows with {@link #applyChanges(List, int, ChangeCallback)}, and selects
+ * ranges of files from the one that has been selected last with {@link #selectRange(List, int)}.</p>
+ * <p>Thread safety: the navigation state (current folder, history, order and filter) is guarded by the Browser, so each method
+ * sees and leaves it consistent: navigations from several threads are applied one after the other and each one is recorded in
+ * the history exactly once. Listings are made outside the lock, from a copy of the state taken when they are started. The
+ * methods that start, cancel or inspect loads and searches, the ones that show the storage volumes, apply changes or select
+ * ranges, and {@link #setBatchSize(int)}, {@link #setPaged(boolean)} and {@link #setCollectStats(boolean)}, have to be called on
+ * the thread the callback executor runs on, like the methods of the DirectoryLoader; every other method may be called from any
+ * thread. Of the loads that are running, only the one that has been
+ * started last is delivered, and only while the state hasn't changed since it has been started; every other one stops listing at
+ * the next child and is dropped without calling its listener. The {@link SelectionSet} is safe to use from several threads on its
+ * own.</p>
+ */
+public class Browser implements Iterable<DirectoryEntry> {
+    /***
+     * The number of folders kept in each direction of the history by default.
+     */
+    public static final int DEFAULT_MAX_HISTORY = 64;
+
+    private static final Prefetcher.Cancellation NOT_CANCELLED = new Prefetcher.Cancellation() {
+        @Override
+        public boolean isCancelled() {
+            return false;
+        }
+    };
+
+    private final DirectoryLoader mLoader;
+    private final SelectionSet mSelection = new SelectionSet();
+    private final int mMaxHistory;
+    //Guarded by the Browser
+    private Prefetcher<DirectoryLoader.Listing> mPrefetcher = null;
+
+    private String mPath;
+    //The folders before the current one, the last one first, and the ones after it after going back, the next one first
+    private final ArrayDeque<String> mBackHistory = new ArrayDeque<>();
+    private final ArrayDeque<String> mForwardHistory = new ArrayDeque<>();
+    private SortOrder mSortOrder = SortOrder.DEFAULT;
+    private EntryFilter mEntryFilter = EntryFilter.DEFAULT;
+    //Changes with every change of the state and every load, a load is only delivered if it hasn't changed since
+    private long mGeneration = 0;
+
+    //Only used on the thread of the callback executor:
+    //The query of the search whose results are shown, otherwise null
+    private String mSearchQuery = null;
+    private boolean mShowingStorageRoots = false;
+    //Changes of the loaded folder that haven't been applied to its rows, by absolute path, with null for a removed child
+    private final Map<String, FileItem> mChanges = new LinkedHashMap<>();
+    //The file that has been selected last, a range is selected from it
+    private String mSelectionAnchor = null;
+
+    /***
+     * Constructs a Browser that keeps {@link #DEFAULT_MAX_HISTORY} folders of history in each direction.
+     * @param directoryLister The DirectoryLister that lists the folders.
+     * @param backgroundExecutor The executor folders are loaded on.
+     * @param callbackExecutor The executor the loaded children are delivered on.
+     * @param path The absolute path of the folder to start in.
+     */
+    public Browser(DirectoryLister directoryLister, Executor backgroundExecutor, Executor callbackExecutor, String path) {
+        this(directoryLister, backgroundExecutor, callbackExecutor, path, DEFAULT_MAX_HISTORY);
+    }
+
+    /***
+     * Constructs a Browser.
+     * @param directoryLister The DirectoryLister that lists the folders.
+     * @param backgroundExecutor The executor folders are loaded on.
+     * @param callbackExecutor The executor the loaded children are delivered on.
+     * @param path The absolute path of the folder to start in.
+     * @param maxHistory The number of folders kept in each direction of the history, the oldest ones are dropped.
+     */
+    public Browser(DirectoryLister directoryLister, Executor backgroundExecutor, Executor callbackExecutor, String path, int maxHistory) {
+        this.mLoader = new DirectoryLoader(directoryLister, null, backgroundExecutor, callbackExecutor);
+        this.mPath = BrowserPaths.normalize(path);
+        this.mMaxHistory = maxHistory;
+    }
+
+    /***
+     * Sets the DirectoryLister that lists the folders from now on. The preload and the prefetches are dropped.
+     * @param directoryLister The DirectoryLister.
+     */
+    public synchronized void setDirectoryLister(DirectoryLister directoryLister) {
+        mLoader.setDirectoryLister(directoryLister);
+        if (mPrefetcher != null) mPrefetcher.cancel();
+    }
+
+    /***
+     * Sets the cache that valid listings are taken from and new listings are stored in, e.g. one that is shared by several Browsers.
+     * The preload is dropped.
+     * @param listingCache The ListingCache, or null to list every folder again.
+     */
+    public void setListingCache(ListingCache<DirectoryLoader.Listing> listingCache) {
+        mLoader.setListingCache(listingCache);
+    }
+
+    /***
+     * Sets the store that completed listings are written to, so a folder that isn't cached can be shown from its snapshot before it has been
+     * listed, see {@link #load(DirectoryLoader.SnapshotListener, DirectoryLoader.Listener)}.
+     * @param snapshotStore The ListingSnapshotStore, or null.
+     */
+    public void setSnapshotStore(ListingSnapshotStore snapshotStore) {
+        mLoader.setSnapshotStore(snapshotStore);
+    }
+
+    /***
+     * Turns prefetching on or off. With prefetching, the folders passed to {@link #prefetch(Collection)} are listed in the background
+     * into the given cache, and a folder that is listed or loaded is taken from there if it is neither cached nor preloaded. Prefetches
+     * that are running are cancelled.
+     * @param executor The executor the folders are prefetched on, or null to not prefetch.
+     * @param maxConcurrent The number of folders prefetched at the same time.
+     * @param cache The cache for the prefetched listings, separate from the ListingCache.
+     */
+    public synchronized void setPrefetching(Executor executor, int maxConcurrent, ListingCache<DirectoryLoader.Listing> cache) {
+        if (mPrefetcher != null) mPrefetcher.cancel();
+        mPrefetcher = executor != null ? new Prefetcher<>(executor, maxConcurrent, cache, mLoader) : null;
+        mLoader.setPrefetcher(mPrefetcher);
+    }
+
+    /***
+     * Starts prefetching folders the user is likely to open next, see {@link #setPrefetching(Executor, int, ListingCache)}. The folders
+     * that are queued from an earlier call are dropped. Does nothing without prefetching.
+     * @param paths The absolute paths of the folders, the most likely one first.
+     */
+    public synchronized void prefetch(Collection<String> paths) {
+        if (mPrefetcher != null) mPrefetcher.prefetch(paths);
+    }
+
+    /***
+     * Cancels the prefetches that are queued or running, e.g. because the user has opened another folder.
+     */
+    public synchronized void cancelPrefetch() {
+        if (mPrefetcher != null) mPrefetcher.cancel();
+    }
+
+    /***
+     * Returns the statistics of the prefetching.
+     * @return The statistics, or null without prefetching.
+     */
+    public synchronized Prefetcher.Stats getPrefetchStats() {
+        return mPrefetcher != null ? mPrefetcher.getStats() : null;
+    }
+
+    /***
+     * Returns the files that are selected, in any folder.
+     * @return The selection.
+     */
+    public SelectionSet getSelection() {
+        return mSelection;
+    }
+
+    /***
+     * Returns the current folder.
+     * @return The absolute path of the folder.
+     */
+    public synchronized String getPath() {
+        return mPath;
+    }
+
+    /***
+     * Goes to a folder, e.g. one the user has typed in. The current folder is added to the history before it, and the folders
+     * after it are dropped.
+     * @param path The absolute path of the folder, it is normalized with {@link BrowserPaths#normalize(String)}.
+     * @return False if it is the current folder already, which is left alone.
+     */
+    public synchronized boolean navigateTo(String path) {
+        String normalized = BrowserPaths.normalize(path);
+        if (normalized.equals(mPath)) return false;
+        push(mBackHistory, mPath);
+        mForwardHistory.clear();
+        mPath = normalized;
+        mGeneration++;
+        return true;
+    }
+
+    /***
+     * Goes to a child of the current folder, see {@link #navigateTo(String)}.
+     * @param name The name of the child.
+     * @return False if the name leads to the current folder, e.g. ".".
+     */
+    public synchronized boolean navigateToChild(String name) {
+        return navigateTo(BrowserPaths.childPath(mPath, name));
+    }
+
+    /***
+     * Goes to the parent of the current folder, see {@link #navigateTo(String)}.
+     * @return False if the current folder is the root.
+     */
+    public synchronized boolean navigateUp() {
+        String parentPath = BrowserPaths.parentPath(mPath);
+        return parentPath != null && navigateTo(parentPath);
+    }
+
+    /***
+     * Goes back to the folder before the current one in the history.
+     * @return False if there is none.
+     */
+    public synchronized boolean navigateBack() {
+        if (mBackHistory.isEmpty()) return false;
+        push(mForwardHistory, mPath);
+        mPath = mBackHistory.pop();
+        mGeneration++;
+        return true;
+    }
+
+    /***
+     * Goes forward to the folder after the current one in the history, after going back.
+     * @return False if there is none.
+     */
+    public synchronized boolean navigateForward() {
+        if (mForwardHistory.isEmpty()) return false;
+        push(mBackHistory, mPath);
+        mPath = mForwardHistory.pop();
+        mGeneration++;
+        return true;
+    }
+
+    /***
+     * Returns if there is a folder to go back to.
+     * @return True if {@link #navigateBack()} would go back.
+     */
+    public synchronized boolean canNavigateBack() {
+        return !mBackHistory.isEmpty();
+    }
+
+    /***
+     * Returns if there is a folder to go forward to.
+     * @return True if {@link #navigateForward()} would go forward.
+     */
+    public synchronized boolean canNavigateForward() {
+        return !mForwardHistory.isEmpty();
+    }
+
+    /***
+     * Returns the folders before the current one.
+     * @return A copy of the absolute paths, the one before the current folder first.
+     */
+    public synchronized List<String> getBackHistory() {
+        return new ArrayList<>(mBackHistory);
+    }
+
+    /***
+     * Goes to a folder and forgets the history, e.g. when the browser is started again somewhere else.
+     * @param path The absolute path of the folder.
+     */
+    public synchronized void reset(String path) {
+        mBackHistory.clear();
+        mForwardHistory.clear();
+        mPath = BrowserPaths.normalize(path);
+        mGeneration++;
+    }
+
+    /***
+     * Returns the order the children are listed in.
+     * @return The order.
+     */
+    public synchronized SortOrder getSortOrder() {
+        return mSortOrder;
+    }
+
+    /***
+     * Sets the order the children are listed in. Loads that are running are dropped.
+     * @param sortOrder The order.
+     */
+    public synchronized void setSortOrder(SortOrder sortOrder) {
+        if (sortOrder == null) throw new IllegalArgumentException("sortOrder must not be null");
+        mSortOrder = sortOrder;
+        mLoader.setSortOrder(sortOrder);
+        mGeneration++;
+    }
+
+    /***
+     * Returns the filter the children are listed with.
+     * @return The filter.
+     */
+    public synchronized EntryFilter getEntryFilter() {
+        return mEntryFilter;
+    }
+
+    /***
+     * Sets the filter the children are listed with. Loads that are running are dropped.
+     * @param entryFilter The filter.
+     */
+    public synchronized void setEntryFilter(EntryFilter entryFilter) {
+        if (entryFilter == null) throw new IllegalArgumentException("entryFilter must not be null");
+        mEntryFilter = entryFilter;
+        mLoader.setEntryFilter(entryFilter);
+        mGeneration++;
+    }
+
+    /***
+     * Sets the number of children in the first batch of a load, see {@link DirectoryLoader#setBatchSize(int)}.
+     * @param batchSize The number of children in the first batch, at least 1.
+     */
+    public void setBatchSize(int batchSize) {
+        mLoader.setBatchSize(batchSize);
+    }
+
+    /***
+     * Sets if folders are loaded in a single batch without creating a FileItem for any child, see {@link DirectoryLoader#setPaged(boolean)}.
+     * @param paged True for the paged mode.
+     */
+    public void setPaged(boolean paged) {
+        mLoader.setPaged(paged);
+    }
+
+    /***
+     * Sets if loads measure where their time goes, see {@link #getLoadStats()}.
+     * @param collectStats True to measure the loads.
+     */
+    public void setCollectStats(boolean collectStats) {
+        mLoader.setCollectStats(collectStats);
+    }
+
+    /***
+     * Lists the current folder on the calling thread.
+     * @return The children that pass the filter, in the order, or null if the folder can't be read.
+     */
+    public CompactListing list() {
+        String path;
+        SortOrder sortOrder;
+        EntryFilter entryFilter;
+        synchronized (this) {
+            path = mPath;
+            sortOrder = mSortOrder;
+            entryFilter = mEntryFilter;
+        }
+        return mLoader.list(path, sortOrder, entryFilter, NOT_CANCELLED);
+    }
+
+    /***
+     * Lists the current folder on the calling thread and iterates over its children, see {@link #list()}. A DirectoryEntry is
+     * created for each child when the iterator gets to it.
+     * @return The iterator, without any child if the folder can't be read.
+     */
+    @Override
+    public Iterator<DirectoryEntry> iterator() {
+        final CompactListing listing = list();
+        return new Iterator<DirectoryEntry>() {
+            private int mPosition = 0;
+
+            @Override
+            public boolean hasNext() {
+                return listing != null && mPosition < listing.size();
+            }
+
+            @Override
+            public DirectoryEntry next() {
+                if (!hasNext()) throw new NoSuchElementException();
+                int position = mPosition++;
+                return new DirectoryEntry(listing.getName(position), listing.isDirectory(position), listing.getSize(position),
+                        listing.getLastModified(position));
+            }
+
+            @Override
+            public void remove() {
+                throw new UnsupportedOperationException();
+            }
+        };
+    }
+
+    /***
+     * Starts loading the current folder in the background, see {@link DirectoryLoader#load(String, DirectoryLoader.SnapshotListener, DirectoryLoader.Listener)}.
+     * The children are delivered on the callback executor, unless another load has been started or the state has changed in the meantime.
+     * A load that is dropped stops listing at the next child.
+     * @param snapshotListener The listener that receives the snapshot of the folder, or null to not read it.
+     * @param listener The listener that receives the children.
+     */
+    public void load(DirectoryLoader.SnapshotListener snapshotListener, DirectoryLoader.Listener listener) {
+        mSearchQuery = null;
+        mShowingStorageRoots = false;
+        mChanges.clear();
+        final long generation;
+        String path;
+        synchronized (this) {
+            generation = ++mGeneration;
+            path = mPath;
+        }
+        mLoader.load(path, snapshotListener, listener, new Prefetcher.Cancellation() {
+            @Override
+            public boolean isCancelled() {
+                synchronized (Browser.this) {
+                    return generation != mGeneration;
+                }
+            }
+        });
+    }
+
+    /***
+     * Starts searching a folder tree, in the order and with the filter of the Browser, see
+     * {@link DirectoryLoader#search(String, String, int, int, DirectoryWalker, DirectoryLoader.Listener)}. A load or search that is still running is cancelled.
+     * The results are shown instead of the current folder until the next load, see {@link #getSearchQuery()}.
+     * @param root The absolute path of the folder the search starts at.
+     * @param query The text the names have to contain.
+     * @param maxDepth The number of levels of subfolders that are searched, 0 to only search the children of the root.
+     * @param maxResults The number of results after which the search stops.
+     * @param walker The DirectoryWalker that walks the tree.
+     * @param listener The listener that receives the results.
+     */
+    public void search(String root, String query, int maxDepth, int maxResults, DirectoryWalker walker, DirectoryLoader.Listener listener) {
+        mSearchQuery = query;
+        mShowingStorageRoots = false;
+        mChanges.clear();
+        mLoader.search(root, query, maxDepth, maxResults, walker, listener);
+    }
+
+    /***
+     * Returns the query of the search whose results are shown instead of the current folder.
+     * @return The query, or null if no search has been started since the last load.
+     */
+    public String getSearchQuery() {
+        return mSearchQuery;
+    }
+
+    /***
+     * Starts showing the storage volumes instead of the current folder, e.g. when the user goes up from the root of a volume. The
+     * load or search that is running and the prefetches are cancelled. The volumes are shown until the next load or search, or until
+     * {@link #leaveStorageRoots()}.
+     */
+    public void showStorageRoots() {
+        mLoader.cancel();
+        cancelPrefetch();
+        mSearchQuery = null;
+        mShowingStorageRoots = true;
+        mChanges.clear();
+    }
+
+    /***
+     * Stops showing the storage volumes, so the current folder is shown by the next load.
+     */
+    public void leaveStorageRoots() {
+        mShowingStorageRoots = false;
+    }
+
+    /***
+     * Returns if the storage volumes are shown instead of the current folder, see {@link #showStorageRoots()}.
+     * @return True while the volumes are shown.
+     */
+    public boolean isShowingStorageRoots() {
+        return mShowingStorageRoots;
+    }
+
+    /***
+     * Collects changes of the loaded folder, e.g. the ones a watcher has reported, until they are applied to its rows with
+     * {@link #applyChanges(List, int, ChangeCallback)}. A later change of a child replaces an earlier one. The changes are dropped
+     * by the next load or search and by {@link #showStorageRoots()}.
+     * @param updated The children that have been added or modified.
+     * @param removedPaths The absolute paths of the children that have been removed.
+     */
+    public void addChanges(List<FileItem> updated, List<String> removedPaths) {
+        for (String removedPath : removedPaths) {
+            mChanges.put(removedPath, null);
+        }
+        for (FileItem item : updated) {
+            mChanges.put(item.absolutePath, item);
+        }
+    }
+
+    /***
+     * Returns if there are changes that haven't been applied yet.
+     * @return True if {@link #applyChanges(List, int, ChangeCallback)} has something to apply.
+     */
+    public boolean hasChanges() {
+        return !mChanges.isEmpty();
+    }
+
+    /***
+     * Applies the collected changes to the rows of the loaded folder one at a time: a removed child is removed from its row, an
+     * added child is inserted at its position in the order, and a modified child replaces its row or moves to its new position.
+     * Takes time in proportion to the number of changes and the number of rows, but needs no diff of the whole folder.
+     * @param rows The rows, with the children sorted in the order of the Browser after the first offset rows. They are changed in
+     *             place.
+     * @param offset The number of rows before the children, e.g. 1 for a ".." row.
+     * @param callback Receives every change with the positions that are valid at the time, or null.
+     * @return False if the rows are a {@link CompactFileList}, which can't be changed row by row. The changes are dropped then and
+     * the folder has to be loaded again.
+     */
+    public boolean applyChanges(List<FileItem> rows, int offset, ChangeCallback callback) {
+        if (mChanges.isEmpty()) return true;
+        if (rows instanceof CompactFileList) {
+            mChanges.clear();
+            return false;
+        }
+        Comparator<FileItem> comparator = DirectoryLoader.comparator(getSortOrder());
+        for (Map.Entry<String, FileItem> change : mChanges.entrySet()) {
+            FileItem item = change.getValue();
+            int oldPosition = indexOfPath(rows, offset, change.getKey());
+            if (oldPosition >= 0) rows.remove(oldPosition);
+            if (item == null) {
+                if (oldPosition >= 0 && callback != null) callback.onRemoved(oldPosition, 1);
+                continue;
+            }
+            int position = insertionPosition(rows, offset, item, comparator);
+            rows.add(position, item);
+            if (callback == null) continue;
+            if (oldPosition < 0) {
+                callback.onInserted(position, 1);
+            } else {
+                if (oldPosition != position) callback.onMoved(oldPosition, position);
+                callback.onChanged(position, 1);
+            }
+        }
+        mChanges.clear();
+        return true;
+    }
+
+    /***
+     * Toggles the selection of a file and makes it the file a range is selected from, see {@link #selectRange(List, int)}.
+     * @param path The absolute path of the file.
+     * @return True if the file is selected now.
+     */
+    public boolean toggleSelected(String path) {
+        mSelectionAnchor = path;
+        return mSelection.toggle(path);
+    }
+
+    /***
+     * Selects the files from the one that has been selected last to the one in a row, e.g. when the user long-presses a row in
+     * multi-select mode, and makes that file the one the next range is selected from. Folders in between are skipped. If the file
+     * that has been selected last isn't among the rows, the file in the row is toggled instead.
+     * <p>The rows of a {@link CompactFileList} are selected by their packed names, without creating their FileItems.</p>
+     * @param rows The rows that are shown, e.g. a ".." row followed by the children. A CompactFileList must only be passed if all
+     *             of its rows are shown.
+     * @param row The row of the file.
+     * @return The first and the last row whose selection may have changed.
+     */
+    public int[] selectRange(List<FileItem> rows, int row) {
+        FileItem item = rows.get(row);
+        int anchor = mSelectionAnchor != null ? indexOfPath(rows, 0, mSelectionAnchor) : -1;
+        if (anchor < 0) {
+            toggleSelected(item.absolutePath);
+            return new int[]{row, row};
+        }
+        int from = Math.min(anchor, row);
+        int to = Math.max(anchor, row);
+        if (rows instanceof CompactFileList) {
+            CompactListing listing = ((CompactFileList) rows).getListing();
+            int offset = rows.size() - listing.size();
+            mSelection.selectRange(listing, from - offset, to - offset + 1);
+        } else {
+            for (int i = from; i <= to; i++) {
+                FileItem rangeItem = rows.get(i);
+                if (!rangeItem.isDirectory) mSelection.setSelected(rangeItem.absolutePath, true);
+            }
+        }
+        mSelectionAnchor = item.absolutePath;
+        return new int[]{from, to};
+    }
+
+    /***
+     * Returns the file a range is selected from, see {@link #selectRange(List, int)}.
+     * @return The absolute path of the file, or null if none has been selected since the selection has been cleared.
+     */
+    public String getSelectionAnchor() {
+        return mSelectionAnchor;
+    }
+
+    /***
+     * Deselects all files in all folders and forgets the file a range is selected from.
+     */
+    public void clearSelection() {
+        mSelection.clear();
+        mSelectionAnchor = null;
+    }
+
+    /***
+     * Cancels the load or search that is currently running. Its listener will not be called anymore.
+     */
+    public void cancelLoad() {
+        mLoader.cancel();
+    }
+
+    /***
+     * Returns if a load or search has been started and neither finished nor been cancelled yet.
+     * @return True if a load is running.
+     */
+    public boolean isLoading() {
+        return mLoader.isLoading();
+    }
+
+    /***
+     * Returns the time between the start of the last load and the delivery of its first child.
+     * @return The time to the first row in nanoseconds, or -1 if no child has been delivered yet.
+     */
+    public long getTimeToFirstRowNanos() {
+        return mLoader.getTimeToFirstRowNanos();
+    }
+
+    /***
+     * Returns the measurements of the last load, if it has finished and has been started with {@link #setCollectStats(boolean)}.
+     * @return The measurements, or null.
+     */
+    public DirectoryLoader.LoadStats getLoadStats() {
+        return mLoader.getLoadStats();
+    }
+
+    /***
+     * Starts listing the current folder into the ListingCache before it is loaded, see {@link DirectoryLoader#preload(String)}.
+     */
+    public void preload() {
+        mLoader.preload(getPath());
+    }
+
+    /***
+     * Drops the cached listing of a folder, e.g. because a watcher has reported changes that its modification time doesn't show.
+     * @param path The absolute path of the folder.
+     */
+    public void invalidate(String path) {
+        mLoader.invalidate(path);
+    }
+
+    /***
+     * Drops the preload, e.g. because the Browser isn't used anymore.
+     */
+    public void cancelPreload() {
+        mLoader.cancelPreload();
+    }
+
+    /***
+     * Finds a row by its absolute path, a CompactFileList without creating a FileItem for any child.
+     */
+    private static int indexOfPath(List<FileItem> rows, int offset, String absolutePath) {
+        if (rows instanceof CompactFileList) return ((CompactFileList) rows).indexOfPath(absolutePath);
+        for (int i = offset; i < rows.size(); i++) {
+            if (rows.get(i).absolutePath.equals(absolutePath)) return i;
+        }
+        return -1;
+    }
+
+    /***
+     * Returns the position after the last row that doesn't sort after the item.
+     */
+    private static int insertionPosition(List<FileItem> rows, int offset, FileItem item, Comparator<FileItem> comparator) {
+        int low = offset;
+        int high = rows.size();
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (comparator.compare(rows.get(middle), item) <= 0) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return low;
+    }
+
+    private void push(ArrayDeque<String> history, String path) {
+        history.push(path);
+        while (history.size() > mMaxHistory) {
+            history.removeLast();
+        }
+    }
+
+    /**
+     * Receives the changes that {@link #applyChanges(List, int, ChangeCallback)} makes to the rows, e.g. to update a list view.
+     */
+    public interface ChangeCallback extends ListDiff.UpdateCallback {
+        /***
+         * Called when a row has moved, after the row has been removed from its old position and inserted at its new one.
+         * @param fromPosition The old position.
+         * @param toPosition The new position.
+         */
+        void onMoved(int fromPosition, int toPosition);
+    }
+}
@@ -0,0 +1,70 @@
+package de.mxapplications.openfiledialog.core;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.regex.Pattern;
+
+/**
+ * The path model of a {@link Browser}: absolute paths as Strings, split and joined at {@link File#separator} without touching the
+ * file system, so links aren't resolved and a path doesn't need to exist.
+ */
+public final class BrowserPaths {
+    private BrowserPaths() {
+    }
+
+    /***
+     * Returns the path of the parent folder.
+     * @param path An absolute path.
+     * @return The path of the parent, or null for the root or a path without separator.
+     */
+    public static String parentPath(String path) {
+        int separator = path.lastIndexOf(File.separator);
+        if (path.equals(File.separator) || separator < 0) return null;
+        return separator == 0 ? File.separator : path.substring(0, separator);
+    }
+
+    /***
+     * Returns the path of a child.
+     * @param parentPath The absolute path of the folder.
+     * @param name The name of the child.
+     * @return The absolute path of the child.
+     */
+    public static String childPath(String parentPath, String name) {
+        return parentPath.endsWith(File.separator) ? parentPath + name : parentPath + File.separator + name;
+    }
+
+    /***
+     * Returns the last part of a path.
+     * @param path A path.
+     * @return The name of the file or folder, or the path itself if it has no separator.
+     */
+    public static String name(String path) {
+        return path.substring(path.lastIndexOf(File.separator) + 1);
+    }
+
+    /***
+     * Returns a path in its simplest form: without empty and "." parts, with every ".." part removing the part before it, and
+     * without a separator at the end. ".." at the root stays at the root.
+     * @param path An absolute path.
+     * @return The normalized path.
+     */
+    public static String normalize(String path) {
+        if (!path.startsWith(File.separator)) return path;
+        List<String> parts = new ArrayList<>();
+        for (String part : path.split(Pattern.quote(File.separator))) {
+            if (part.isEmpty() || part.equals(".")) continue;
+            if (part.equals("..")) {
+                if (!parts.isEmpty()) parts.remove(parts.size() - 1);
+            } else {
+                parts.add(part);
+            }
+        }
+        if (parts.isEmpty()) return File.separator;
+        StringBuilder normalized = new StringBuilder(path.length());
+        for (String part : parts) {
+            normalized.append(File.separator).append(part);
+        }
+        return normalized.toString();
+    }
+}
@@ -0,0 +1,127 @@
+package de.mxapplications.openfiledialog.core;
+
+import java.io.File;
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.RandomAccess;
+
+/**
+ * A read-only list of FileItems that are views of the children in a {@link CompactListing}. Nothing is created for a child until
+ * it is read: a call to {@link #get(int)} creates a new FileItem, with the sort key for the given order, from the packed name
+ * and the primitive fields of the child.
+ * <p>For a paged listing, the FileItems of a window of positions, e.g. the visible rows and some rows around them, are kept once
+ * they have been created, so binding a row again doesn't create another one. Moving the window with {@link #setWindow(int, int)}
+ * drops the FileItems that have left it, so no more FileItems are held than fit into the window, however many children there are.</p>
+ * <p>The list can start with a header item that isn't part of the listing, e.g. the ".." entry.</p>
+ */
+public class CompactFileList extends AbstractList<FileItem> implements RandomAccess {
+    //The largest window, in case a filter spreads the visible rows over the whole listing
+    public static final int MAX_WINDOW_SIZE = 1024;
+
+    private final FileItem mHeader;
+    private final int mOffset;
+    private final CompactListing mListing;
+    private final SortOrder mSortOrder;
+    //The FileItems of the positions mWindowStart to mWindowStart + mWindowSize - 1 that have been created, null before that
+    private FileItem[] mWindow = null;
+    private int mWindowStart = 0;
+    private int mWindowSize = 0;
+
+    /***
+     * Constructs a CompactFileList.
+     * @param listing The children.
+     * @param sortOrder The order the sort keys of the FileItems are created for.
+     */
+    public CompactFileList(CompactListing listing, SortOrder sortOrder) {
+        this(null, listing, sortOrder);
+    }
+
+    /***
+     * Constructs a CompactFileList that starts with a header item.
+     * @param header The item before the children, or null.
+     * @param listing The children.
+     * @param sortOrder The order the sort keys of the FileItems are created for.
+     */
+    public CompactFileList(FileItem header, CompactListing listing, SortOrder sortOrder) {
+        this.mHeader = header;
+        this.mOffset = header != null ? 1 : 0;
+        this.mListing = listing;
+        this.mSortOrder = sortOrder;
+    }
+
+    /***
+     * Returns the children the FileItems are created from.
+     * @return The CompactListing.
+     */
+    public CompactListing getListing() {
+        return mListing;
+    }
+
+    /***
+     * Keeps the FileItems of the given positions once they have been created and drops all others. Not safe to use from several threads at once.
+     * @param first The first position of the window.
+     * @param last The last position of the window. The window is cut to {@link #MAX_WINDOW_SIZE} positions.
+     */
+    public void setWindow(int first, int last) {
+        int start = Math.max(first, 0);
+        int size = Math.max(Math.min(Math.min(last + 1, size()) - start, MAX_WINDOW_SIZE), 0);
+        if (start == mWindowStart && size == mWindowSize) return;
+        FileItem[] window = mWindow != null && mWindow.length >= size ? mWindow : new FileItem[size];
+        //Move the FileItems that stay in the window to their new slots and clear all other slots
+        int keptFrom = Math.max(start, mWindowStart);
+        int keptTo = Math.min(start + size, mWindowStart + mWindowSize);
+        if (keptFrom < keptTo) {
+            System.arraycopy(mWindow, keptFrom - mWindowStart, window, keptFrom - start, keptTo - keptFrom);
+            Arrays.fill(window, 0, keptFrom - start, null);
+            Arrays.fill(window, keptTo - start, window.length, null);
+        } else {
+            Arrays.fill(window, null);
+        }
+        mWindow = window;
+        mWindowStart = start;
+        mWindowSize = size;
+    }
+
+    /***
+     * Returns the number of FileItems that are held in the window.
+     * @return The number of FileItems.
+     */
+    public int getWindowItemCount() {
+        int count = 0;
+        for (int i = 0; i < mWindowSize; i++) {
+            if (mWindow[i] != null) count++;
+        }
+        return count;
+    }
+
+    /***
+     * Finds a child by its absolute path, without creating a FileItem for any child.
+     * @param absolutePath The path of the child.
+     * @return The position of the child, or -1 if it isn't in the list.
+     */
+    public int indexOfPath(String absolutePath) {
+        if (mHeader != null && mHeader.absolutePath.equals(absolutePath)) return 0;
+        String parentPath = BrowserPaths.parentPath(absolutePath);
+        if (parentPath == null || !parentPath.equals(mListing.getParentPath())) return -1;
+        int position = mListing.indexOf(absolutePath.substring(absolutePath.lastIndexOf(File.separator) + 1));
+        return position < 0 ? -1 : mOffset + position;
+    }
+
+    @Override
+    public FileItem get(int index) {
+        if (index < 0 || index >= size()) throw new IndexOutOfBoundsException("Index: " + index + ", size: " + size());
+        if (index < mOffset) return mHeader;
+        int slot = index - mWindowStart;
+        if (slot >= 0 && slot < mWindowSize && mWindow[slot] != null) return mWindow[slot];
+        int position = index - mOffset;
+        FileItem item = FileItem.create(mListing.getParentPath(), mListing.getName(position), mListing.isDirectory(position),
+                mListing.getSize(position), mListing.getLastModified(position), mSortOrder);
+        if (slot >= 0 && slot < mWindowSize) mWindow[slot] = item;
+        return item;
+    }
+
+    @Override
+    public int size() {
+        return mOffset + mListing.size();
+    }
+}
@@ -0,0 +1,384 @@
+package de.mxapplications.openfiledialog.core;
+
+import java.io.File;
+import java.util.Arrays;
+
+/**
+ * The children of a folder in a compact, immutable form for very large folders: the path of the folder is stored once, the
+ * names of all children are packed into a single char array with their offsets in an int array, and the type and metadata
+ * of the children are kept in primitive arrays. A child costs about 2 bytes per character of its name plus 21 bytes, instead
+ * of several objects with their own copies of the name and the path.
+ * <p>No object is created per child until it is asked for: {@link #getName(int)} and {@link #getPath(int)} create the Strings
+ * of a single child, e.g. when its row is shown, and {@link #nameContains(int, String)} checks a name without creating any.</p>
+ * <p>The children keep the order they have been added to the {@link Builder} in, {@link #sorted(SortOrder)} returns them in
+ * another order.</p>
+ */
+public final class CompactListing {
+    private static final byte FLAG_DIRECTORY = 1;
+
+    private final String mParentPath;
+    private final int mSize;
+    private final char[] mNames;
+    //The name of child i is mNames[mNameOffsets[i]] to mNames[mNameOffsets[i + 1]]
+    private final int[] mNameOffsets;
+    private final byte[] mFlags;
+    //Null if neither the size nor the modification time of any child is known
+    private final long[] mSizes;
+    private final long[] mLastModified;
+    private final boolean mHasMetadata;
+
+    private CompactListing(Builder builder) {
+        this.mParentPath = builder.mParentPath;
+        this.mSize = builder.mSize;
+        this.mNames = Arrays.copyOf(builder.mNames, builder.mNameLength);
+        this.mNameOffsets = Arrays.copyOf(builder.mNameOffsets, builder.mSize + 1);
+        this.mFlags = Arrays.copyOf(builder.mFlags, builder.mSize);
+        this.mSizes = builder.mAnyMetadata ? Arrays.copyOf(builder.mSizes, builder.mSize) : null;
+        this.mLastModified = builder.mAnyMetadata ? Arrays.copyOf(builder.mLastModified, builder.mSize) : null;
+        this.mHasMetadata = builder.mAllMetadata;
+    }
+
+    //The first size positions of order are the children of the new listing
+    private CompactListing(CompactListing source, int[] order, int size) {
+        this.mParentPath = source.mParentPath;
+        this.mSize = size;
+        this.mNames = new char[size == source.mSize ? source.mNames.length : nameLength(source, order, size)];
+        this.mNameOffsets = new int[mSize + 1];
+        this.mFlags = new byte[mSize];
+        this.mSizes = source.mSizes != null ? new long[mSize] : null;
+        this.mLastModified = source.mLastModified != null ? new long[mSize] : null;
+        this.mHasMetadata = source.mHasMetadata;
+        int nameLength = 0;
+        for (int i = 0; i < mSize; i++) {
+            int position = order[i];
+            int offset = source.mNameOffsets[position];
+            int length = source.mNameOffsets[position + 1] - offset;
+            System.arraycopy(source.mNames, offset, mNames, nameLength, length);
+            nameLength += length;
+            mNameOffsets[i + 1] = nameLength;
+            mFlags[i] = source.mFlags[position];
+            if (mSizes != null) {
+                mSizes[i] = source.mSizes[position];
+                mLastModified[i] = source.mLastModified[position];
+            }
+        }
+    }
+
+    /***
+     * Constructs a CompactListing from its arrays, e.g. read by {@link ListingSnapshotStore}. The arrays are used, not copied.
+     */
+    CompactListing(String parentPath, char[] names, int[] nameOffsets, byte[] flags, long[] sizes, long[] lastModified) {
+        this.mParentPath = parentPath;
+        this.mSize = flags.length;
+        this.mNames = names;
+        this.mNameOffsets = nameOffsets;
+        this.mFlags = flags;
+        this.mSizes = sizes;
+        this.mLastModified = lastModified;
+        boolean hasMetadata = sizes != null;
+        for (int i = 0; hasMetadata && i < mSize; i++) {
+            hasMetadata = sizes[i] != DirectoryEntry.UNKNOWN && lastModified[i] != DirectoryEntry.UNKNOWN;
+        }
+        this.mHasMetadata = hasMetadata;
+    }
+
+    private static int nameLength(CompactListing source, int[] order, int size) {
+        int nameLength = 0;
+        for (int i = 0; i < size; i++) {
+            nameLength += source.mNameOffsets[order[i] + 1] - source.mNameOffsets[order[i]];
+        }
+        return nameLength;
+    }
+
+    /***
+     * Returns the absolute path of the folder.
+     * @return The path of the folder.
+     */
+    public String getParentPath() {
+        return mParentPath;
+    }
+
+    /***
+     * Returns the number of children.
+     * @return The number of children.
+     */
+    public int size() {
+        return mSize;
+    }
+
+    /***
+     * Returns the name of a child. The String is created by this call.
+     * @param position The position of the child.
+     * @return The name.
+     */
+    public String getName(int position) {
+        return new String(mNames, mNameOffsets[position], mNameOffsets[position + 1] - mNameOffsets[position]);
+    }
+
+    /***
+     * Returns the absolute path of a child. The String is created by this call.
+     * @param position The position of the child.
+     * @return The absolute path.
+     */
+    public String getPath(int position) {
+        int offset = mNameOffsets[position];
+        int length = mNameOffsets[position + 1] - offset;
+        StringBuilder path = new StringBuilder(mParentPath.length() + 1 + length).append(mParentPath);
+        if (!mParentPath.endsWith(File.separator)) path.append(File.separator);
+        return path.append(mNames, offset, length).toString();
+    }
+
+    /***
+     * Returns if a child is a folder.
+     * @param position The position of the child.
+     * @return True if the child is a folder.
+     */
+    public boolean isDirectory(int position) {
+        return (mFlags[position] & FLAG_DIRECTORY) != 0;
+    }
+
+    /***
+     * Returns the size of a child.
+     * @param position The position of the child.
+     * @return The size in bytes, or {@link DirectoryEntry#UNKNOWN}.
+     */
+    public long getSize(int position) {
+        return mSizes != null ? mSizes[position] : DirectoryEntry.UNKNOWN;
+    }
+
+    /***
+     * Returns the modification time of a child.
+     * @param position The position of the child.
+     * @return The time in milliseconds since the epoch, or {@link DirectoryEntry#UNKNOWN}.
+     */
+    public long getLastModified(int position) {
+        return mLastModified != null ? mLastModified[position] : DirectoryEntry.UNKNOWN;
+    }
+
+    /***
+     * Returns if the size and the modification time of all children are known.
+     * @return True if the listing has complete metadata.
+     */
+    public boolean hasMetadata() {
+        return mHasMetadata;
+    }
+
+    /***
+     * Returns if the name of a child contains a query, ignoring case, like {@link NameFilter#contains(String, String)} but
+     * without creating the name.
+     * @param position The position of the child.
+     * @param foldedQuery The query, case-folded.
+     * @return True if the name contains the query.
+     */
+    public boolean nameContains(int position, String foldedQuery) {
+        int start = mNameOffsets[position];
+        int last = mNameOffsets[position + 1] - foldedQuery.length();
+        for (int i = start; i <= last; i++) {
+            int j = 0;
+            while (j < foldedQuery.length() && equalsIgnoreCase(mNames[i + j], foldedQuery.charAt(j))) j++;
+            if (j == foldedQuery.length()) return true;
+        }
+        return false;
+    }
+
+    /***
+     * Returns the hash of the name of a child that {@link SelectionSet} identifies it by, without creating the name.
+     * @param position The position of the child.
+     * @return The same hash as {@link SelectionSet#hashName(CharSequence, int, int)} for the name.
+     */
+    public long nameHash(int position) {
+        long hash = SelectionSet.FNV_OFFSET_BASIS;
+        for (int i = mNameOffsets[position]; i < mNameOffsets[position + 1]; i++) {
+            hash = (hash ^ mNames[i]) * SelectionSet.FNV_PRIME;
+        }
+        return hash;
+    }
+
+    /***
+     * Finds a child by its name, without creating any String.
+     * @param name The name of the child.
+     * @return The position of the child, or -1 if there is no child with that name.
+     */
+    public int indexOf(String name) {
+        for (int i = 0; i < mSize; i++) {
+            int offset = mNameOffsets[i];
+            if (mNameOffsets[i + 1] - offset != name.length()) continue;
+            int j = 0;
+            while (j < name.length() && mNames[offset + j] == name.charAt(j)) j++;
+            if (j == name.length()) return i;
+        }
+        return -1;
+    }
+
+    /***
+     * Returns the children sorted by a {@link SortOrder}, in a new listing. Children that are equal for the order keep their
+     * relative order. The sort keys exist only while the children are sorted, the new listing consists of the same primitive
+     * arrays as this one.
+     * @param sortOrder The order.
+     * @return The sorted listing.
+     */
+    public CompactListing sorted(SortOrder sortOrder) {
+        SortOrder.SortKey[] keys = new SortOrder.SortKey[mSize];
+        int[] order = new int[mSize];
+        for (int i = 0; i < mSize; i++) {
+            keys[i] = sortOrder.createKey(getName(i), isDirectory(i), getSize(i), getLastModified(i));
+            order[i] = i;
+        }
+        return new CompactListing(this, sort(order, keys, sortOrder), mSize);
+    }
+
+    /***
+     * Returns the children an {@link EntryFilter} accepts, in the same order. A child that lacks the metadata the filter needs is
+     * accepted, like {@link EntryFilter#accept(DirectoryEntry)} does.
+     * @param filter The filter.
+     * @return This listing if the filter accepts all children, otherwise a new listing.
+     */
+    public CompactListing filtered(EntryFilter filter) {
+        int[] accepted = new int[mSize];
+        int size = 0;
+        for (int i = 0; i < mSize; i++) {
+            if (filter.accept(new DirectoryEntry(getName(i), isDirectory(i), getSize(i), getLastModified(i)))) accepted[size++] = i;
+        }
+        return size == mSize ? this : new CompactListing(this, accepted, size);
+    }
+
+    /***
+     * Sorts positions by their keys with a bottom-up merge sort, which is stable and doesn't box the positions.
+     * @return The sorted positions, either the given array or a new one.
+     */
+    private static int[] sort(int[] positions, SortOrder.SortKey[] keys, SortOrder sortOrder) {
+        int size = positions.length;
+        int[] source = positions;
+        int[] target = new int[size];
+        for (int width = 1; width < size; width *= 2) {
+            for (int low = 0; low < size; low += 2 * width) {
+                int middle = Math.min(low + width, size);
+                int high = Math.min(low + 2 * width, size);
+                int left = low;
+                int right = middle;
+                for (int i = low; i < high; i++) {
+                    if (left < middle && (right >= high || sortOrder.compare(keys[source[left]], keys[source[right]]) <= 0)) {
+                        target[i] = source[left++];
+                    } else {
+                        target[i] = source[right++];
+                    }
+                }
+            }
+            int[] swap = source;
+            source = target;
+            target = swap;
+        }
+        return source;
+    }
+
+    //The comparison of String.regionMatches(true, ...)
+    private static boolean equalsIgnoreCase(char c1, char c2) {
+        if (c1 == c2) return true;
+        char u1 = Character.toUpperCase(c1);
+        char u2 = Character.toUpperCase(c2);
+        return u1 == u2 || Character.toLowerCase(u1) == Character.toLowerCase(u2);
+    }
+
+    //The arrays of the listing, for ListingSnapshotStore. They must not be modified.
+    char[] names() {
+        return mNames;
+    }
+
+    int[] nameOffsets() {
+        return mNameOffsets;
+    }
+
+    byte[] flags() {
+        return mFlags;
+    }
+
+    long[] sizes() {
+        return mSizes;
+    }
+
+    long[] lastModifiedTimes() {
+        return mLastModified;
+    }
+
+    /***
+     * Estimates the memory that the listing occupies, e.g. for {@link ListingCache}.
+     * @return The estimated memory in bytes.
+     */
+    public long estimateBytes() {
+        //Object headers of the listing and its arrays, the parent path is shared with the caller
+        long bytes = 112 + 2L * mNames.length + 4L * mNameOffsets.length + mFlags.length;
+        if (mSizes != null) bytes += 16L * mSize;
+        return bytes;
+    }
+
+    /**
+     * Collects the children of a folder for a {@link CompactListing}. Not safe to use from several threads at once.
+     */
+    public static final class Builder {
+        private final String mParentPath;
+        private int mSize = 0;
+        private char[] mNames;
+        private int mNameLength = 0;
+        private int[] mNameOffsets;
+        private byte[] mFlags;
+        private long[] mSizes;
+        private long[] mLastModified;
+        private boolean mAnyMetadata = false;
+        private boolean mAllMetadata = true;
+
+        /***
+         * Constructs a Builder.
+         * @param parentPath The absolute path of the folder.
+         * @param expectedSize The number of children that are likely to be added, to size the arrays.
+         */
+        public Builder(String parentPath, int expectedSize) {
+            this.mParentPath = parentPath;
+            int capacity = Math.max(expectedSize, 4);
+            mNames = new char[capacity * 16];
+            mNameOffsets = new int[capacity + 1];
+            mFlags = new byte[capacity];
+            mSizes = new long[capacity];
+            mLastModified = new long[capacity];
+        }
+
+        /***
+         * Adds the next child.
+         * @param name The name of the child.
+         * @param isDirectory True if the child is a folder.
+         * @param size The size of the child, or {@link DirectoryEntry#UNKNOWN}.
+         * @param lastModified The modification time of the child, or {@link DirectoryEntry#UNKNOWN}.
+         * @return The Builder.
+         */
+        public Builder add(String name, boolean isDirectory, long size, long lastModified) {
+            if (mSize == mFlags.length) {
+                int capacity = mFlags.length * 2;
+                mNameOffsets = Arrays.copyOf(mNameOffsets, capacity + 1);
+                mFlags = Arrays.copyOf(mFlags, capacity);
+                mSizes = Arrays.copyOf(mSizes, capacity);
+                mLastModified = Arrays.copyOf(mLastModified, capacity);
+            }
+            if (mNameLength + name.length() > mNames.length) {
+                mNames = Arrays.copyOf(mNames, Math.max(mNames.length * 2, mNameLength + name.length()));
+            }
+            name.getChars(0, name.length(), mNames, mNameLength);
+            mNameLength += name.length();
+            mFlags[mSize] = isDirectory ? FLAG_DIRECTORY : 0;
+            mSizes[mSize] = size;
+            mLastModified[mSize] = lastModified;
+            boolean metadata = size != DirectoryEntry.UNKNOWN && lastModified != DirectoryEntry.UNKNOWN;
+            mAnyMetadata |= size != DirectoryEntry.UNKNOWN || lastModified != DirectoryEntry.UNKNOWN;
+            mAllMetadata &= metadata;
+            mSize++;
+            mNameOffsets[mSize] = mNameLength;
+            return this;
+        }
+
+        /***
+         * Builds the listing, with arrays of exactly the needed size.
+         * @return The CompactListing.
+         */
+        public CompactListing build() {
+            return new CompactListing(this);
+        }
+    }
+}
@@ -0,0 +1,69 @@
+package de.mxapplications.openfiledialog.core;
+
+/**
+ * A child of a folder as reported by a {@link DirectoryLister}.
+ * <p>Size and modification time are only filled in by listers that get them without an extra call to the file system,
+ * otherwise they are {@link #UNKNOWN}.</p>
+ */
+public final class DirectoryEntry {
+    /***
+     * The value of {@link #getSize()} and {@link #getLastModified()} if the lister didn't read them.
+     */
+    public static final long UNKNOWN = -1;
+
+    private final String mName;
+    private final boolean mDirectory;
+    private final long mSize;
+    private final long mLastModified;
+
+    /***
+     * Constructs a DirectoryEntry.
+     * @param name The name of the file or folder, without the path of its parent.
+     * @param directory True if the entry is a folder (or a link to a folder).
+     * @param size The size in bytes, or {@link #UNKNOWN}.
+     * @param lastModified The time of the last modification in milliseconds since the epoch, or {@link #UNKNOWN}.
+     */
+    public DirectoryEntry(String name, boolean directory, long size, long lastModified) {
+        this.mName = name;
+        this.mDirectory = directory;
+        this.mSize = size;
+        this.mLastModified = lastModified;
+    }
+
+    /***
+     * Returns the name of the file or folder, without the path of its parent.
+     * @return The name of the file or folder.
+     */
+    public String getName() {
+        return mName;
+    }
+
+    /***
+     * Returns if the entry is a folder or a link to a folder.
+     * @return True if the entry is a folder.
+     */
+    public boolean isDirectory() {
+        return mDirectory;
+    }
+
+    /***
+     * Returns the size of the file in bytes.
+     * @return The size in bytes, or {@link #UNKNOWN} if the lister didn't read it.
+     */
+    public long getSize() {
+        return mSize;
+    }
+
+    /***
+     * Returns the time of the last modification.
+     * @return The time in milliseconds since the epoch, or {@link #UNKNOWN} if the lister didn't read it.
+     */
+    public long getLastModified() {
+        return mLastModified;
+    }
+
+    @Override
+    public String toString() {
+        return mDirectory ? mName + "/" : mName;
+    }
+}
@@ -0,0 +1,75 @@
+package de.mxapplications.openfiledialog.core;
+
+/**
+ * Lists the children of a folder. Implementations report every child, including hidden ones, in no particular order and
+ * must be safe to use from several threads at once. Children that a {@link FilteringVisitor} rules out by their name should be
+ * skipped before their type or metadata is read.
+ */
+public interface DirectoryLister {
+    /***
+     * Lists the children of a folder and hands them to the visitor one by one, while the folder is being read.
+     * @param path The absolute path of the folder.
+     * @param readMetadata True if size and modification time have to be filled in even if that costs extra calls to the file
+     *                     system. If false they are only filled in when they come for free.
+     * @param visitor The visitor that receives the children.
+     * @return False if the folder doesn't exist or can't be read, true otherwise (even if the visitor stopped the listing).
+     */
+    boolean list(String path, boolean readMetadata, Visitor visitor);
+
+    /***
+     * Returns the time the folder has last been modified, i.e. a child has been added, removed or renamed. Used to find out
+     * cheaply if a listing that has been cached is still valid.
+     * @param path The absolute path of the folder.
+     * @return The time in milliseconds since the epoch, or 0 if the folder doesn't exist or the time can't be read.
+     */
+    long getLastModified(String path);
+
+    /***
+     * Reads a single child of a folder, e.g. one that a {@link DirectoryWatcher} has reported as created.
+     * @param path The absolute path of the folder.
+     * @param name The name of the child.
+     * @param readMetadata True if size and modification time have to be filled in, see
+     *                     {@link #list(String, boolean, Visitor)}.
+     * @return The child, or null if it doesn't exist.
+     */
+    DirectoryEntry getEntry(String path, String name, boolean readMetadata);
+
+    /***
+     * Receives the children of a folder.
+     */
+    interface Visitor {
+        /***
+         * Called for every child of the folder.
+         * @param entry The child.
+         * @return True to continue the listing, false to stop it.
+         */
+        boolean visit(DirectoryEntry entry);
+    }
+
+    /***
+     * A Visitor that only wants the children its {@link EntryFilter} may accept. Listers check the name of every child with
+     * {@link EntryFilter#matchName(String)} before they read anything else about it, and skip the children that the name rules
+     * out, so those cost neither calls to the file system for their metadata nor a DirectoryEntry. Listers may also ignore the
+     * filter, the visitor still checks all rules with {@link EntryFilter#accept(DirectoryEntry)}.
+     */
+    interface FilteringVisitor extends Visitor {
+        /***
+         * Returns the filter the children are checked with.
+         * @return The filter, or null if the lister shouldn't rule out any child by its name.
+         */
+        EntryFilter getFilter();
+    }
+
+    /***
+     * A FilteringVisitor that is told which children have cost a call to the file system, e.g. to measure a listing. Listers call
+     * {@link #onStat()} for every child whose type or metadata they read, including the ones the filter then rules out, but not
+     * for the children the name check has ruled out or whose type came with their name.
+     */
+    interface CountingVisitor extends FilteringVisitor {
+        /***
+         * Called while the folder is being read, before the child is visited, for every child whose type or metadata has been
+         * read from the file system.
+         */
+        void onStat();
+    }
+}
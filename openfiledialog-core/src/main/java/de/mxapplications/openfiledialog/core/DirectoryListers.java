@@ -0,0 +1,36 @@
+package de.mxapplications.openfiledialog.core;
+
+/**
+ * Factory for the {@link DirectoryLister} implementations.
+ */
+public final class DirectoryListers {
+    private static DirectoryLister sDefault = null;
+
+    private DirectoryListers() {
+    }
+
+    /***
+     * Returns the fastest DirectoryLister the runtime supports: a {@link NioDirectoryLister} if java.nio.file is available,
+     * otherwise a {@link FileDirectoryLister}.
+     * @return The default DirectoryLister.
+     */
+    public static synchronized DirectoryLister getDefault() {
+        if (sDefault == null) {
+            sDefault = isNioSupported() ? new NioDirectoryLister() : new FileDirectoryLister();
+        }
+        return sDefault;
+    }
+
+    /***
+     * Returns if the runtime supports java.nio.file, which Android does starting with API 26.
+     * @return True if a {@link NioDirectoryLister} can be used.
+     */
+    public static boolean isNioSupported() {
+        try {
+            Class.forName("java.nio.file.Files");
+            return true;
+        } catch (ClassNotFoundException e) {
+            return false;
+        }
+    }
+}
@@ -0,0 +1,989 @@
+package de.mxapplications.openfiledialog.core;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.Executor;
+
+/**
+ * Lists the children of a folder on a background thread and delivers them on the callback executor (usually the UI thread).
+ * <p>The children are delivered progressively: every batch contains the children listed so far, sorted by the {@link SortOrder}
+ * set with {@link #setSortOrder(SortOrder)}, together with the
+ * ranges that are new compared to the previous batch. The first batch has the size set by {@link #setBatchSize(int)} so a
+ * screenful of rows can be shown right away. Following batches double in size (a batch is also flushed when it has been
+ * collecting for longer than a frame), so a folder with many thousand children is only merged a few times.</p>
+ * <p>Only the children accepted by the {@link EntryFilter} set with {@link #setEntryFilter(EntryFilter)} are delivered. The filter is
+ * checked while the folder is being listed, before a FileItem is created for a child, and listers skip the children it rules out by
+ * their name before reading their metadata.</p>
+ * <p>If a {@link ListingCache} is given, a listing that is still valid is delivered from the cache in a single batch, and every
+ * completed listing is stored in it. The cache holds the listings as {@link CompactListing}s and delivers them as
+ * {@link CompactFileList}s, so a FileItem is only created for a cached child when it is read. A cached listing with a different sort order is sorted again instead of listing the folder
+ * again, as long as it contains the metadata the new order needs. A cached listing is only used if it has been listed with an equal
+ * filter.</p>
+ * <p>In the paged mode set with {@link #setPaged(boolean)}, a folder is delivered in a single batch once it is complete, as a
+ * {@link CompactFileList}. The names are read into a {@link CompactListing} as they are listed and no FileItem is created for any
+ * child, the sort keys only exist while the listing is sorted. A FileItem is created when a child is read, e.g. for a visible row.</p>
+ * <p>If a {@link Prefetcher} is set with {@link #setPrefetcher(Prefetcher)}, a folder that isn't in the ListingCache is taken from
+ * the prefetched listings before it is listed. The DirectoryLoader is also the {@link Prefetcher.Task} that lists the folders for
+ * the Prefetcher, in the current sort order.</p>
+ * <p>If a {@link ListingSnapshotStore} is set with {@link #setSnapshotStore(ListingSnapshotStore)}, every completed listing is also written to it, and
+ * {@link #load(String, SnapshotListener, Listener)} delivers the snapshot of a folder that isn't in the ListingCache before it is listed, e.g. after the process
+ * has been restarted. The folder is then listed in full and delivered in a single batch that replaces the snapshot.</p>
+ * <p>{@link #search(String, String, int, int, DirectoryWalker, Listener)} delivers the results of a recursive search the same way, and
+ * {@link #list(String, SortOrder, EntryFilter, Prefetcher.Cancellation)} lists a folder on the calling thread, through the same
+ * ListingCache and Prefetcher.</p>
+ * <p>With {@link #setCollectStats(boolean)}, a load measures where its time goes, see {@link #getLoadStats()}. Nothing is measured
+ * otherwise.</p>
+ * <p>Only the folder that has been requested last is ever delivered. Starting a new load or calling {@link #cancel()} cancels the
+ * load that is currently running, and batches that arrive after it has been superseded are dropped. A running load stops listing at the
+ * next child once it has been cancelled.</p>
+ * <p>{@link #load(String, Listener)}, {@link #search(String, String, int, int, DirectoryWalker, Listener)}, {@link #cancel()}, {@link #isLoading()},
+ * {@link #setBatchSize(int)}, {@link #setPaged(boolean)} and {@link #setCollectStats(boolean)} have to be called on the thread the callback executor
+ * runs on.</p>
+ * <p>A {@link Browser} owns a DirectoryLoader and lists all of its folders with it.</p>
+ */
+public class DirectoryLoader implements Prefetcher.Task<DirectoryLoader.Listing> {
+    public static final int DEFAULT_BATCH_SIZE = 32;
+    private static final int MAX_BATCH_SIZE = 4096;
+    private static final long FLUSH_INTERVAL_NANOS = 16000000L;
+
+    private final Executor mBackgroundExecutor;
+    private final Executor mCallbackExecutor;
+    private int mBatchSize = DEFAULT_BATCH_SIZE;
+    //Read by the tasks on background threads
+    private volatile DirectoryLister mDirectoryLister;
+    private volatile ListingCache<Listing> mListingCache;
+    private volatile SortOrder mSortOrder = SortOrder.DEFAULT;
+    private volatile EntryFilter mEntryFilter = EntryFilter.DEFAULT;
+    private volatile Prefetcher<Listing> mPrefetcher = null;
+    private volatile ListingSnapshotStore mSnapshotStore = null;
+    private boolean mPaged = false;
+    private boolean mCollectStats = false;
+    private Task mCurrentTask = null;
+    //The folder that is being listed ahead of its load, taken over by the next load
+    private Preload mPreload = null;
+    private long mTimeToFirstRowNanos = -1;
+    private LoadStats mLoadStats = null;
+
+    /***
+     * Constructs a DirectoryLoader.
+     * @param directoryLister The DirectoryLister that reads the folders.
+     * @param listingCache The cache for the listings of folders, or null.
+     * @param backgroundExecutor The executor the folders are listed on.
+     * @param callbackExecutor The executor the results are delivered on.
+     */
+    public DirectoryLoader(DirectoryLister directoryLister, ListingCache<Listing> listingCache, Executor backgroundExecutor, Executor callbackExecutor) {
+        this.mDirectoryLister = directoryLister;
+        this.mListingCache = listingCache;
+        this.mBackgroundExecutor = backgroundExecutor;
+        this.mCallbackExecutor = callbackExecutor;
+    }
+
+    /***
+     * Sets the DirectoryLister that reads the folders. Takes effect with the next load, and drops the preload.
+     * @param directoryLister The DirectoryLister.
+     */
+    public void setDirectoryLister(DirectoryLister directoryLister) {
+        this.mDirectoryLister = directoryLister;
+        cancelPreload();
+    }
+
+    /***
+     * Sets the cache for the listings of folders. Takes effect with the next load, and drops the preload.
+     * @param listingCache The ListingCache, or null.
+     */
+    public void setListingCache(ListingCache<Listing> listingCache) {
+        this.mListingCache = listingCache;
+        cancelPreload();
+    }
+
+    /***
+     * Sets the number of children in the first batch that is delivered. Takes effect with the next load.
+     * @param batchSize The number of children in the first batch, at least 1.
+     */
+    public void setBatchSize(int batchSize) {
+        if (batchSize < 1) throw new IllegalArgumentException("batchSize must be at least 1");
+        this.mBatchSize = batchSize;
+    }
+
+    /***
+     * Sets the order the children are sorted in. Takes effect with the next load.
+     * @param sortOrder The order of the children.
+     */
+    public void setSortOrder(SortOrder sortOrder) {
+        this.mSortOrder = sortOrder;
+    }
+
+    /***
+     * Sets the filter that decides which children are delivered. Takes effect with the next load.
+     * @param entryFilter The filter.
+     */
+    public void setEntryFilter(EntryFilter entryFilter) {
+        this.mEntryFilter = entryFilter;
+    }
+
+    /***
+     * Sets if folders are delivered in the paged mode, in a single batch without creating a FileItem for any child. Takes effect with the next load.
+     * @param paged True for the paged mode.
+     */
+    public void setPaged(boolean paged) {
+        this.mPaged = paged;
+    }
+
+    /***
+     * Sets if loads measure where their time goes, see {@link #getLoadStats()}. Takes effect with the next load.
+     * @param collectStats True to measure the loads.
+     */
+    public void setCollectStats(boolean collectStats) {
+        this.mCollectStats = collectStats;
+    }
+
+    /***
+     * Sets the Prefetcher whose listings are used for folders that aren't in the ListingCache. Takes effect with the next load.
+     * @param prefetcher The Prefetcher, or null.
+     */
+    public void setPrefetcher(Prefetcher<Listing> prefetcher) {
+        this.mPrefetcher = prefetcher;
+    }
+
+    /***
+     * Sets the store that completed listings are written to and snapshots are read from. Takes effect with the next load.
+     * @param snapshotStore The ListingSnapshotStore, or null.
+     */
+    public void setSnapshotStore(ListingSnapshotStore snapshotStore) {
+        this.mSnapshotStore = snapshotStore;
+    }
+
+    /***
+     * Starts listing the children of the given folder. A load that is still running is cancelled.
+     * @param path The absolute path of the folder.
+     * @param listener The listener that receives the children, unless the load is cancelled first.
+     */
+    public void load(String path, Listener listener) {
+        load(path, null, listener);
+    }
+
+    /***
+     * Starts listing the children of the given folder, delivering its snapshot first if there is one. A load that is still running is cancelled.
+     * @param path The absolute path of the folder.
+     * @param snapshotListener The listener that receives the snapshot, or null to not read it, e.g. because the folder is shown already.
+     * @param listener The listener that receives the children, unless the load is cancelled first.
+     */
+    public void load(String path, SnapshotListener snapshotListener, Listener listener) {
+        load(path, snapshotListener, listener, null);
+    }
+
+    /***
+     * Starts listing the children of the given folder like {@link #load(String, SnapshotListener, Listener)}, and also drops the load as soon as
+     * the given cancellation reports it as cancelled, e.g. because the {@link Browser} has gone to another folder in the meantime.
+     * @param path The absolute path of the folder.
+     * @param snapshotListener The listener that receives the snapshot, or null to not read it.
+     * @param listener The listener that receives the children, unless the load is cancelled first.
+     * @param cancellation Checked before every child and every batch, or null.
+     */
+    void load(String path, SnapshotListener snapshotListener, Listener listener, Prefetcher.Cancellation cancellation) {
+        cancel();
+        mTimeToFirstRowNanos = -1;
+        mLoadStats = null;
+        LoadTask task = new LoadTask(path, mBatchSize, mPaged, mSortOrder, mEntryFilter, mCollectStats ? new LoadStats() : null, snapshotListener, listener,
+                cancellation);
+        mCurrentTask = task;
+        mBackgroundExecutor.execute(task);
+    }
+
+    /***
+     * Starts listing a folder into the ListingCache before it is loaded, e.g. while the dialog is being created. The next load of the folder waits for
+     * the listing if it is running already and takes it from the cache, any other load drops it. Only the last preload is kept, and nothing is preloaded
+     * without a ListingCache.
+     * @param path The absolute path of the folder.
+     */
+    public void preload(String path) {
+        ListingCache<Listing> listingCache = mListingCache;
+        if (listingCache == null) return;
+        Preload preload = new Preload(listingCache, path, mSortOrder, mEntryFilter);
+        synchronized (this) {
+            if (mPreload != null) mPreload.cancel();
+            mPreload = preload;
+        }
+        mBackgroundExecutor.execute(preload);
+    }
+
+    /***
+     * Drops the preload, e.g. because the folders are read with another DirectoryLister from now on.
+     */
+    public synchronized void cancelPreload() {
+        if (mPreload != null) {
+            mPreload.cancel();
+            mPreload = null;
+        }
+    }
+
+    /***
+     * Drops the listing of a folder from the ListingCache, so it is listed again by the next load.
+     * @param path The absolute path of the folder.
+     */
+    public void invalidate(String path) {
+        ListingCache<Listing> listingCache = mListingCache;
+        if (listingCache != null) listingCache.remove(path);
+    }
+
+    /***
+     * Takes over the preload of the folder of a load: waits until it has finished if it is running, otherwise drops it, so a folder is never listed
+     * twice at the same time. The preload is given up as soon as the load is cancelled.
+     * @param load The load that waits for the preload.
+     * @return True if the folder has been preloaded into the ListingCache.
+     */
+    private boolean joinPreload(String path, SortOrder sortOrder, EntryFilter filter, Task load) {
+        Preload preload;
+        synchronized (this) {
+            preload = mPreload;
+            mPreload = null;
+        }
+        if (preload == null) return false;
+        if (!preload.mPath.equals(path) || !preload.mSortOrder.equals(sortOrder) || !preload.mFilter.equals(filter)) {
+            preload.cancel();
+            return false;
+        }
+        return preload.join(load);
+    }
+
+    /***
+     * Starts searching a folder tree for children whose name contains the query, ignoring case. A load or search that is still running is cancelled.
+     * <p>The results are delivered like the children of a folder: sorted, in growing batches, with the path passed to the listener being the root. The
+     * name of every result is its path below the root. Children that the filter rejects are neither found nor entered, like they aren't listed.</p>
+     * @param root The absolute path of the folder the search starts at.
+     * @param query The text the names have to contain.
+     * @param maxDepth The number of levels of subfolders that are searched, 0 to only search the children of the root.
+     * @param maxResults The number of results after which the search stops.
+     * @param walker The DirectoryWalker that walks the tree.
+     * @param listener The listener that receives the results, unless the search is cancelled first.
+     */
+    public void search(String root, String query, int maxDepth, int maxResults, DirectoryWalker walker, Listener listener) {
+        cancel();
+        mTimeToFirstRowNanos = -1;
+        mLoadStats = null;
+        SearchTask task = new SearchTask(root, query, maxResults, mBatchSize, mSortOrder, mEntryFilter, listener);
+        mCurrentTask = task;
+        task.mWalk = walker.walk(root, maxDepth, task.mFilter, task);
+    }
+
+    /***
+     * Cancels the load or search that is currently running. Its listener will not be called anymore.
+     */
+    public void cancel() {
+        if (mCurrentTask != null) {
+            mCurrentTask.cancel();
+            mCurrentTask = null;
+        }
+    }
+
+    /***
+     * Returns if a load has been started and neither finished nor been cancelled yet.
+     * @return True if a load is running.
+     */
+    public boolean isLoading() {
+        return mCurrentTask != null;
+    }
+
+    /***
+     * Returns the time between the call to {@link #load(String, Listener)} and the delivery of the first batch that contained
+     * at least one child, for the load that has been started last.
+     * @return The time to the first row in nanoseconds, or -1 if no child has been delivered yet.
+     */
+    public long getTimeToFirstRowNanos() {
+        return mTimeToFirstRowNanos;
+    }
+
+    /***
+     * Returns the measurements of the load that has been started last, if it has finished and has been started with {@link #setCollectStats(boolean)}.
+     * @return The measurements, or null.
+     */
+    public LoadStats getLoadStats() {
+        return mLoadStats;
+    }
+
+    /***
+     * Returns a comparator that compares the sort keys of FileItems.
+     * @param sortOrder The order the sort keys have been created with.
+     * @return The comparator.
+     */
+    public static Comparator<FileItem> comparator(final SortOrder sortOrder) {
+        return new Comparator<FileItem>() {
+            @Override
+            public int compare(FileItem lhs, FileItem rhs) {
+                return sortOrder.compare(lhs.sortKey, rhs.sortKey);
+            }
+        };
+    }
+
+    /***
+     * Merges sorted new children into the sorted children delivered so far.
+     * @param sorted The children delivered so far, sorted. Not modified.
+     * @param batch The new children, sorted.
+     * @param comparator The comparator the children are sorted by.
+     * @param ranges Receives the inserted ranges as pairs of position (in the merged list) and count, in ascending order.
+     * @return A new list containing all children, sorted.
+     */
+    static List<FileItem> merge(List<FileItem> sorted, List<FileItem> batch, Comparator<FileItem> comparator, List<int[]> ranges) {
+        List<FileItem> merged = new ArrayList<>(sorted.size() + batch.size());
+        int i = 0;
+        int j = 0;
+        int[] range = null;
+        while (j < batch.size()) {
+            if (i < sorted.size() && comparator.compare(sorted.get(i), batch.get(j)) <= 0) {
+                merged.add(sorted.get(i++));
+                range = null;
+            } else {
+                if (range == null) {
+                    range = new int[]{merged.size(), 0};
+                    ranges.add(range);
+                }
+                merged.add(batch.get(j++));
+                range[1]++;
+            }
+        }
+        while (i < sorted.size()) {
+            merged.add(sorted.get(i++));
+        }
+        return merged;
+    }
+
+    /***
+     * Packs sorted children into the compact form they are cached in.
+     * @param path The absolute path of the folder.
+     * @param items The children of the folder.
+     * @return The CompactListing, in the order of the children.
+     */
+    static CompactListing compact(String path, List<FileItem> items) {
+        CompactListing.Builder builder = new CompactListing.Builder(path, items.size());
+        for (FileItem item : items) {
+            builder.add(item.name, item.isDirectory, item.size, item.lastModified);
+        }
+        return builder.build();
+    }
+
+    /***
+     * Lists a folder completely for the Prefetcher, see {@link #listInto(ListingCache, String, SortOrder, EntryFilter, Prefetcher.Cancellation)}.
+     */
+    @Override
+    public boolean prefetch(String path, ListingCache<Listing> cache, Prefetcher.Cancellation cancellation) {
+        return listInto(cache, path, mSortOrder, mEntryFilter, cancellation);
+    }
+
+    /***
+     * Lists a folder on the calling thread, e.g. for a {@link Browser} without a user interface. A listing that is still valid is taken from
+     * the ListingCache or the Prefetcher like for a load, and a new listing is stored in the ListingCache.
+     * @param path The absolute path of the folder.
+     * @param sortOrder The order of the children.
+     * @param filter The filter the children have to pass.
+     * @param cancellation Checked before every child.
+     * @return The children, or null if the folder can't be read or the listing has been cancelled.
+     */
+    public CompactListing list(String path, SortOrder sortOrder, EntryFilter filter, Prefetcher.Cancellation cancellation) {
+        DirectoryLister directoryLister = mDirectoryLister;
+        ListingCache<Listing> listingCache = mListingCache;
+        long lastModified = directoryLister.getLastModified(path);
+        if (listingCache != null) {
+            CompactListing cached = getCached(listingCache, path, lastModified, sortOrder, filter, null);
+            if (cached != null) return cached;
+        }
+        Prefetcher<Listing> prefetcher = mPrefetcher;
+        Listing prefetched = prefetcher != null ? prefetcher.take(path, lastModified) : null;
+        if (prefetched != null && prefetched.mSortOrder.equals(sortOrder) && prefetched.mFilter.equals(filter)) {
+            if (listingCache != null) {
+                listingCache.put(path, lastModified, prefetched.mListStartMillis, prefetched, prefetched.mChildren.estimateBytes());
+            }
+            return prefetched.mChildren;
+        }
+        long listStartMillis = System.currentTimeMillis();
+        CompactListing children = list(directoryLister, path, sortOrder, filter, Long.MAX_VALUE, cancellation);
+        if (children != null && listingCache != null) {
+            listingCache.put(path, lastModified, listStartMillis, new Listing(sortOrder, filter, children, listStartMillis), children.estimateBytes());
+        }
+        return children;
+    }
+
+    /***
+     * Lists a folder completely into a cache. Folders that are cached already are skipped, and the listing is stopped as soon as it is too large
+     * for the cache.
+     * @return True if the listing has been stored in the cache.
+     */
+    private boolean listInto(ListingCache<Listing> cache, String path, SortOrder sortOrder, EntryFilter filter, Prefetcher.Cancellation cancellation) {
+        DirectoryLister directoryLister = mDirectoryLister;
+        ListingCache<Listing> listingCache = mListingCache;
+        long lastModified = directoryLister.getLastModified(path);
+        if (lastModified == 0 || cache.contains(path, lastModified) || (listingCache != null && listingCache.contains(path, lastModified))) {
+            return false;
+        }
+        long listStartMillis = System.currentTimeMillis();
+        CompactListing children = list(directoryLister, path, sortOrder, filter, cache.getMaxBytes(), cancellation);
+        return children != null && cache.put(path, lastModified, listStartMillis, new Listing(sortOrder, filter, children, listStartMillis), children.estimateBytes());
+    }
+
+    /***
+     * Lists a folder into a sorted CompactListing, without creating a FileItem for any child.
+     * @return The children, or null if the folder can't be read, the listing has been cancelled or it is estimated to take more than maxBytes.
+     */
+    private static CompactListing list(DirectoryLister directoryLister, String path, SortOrder sortOrder, final EntryFilter filter, final long maxBytes,
+                                       final Prefetcher.Cancellation cancellation) {
+        final CompactListing.Builder builder = new CompactListing.Builder(path, 0);
+        //Estimated bytes of the CompactListing
+        final long[] bytes = {112};
+        boolean readable = directoryLister.list(path, sortOrder.needsMetadata() || filter.needsMetadata(), new DirectoryLister.FilteringVisitor() {
+            @Override
+            public EntryFilter getFilter() {
+                return filter;
+            }
+
+            @Override
+            public boolean visit(DirectoryEntry entry) {
+                if (cancellation.isCancelled()) return false;
+                if (!filter.accept(entry)) return true;
+                builder.add(entry.getName(), entry.isDirectory(), entry.getSize(), entry.getLastModified());
+                bytes[0] += 21 + 2 * entry.getName().length();
+                return bytes[0] <= maxBytes;
+            }
+        });
+        if (!readable || cancellation.isCancelled() || bytes[0] > maxBytes) return null;
+        return builder.build().sorted(sortOrder);
+    }
+
+    /***
+     * Returns the cached children of a folder in the given order, sorting them again and caching them in that order if they have been cached in a
+     * different one.
+     * @param stats Receives the time spent sorting, or null.
+     * @return The children, or null if there is no valid listing with an equal filter in the cache or it lacks the metadata the order needs.
+     */
+    private static CompactListing getCached(ListingCache<Listing> cache, String path, long lastModified, SortOrder sortOrder, EntryFilter filter,
+                                            LoadStats stats) {
+        Listing listing = cache.get(path, lastModified);
+        if (listing == null || !listing.mFilter.equals(filter)) return null;
+        if (listing.mSortOrder.equals(sortOrder)) return listing.mChildren;
+        if (sortOrder.needsMetadata() && !listing.mChildren.hasMetadata()) return null;
+
+        long sortStartNanos = stats != null ? System.nanoTime() : 0;
+        CompactListing children = listing.mChildren.sorted(sortOrder);
+        if (stats != null) stats.mSortNanos = System.nanoTime() - sortStartNanos;
+        cache.put(path, lastModified, listing.mListStartMillis, new Listing(sortOrder, filter, children, listing.mListStartMillis), children.estimateBytes());
+        return children;
+    }
+
+    /***
+     * Lists a folder into the ListingCache ahead of its load, see {@link #preload(String)}. A load either waits for it or drops it before it has started.
+     */
+    private class Preload implements Runnable, Prefetcher.Cancellation {
+        private static final int PENDING = 0;
+        private static final int RUNNING = 1;
+        private static final int FINISHED = 2;
+        private static final int CANCELLED = 3;
+
+        final ListingCache<Listing> mCache;
+        final String mPath;
+        final SortOrder mSortOrder;
+        final EntryFilter mFilter;
+        private int mState = PENDING;
+        private boolean mListed = false;
+        //The load that waits for the preload, it is only read without the lock of the preload, since its cancellation may lock the Browser
+        private volatile Task mLoad = null;
+
+        Preload(ListingCache<Listing> cache, String path, SortOrder sortOrder, EntryFilter filter) {
+            this.mCache = cache;
+            this.mPath = path;
+            this.mSortOrder = sortOrder;
+            this.mFilter = filter;
+        }
+
+        @Override
+        public void run() {
+            synchronized (this) {
+                if (mState != PENDING) return;
+                mState = RUNNING;
+            }
+            boolean listed = false;
+            try {
+                listed = listInto(mCache, mPath, mSortOrder, mFilter, this);
+            } finally {
+                synchronized (this) {
+                    mListed = listed;
+                    if (mState == RUNNING) mState = FINISHED;
+                    notifyAll();
+                }
+            }
+        }
+
+        synchronized void cancel() {
+            if (mState == PENDING || mState == RUNNING) {
+                mState = CANCELLED;
+                notifyAll();
+            }
+        }
+
+        @Override
+        public boolean isCancelled() {
+            synchronized (this) {
+                if (mState == CANCELLED) return true;
+            }
+            Task load = mLoad;
+            return load != null && load.isCancelled();
+        }
+
+        /***
+         * Waits for the listing if it has started, otherwise it is dropped. The listing stops at the next child once the load is cancelled.
+         * @param load The load that waits.
+         * @return True if the folder has been listed into the cache.
+         */
+        synchronized boolean join(Task load) {
+            if (mState == PENDING) {
+                mState = CANCELLED;
+                return false;
+            }
+            mLoad = load;
+            boolean interrupted = false;
+            while (mState == RUNNING) {
+                try {
+                    wait();
+                } catch (InterruptedException e) {
+                    interrupted = true;
+                }
+            }
+            if (interrupted) Thread.currentThread().interrupt();
+            return mListed;
+        }
+    }
+
+    /***
+     * A listing as it is stored in the {@link ListingCache}.
+     */
+    public static class Listing {
+        final SortOrder mSortOrder;
+        final EntryFilter mFilter;
+        final CompactListing mChildren;
+        final long mListStartMillis;
+
+        Listing(SortOrder sortOrder, EntryFilter filter, CompactListing children, long listStartMillis) {
+            this.mSortOrder = sortOrder;
+            this.mFilter = filter;
+            this.mChildren = children;
+            this.mListStartMillis = listStartMillis;
+        }
+    }
+
+    /***
+     * A load or a search: collects the children it finds and delivers them to its listener, merged into the children delivered so far.
+     */
+    abstract class Task {
+        final String mPath;
+        final SortOrder mSortOrder;
+        final EntryFilter mFilter;
+        final Comparator<FileItem> mComparator;
+        final Listener mListener;
+        //Null if the task isn't measured, only touched on the background thread until the task has finished
+        final LoadStats mStats;
+        //Null if only the DirectoryLoader cancels the task
+        final Prefetcher.Cancellation mCancellation;
+        private final long mStartNanos = System.nanoTime();
+        private volatile boolean mCancelled = false;
+
+        Task(String path, SortOrder sortOrder, EntryFilter filter, LoadStats stats, Listener listener, Prefetcher.Cancellation cancellation) {
+            this.mPath = path;
+            this.mSortOrder = sortOrder;
+            this.mFilter = filter;
+            this.mComparator = comparator(sortOrder);
+            this.mStats = stats;
+            this.mListener = listener;
+            this.mCancellation = cancellation;
+        }
+
+        void cancel() {
+            mCancelled = true;
+        }
+
+        boolean isCancelled() {
+            return mCancelled || (mCancellation != null && mCancellation.isCancelled());
+        }
+
+        /***
+         * Forgets the task on the callback executor after its Cancellation has cancelled it, so it isn't reported as loading anymore.
+         */
+        void drop() {
+            mCallbackExecutor.execute(new Runnable() {
+                @Override
+                public void run() {
+                    if (mCurrentTask == Task.this) mCurrentTask = null;
+                }
+            });
+        }
+
+        List<FileItem> deliver(List<FileItem> sorted, List<FileItem> batch, boolean finished) {
+            long sortStartNanos = mStats != null ? System.nanoTime() : 0;
+            Sorting.sort(batch, mComparator);
+            List<int[]> ranges = new ArrayList<>();
+            List<FileItem> merged = merge(sorted, batch, mComparator, ranges);
+            if (mStats != null) mStats.mSortNanos += System.nanoTime() - sortStartNanos;
+            post(merged, ranges, finished);
+            return merged;
+        }
+
+        /***
+         * Checks a child with the filter, measuring the time if the task is measured.
+         */
+        boolean accept(DirectoryEntry entry) {
+            if (mStats == null) return mFilter.accept(entry);
+            long filterStartNanos = System.nanoTime();
+            boolean accepted = mFilter.accept(entry);
+            mStats.mFilterNanos += System.nanoTime() - filterStartNanos;
+            return accepted;
+        }
+
+        /***
+         * Counts a child the lister has read from the file system, if the task is measured.
+         */
+        void countStat() {
+            if (mStats != null) mStats.mStatCount++;
+        }
+
+        void onFirstRows(List<FileItem> children) {
+            if (mTimeToFirstRowNanos < 0 && !children.isEmpty()) {
+                mTimeToFirstRowNanos = System.nanoTime() - mStartNanos;
+            }
+        }
+
+        void post(final List<FileItem> merged, final List<int[]> ranges, final boolean finished) {
+            if (finished && mStats != null) mStats.mEntryCount = merged.size();
+            mCallbackExecutor.execute(new Runnable() {
+                @Override
+                public void run() {
+                    //A newer load may have been started while this batch was waiting for the callback executor.
+                    if (mCurrentTask != Task.this) return;
+                    if (isCancelled()) {
+                        mCurrentTask = null;
+                        return;
+                    }
+                    if (finished) {
+                        mCurrentTask = null;
+                        mLoadStats = mStats;
+                    }
+                    onFirstRows(merged);
+                    mListener.onBatch(mPath, merged, ranges, finished);
+                }
+            });
+        }
+    }
+
+    class LoadTask extends Task implements Runnable {
+        private final int mFirstBatchSize;
+        private final boolean mPaged;
+        private final SnapshotListener mSnapshotListener;
+        private final DirectoryLister mLister = mDirectoryLister;
+        private final ListingCache<Listing> mCache = mListingCache;
+
+        //Only touched on the background thread
+        private List<FileItem> mSorted = Collections.emptyList();
+        private List<FileItem> mBatch = new ArrayList<>();
+        private int mCurrentBatchSize;
+        private long mBatchStartNanos;
+        //The listing replaces a snapshot that has been delivered, in a single batch
+        private boolean mSnapshotDelivered = false;
+
+        LoadTask(String path, int firstBatchSize, boolean paged, SortOrder sortOrder, EntryFilter filter, LoadStats stats, SnapshotListener snapshotListener,
+                 Listener listener, Prefetcher.Cancellation cancellation) {
+            super(path, sortOrder, filter, stats, listener, cancellation);
+            this.mFirstBatchSize = firstBatchSize;
+            this.mPaged = paged;
+            this.mSnapshotListener = snapshotListener;
+        }
+
+        @Override
+        public void run() {
+            load();
+            if (isCancelled()) drop();
+        }
+
+        private void load() {
+            if (isCancelled()) return;
+            boolean preloaded = joinPreload(mPath, mSortOrder, mFilter, this);
+            if (isCancelled()) return;
+            long lastModified = mLister.getLastModified(mPath);
+            if (mCache != null) {
+                CompactListing cached = getCached(mCache, mPath, lastModified, mSortOrder, mFilter, mStats);
+                if (cached != null) {
+                    if (mStats != null) mStats.mCacheResult = preloaded ? NavigationMetrics.CacheResult.PREFETCHED : NavigationMetrics.CacheResult.HIT;
+                    post(new CompactFileList(cached, mSortOrder), Collections.singletonList(new int[]{0, cached.size()}), true);
+                    return;
+                }
+            }
+            Prefetcher<Listing> prefetcher = mPrefetcher;
+            if (prefetcher != null) {
+                Listing prefetched = prefetcher.take(mPath, lastModified);
+                if (prefetched != null && prefetched.mSortOrder.equals(mSortOrder) && prefetched.mFilter.equals(mFilter)) {
+                    if (mStats != null) mStats.mCacheResult = NavigationMetrics.CacheResult.PREFETCHED;
+                    //The folder has been opened, so its listing moves to the ListingCache
+                    if (mCache != null) {
+                        mCache.put(mPath, lastModified, prefetched.mListStartMillis, prefetched, prefetched.mChildren.estimateBytes());
+                    }
+                    post(new CompactFileList(prefetched.mChildren, mSortOrder), Collections.singletonList(new int[]{0, prefetched.mChildren.size()}), true);
+                    writeSnapshot(lastModified, prefetched.mChildren);
+                    return;
+                }
+            }
+            if (mSnapshotListener != null) {
+                postSnapshot(lastModified);
+                if (isCancelled()) return;
+            }
+            if (mPaged) {
+                listPaged(lastModified);
+                return;
+            }
+
+            long listStartMillis = System.currentTimeMillis();
+            long scanStartNanos = mStats != null ? System.nanoTime() : 0;
+            mCurrentBatchSize = mFirstBatchSize;
+            mBatchStartNanos = System.nanoTime();
+            boolean readable = mLister.list(mPath, mSortOrder.needsMetadata() || mFilter.needsMetadata(), new DirectoryLister.CountingVisitor() {
+                @Override
+                public EntryFilter getFilter() {
+                    return mFilter;
+                }
+
+                @Override
+                public void onStat() {
+                    countStat();
+                }
+
+                @Override
+                public boolean visit(DirectoryEntry entry) {
+                    if (isCancelled()) return false;
+                    //Before anything is allocated for the child
+                    if (!accept(entry)) return true;
+                    mBatch.add(FileItem.create(mPath, entry.getName(), entry.isDirectory(), entry.getSize(), entry.getLastModified(), mSortOrder));
+                    if (!mSnapshotDelivered && (mBatch.size() >= mCurrentBatchSize || System.nanoTime() - mBatchStartNanos >= FLUSH_INTERVAL_NANOS)) {
+                        mSorted = deliver(mSorted, mBatch, false);
+                        mBatch = new ArrayList<>();
+                        mCurrentBatchSize = Math.min(mCurrentBatchSize * 2, Math.max(MAX_BATCH_SIZE, mFirstBatchSize));
+                        mBatchStartNanos = System.nanoTime();
+                    }
+                    return true;
+                }
+            });
+            if (isCancelled()) return;
+            if (mStats != null) {
+                //The batches are sorted while the folder is being listed
+                mStats.mScanNanos = System.nanoTime() - scanStartNanos - mStats.mSortNanos - mStats.mFilterNanos;
+            }
+            List<FileItem> children = deliver(mSorted, mBatch, true);
+            if ((mCache != null || mSnapshotStore != null) && readable) {
+                CompactListing compactChildren = compact(mPath, children);
+                if (mCache != null) {
+                    mCache.put(mPath, lastModified, listStartMillis, new Listing(mSortOrder, mFilter, compactChildren, listStartMillis), compactChildren.estimateBytes());
+                }
+                writeSnapshot(lastModified, compactChildren);
+            }
+        }
+
+        /***
+         * Lists the folder into a CompactListing and delivers it once it is sorted, without creating a FileItem for any child.
+         */
+        private void listPaged(long lastModified) {
+            long listStartMillis = System.currentTimeMillis();
+            long scanStartNanos = mStats != null ? System.nanoTime() : 0;
+            final CompactListing.Builder builder = new CompactListing.Builder(mPath, 0);
+            boolean readable = mLister.list(mPath, mSortOrder.needsMetadata() || mFilter.needsMetadata(), new DirectoryLister.CountingVisitor() {
+                @Override
+                public EntryFilter getFilter() {
+                    return mFilter;
+                }
+
+                @Override
+                public void onStat() {
+                    countStat();
+                }
+
+                @Override
+                public boolean visit(DirectoryEntry entry) {
+                    if (isCancelled()) return false;
+                    if (accept(entry)) {
+                        builder.add(entry.getName(), entry.isDirectory(), entry.getSize(), entry.getLastModified());
+                    }
+                    return true;
+                }
+            });
+            if (isCancelled()) return;
+            long sortStartNanos = mStats != null ? System.nanoTime() : 0;
+            CompactListing children = builder.build().sorted(mSortOrder);
+            if (mStats != null) {
+                mStats.mSortNanos = System.nanoTime() - sortStartNanos;
+                mStats.mScanNanos = sortStartNanos - scanStartNanos - mStats.mFilterNanos;
+            }
+            post(new CompactFileList(children, mSortOrder), Collections.singletonList(new int[]{0, children.size()}), true);
+            if (mCache != null && readable) {
+                mCache.put(mPath, lastModified, listStartMillis, new Listing(mSortOrder, mFilter, children, listStartMillis), children.estimateBytes());
+            }
+            if (readable) writeSnapshot(lastModified, children);
+        }
+
+        /***
+         * Delivers the snapshot of the folder to the SnapshotListener, in the order and with the filter of this task. Children the filter of the
+         * snapshot has rejected are missing until the folder has been listed.
+         */
+        private void postSnapshot(long lastModified) {
+            ListingSnapshotStore snapshotStore = mSnapshotStore;
+            ListingSnapshotStore.Snapshot snapshot = snapshotStore != null ? snapshotStore.read(mPath, lastModified) : null;
+            if (snapshot == null || isCancelled()) return;
+            CompactListing children = snapshot.getListing().filtered(mFilter);
+            if (!snapshot.getSortOrder().equals(mSortOrder)) {
+                if (mSortOrder.needsMetadata() && !children.hasMetadata()) return;
+                children = children.sorted(mSortOrder);
+            }
+            mSnapshotDelivered = true;
+            final List<FileItem> snapshotChildren = new CompactFileList(children, mSortOrder);
+            mCallbackExecutor.execute(new Runnable() {
+                @Override
+                public void run() {
+                    if (isCancelled() || mCurrentTask != LoadTask.this) return;
+                    onFirstRows(snapshotChildren);
+                    mSnapshotListener.onSnapshot(mPath, snapshotChildren);
+                }
+            });
+        }
+
+        private void writeSnapshot(long lastModified, CompactListing children) {
+            ListingSnapshotStore snapshotStore = mSnapshotStore;
+            if (snapshotStore != null && lastModified != 0 && !isCancelled()) {
+                snapshotStore.write(lastModified, mSortOrder, children);
+            }
+        }
+    }
+
+    /***
+     * Searches a folder tree with a {@link DirectoryWalker}. The visitor is called on several threads of the walk at once, the results are collected
+     * and delivered under the lock of the task.
+     */
+    class SearchTask extends Task implements DirectoryWalker.Visitor {
+        private final String mQuery;
+        private final int mMaxResults;
+        private final int mFirstBatchSize;
+        private final int mRootLength;
+        private volatile DirectoryWalker.Walk mWalk;
+
+        //Guarded by the task
+        private List<FileItem> mSorted = Collections.emptyList();
+        private List<FileItem> mBatch = new ArrayList<>();
+        private int mCurrentBatchSize;
+        private int mResultCount = 0;
+        //When the oldest result in mBatch has been found, or -1 if mBatch is empty. Read without the lock, so a result that is waiting for more is also
+        //flushed by the children that don't match.
+        private volatile long mBatchStartNanos = -1;
+
+        SearchTask(String root, String query, int maxResults, int firstBatchSize, SortOrder sortOrder, EntryFilter filter, Listener listener) {
+            super(root, sortOrder, filter, null, listener, null);
+            this.mQuery = NameFilter.fold(query.trim());
+            this.mMaxResults = maxResults;
+            this.mFirstBatchSize = firstBatchSize;
+            this.mCurrentBatchSize = firstBatchSize;
+            this.mRootLength = root.endsWith(File.separator) ? root.length() : root.length() + 1;
+        }
+
+        @Override
+        void cancel() {
+            super.cancel();
+            DirectoryWalker.Walk walk = mWalk;
+            if (walk != null) walk.cancel();
+        }
+
+        @Override
+        public boolean visit(String parentPath, DirectoryEntry entry) {
+            if (isCancelled()) return false;
+            if (!NameFilter.contains(entry.getName(), mQuery)) {
+                long batchStartNanos = mBatchStartNanos;
+                if (batchStartNanos >= 0 && System.nanoTime() - batchStartNanos >= FLUSH_INTERVAL_NANOS) {
+                    synchronized (this) {
+                        if (mBatchStartNanos >= 0 && System.nanoTime() - mBatchStartNanos >= FLUSH_INTERVAL_NANOS) flush(false);
+                    }
+                }
+                return true;
+            }
+            FileItem item = FileItem.create(parentPath, entry.getName(), entry.isDirectory(), entry.getSize(), entry.getLastModified(), mSortOrder);
+            //The results come from many folders, they are shown with their path below the root
+            item.name = item.absolutePath.substring(Math.min(mRootLength, item.absolutePath.length()));
+            synchronized (this) {
+                if (mResultCount >= mMaxResults) return false;
+                mBatch.add(item);
+                mResultCount++;
+                if (mBatchStartNanos < 0) mBatchStartNanos = System.nanoTime();
+                if (mBatch.size() >= mCurrentBatchSize || System.nanoTime() - mBatchStartNanos >= FLUSH_INTERVAL_NANOS) flush(false);
+                return mResultCount < mMaxResults;
+            }
+        }
+
+        @Override
+        public void onFinished(DirectoryWalker.Walk walk) {
+            synchronized (this) {
+                if (!isCancelled()) flush(true);
+            }
+        }
+
+        //Called with the lock of the task held
+        private void flush(boolean finished) {
+            mSorted = deliver(mSorted, mBatch, finished);
+            mBatch = new ArrayList<>();
+            mCurrentBatchSize = Math.min(mCurrentBatchSize * 2, Math.max(MAX_BATCH_SIZE, mFirstBatchSize));
+            mBatchStartNanos = -1;
+        }
+    }
+
+    /***
+     * Where the time of a load has gone, see {@link NavigationMetrics}.
+     */
+    public static class LoadStats {
+        NavigationMetrics.CacheResult mCacheResult = NavigationMetrics.CacheResult.MISS;
+        int mEntryCount = 0;
+        long mScanNanos = 0;
+        int mStatCount = 0;
+        long mSortNanos = 0;
+        long mFilterNanos = 0;
+
+        LoadStats() {
+        }
+
+        /***
+         * Returns the measurements as NavigationMetrics.
+         * @param path The absolute path of the folder.
+         * @param timeToFirstBindNanos The time from the start of the navigation until the first child has been bound to a row, or -1 if none has.
+         * @return The NavigationMetrics.
+         */
+        public NavigationMetrics toMetrics(String path, long timeToFirstBindNanos) {
+            return new NavigationMetrics(path, mEntryCount, mCacheResult, mScanNanos, mStatCount, mSortNanos, mFilterNanos, timeToFirstBindNanos);
+        }
+    }
+
+    /***
+     * Receives the snapshot of a folder, see {@link #load(String, SnapshotListener, Listener)}.
+     */
+    public interface SnapshotListener {
+        /***
+         * Called on the callback executor before the first batch if the folder has a snapshot. The folder is then delivered in a single batch with
+         * finished set to true once it has been listed, whose children replace the ones of the snapshot.
+         * @param path The absolute path of the folder.
+         * @param children The children of the snapshot, sorted. The list must not be modified.
+         */
+        void onSnapshot(String path, List<FileItem> children);
+    }
+
+    /***
+     * Receives the children of a folder while they are being loaded.
+     */
+    public interface Listener {
+        /***
+         * Called on the callback executor whenever a batch of children has been listed. The last call has finished set to true,
+         * even if it doesn't add any children.
+         * @param path The absolute path of the folder.
+         * @param children All children listed so far, sorted. The list must not be modified.
+         * @param insertedRanges The ranges of children that are new since the previous call, as pairs of position (in children)
+         *                       and count, in ascending order.
+         * @param finished True if this is the last batch.
+         */
+        void onBatch(String path, List<FileItem> children, List<int[]> insertedRanges, boolean finished);
+    }
+}
@@ -0,0 +1,237 @@
+package de.mxapplications.openfiledialog.core;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Walks a folder tree in parallel on a {@link ForkJoinPool}: every folder is listed by a task of its own, which forks the tasks
+ * for its subfolders, so idle threads steal whole subtrees from busy ones.
+ * <p>Every folder is entered at most once per walk, identified by its canonical path. A link that leads to a folder that has
+ * been entered already, e.g. a link to one of its own ancestors, is skipped instead of being followed in a loop.</p>
+ * <p>ForkJoinPool is available on Java 7 and Android 5.0 (API 21) and newer.</p>
+ */
+public class DirectoryWalker {
+    private final DirectoryLister mDirectoryLister;
+    private final ForkJoinPool mPool;
+
+    /***
+     * Constructs a DirectoryWalker.
+     * @param directoryLister The DirectoryLister that lists the folders.
+     * @param pool The pool the folders are listed on.
+     */
+    public DirectoryWalker(DirectoryLister directoryLister, ForkJoinPool pool) {
+        this.mDirectoryLister = directoryLister;
+        this.mPool = pool;
+    }
+
+    /***
+     * Starts walking a folder tree.
+     * @param root The absolute path of the folder the walk starts at.
+     * @param maxDepth The number of levels of subfolders that are entered, 0 to only visit the children of the root.
+     * @param filter The filter the children are checked with, like when they are listed. Children it rejects aren't visited and
+     *               folders it rejects aren't entered.
+     * @param visitor The visitor that receives the children of all folders.
+     * @return The walk, which can be cancelled and waited for.
+     */
+    public Walk walk(String root, int maxDepth, EntryFilter filter, Visitor visitor) {
+        final Walk walk = new Walk(maxDepth, filter, visitor);
+        final DirectoryTask rootTask = new DirectoryTask(walk, root, 0);
+        mPool.execute(new RecursiveAction() {
+            @Override
+            protected void compute() {
+                try {
+                    rootTask.invoke();
+                } finally {
+                    walk.finish();
+                }
+            }
+        });
+        return walk;
+    }
+
+    private static String canonicalPath(String path) {
+        try {
+            return new File(path).getCanonicalPath();
+        } catch (IOException e) {
+            return path;
+        }
+    }
+
+    private class DirectoryTask extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final Walk mWalk;
+        private final String mPath;
+        private final int mDepth;
+
+        DirectoryTask(Walk walk, String path, int depth) {
+            this.mWalk = walk;
+            this.mPath = path;
+            this.mDepth = depth;
+        }
+
+        @Override
+        protected void compute() {
+            if (mWalk.mCancelled) return;
+            if (!mWalk.mEnteredFolders.add(canonicalPath(mPath))) {
+                mWalk.mSkippedFolderCount.incrementAndGet();
+                return;
+            }
+            final List<DirectoryTask> subfolders = new ArrayList<>();
+            mDirectoryLister.list(mPath, mWalk.mFilter.needsMetadata(), new DirectoryLister.FilteringVisitor() {
+                @Override
+                public EntryFilter getFilter() {
+                    return mWalk.mFilter;
+                }
+
+                @Override
+                public boolean visit(DirectoryEntry entry) {
+                    if (mWalk.mCancelled) return false;
+                    if (!mWalk.mFilter.accept(entry)) return true;
+                    mWalk.mEntryCount.incrementAndGet();
+                    if (!mWalk.mVisitor.visit(mPath, entry)) {
+                        mWalk.cancel();
+                        return false;
+                    }
+                    if (entry.isDirectory() && mDepth < mWalk.mMaxDepth) {
+                        String childPath = mPath.endsWith(File.separator) ? mPath + entry.getName() : mPath + File.separator + entry.getName();
+                        subfolders.add(new DirectoryTask(mWalk, childPath, mDepth + 1));
+                    }
+                    return true;
+                }
+            });
+            mWalk.mFolderCount.incrementAndGet();
+            if (!subfolders.isEmpty() && !mWalk.mCancelled) invokeAll(subfolders);
+        }
+    }
+
+    /**
+     * A walk that has been started by {@link #walk(String, int, EntryFilter, Visitor)}.
+     */
+    public static final class Walk {
+        private final int mMaxDepth;
+        private final EntryFilter mFilter;
+        private final Visitor mVisitor;
+        private final Set<String> mEnteredFolders = Collections.newSetFromMap(new ConcurrentHashMap<String, Boolean>());
+        private final AtomicLong mFolderCount = new AtomicLong();
+        private final AtomicLong mEntryCount = new AtomicLong();
+        private final AtomicLong mSkippedFolderCount = new AtomicLong();
+        private final long mStartNanos = System.nanoTime();
+        private volatile boolean mCancelled = false;
+        private volatile long mDurationNanos = -1;
+        private boolean mFinished = false;
+
+        Walk(int maxDepth, EntryFilter filter, Visitor visitor) {
+            this.mMaxDepth = maxDepth;
+            this.mFilter = filter;
+            this.mVisitor = visitor;
+        }
+
+        /***
+         * Stops the walk. Folders that are being listed stop at their next child, no further folder is entered.
+         */
+        public void cancel() {
+            mCancelled = true;
+        }
+
+        /***
+         * Returns if the walk has been cancelled, by {@link #cancel()} or by the visitor.
+         * @return True if the walk has been cancelled.
+         */
+        public boolean isCancelled() {
+            return mCancelled;
+        }
+
+        /***
+         * Waits until the walk has finished, i.e. until all folders have been listed or the walk has been cancelled, and
+         * {@link Visitor#onFinished(Walk)} has returned.
+         * @param timeout The maximum time to wait.
+         * @param unit The unit of the timeout.
+         * @return True if the walk has finished, false if the timeout has elapsed.
+         * @throws InterruptedException If the waiting thread has been interrupted.
+         */
+        public synchronized boolean await(long timeout, TimeUnit unit) throws InterruptedException {
+            long deadline = System.nanoTime() + unit.toNanos(timeout);
+            while (!mFinished) {
+                long left = deadline - System.nanoTime();
+                if (left <= 0) return false;
+                TimeUnit.NANOSECONDS.timedWait(this, left);
+            }
+            return true;
+        }
+
+        /***
+         * Returns the number of folders that have been listed so far.
+         * @return The number of folders.
+         */
+        public long getFolderCount() {
+            return mFolderCount.get();
+        }
+
+        /***
+         * Returns the number of children that have been handed to the visitor so far.
+         * @return The number of children.
+         */
+        public long getEntryCount() {
+            return mEntryCount.get();
+        }
+
+        /***
+         * Returns the number of folders that have been skipped because they had been entered already through another path,
+         * e.g. through a link that leads to one of its ancestors.
+         * @return The number of skipped folders.
+         */
+        public long getSkippedFolderCount() {
+            return mSkippedFolderCount.get();
+        }
+
+        /***
+         * Returns how long the walk took.
+         * @return The duration in nanoseconds, or -1 if the walk hasn't finished yet.
+         */
+        public long getDurationNanos() {
+            return mDurationNanos;
+        }
+
+        private void finish() {
+            mDurationNanos = System.nanoTime() - mStartNanos;
+            try {
+                mVisitor.onFinished(this);
+            } finally {
+                //Waiting threads are woken after the visitor, so they see everything it has done
+                synchronized (this) {
+                    mFinished = true;
+                    notifyAll();
+                }
+            }
+        }
+    }
+
+    /**
+     * Receives the children of all folders of a walk. The methods are called on the threads of the pool, several at once.
+     */
+    public interface Visitor {
+        /***
+         * Called for every child of every folder that is entered.
+         * @param parentPath The absolute path of the folder the child is in.
+         * @param entry The child.
+         * @return True to continue the walk, false to cancel it.
+         */
+        boolean visit(String parentPath, DirectoryEntry entry);
+
+        /***
+         * Called once when the walk has finished, because all folders have been listed or because it has been cancelled.
+         * @param walk The walk.
+         */
+        void onFinished(Walk walk);
+    }
+}
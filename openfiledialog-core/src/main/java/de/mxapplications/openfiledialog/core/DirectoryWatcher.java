@@ -0,0 +1,51 @@
+package de.mxapplications.openfiledialog.core;
+
+/**
+ * Watches folders for children that are created, deleted, renamed or modified. A rename is reported as the deletion of the
+ * old name and the creation of the new one. Implementations must be safe to use from several threads at once.
+ */
+public interface DirectoryWatcher {
+    /***
+     * Starts watching a folder.
+     * @param path The absolute path of the folder.
+     * @param listener The listener that receives the events, on a thread of the watcher.
+     * @return The handle to stop watching, or null if the folder can't be watched.
+     */
+    Watch watch(String path, Listener listener);
+
+    /**
+     * The kinds of events a DirectoryWatcher reports.
+     */
+    enum EventType {
+        /** A child has been created or moved into the folder. */
+        CREATED,
+        /** A child has been deleted or moved out of the folder. */
+        DELETED,
+        /** The content of a child has been modified. */
+        MODIFIED,
+        /** Events have been lost or the folder itself has been deleted or moved; the folder has to be listed again. */
+        OVERFLOW
+    }
+
+    /**
+     * A folder that is being watched.
+     */
+    interface Watch {
+        /***
+         * Stops watching the folder. No events are reported after this method has returned.
+         */
+        void close();
+    }
+
+    /**
+     * Receives the events of a watched folder.
+     */
+    interface Listener {
+        /***
+         * Called for every event.
+         * @param type The kind of event.
+         * @param name The name of the child the event is about, or null for {@link EventType#OVERFLOW}.
+         */
+        void onEvent(EventType type, String name);
+    }
+}
@@ -0,0 +1,265 @@
+package de.mxapplications.openfiledialog.core;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Bounded least-recently-used cache of byte arrays in files of a directory of its own, e.g. encoded thumbnails that survive the
+ * process.
+ * <p>Every entry is a file named by a hash of its key. The file starts with the key, so a hash collision is a miss instead of
+ * wrong data. Entries are written to a temporary file first and renamed, so a crash never leaves a partial entry behind. The
+ * modification time of a file is its last use, which restores the order of the entries when the cache is opened again.</p>
+ * <p>The cache evicts the least recently used entries when all files together exceed the maximum number of bytes. Errors of
+ * the file system are treated as misses. It is safe to use from several threads at once, but only one DiskCache may use a
+ * directory.</p>
+ */
+public class DiskCache {
+    private static final String SUFFIX = ".entry";
+    private static final String TEMPORARY_SUFFIX = ".tmp";
+
+    private final File mDirectory;
+    private final long mMaxBytes;
+    //File name to file size, least recently used first. Read from the directory on first use.
+    private LinkedHashMap<String, Long> mEntries = null;
+    private long mBytes = 0;
+
+    /***
+     * Constructs a DiskCache. The directory is only read when the cache is used first.
+     * @param directory The directory of the cache. It is created if necessary.
+     * @param maxBytes The maximum size of all entries, in bytes.
+     */
+    public DiskCache(File directory, long maxBytes) {
+        if (maxBytes < 0) throw new IllegalArgumentException("maxBytes must not be negative");
+        this.mDirectory = directory;
+        this.mMaxBytes = maxBytes;
+    }
+
+    /***
+     * Returns the data of an entry.
+     * @param key The key of the entry.
+     * @return The data, or null if there is no entry for the key or it can't be read.
+     */
+    public synchronized byte[] get(String key) {
+        open();
+        String name = fileName(key);
+        if (!mEntries.containsKey(name)) return null;
+        File file = new File(mDirectory, name);
+        DataInputStream in = null;
+        try {
+            in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)));
+            if (!in.readUTF().equals(key)) return null;
+            byte[] data = new byte[in.readInt()];
+            in.readFully(data);
+            //Moves the entry to the end of the order, also for the next time the cache is opened
+            mEntries.put(name, mEntries.remove(name));
+            file.setLastModified(System.currentTimeMillis());
+            return data;
+        } catch (IOException e) {
+            delete(name);
+            return null;
+        } finally {
+            close(in);
+        }
+    }
+
+    /***
+     * Returns the data of an entry like {@link #get(String)}, but maps its file into memory instead of reading it. The data is only read when it
+     * is accessed, e.g. straight into the arrays it is decoded into.
+     * @param key The key of the entry.
+     * @return The data, read-only, or null if there is no entry for the key or it can't be read.
+     */
+    public synchronized ByteBuffer map(String key) {
+        open();
+        String name = fileName(key);
+        if (!mEntries.containsKey(name)) return null;
+        File file = new File(mDirectory, name);
+        RandomAccessFile in = null;
+        try {
+            in = new RandomAccessFile(file, "r");
+            FileChannel channel = in.getChannel();
+            //The mapping stays valid when the file is closed, and when it is deleted or replaced later
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            byte[] encodedKey = encodeKey(key);
+            if (buffer.remaining() < encodedKey.length + 4) return null;
+            for (byte b : encodedKey) {
+                if (buffer.get() != b) return null;
+            }
+            int length = buffer.getInt();
+            if (length < 0 || length > buffer.remaining()) throw new IOException("Truncated entry");
+            ByteBuffer data = buffer.slice();
+            data.limit(length);
+            mEntries.put(name, mEntries.remove(name));
+            file.setLastModified(System.currentTimeMillis());
+            return data;
+        } catch (IOException e) {
+            delete(name);
+            return null;
+        } finally {
+            close(in);
+        }
+    }
+
+    /***
+     * Stores the data of an entry, replacing an older one with the same key. Entries larger than the whole cache aren't stored.
+     * @param key The key of the entry.
+     * @param data The data.
+     */
+    public synchronized void put(String key, byte[] data) {
+        open();
+        String name = fileName(key);
+        delete(name);
+        File temporary = new File(mDirectory, name + TEMPORARY_SUFFIX);
+        DataOutputStream out = null;
+        try {
+            out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(temporary)));
+            out.writeUTF(key);
+            out.writeInt(data.length);
+            out.write(data);
+            out.close();
+            out = null;
+            long length = temporary.length();
+            if (length > mMaxBytes || !temporary.renameTo(new File(mDirectory, name))) {
+                temporary.delete();
+                return;
+            }
+            mEntries.put(name, length);
+            mBytes += length;
+            trim();
+        } catch (IOException e) {
+            temporary.delete();
+        } finally {
+            close(out);
+        }
+    }
+
+    /***
+     * Removes an entry, e.g. because its data turned out to be invalid.
+     * @param key The key of the entry.
+     */
+    public synchronized void remove(String key) {
+        open();
+        delete(fileName(key));
+    }
+
+    /***
+     * Returns the size of all entries.
+     * @return The size in bytes.
+     */
+    public synchronized long getBytes() {
+        open();
+        return mBytes;
+    }
+
+    /***
+     * Returns the number of entries.
+     * @return The number of entries.
+     */
+    public synchronized int size() {
+        open();
+        return mEntries.size();
+    }
+
+    /***
+     * Reads the entries from the directory, oldest first, and deletes temporary files left behind by a crash.
+     */
+    private void open() {
+        if (mEntries != null) return;
+        mEntries = new LinkedHashMap<>();
+        mBytes = 0;
+        if (!mDirectory.isDirectory() && !mDirectory.mkdirs()) return;
+        File[] files = mDirectory.listFiles();
+        if (files == null) return;
+        final long[] lastModified = new long[files.length];
+        Integer[] order = new Integer[files.length];
+        for (int i = 0; i < files.length; i++) {
+            lastModified[i] = files[i].lastModified();
+            order[i] = i;
+        }
+        Arrays.sort(order, new Comparator<Integer>() {
+            @Override
+            public int compare(Integer lhs, Integer rhs) {
+                return lastModified[lhs] < lastModified[rhs] ? -1 : lastModified[lhs] == lastModified[rhs] ? 0 : 1;
+            }
+        });
+        for (Integer i : order) {
+            File file = files[i];
+            if (file.getName().endsWith(SUFFIX)) {
+                mEntries.put(file.getName(), file.length());
+                mBytes += file.length();
+            } else if (file.getName().endsWith(TEMPORARY_SUFFIX)) {
+                file.delete();
+            }
+        }
+        trim();
+    }
+
+    private void trim() {
+        Iterator<Map.Entry<String, Long>> iterator = mEntries.entrySet().iterator();
+        while (mBytes > mMaxBytes && iterator.hasNext()) {
+            Map.Entry<String, Long> entry = iterator.next();
+            new File(mDirectory, entry.getKey()).delete();
+            mBytes -= entry.getValue();
+            iterator.remove();
+        }
+    }
+
+    private void delete(String name) {
+        Long length = mEntries.remove(name);
+        if (length != null) {
+            new File(mDirectory, name).delete();
+            mBytes -= length;
+        }
+    }
+
+    /***
+     * Returns the file name of a key: a 64 bit FNV-1a hash of the key, in hex.
+     */
+    private static String fileName(String key) {
+        return hash(key) + SUFFIX;
+    }
+
+    /***
+     * Returns a 64 bit FNV-1a hash of a key in hex, to name the file of the key.
+     */
+    static String hash(String key) {
+        long hash = 0xcbf29ce484222325L;
+        for (int i = 0; i < key.length(); i++) {
+            hash ^= key.charAt(i);
+            hash *= 0x100000001b3L;
+        }
+        return Long.toHexString(hash);
+    }
+
+    //The key as it starts the file, in the form of DataOutputStream.writeUTF()
+    private static byte[] encodeKey(String key) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(key.length() + 2);
+        new DataOutputStream(bytes).writeUTF(key);
+        return bytes.toByteArray();
+    }
+
+    private static void close(Closeable closeable) {
+        if (closeable == null) return;
+        try {
+            closeable.close();
+        } catch (IOException e) {
+            //Nothing left to do
+        }
+    }
+}
@@ -0,0 +1,270 @@
+package de.mxapplications.openfiledialog.core;
+
+import java.net.URLConnection;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Decides which children of a folder are shown. Built with a {@link Builder}; the rules are:
+ * <ul>
+ * <li>Hidden children (whose name starts with ".") are skipped unless {@link Builder#setShowHidden(boolean)} is set.</li>
+ * <li>Files have to have one of the extensions or MIME types that are allowed, if any are set. Folders are always shown, so the
+ * user can navigate to the matching files.</li>
+ * <li>Files have to lie within the size range, if one is set.</li>
+ * <li>Files and folders have to be accepted by all custom predicates.</li>
+ * </ul>
+ * <p>The rules are checked cheapest first: {@link #matchName(String)} checks the rules that only need the name, without
+ * allocating anything for the extensions, and {@link DirectoryLister}s call it through a {@link DirectoryLister.FilteringVisitor}
+ * before they read anything else about a child. Only children that pass get their type and metadata read, are handed to
+ * {@link #accept(DirectoryEntry)} and become rows that are sorted.</p>
+ * <p>An EntryFilter is immutable and can be used from several threads at once. Filters are equal if they have the same rules and
+ * the same predicates, so listings that have been cached with one filter are only reused with an equal one.</p>
+ */
+public final class EntryFilter {
+    /**
+     * The result of checking the name of a child.
+     */
+    public enum NameMatch {
+        /** The name passes all rules that only need the name. */
+        ACCEPT,
+        /** The name doesn't pass the rules for files, the child is only shown if it is a folder. */
+        FOLDER_ONLY,
+        /** The child isn't shown, whatever its type. */
+        REJECT
+    }
+
+    /**
+     * A custom rule.
+     */
+    public interface Predicate {
+        /***
+         * Decides if a child is shown. Called on background threads, for files and folders.
+         * @param entry The child. Its size and modification time are {@link DirectoryEntry#UNKNOWN} unless the predicate has
+         *              been added as needing metadata, or they came for free.
+         * @return True to show the child.
+         */
+        boolean accept(DirectoryEntry entry);
+    }
+
+    /***
+     * Shows everything but hidden children. This is the filter OpenFileDialog has always used.
+     */
+    public static final EntryFilter DEFAULT = new Builder().build();
+
+    private final boolean mShowHidden;
+    //Folded, each with a leading "."
+    private final String[] mExtensions;
+    //Folded, "type/*" or "type/subtype"
+    private final String[] mMimeTypes;
+    private final long mMinSize;
+    private final long mMaxSize;
+    private final List<Predicate> mPredicates;
+    private final boolean mPredicatesNeedMetadata;
+    //If an extension has one of the MIME types, by folded extension. URLConnection is asked once per extension.
+    private final ConcurrentHashMap<String, Boolean> mMimeMatches = new ConcurrentHashMap<>();
+
+    private EntryFilter(Builder builder) {
+        this.mShowHidden = builder.mShowHidden;
+        this.mExtensions = builder.mExtensions.toArray(new String[builder.mExtensions.size()]);
+        this.mMimeTypes = builder.mMimeTypes.toArray(new String[builder.mMimeTypes.size()]);
+        this.mMinSize = builder.mMinSize;
+        this.mMaxSize = builder.mMaxSize;
+        this.mPredicates = Collections.unmodifiableList(new ArrayList<>(builder.mPredicates));
+        this.mPredicatesNeedMetadata = builder.mPredicatesNeedMetadata;
+    }
+
+    /***
+     * Returns if hidden children are shown.
+     * @return True if children whose name starts with "." are shown.
+     */
+    public boolean isShowHidden() {
+        return mShowHidden;
+    }
+
+    /***
+     * Returns if the filter needs the size or the modification time of the children, which some listers only read on request.
+     * @return True if the children have to be listed with metadata.
+     */
+    public boolean needsMetadata() {
+        return mMinSize > 0 || mMaxSize < Long.MAX_VALUE || mPredicatesNeedMetadata;
+    }
+
+    /***
+     * Checks the rules that only need the name of a child: the hidden rule, the extensions and the MIME types.
+     * @param name The name of the child.
+     * @return If the child is shown, shown only if it is a folder, or not shown.
+     */
+    public NameMatch matchName(String name) {
+        if (!mShowHidden && name.startsWith(".")) return NameMatch.REJECT;
+        if (mExtensions.length == 0 && mMimeTypes.length == 0) return NameMatch.ACCEPT;
+        for (String extension : mExtensions) {
+            if (name.regionMatches(true, name.length() - extension.length(), extension, 0, extension.length())) return NameMatch.ACCEPT;
+        }
+        if (mMimeTypes.length > 0 && matchesMimeType(name)) return NameMatch.ACCEPT;
+        return NameMatch.FOLDER_ONLY;
+    }
+
+    /***
+     * Checks all rules, the ones that only need the name first.
+     * @param entry The child.
+     * @return True if the child is shown.
+     */
+    public boolean accept(DirectoryEntry entry) {
+        NameMatch nameMatch = matchName(entry.getName());
+        if (nameMatch == NameMatch.REJECT || (nameMatch == NameMatch.FOLDER_ONLY && !entry.isDirectory())) return false;
+        //An unknown size isn't rejected, the size is only unknown if the lister hasn't been asked for metadata
+        if (!entry.isDirectory() && entry.getSize() != DirectoryEntry.UNKNOWN && (entry.getSize() < mMinSize || entry.getSize() > mMaxSize)) {
+            return false;
+        }
+        for (Predicate predicate : mPredicates) {
+            if (!predicate.accept(entry)) return false;
+        }
+        return true;
+    }
+
+    /***
+     * Returns a filter with the same rules that also allows files with the given extensions, e.g. for a lister that has to see
+     * the archives that this filter would only show as folders.
+     * @param extensions The extensions, with or without the leading ".".
+     * @return The EntryFilter.
+     */
+    EntryFilter withExtensions(String... extensions) {
+        Builder builder = new Builder().setShowHidden(mShowHidden).setSizeRange(mMinSize, mMaxSize);
+        builder.mExtensions.addAll(Arrays.asList(mExtensions));
+        builder.addExtensions(extensions);
+        builder.mMimeTypes.addAll(Arrays.asList(mMimeTypes));
+        builder.mPredicates.addAll(mPredicates);
+        builder.mPredicatesNeedMetadata = mPredicatesNeedMetadata;
+        return builder.build();
+    }
+
+    private boolean matchesMimeType(String name) {
+        int dot = name.lastIndexOf('.');
+        if (dot <= 0 || dot == name.length() - 1) return false;
+        String extension = name.substring(dot + 1).toLowerCase(Locale.ROOT);
+        Boolean matches = mMimeMatches.get(extension);
+        if (matches == null) {
+            String mimeType = URLConnection.guessContentTypeFromName("file." + extension);
+            matches = mimeType != null && isAllowedMimeType(mimeType.toLowerCase(Locale.ROOT));
+            mMimeMatches.put(extension, matches);
+        }
+        return matches;
+    }
+
+    private boolean isAllowedMimeType(String mimeType) {
+        for (String pattern : mMimeTypes) {
+            if (pattern.endsWith("/*") ? mimeType.startsWith(pattern.substring(0, pattern.length() - 1)) : mimeType.equals(pattern)) return true;
+        }
+        return false;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (!(o instanceof EntryFilter)) return false;
+        EntryFilter other = (EntryFilter) o;
+        return mShowHidden == other.mShowHidden && Arrays.equals(mExtensions, other.mExtensions) && Arrays.equals(mMimeTypes, other.mMimeTypes)
+                && mMinSize == other.mMinSize && mMaxSize == other.mMaxSize && mPredicates.equals(other.mPredicates)
+                && mPredicatesNeedMetadata == other.mPredicatesNeedMetadata;
+    }
+
+    @Override
+    public int hashCode() {
+        int hash = mShowHidden ? 1 : 0;
+        hash = hash * 31 + Arrays.hashCode(mExtensions);
+        hash = hash * 31 + Arrays.hashCode(mMimeTypes);
+        hash = hash * 31 + (int) (mMinSize ^ (mMinSize >>> 32));
+        hash = hash * 31 + (int) (mMaxSize ^ (mMaxSize >>> 32));
+        return hash * 31 + mPredicates.hashCode();
+    }
+
+    /**
+     * Builds an {@link EntryFilter}. Without any setting it builds a filter that is equal to {@link #DEFAULT}.
+     */
+    public static final class Builder {
+        private boolean mShowHidden = false;
+        private final List<String> mExtensions = new ArrayList<>();
+        private final List<String> mMimeTypes = new ArrayList<>();
+        private long mMinSize = 0;
+        private long mMaxSize = Long.MAX_VALUE;
+        private final List<Predicate> mPredicates = new ArrayList<>();
+        private boolean mPredicatesNeedMetadata = false;
+
+        /***
+         * Sets if hidden children, whose name starts with ".", are shown. By default they aren't.
+         * @param showHidden True to show hidden children.
+         * @return The Builder.
+         */
+        public Builder setShowHidden(boolean showHidden) {
+            this.mShowHidden = showHidden;
+            return this;
+        }
+
+        /***
+         * Allows files with the given extensions, ignoring case, e.g. {@code "csv"} or {@code "tar.gz"}. Can be combined with
+         * {@link #addMimeTypes(String...)}; a file is shown if it matches any of them.
+         * @param extensions The extensions, with or without the leading ".".
+         * @return The Builder.
+         */
+        public Builder addExtensions(String... extensions) {
+            for (String extension : extensions) {
+                if (extension == null || extension.isEmpty() || extension.equals(".")) throw new IllegalArgumentException("extension must not be empty");
+                String folded = extension.toLowerCase(Locale.ROOT);
+                mExtensions.add(folded.startsWith(".") ? folded : "." + folded);
+            }
+            return this;
+        }
+
+        /***
+         * Allows files with the given MIME types, e.g. {@code "text/csv"}, or of whole groups, e.g. {@code "image/*"}. The type of
+         * a file is guessed from its extension by {@link URLConnection#guessContentTypeFromName(String)}.
+         * @param mimeTypes The MIME types.
+         * @return The Builder.
+         */
+        public Builder addMimeTypes(String... mimeTypes) {
+            for (String mimeType : mimeTypes) {
+                if (mimeType == null || mimeType.indexOf('/') <= 0) throw new IllegalArgumentException("Not a MIME type: " + mimeType);
+                mMimeTypes.add(mimeType.toLowerCase(Locale.ROOT));
+            }
+            return this;
+        }
+
+        /***
+         * Shows only files within a size range. Folders are always shown.
+         * @param minSize The minimum size in bytes.
+         * @param maxSize The maximum size in bytes, Long.MAX_VALUE for no limit.
+         * @return The Builder.
+         */
+        public Builder setSizeRange(long minSize, long maxSize) {
+            if (minSize < 0 || maxSize < minSize) throw new IllegalArgumentException("Invalid size range");
+            this.mMinSize = minSize;
+            this.mMaxSize = maxSize;
+            return this;
+        }
+
+        /***
+         * Adds a custom rule that is checked after all other rules.
+         * @param predicate The rule.
+         * @param needsMetadata True if the rule needs the size or the modification time of the children.
+         * @return The Builder.
+         */
+        public Builder addPredicate(Predicate predicate, boolean needsMetadata) {
+            if (predicate == null) throw new IllegalArgumentException("predicate must not be null");
+            mPredicates.add(predicate);
+            mPredicatesNeedMetadata |= needsMetadata;
+            return this;
+        }
+
+        /***
+         * Builds the filter.
+         * @return The EntryFilter.
+         */
+        public EntryFilter build() {
+            return new EntryFilter(this);
+        }
+    }
+}
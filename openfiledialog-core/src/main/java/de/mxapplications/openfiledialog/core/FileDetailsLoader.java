@@ -0,0 +1,230 @@
+package de.mxapplications.openfiledialog.core;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.Set;
+import java.util.concurrent.Executor;
+
+/**
+ * Reads the details of files and folders that are shown with their rows in the background: the size and the modification time of
+ * a file, and the number of children, the modification time and optionally the total size of all files below a folder.
+ * <p>Details are only read when they are asked for, e.g. when a row is bound, on a {@link RequestQueue}, so the rows that have
+ * appeared last are read first and the rows that have been recycled aren't read at all. The total size of a folder walks its whole
+ * tree and stops as soon as nobody waits for it anymore.</p>
+ * <p>Details are kept in a least-recently-used cache of the given number of entries, so scrolling back to a row doesn't read them
+ * again. Children are counted with the {@link EntryFilter} they are requested with, so the cache has to be cleared with
+ * {@link #clear()} when the filter changes, and when the files may have changed. This class is safe to use from several threads at
+ * once.</p>
+ */
+public class FileDetailsLoader {
+    private final DirectoryLister mDirectoryLister;
+    private final RequestQueue<Details> mQueue;
+    private final int mMaxCached;
+    private final LinkedHashMap<String, Details> mCache = new LinkedHashMap<>(64, 0.75f, true);
+
+    /***
+     * Constructs a FileDetailsLoader.
+     * @param directoryLister The DirectoryLister that lists the folders.
+     * @param backgroundExecutor The executor the details are read on.
+     * @param maxConcurrent The maximum number of files and folders that are read at the same time, at least 1.
+     * @param callbackExecutor The executor the details are delivered on.
+     * @param maxCached The maximum number of details that are kept.
+     */
+    public FileDetailsLoader(DirectoryLister directoryLister, Executor backgroundExecutor, int maxConcurrent, Executor callbackExecutor, int maxCached) {
+        this.mDirectoryLister = directoryLister;
+        this.mQueue = new RequestQueue<>(backgroundExecutor, maxConcurrent, callbackExecutor);
+        this.mMaxCached = maxCached;
+    }
+
+    /***
+     * Returns the details of a file or folder if they have been read already. Cheap enough for the UI thread.
+     * @param path The absolute path of the file or folder.
+     * @param folderSize True if the total size of a folder is needed.
+     * @return The details, or null if they have to be loaded.
+     */
+    public synchronized Details getCached(String path, boolean folderSize) {
+        Details details = mCache.get(path);
+        if (details == null || (folderSize && details.isDirectory() && details.getSize() == DirectoryEntry.UNKNOWN)) return null;
+        return details;
+    }
+
+    /***
+     * Reads the details of a file or folder in the background.
+     * @param path The absolute path of the file or folder.
+     * @param isDirectory True for a folder.
+     * @param filter The filter the children of a folder are counted with.
+     * @param folderSize True to also add up the sizes of all files below a folder.
+     * @param callback Receives the details, unless the request is cancelled first.
+     * @return The request, to cancel it.
+     */
+    public RequestQueue<Details>.Request load(final String path, final boolean isDirectory, final EntryFilter filter, final boolean folderSize,
+                                              RequestQueue.Callback<Details> callback) {
+        return mQueue.submit((folderSize ? "+" : "-") + path, new RequestQueue.Task<Details>() {
+            @Override
+            public Details run(Prefetcher.Cancellation cancellation) throws IOException {
+                Details details = isDirectory ? readFolder(path, filter, folderSize, cancellation) : readFile(path);
+                if (details != null) {
+                    synchronized (FileDetailsLoader.this) {
+                        mCache.put(path, details);
+                        while (mCache.size() > mMaxCached) {
+                            mCache.remove(mCache.keySet().iterator().next());
+                        }
+                    }
+                }
+                return details;
+            }
+        }, callback);
+    }
+
+    /***
+     * Cancels all requests, e.g. when the dialog is closed.
+     */
+    public void cancelAll() {
+        mQueue.cancelAll();
+    }
+
+    /***
+     * Drops all details that have been read.
+     */
+    public synchronized void clear() {
+        mCache.clear();
+    }
+
+    private static Details readFile(String path) {
+        File file = new File(path);
+        long lastModified = file.lastModified();
+        //The file has been removed
+        if (lastModified == 0) return null;
+        return new Details(false, file.length(), lastModified, -1);
+    }
+
+    private Details readFolder(String path, EntryFilter filter, boolean folderSize, Prefetcher.Cancellation cancellation) {
+        long lastModified = mDirectoryLister.getLastModified(path);
+        if (lastModified == 0) return null;
+        Counter children = new Counter(filter, false, cancellation);
+        if (!mDirectoryLister.list(path, filter.needsMetadata(), children) || cancellation.isCancelled()) return null;
+        long size = DirectoryEntry.UNKNOWN;
+        if (folderSize) {
+            size = sumFileSizes(path, filter, cancellation);
+            if (cancellation.isCancelled()) return null;
+        }
+        return new Details(true, size, lastModified, children.mCount);
+    }
+
+    /***
+     * Adds up the sizes of all files below a folder, entering every folder once by its canonical path so links can't cause a loop.
+     */
+    private long sumFileSizes(String root, EntryFilter filter, Prefetcher.Cancellation cancellation) {
+        Set<String> entered = new HashSet<>();
+        ArrayDeque<String> folders = new ArrayDeque<>();
+        folders.push(root);
+        Counter counter = new Counter(filter, true, cancellation);
+        while (!folders.isEmpty() && !cancellation.isCancelled()) {
+            String folder = folders.pop();
+            if (!entered.add(canonicalPath(folder))) continue;
+            counter.mFolder = folder;
+            counter.mSubfolders = folders;
+            mDirectoryLister.list(folder, true, counter);
+        }
+        return counter.mSize;
+    }
+
+    private static String canonicalPath(String path) {
+        try {
+            return new File(path).getCanonicalPath();
+        } catch (IOException e) {
+            return path;
+        }
+    }
+
+    /**
+     * Counts the children of folders that the filter accepts, and optionally adds up the sizes of the files and collects the subfolders.
+     */
+    private static class Counter implements DirectoryLister.FilteringVisitor {
+        private final EntryFilter mFilter;
+        private final boolean mRecursive;
+        private final Prefetcher.Cancellation mCancellation;
+        int mCount = 0;
+        long mSize = 0;
+        String mFolder;
+        ArrayDeque<String> mSubfolders;
+
+        Counter(EntryFilter filter, boolean recursive, Prefetcher.Cancellation cancellation) {
+            this.mFilter = filter;
+            this.mRecursive = recursive;
+            this.mCancellation = cancellation;
+        }
+
+        @Override
+        public EntryFilter getFilter() {
+            return mFilter;
+        }
+
+        @Override
+        public boolean visit(DirectoryEntry entry) {
+            if (mCancellation.isCancelled()) return false;
+            if (!mFilter.accept(entry)) return true;
+            mCount++;
+            if (mRecursive) {
+                if (entry.isDirectory()) {
+                    mSubfolders.push(mFolder.endsWith(File.separator) ? mFolder + entry.getName() : mFolder + File.separator + entry.getName());
+                } else if (entry.getSize() != DirectoryEntry.UNKNOWN) {
+                    mSize += entry.getSize();
+                }
+            }
+            return true;
+        }
+    }
+
+    /**
+     * The details of a file or folder.
+     */
+    public static final class Details {
+        private final boolean mDirectory;
+        private final long mSize;
+        private final long mLastModified;
+        private final int mChildCount;
+
+        Details(boolean directory, long size, long lastModified, int childCount) {
+            this.mDirectory = directory;
+            this.mSize = size;
+            this.mLastModified = lastModified;
+            this.mChildCount = childCount;
+        }
+
+        /***
+         * Returns if the details are those of a folder.
+         * @return True for a folder.
+         */
+        public boolean isDirectory() {
+            return mDirectory;
+        }
+
+        /***
+         * Returns the size of a file, or the total size of all files below a folder.
+         * @return The size in bytes, or {@link DirectoryEntry#UNKNOWN} for a folder whose total size hasn't been requested.
+         */
+        public long getSize() {
+            return mSize;
+        }
+
+        /***
+         * Returns the modification time.
+         * @return The time in milliseconds since the epoch.
+         */
+        public long getLastModified() {
+            return mLastModified;
+        }
+
+        /***
+         * Returns the number of children of a folder that the filter accepts.
+         * @return The number of children, or -1 for a file.
+         */
+        public int getChildCount() {
+            return mChildCount;
+        }
+    }
+}
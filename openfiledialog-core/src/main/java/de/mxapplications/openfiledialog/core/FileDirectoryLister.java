@@ -0,0 +1,51 @@
+package de.mxapplications.openfiledialog.core;
+
+import java.io.File;
+
+/**
+ * DirectoryLister based on {@link java.io.File}, which is available on every platform.
+ * <p>The names are read in one call, then the type of every child is read with a separate call to the file system. Size and
+ * modification time cost another call each and are left {@link DirectoryEntry#UNKNOWN} unless they are requested. A child that
+ * the name check of a {@link DirectoryLister.FilteringVisitor} rules out costs no call at all, or only the one for its type if it
+ * would be shown as a folder.</p>
+ */
+public class FileDirectoryLister implements DirectoryLister {
+    @Override
+    public boolean list(String path, boolean readMetadata, Visitor visitor) {
+        File parent = new File(path);
+        String[] names = parent.list();
+        if (names == null) return false;
+        EntryFilter filter = visitor instanceof FilteringVisitor ? ((FilteringVisitor) visitor).getFilter() : null;
+        CountingVisitor counter = visitor instanceof CountingVisitor ? (CountingVisitor) visitor : null;
+        for (String name : names) {
+            EntryFilter.NameMatch nameMatch = filter != null ? filter.matchName(name) : EntryFilter.NameMatch.ACCEPT;
+            if (nameMatch == EntryFilter.NameMatch.REJECT) continue;
+            if (counter != null) counter.onStat();
+            File file = new File(parent, name);
+            boolean isDirectory = file.isDirectory();
+            //A file that only a folder could have been shown for costs a single call
+            if (nameMatch == EntryFilter.NameMatch.FOLDER_ONLY && !isDirectory) continue;
+            DirectoryEntry entry;
+            if (readMetadata) {
+                entry = new DirectoryEntry(name, isDirectory, file.length(), file.lastModified());
+            } else {
+                entry = new DirectoryEntry(name, isDirectory, DirectoryEntry.UNKNOWN, DirectoryEntry.UNKNOWN);
+            }
+            if (!visitor.visit(entry)) break;
+        }
+        return true;
+    }
+
+    @Override
+    public long getLastModified(String path) {
+        return new File(path).lastModified();
+    }
+
+    @Override
+    public DirectoryEntry getEntry(String path, String name, boolean readMetadata) {
+        File file = new File(path, name);
+        if (!file.exists()) return null;
+        if (readMetadata) return new DirectoryEntry(name, file.isDirectory(), file.length(), file.lastModified());
+        return new DirectoryEntry(name, file.isDirectory(), DirectoryEntry.UNKNOWN, DirectoryEntry.UNKNOWN);
+    }
+}
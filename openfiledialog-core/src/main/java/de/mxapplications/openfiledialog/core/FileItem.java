@@ -0,0 +1,69 @@
+package de.mxapplications.openfiledialog.core;
+
+import java.io.File;
+
+/**
+ * A row of a folder as the {@link DirectoryLoader} delivers it: a child with its metadata, its sort key and its folded name. The
+ * fields are plain and public, a FileItem is created for every visible row and read on every bind, so it is kept as small as
+ * possible.
+ */
+public class FileItem {
+    public String absolutePath;
+    public String name;
+    public boolean isDirectory;
+    public long size = DirectoryEntry.UNKNOWN;
+    public long lastModified = DirectoryEntry.UNKNOWN;
+    public SortOrder.SortKey sortKey;
+    //The name folded with NameFilter.fold(), for filtering
+    public String foldedName;
+
+    private long mId = 0;
+
+    /***
+     * Constructs a FileItem without metadata, sort key or folded name.
+     * @param absolutePath The absolute path of the child, its name is the part after the last separator.
+     * @param isDirectory True if the child is a folder.
+     */
+    public FileItem(String absolutePath, boolean isDirectory) {
+        this.absolutePath = absolutePath;
+        this.isDirectory = isDirectory;
+        this.name = absolutePath.substring(absolutePath.lastIndexOf(File.separator) + 1);
+    }
+
+    /***
+     * Creates the FileItem for a child and computes its sort key and folded name.
+     * @param parentPath The absolute path of the folder.
+     * @param name The name of the child.
+     * @param isDirectory True if the child is a folder.
+     * @param size The size of the child, or {@link DirectoryEntry#UNKNOWN}.
+     * @param lastModified The modification time of the child, or {@link DirectoryEntry#UNKNOWN}.
+     * @param sortOrder The order the sort key is created for.
+     * @return The FileItem.
+     */
+    public static FileItem create(String parentPath, String name, boolean isDirectory, long size, long lastModified, SortOrder sortOrder) {
+        FileItem item = new FileItem(BrowserPaths.childPath(parentPath, name), isDirectory);
+        item.size = size;
+        item.lastModified = lastModified;
+        item.sortKey = sortOrder.createKey(name, isDirectory, size, lastModified);
+        String foldedName = NameFilter.fold(name);
+        //Sorting by name already folds the name, the same String is used for both
+        item.foldedName = foldedName.equals(item.sortKey.getText()) ? item.sortKey.getText() : foldedName;
+        return item;
+    }
+
+    /***
+     * Returns an id for stable ids in a list: a 64 bit FNV-1a hash of the absolute path, so the same file keeps its id when the folder is listed again.
+     * @return The id, never 0 or -1, which lists use for no id.
+     */
+    public long getId() {
+        if (mId == 0) {
+            long hash = 0xcbf29ce484222325L;
+            for (int i = 0; i < absolutePath.length(); i++) {
+                hash ^= absolutePath.charAt(i);
+                hash *= 0x100000001b3L;
+            }
+            mId = hash == 0 || hash == -1 ? 1 : hash;
+        }
+        return mId;
+    }
+}
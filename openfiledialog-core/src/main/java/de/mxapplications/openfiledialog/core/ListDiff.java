@@ -0,0 +1,130 @@
+package de.mxapplications.openfiledialog.core;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Computes the insertions, removals and changes that turn one list into another, for lists whose items are identified by a
+ * unique key and whose common items keep their relative order (e.g. two listings of the same folder in the same sort order).
+ * <p>The diff takes linear time. If the common items have been reordered, no updates are computed and the caller has to treat
+ * the list as completely changed.</p>
+ */
+public final class ListDiff {
+    private ListDiff() {
+    }
+
+    /***
+     * Computes the updates that turn the old list into the new list and hands them to the callback: first the removals from the
+     * end to the start, then the insertions from the start to the end, then the changes, each with positions that are valid at
+     * the time it is dispatched.
+     * @param oldList The old list.
+     * @param newList The new list.
+     * @param itemCallback Identifies and compares the items.
+     * @param updateCallback Receives the updates.
+     * @param <T> The type of the items.
+     * @return False if the common items have been reordered, in which case no update has been dispatched.
+     */
+    public static <T> boolean dispatch(List<T> oldList, List<T> newList, ItemCallback<T> itemCallback, UpdateCallback updateCallback) {
+        Map<Object, Integer> newPositions = new HashMap<>(newList.size() * 2);
+        for (int i = 0; i < newList.size(); i++) {
+            newPositions.put(itemCallback.getKey(newList.get(i)), i);
+        }
+        Set<Object> oldKeys = new HashSet<>(oldList.size() * 2);
+        int lastNewPosition = -1;
+        for (T item : oldList) {
+            Object key = itemCallback.getKey(item);
+            oldKeys.add(key);
+            Integer newPosition = newPositions.get(key);
+            if (newPosition == null) continue;
+            if (newPosition < lastNewPosition) return false;
+            lastNewPosition = newPosition;
+        }
+
+        int end = oldList.size();
+        while (end > 0) {
+            if (newPositions.containsKey(itemCallback.getKey(oldList.get(end - 1)))) {
+                end--;
+                continue;
+            }
+            int start = end - 1;
+            while (start > 0 && !newPositions.containsKey(itemCallback.getKey(oldList.get(start - 1)))) start--;
+            updateCallback.onRemoved(start, end - start);
+            end = start;
+        }
+
+        int start = 0;
+        while (start < newList.size()) {
+            if (oldKeys.contains(itemCallback.getKey(newList.get(start)))) {
+                start++;
+                continue;
+            }
+            int stop = start + 1;
+            while (stop < newList.size() && !oldKeys.contains(itemCallback.getKey(newList.get(stop)))) stop++;
+            updateCallback.onInserted(start, stop - start);
+            start = stop;
+        }
+
+        List<T> commonOld = new ArrayList<>();
+        for (T item : oldList) {
+            if (newPositions.containsKey(itemCallback.getKey(item))) commonOld.add(item);
+        }
+        int common = 0;
+        for (int i = 0; i < newList.size(); i++) {
+            T item = newList.get(i);
+            if (!oldKeys.contains(itemCallback.getKey(item))) continue;
+            if (!itemCallback.isSameContent(commonOld.get(common++), item)) updateCallback.onChanged(i, 1);
+        }
+        return true;
+    }
+
+    /**
+     * Identifies and compares the items of the lists.
+     * @param <T> The type of the items.
+     */
+    public interface ItemCallback<T> {
+        /***
+         * Returns the key that identifies an item. Keys must be unique within a list and implement equals and hashCode.
+         * @param item The item.
+         * @return The key of the item.
+         */
+        Object getKey(T item);
+
+        /***
+         * Returns if two items with the same key look the same, i.e. if a shown row doesn't need to be updated.
+         * @param oldItem The item of the old list.
+         * @param newItem The item of the new list.
+         * @return True if the item hasn't changed.
+         */
+        boolean isSameContent(T oldItem, T newItem);
+    }
+
+    /**
+     * Receives the updates computed by {@link #dispatch(List, List, ItemCallback, UpdateCallback)}.
+     */
+    public interface UpdateCallback {
+        /***
+         * Called when items have been inserted.
+         * @param position The position of the first inserted item.
+         * @param count The number of inserted items.
+         */
+        void onInserted(int position, int count);
+
+        /***
+         * Called when items have been removed.
+         * @param position The position of the first removed item.
+         * @param count The number of removed items.
+         */
+        void onRemoved(int position, int count);
+
+        /***
+         * Called when items have changed.
+         * @param position The position of the first changed item.
+         * @param count The number of changed items.
+         */
+        void onChanged(int position, int count);
+    }
+}
@@ -0,0 +1,222 @@
+package de.mxapplications.openfiledialog.core;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Bounded least-recently-used cache of folder listings, keyed by the absolute path of the folder.
+ * <p>A listing is stored together with the modification time the folder had before it was listed. It is only returned as
+ * long as the folder still has that modification time, so a listing is revalidated with a single call to the file system
+ * instead of listing the folder again. Because file systems store modification times with a coarse granularity (2 seconds on
+ * FAT), a listing of a folder that has been modified less than {@link #MODIFICATION_GRANULARITY_MILLIS} before it was listed
+ * is not cached: a change within the same time step couldn't be told apart from it.</p>
+ * <p>The cache evicts the least recently used listings when it holds more than the maximum number of listings or when the
+ * estimated memory of all listings exceeds the maximum number of bytes. It is safe to use from several threads at once.</p>
+ *
+ * @param <T> The type of a listing.
+ */
+public class ListingCache<T> {
+    /***
+     * Listings of folders that have been modified less than this many milliseconds before they have been listed aren't cached.
+     */
+    public static final long MODIFICATION_GRANULARITY_MILLIS = 2000;
+
+    private final LinkedHashMap<String, CachedListing<T>> mListings = new LinkedHashMap<>(16, 0.75f, true);
+    private int mMaxListings;
+    private long mMaxBytes;
+    private long mBytes = 0;
+    private long mHitCount = 0;
+    private long mMissCount = 0;
+    private long mEvictionCount = 0;
+
+    /***
+     * Constructs a ListingCache.
+     * @param maxListings The maximum number of listings that are kept.
+     * @param maxBytes The maximum estimated memory of all listings that are kept, in bytes.
+     */
+    public ListingCache(int maxListings, long maxBytes) {
+        setLimits(maxListings, maxBytes);
+    }
+
+    /***
+     * Changes the maximum size of the cache, evicting listings if necessary.
+     * @param maxListings The maximum number of listings that are kept.
+     * @param maxBytes The maximum estimated memory of all listings that are kept, in bytes.
+     */
+    public synchronized void setLimits(int maxListings, long maxBytes) {
+        if (maxListings < 0 || maxBytes < 0) throw new IllegalArgumentException("Limits must not be negative");
+        this.mMaxListings = maxListings;
+        this.mMaxBytes = maxBytes;
+        trim();
+    }
+
+    /***
+     * Returns the maximum estimated memory of all listings that are kept. Larger listings are never stored.
+     * @return The maximum memory in bytes.
+     */
+    public synchronized long getMaxBytes() {
+        return mMaxBytes;
+    }
+
+    /***
+     * Returns the listing of a folder if it is cached and the folder hasn't been modified since it was listed.
+     * @param path The absolute path of the folder.
+     * @param lastModified The current modification time of the folder.
+     * @return The cached listing, or null if there is no valid listing for the folder.
+     */
+    public synchronized T get(String path, long lastModified) {
+        CachedListing<T> listing = mListings.get(path);
+        if (listing != null && (lastModified == 0 || listing.mLastModified != lastModified)) {
+            remove(path);
+            listing = null;
+        }
+        if (listing == null) {
+            mMissCount++;
+            return null;
+        }
+        mHitCount++;
+        return listing.mListing;
+    }
+
+    /***
+     * Returns if the listing of a folder is cached and still valid, without counting a hit or a miss.
+     * @param path The absolute path of the folder.
+     * @param lastModified The current modification time of the folder.
+     * @return True if there is a valid listing for the folder.
+     */
+    public synchronized boolean contains(String path, long lastModified) {
+        CachedListing<T> listing = mListings.get(path);
+        return listing != null && lastModified != 0 && listing.mLastModified == lastModified;
+    }
+
+    /***
+     * Stores the listing of a folder, unless the folder has been modified too recently to revalidate the listing later on.
+     * @param path The absolute path of the folder.
+     * @param lastModified The modification time of the folder, read before it was listed.
+     * @param listStartMillis The time the folder started to be listed, in milliseconds since the epoch.
+     * @param listing The listing. It must not be modified anymore.
+     * @param estimatedBytes The estimated memory the listing occupies, in bytes.
+     * @return True if the listing has been stored.
+     */
+    public synchronized boolean put(String path, long lastModified, long listStartMillis, T listing, long estimatedBytes) {
+        remove(path);
+        if (lastModified == 0 || listStartMillis - lastModified < MODIFICATION_GRANULARITY_MILLIS) return false;
+        if (estimatedBytes > mMaxBytes || mMaxListings == 0) return false;
+        mListings.put(path, new CachedListing<>(lastModified, listing, estimatedBytes));
+        mBytes += estimatedBytes;
+        trim();
+        return true;
+    }
+
+    /***
+     * Removes the listing of a folder.
+     * @param path The absolute path of the folder.
+     */
+    public synchronized void remove(String path) {
+        CachedListing<T> listing = mListings.remove(path);
+        if (listing != null) mBytes -= listing.mEstimatedBytes;
+    }
+
+    /***
+     * Removes all listings.
+     */
+    public synchronized void clear() {
+        mListings.clear();
+        mBytes = 0;
+    }
+
+    /***
+     * Returns the current counters of the cache.
+     * @return A snapshot of the counters.
+     */
+    public synchronized Stats getStats() {
+        return new Stats(mHitCount, mMissCount, mEvictionCount, mListings.size(), mBytes);
+    }
+
+    private void trim() {
+        Iterator<Map.Entry<String, CachedListing<T>>> iterator = mListings.entrySet().iterator();
+        while ((mListings.size() > mMaxListings || mBytes > mMaxBytes) && iterator.hasNext()) {
+            mBytes -= iterator.next().getValue().mEstimatedBytes;
+            iterator.remove();
+            mEvictionCount++;
+        }
+    }
+
+    private static class CachedListing<T> {
+        final long mLastModified;
+        final T mListing;
+        final long mEstimatedBytes;
+
+        CachedListing(long lastModified, T listing, long estimatedBytes) {
+            this.mLastModified = lastModified;
+            this.mListing = listing;
+            this.mEstimatedBytes = estimatedBytes;
+        }
+    }
+
+    /**
+     * Snapshot of the counters of a ListingCache.
+     */
+    public static final class Stats {
+        private final long mHitCount;
+        private final long mMissCount;
+        private final long mEvictionCount;
+        private final int mListingCount;
+        private final long mEstimatedBytes;
+
+        Stats(long hitCount, long missCount, long evictionCount, int listingCount, long estimatedBytes) {
+            this.mHitCount = hitCount;
+            this.mMissCount = missCount;
+            this.mEvictionCount = evictionCount;
+            this.mListingCount = listingCount;
+            this.mEstimatedBytes = estimatedBytes;
+        }
+
+        /***
+         * Returns how often a valid listing has been found.
+         * @return The number of hits.
+         */
+        public long getHitCount() {
+            return mHitCount;
+        }
+
+        /***
+         * Returns how often no listing or only an outdated one has been found.
+         * @return The number of misses.
+         */
+        public long getMissCount() {
+            return mMissCount;
+        }
+
+        /***
+         * Returns how many listings have been evicted because the cache was full.
+         * @return The number of evictions.
+         */
+        public long getEvictionCount() {
+            return mEvictionCount;
+        }
+
+        /***
+         * Returns the number of listings that are cached.
+         * @return The number of listings.
+         */
+        public int getListingCount() {
+            return mListingCount;
+        }
+
+        /***
+         * Returns the estimated memory of all listings that are cached.
+         * @return The estimated memory in bytes.
+         */
+        public long getEstimatedBytes() {
+            return mEstimatedBytes;
+        }
+
+        @Override
+        public String toString() {
+            return "hits=" + mHitCount + " misses=" + mMissCount + " evictions=" + mEvictionCount
+                    + " listings=" + mListingCount + " bytes=" + mEstimatedBytes;
+        }
+    }
+}
@@ -0,0 +1,204 @@
+package de.mxapplications.openfiledialog.core;
+
+import java.nio.ByteBuffer;
+import java.util.zip.CRC32;
+
+/**
+ * Keeps snapshots of the listings of recently opened folders in a {@link DiskCache}, so a folder that is opened again after the
+ * process has been restarted can be shown right away, while it is being listed again.
+ * <p>A snapshot is a {@link CompactListing} in a compact binary form: the folder's modification time and the sort order, then
+ * the arrays of the listing (name offsets, type bits, sizes and modification times of the children, and all names in a single
+ * block), then a CRC32 of everything before. It is read from a memory-mapped file straight into the arrays of a new
+ * CompactListing, without creating an object per child.</p>
+ * <p>A snapshot is only returned while its folder has the modification time it had when it was written. Even then it can be out of
+ * date, e.g. if a file has been written to in place, so it is only meant to be shown until the folder has been listed again. A
+ * snapshot that is stale, corrupt (it fails its checksum or is truncated) or has been written by another version is removed
+ * and treated as missing.</p>
+ * <p>It is safe to use from several threads at once.</p>
+ */
+public class ListingSnapshotStore {
+    private static final int MAGIC = 0x4f464453;
+    //Has to change with the format, including the order of the SortOrder.Mode constants
+    private static final int VERSION = 1;
+    private static final byte FLAG_METADATA = 1;
+    //Magic, version, modification time, sort order, number of children, length of all names, flags
+    private static final int HEADER_BYTES = 4 + 4 + 8 + 4 + 4 + 4 + 1;
+    private static final int CHECKSUM_BYTES = 4;
+
+    private final DiskCache mDiskCache;
+
+    /***
+     * Constructs a ListingSnapshotStore.
+     * @param diskCache The DiskCache the snapshots are stored in, keyed by the path of their folder. It shouldn't hold anything else.
+     */
+    public ListingSnapshotStore(DiskCache diskCache) {
+        this.mDiskCache = diskCache;
+    }
+
+    /***
+     * Returns the snapshot of a folder.
+     * @param path The absolute path of the folder.
+     * @param lastModified The current modification time of the folder.
+     * @return The snapshot, or null if there is none, it has been written for another modification time or it can't be read.
+     */
+    public Snapshot read(String path, long lastModified) {
+        ByteBuffer buffer = mDiskCache.map(path);
+        if (buffer == null) return null;
+        try {
+            if (buffer.remaining() < HEADER_BYTES + CHECKSUM_BYTES || buffer.getInt() != MAGIC || buffer.getInt() != VERSION) {
+                mDiskCache.remove(path);
+                return null;
+            }
+            if (checksum(buffer, buffer.limit() - CHECKSUM_BYTES) != buffer.getInt(buffer.limit() - CHECKSUM_BYTES)) {
+                mDiskCache.remove(path);
+                return null;
+            }
+            if (buffer.getLong() != lastModified) {
+                //The folder has changed since, the next listing replaces the snapshot
+                mDiskCache.remove(path);
+                return null;
+            }
+            SortOrder sortOrder = decodeSortOrder(buffer.getInt());
+            int size = buffer.getInt();
+            int nameLength = buffer.getInt();
+            boolean metadata = (buffer.get() & FLAG_METADATA) != 0;
+            long arrayBytes = 4L * (size + 1) + size + (metadata ? 16L * size : 0) + 2L * nameLength;
+            if (sortOrder == null || size < 0 || nameLength < 0 || arrayBytes != buffer.remaining() - CHECKSUM_BYTES) {
+                mDiskCache.remove(path);
+                return null;
+            }
+
+            int[] nameOffsets = new int[size + 1];
+            buffer.asIntBuffer().get(nameOffsets);
+            buffer.position(buffer.position() + 4 * nameOffsets.length);
+            byte[] flags = new byte[size];
+            buffer.get(flags);
+            long[] sizes = null;
+            long[] lastModifiedTimes = null;
+            if (metadata) {
+                sizes = new long[size];
+                buffer.asLongBuffer().get(sizes);
+                buffer.position(buffer.position() + 8 * size);
+                lastModifiedTimes = new long[size];
+                buffer.asLongBuffer().get(lastModifiedTimes);
+                buffer.position(buffer.position() + 8 * size);
+            }
+            char[] names = new char[nameLength];
+            buffer.asCharBuffer().get(names);
+            //A listing with offsets outside the names would only fail when a child is read
+            for (int i = 0; i < size; i++) {
+                if (nameOffsets[i] < 0 || nameOffsets[i] > nameOffsets[i + 1]) {
+                    mDiskCache.remove(path);
+                    return null;
+                }
+            }
+            if (nameOffsets[0] != 0 || nameOffsets[size] != nameLength) {
+                mDiskCache.remove(path);
+                return null;
+            }
+            return new Snapshot(new CompactListing(path, names, nameOffsets, flags, sizes, lastModifiedTimes), sortOrder);
+        } catch (RuntimeException e) {
+            //E.g. a BufferUnderflowException, or the file has become unreadable while it was mapped
+            mDiskCache.remove(path);
+            return null;
+        }
+    }
+
+    /***
+     * Stores the snapshot of a folder, replacing the older one.
+     * @param lastModified The modification time of the folder before it has been listed.
+     * @param sortOrder The order of the children in the listing.
+     * @param listing The children of the folder, the parent path of the listing is the key.
+     */
+    public void write(long lastModified, SortOrder sortOrder, CompactListing listing) {
+        int size = listing.size();
+        char[] names = listing.names();
+        long[] sizes = listing.sizes();
+        long bytes = HEADER_BYTES + 4L * (size + 1) + size + (sizes != null ? 16L * size : 0) + 2L * names.length + CHECKSUM_BYTES;
+        if (bytes > Integer.MAX_VALUE - 16) return;
+        ByteBuffer buffer = ByteBuffer.allocate((int) bytes);
+        buffer.putInt(MAGIC);
+        buffer.putInt(VERSION);
+        buffer.putLong(lastModified);
+        buffer.putInt(encodeSortOrder(sortOrder));
+        buffer.putInt(size);
+        buffer.putInt(names.length);
+        buffer.put(sizes != null ? FLAG_METADATA : 0);
+        buffer.asIntBuffer().put(listing.nameOffsets(), 0, size + 1);
+        buffer.position(buffer.position() + 4 * (size + 1));
+        buffer.put(listing.flags(), 0, size);
+        if (sizes != null) {
+            buffer.asLongBuffer().put(sizes, 0, size);
+            buffer.position(buffer.position() + 8 * size);
+            buffer.asLongBuffer().put(listing.lastModifiedTimes(), 0, size);
+            buffer.position(buffer.position() + 8 * size);
+        }
+        buffer.asCharBuffer().put(names);
+        buffer.position(buffer.position() + 2 * names.length);
+        buffer.putInt(checksum(buffer, buffer.position()));
+        mDiskCache.put(listing.getParentPath(), buffer.array());
+    }
+
+    /***
+     * Removes the snapshot of a folder.
+     * @param path The absolute path of the folder.
+     */
+    public void remove(String path) {
+        mDiskCache.remove(path);
+    }
+
+    /***
+     * Returns the CRC32 of the first bytes of a buffer, read in chunks so a mapped buffer isn't copied as a whole.
+     */
+    private static int checksum(ByteBuffer buffer, int length) {
+        CRC32 crc = new CRC32();
+        ByteBuffer source = buffer.duplicate();
+        source.position(0);
+        byte[] chunk = new byte[8192];
+        for (int offset = 0; offset < length; offset += chunk.length) {
+            int count = Math.min(chunk.length, length - offset);
+            source.get(chunk, 0, count);
+            crc.update(chunk, 0, count);
+        }
+        return (int) crc.getValue();
+    }
+
+    private static int encodeSortOrder(SortOrder sortOrder) {
+        return sortOrder.getMode().ordinal() << 2 | (sortOrder.isFoldersFirst() ? 2 : 0) | (sortOrder.isDescending() ? 1 : 0);
+    }
+
+    private static SortOrder decodeSortOrder(int code) {
+        int mode = code >>> 2;
+        if (mode >= SortOrder.Mode.values().length) return null;
+        return new SortOrder(SortOrder.Mode.values()[mode], (code & 2) != 0, (code & 1) != 0);
+    }
+
+    /**
+     * The last known listing of a folder.
+     */
+    public static final class Snapshot {
+        private final CompactListing mListing;
+        private final SortOrder mSortOrder;
+
+        private Snapshot(CompactListing listing, SortOrder sortOrder) {
+            this.mListing = listing;
+            this.mSortOrder = sortOrder;
+        }
+
+        /***
+         * Returns the children of the folder.
+         * @return The listing.
+         */
+        public CompactListing getListing() {
+            return mListing;
+        }
+
+        /***
+         * Returns the order of the children in the listing.
+         * @return The order.
+         */
+        public SortOrder getSortOrder() {
+            return mSortOrder;
+        }
+    }
+}
@@ -0,0 +1,134 @@
+package de.mxapplications.openfiledialog.core;
+
+/**
+ * A set of longs in a single array, with open addressing and linear probing, so a value costs 8 to 16 bytes and no object. 0 marks
+ * an empty slot and is stored by a flag of its own. Not safe to use from several threads at once.
+ */
+class LongHashSet {
+    private static final int MIN_CAPACITY = 8;
+
+    private long[] mSlots = new long[MIN_CAPACITY];
+    private int mSize = 0;
+    private boolean mContainsZero = false;
+
+    /***
+     * Constructs an empty LongHashSet.
+     */
+    LongHashSet() {
+    }
+
+    private LongHashSet(LongHashSet source) {
+        this.mSlots = source.mSlots.clone();
+        this.mSize = source.mSize;
+        this.mContainsZero = source.mContainsZero;
+    }
+
+    /***
+     * Returns the number of values.
+     * @return The number of values.
+     */
+    int size() {
+        return mSize + (mContainsZero ? 1 : 0);
+    }
+
+    /***
+     * Returns if a value is in the set.
+     * @param value The value.
+     * @return True if it is in the set.
+     */
+    boolean contains(long value) {
+        if (value == 0) return mContainsZero;
+        for (int slot = slotOf(value, mSlots.length); mSlots[slot] != 0; slot = (slot + 1) & (mSlots.length - 1)) {
+            if (mSlots[slot] == value) return true;
+        }
+        return false;
+    }
+
+    /***
+     * Adds a value.
+     * @param value The value.
+     * @return True if it hasn't been in the set before.
+     */
+    boolean add(long value) {
+        if (value == 0) {
+            boolean added = !mContainsZero;
+            mContainsZero = true;
+            return added;
+        }
+        //At most half full, so probes stay short
+        if ((mSize + 1) * 2 > mSlots.length) resize(mSlots.length * 2);
+        int slot = slotOf(value, mSlots.length);
+        while (mSlots[slot] != 0) {
+            if (mSlots[slot] == value) return false;
+            slot = (slot + 1) & (mSlots.length - 1);
+        }
+        mSlots[slot] = value;
+        mSize++;
+        return true;
+    }
+
+    /***
+     * Removes a value.
+     * @param value The value.
+     * @return True if it has been in the set.
+     */
+    boolean remove(long value) {
+        if (value == 0) {
+            boolean removed = mContainsZero;
+            mContainsZero = false;
+            return removed;
+        }
+        int mask = mSlots.length - 1;
+        int slot = slotOf(value, mSlots.length);
+        while (mSlots[slot] != value) {
+            if (mSlots[slot] == 0) return false;
+            slot = (slot + 1) & mask;
+        }
+        //Moves the values after it back, so no probe stops at the gap before reaching them
+        int gap = slot;
+        for (int next = (gap + 1) & mask; mSlots[next] != 0; next = (next + 1) & mask) {
+            int home = slotOf(mSlots[next], mSlots.length);
+            if (((next - home) & mask) >= ((next - gap) & mask)) {
+                mSlots[gap] = mSlots[next];
+                gap = next;
+            }
+        }
+        mSlots[gap] = 0;
+        mSize--;
+        return true;
+    }
+
+    /***
+     * Removes all values and gives back the memory.
+     */
+    void clear() {
+        mSlots = new long[MIN_CAPACITY];
+        mSize = 0;
+        mContainsZero = false;
+    }
+
+    /***
+     * Returns a copy that doesn't change with this set.
+     * @return The copy.
+     */
+    LongHashSet copy() {
+        return new LongHashSet(this);
+    }
+
+    private void resize(int capacity) {
+        long[] old = mSlots;
+        mSlots = new long[capacity];
+        for (long value : old) {
+            if (value == 0) continue;
+            int slot = slotOf(value, capacity);
+            while (mSlots[slot] != 0) slot = (slot + 1) & (capacity - 1);
+            mSlots[slot] = value;
+        }
+    }
+
+    private static int slotOf(long value, int capacity) {
+        //The values are hashes already, but their low bits may not be mixed well
+        long mixed = value * 0x9e3779b97f4a7c15L;
+        return (int) (mixed >>> 32) & (capacity - 1);
+    }
+}
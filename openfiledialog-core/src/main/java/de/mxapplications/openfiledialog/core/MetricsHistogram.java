@@ -0,0 +1,223 @@
+package de.mxapplications.openfiledialog.core;
+
+import java.util.Locale;
+
+/**
+ * A {@link MetricsListener} that keeps all measurements in memory as histograms and counters, to be dumped e.g. into a bug report
+ * with {@link #dump()}.
+ * <p>A histogram needs a fixed amount of memory however many values are recorded: values are counted in buckets whose width grows
+ * with the value, 8 buckets per power of two, so a percentile is off by at most an eighth of its value.</p>
+ * <p>This class is safe to use from several threads at once.</p>
+ */
+public class MetricsHistogram implements MetricsListener {
+    private final Histogram mScanNanos = new Histogram();
+    private final Histogram mSortNanos = new Histogram();
+    private final Histogram mFilterNanos = new Histogram();
+    private final Histogram mTimeToFirstBindNanos = new Histogram();
+    private final Histogram mBindNanos = new Histogram();
+    private final Histogram mEntryCounts = new Histogram();
+    private final Histogram mStatCounts = new Histogram();
+    private final long[] mCacheResults = new long[NavigationMetrics.CacheResult.values().length];
+    private long mDroppedFrames = 0;
+    private long mJankCount = 0;
+
+    @Override
+    public synchronized void onNavigation(NavigationMetrics metrics) {
+        mCacheResults[metrics.getCacheResult().ordinal()]++;
+        mEntryCounts.record(metrics.getEntryCount());
+        if (metrics.getCacheResult() == NavigationMetrics.CacheResult.MISS) {
+            //Cached listings would only dilute how long listing takes
+            mScanNanos.record(metrics.getScanNanos());
+            mStatCounts.record(metrics.getStatCount());
+            mFilterNanos.record(metrics.getFilterNanos());
+        }
+        mSortNanos.record(metrics.getSortNanos());
+        if (metrics.getTimeToFirstBindNanos() >= 0) mTimeToFirstBindNanos.record(metrics.getTimeToFirstBindNanos());
+    }
+
+    @Override
+    public synchronized void onRowBound(long bindNanos) {
+        mBindNanos.record(bindNanos);
+    }
+
+    @Override
+    public synchronized void onFramesDropped(int droppedFrames) {
+        mDroppedFrames += droppedFrames;
+        mJankCount++;
+    }
+
+    /***
+     * Returns the number of navigations whose children came from the given source.
+     * @param cacheResult The source of the children.
+     * @return The number of navigations.
+     */
+    public synchronized long getNavigationCount(NavigationMetrics.CacheResult cacheResult) {
+        return mCacheResults[cacheResult.ordinal()];
+    }
+
+    /***
+     * Returns the number of frames that have been dropped.
+     * @return The number of frames.
+     */
+    public synchronized long getDroppedFrames() {
+        return mDroppedFrames;
+    }
+
+    /***
+     * Returns a copy of the histogram of the times it took to bind a row.
+     * @return The histogram, in nanoseconds.
+     */
+    public synchronized Histogram getBindNanos() {
+        return mBindNanos.copy();
+    }
+
+    /***
+     * Returns a copy of the histogram of the times from the start of a navigation until the first child has been bound.
+     * @return The histogram, in nanoseconds.
+     */
+    public synchronized Histogram getTimeToFirstBindNanos() {
+        return mTimeToFirstBindNanos.copy();
+    }
+
+    /***
+     * Returns a copy of the histogram of the times it took to read the folders that have been listed.
+     * @return The histogram, in nanoseconds.
+     */
+    public synchronized Histogram getScanNanos() {
+        return mScanNanos.copy();
+    }
+
+    /***
+     * Drops all measurements.
+     */
+    public synchronized void reset() {
+        for (Histogram histogram : new Histogram[]{mScanNanos, mSortNanos, mFilterNanos, mTimeToFirstBindNanos, mBindNanos, mEntryCounts, mStatCounts}) {
+            histogram.clear();
+        }
+        for (int i = 0; i < mCacheResults.length; i++) {
+            mCacheResults[i] = 0;
+        }
+        mDroppedFrames = 0;
+        mJankCount = 0;
+    }
+
+    /***
+     * Returns all measurements as text, one line per histogram with its count, percentiles and maximum. Times are in microseconds.
+     * @return The measurements.
+     */
+    public synchronized String dump() {
+        StringBuilder builder = new StringBuilder();
+        builder.append("navigations: ");
+        for (NavigationMetrics.CacheResult cacheResult : NavigationMetrics.CacheResult.values()) {
+            builder.append(cacheResult.name().toLowerCase(Locale.ROOT)).append('=').append(mCacheResults[cacheResult.ordinal()]).append(' ');
+        }
+        builder.append('\n');
+        appendLine(builder, "entries", mEntryCounts, 1);
+        appendLine(builder, "stats", mStatCounts, 1);
+        appendLine(builder, "scan us", mScanNanos, 1000);
+        appendLine(builder, "sort us", mSortNanos, 1000);
+        appendLine(builder, "filter us", mFilterNanos, 1000);
+        appendLine(builder, "first bind us", mTimeToFirstBindNanos, 1000);
+        appendLine(builder, "bind us", mBindNanos, 1000);
+        builder.append("dropped frames: ").append(mDroppedFrames).append(" in ").append(mJankCount).append(" janky frames\n");
+        return builder.toString();
+    }
+
+    private static void appendLine(StringBuilder builder, String name, Histogram histogram, long divisor) {
+        builder.append(name).append(": count=").append(histogram.getCount());
+        if (histogram.getCount() > 0) {
+            builder.append(" p50=").append(histogram.getPercentile(50) / divisor)
+                    .append(" p90=").append(histogram.getPercentile(90) / divisor)
+                    .append(" p99=").append(histogram.getPercentile(99) / divisor)
+                    .append(" max=").append(histogram.getMax() / divisor);
+        }
+        builder.append('\n');
+    }
+
+    /**
+     * Counts non-negative values in buckets of 1/8 of a power of two. Not thread safe on its own.
+     */
+    public static final class Histogram {
+        private static final int SUB_BUCKETS = 8;
+        //Values below 8 get a bucket each, then 8 buckets for every power of two up to 2^62
+        private static final int BUCKETS = SUB_BUCKETS + (63 - 3) * SUB_BUCKETS;
+
+        private final long[] mCounts = new long[BUCKETS];
+        private long mCount = 0;
+        private long mMax = 0;
+
+        /***
+         * Adds a value. Negative values are counted as 0.
+         * @param value The value.
+         */
+        public void record(long value) {
+            value = Math.max(0, value);
+            mCounts[indexOf(value)]++;
+            mCount++;
+            mMax = Math.max(mMax, value);
+        }
+
+        /***
+         * Returns the number of values.
+         * @return The number of values.
+         */
+        public long getCount() {
+            return mCount;
+        }
+
+        /***
+         * Returns the largest value.
+         * @return The largest value, or 0 if there is none.
+         */
+        public long getMax() {
+            return mMax;
+        }
+
+        /***
+         * Returns a value that the given percentage of the values are at most, rounded up to the end of its bucket.
+         * @param percent The percentage, from 0 to 100.
+         * @return The value, never more than the largest value, or 0 if there are no values.
+         */
+        public long getPercentile(double percent) {
+            if (mCount == 0) return 0;
+            long rank = Math.max(1, (long) Math.ceil(mCount * percent / 100));
+            long seen = 0;
+            for (int i = 0; i < BUCKETS; i++) {
+                seen += mCounts[i];
+                if (seen >= rank) return Math.min(upperBoundOf(i), mMax);
+            }
+            return mMax;
+        }
+
+        void clear() {
+            for (int i = 0; i < BUCKETS; i++) {
+                mCounts[i] = 0;
+            }
+            mCount = 0;
+            mMax = 0;
+        }
+
+        Histogram copy() {
+            Histogram copy = new Histogram();
+            System.arraycopy(mCounts, 0, copy.mCounts, 0, BUCKETS);
+            copy.mCount = mCount;
+            copy.mMax = mMax;
+            return copy;
+        }
+
+        static int indexOf(long value) {
+            if (value < SUB_BUCKETS) return (int) value;
+            int exponent = 63 - Long.numberOfLeadingZeros(value);
+            int subBucket = (int) (value >>> (exponent - 3)) - SUB_BUCKETS;
+            return SUB_BUCKETS + (exponent - 3) * SUB_BUCKETS + subBucket;
+        }
+
+        static long upperBoundOf(int index) {
+            if (index < SUB_BUCKETS) return index;
+            int exponent = (index - SUB_BUCKETS) / SUB_BUCKETS + 3;
+            long subBucket = (index - SUB_BUCKETS) % SUB_BUCKETS;
+            long lowerBound = (SUB_BUCKETS + subBucket) << (exponent - 3);
+            return lowerBound + (1L << (exponent - 3)) - 1;
+        }
+    }
+}
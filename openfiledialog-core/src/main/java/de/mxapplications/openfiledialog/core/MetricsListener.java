@@ -0,0 +1,42 @@
+package de.mxapplications.openfiledialog.core;
+
+/**
+ * Receives measurements of the dialog, to find out where the time goes when it is slow. All methods are called on the UI thread and
+ * should return quickly, e.g. by adding the values to a {@link MetricsHistogram}.
+ */
+public interface MetricsListener {
+    /***
+     * Ignores all measurements. Nothing is measured while the dialog has this listener, which is the default.
+     */
+    MetricsListener NONE = new MetricsListener() {
+        @Override
+        public void onNavigation(NavigationMetrics metrics) {
+        }
+
+        @Override
+        public void onRowBound(long bindNanos) {
+        }
+
+        @Override
+        public void onFramesDropped(int droppedFrames) {
+        }
+    };
+
+    /***
+     * Called when a folder has been shown completely.
+     * @param metrics The measurements of opening the folder.
+     */
+    void onNavigation(NavigationMetrics metrics);
+
+    /***
+     * Called whenever a child has been bound to a row.
+     * @param bindNanos The time it took to bind the row, in nanoseconds.
+     */
+    void onRowBound(long bindNanos);
+
+    /***
+     * Called when frames have been dropped while the dialog is visible, i.e. a frame has been drawn later than the display expected it.
+     * @param droppedFrames The number of frames that have been dropped since the previous frame, at least 1.
+     */
+    void onFramesDropped(int droppedFrames);
+}
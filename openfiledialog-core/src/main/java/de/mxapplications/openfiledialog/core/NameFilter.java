@@ -0,0 +1,228 @@
+package de.mxapplications.openfiledialog.core;
+
+import java.util.Locale;
+
+/**
+ * Filters a list of names as the user types. The names are checked through {@link Names}, e.g. against case-folded names computed
+ * once per entry with {@link #fold(String)}, or against the packed names of a {@link CompactListing} without creating any String.
+ * <p>A name matches if it contains the query, ignoring case. The filter keeps the positions of the matches, so a query that
+ * narrows the previous one (i.e. contains it, like "rep" after "re") only checks the previous matches instead of all names.
+ * The changes of the filtered list are handed to a {@link ListDiff.UpdateCallback} by merging the old and the new positions,
+ * without comparing any items.</p>
+ * <p>If the names change, {@link #refresh(Names)} has to be called before the next query.</p>
+ */
+public class NameFilter {
+    private String mQuery = "";
+    private int[] mMatches = null;
+    private int mMatchCount = 0;
+    private int mCheckedCount = 0;
+
+    /***
+     * Folds a name or a query to the form that is compared.
+     * @param text The name or query.
+     * @return The case-folded text.
+     */
+    public static String fold(String text) {
+        return text.toLowerCase(Locale.ROOT);
+    }
+
+    /***
+     * Returns if a name contains a query, ignoring case, without folding the name first. Used where names are only checked once, e.g. by a search
+     * over a whole folder tree, so no folded copy is allocated for every name.
+     * @param name The name, not folded.
+     * @param foldedQuery The query, case-folded.
+     * @return True if the name contains the query.
+     */
+    public static boolean contains(String name, String foldedQuery) {
+        int last = name.length() - foldedQuery.length();
+        for (int i = 0; i <= last; i++) {
+            if (name.regionMatches(true, i, foldedQuery, 0, foldedQuery.length())) return true;
+        }
+        return false;
+    }
+
+    /***
+     * Returns the current query, case-folded.
+     * @return The query, or an empty string if all names are shown.
+     */
+    public String getQuery() {
+        return mQuery;
+    }
+
+    /***
+     * Returns if the names are filtered, i.e. if the query isn't empty.
+     * @return True if only the matching names are shown.
+     */
+    public boolean isActive() {
+        return mMatches != null;
+    }
+
+    /***
+     * Returns the number of names that are shown.
+     * @param names The names.
+     * @return The number of matches, or the number of names if the filter isn't active.
+     */
+    public int getCount(Names names) {
+        return mMatches != null ? mMatchCount : names.size();
+    }
+
+    /***
+     * Maps a position in the filtered list to the position of the name.
+     * @param position The position in the filtered list.
+     * @return The position of the name.
+     */
+    public int getPosition(int position) {
+        return mMatches != null ? mMatches[position] : position;
+    }
+
+    /***
+     * Maps the position of a name to its position in the filtered list.
+     * @param namePosition The position of the name.
+     * @return The position in the filtered list, or -1 if the name doesn't match.
+     */
+    public int indexOf(int namePosition) {
+        if (mMatches == null) return namePosition;
+        int low = 0;
+        int high = mMatchCount - 1;
+        while (low <= high) {
+            int middle = (low + high) >>> 1;
+            if (mMatches[middle] < namePosition) {
+                low = middle + 1;
+            } else if (mMatches[middle] > namePosition) {
+                high = middle - 1;
+            } else {
+                return middle;
+            }
+        }
+        return -1;
+    }
+
+    /***
+     * Returns how many names the last filter pass has checked, which is less than all names for a query that narrows the
+     * previous one.
+     * @return The number of checked names.
+     */
+    public int getCheckedCount() {
+        return mCheckedCount;
+    }
+
+    /***
+     * Changes the query and reports the rows that disappear and appear.
+     * @param query The new query. It is case-folded, leading and trailing whitespace is ignored.
+     * @param names The names, unchanged since the last call to this method or {@link #refresh(Names)}.
+     * @param offset The number of rows that are shown before the filtered list, added to all reported positions.
+     * @param callback Receives the removed and inserted rows.
+     */
+    public void setQuery(String query, Names names, int offset, ListDiff.UpdateCallback callback) {
+        String folded = fold(query.trim());
+        if (folded.equals(mQuery)) return;
+        int[] oldMatches = mMatches;
+        int oldMatchCount = mMatchCount;
+        boolean narrowing = mMatches != null && folded.contains(mQuery);
+        mQuery = folded;
+        filter(names, narrowing);
+        dispatch(names.size(), oldMatches, oldMatchCount, offset, callback);
+    }
+
+    /***
+     * Filters the names again with the current query, after they have changed. No updates are reported.
+     * @param names The changed names.
+     */
+    public void refresh(Names names) {
+        filter(names, false);
+    }
+
+    /***
+     * Drops the query without reporting any update, e.g. because the names are replaced.
+     */
+    public void clear() {
+        mQuery = "";
+        mMatches = null;
+        mMatchCount = 0;
+    }
+
+    private void filter(Names names, boolean narrowing) {
+        if (mQuery.isEmpty()) {
+            mMatches = null;
+            mMatchCount = 0;
+            mCheckedCount = 0;
+            return;
+        }
+        int count = narrowing ? mMatchCount : names.size();
+        int[] matches = new int[count];
+        int matchCount = 0;
+        for (int i = 0; i < count; i++) {
+            int position = narrowing ? mMatches[i] : i;
+            if (names.contains(position, mQuery)) matches[matchCount++] = position;
+        }
+        mMatches = matches;
+        mMatchCount = matchCount;
+        mCheckedCount = count;
+    }
+
+    /***
+     * Walks over all names once and reports the runs of names that have stopped or started matching, at their positions in
+     * the filtered list at the time they are reported.
+     */
+    private void dispatch(int size, int[] oldMatches, int oldMatchCount, int offset, ListDiff.UpdateCallback callback) {
+        int oldIndex = 0;
+        int newIndex = 0;
+        int shownPosition = offset;
+        int runStart = -1;
+        int runCount = 0;
+        boolean runInserted = false;
+        for (int i = 0; i < size; i++) {
+            boolean wasShown = oldMatches == null || (oldIndex < oldMatchCount && oldMatches[oldIndex] == i);
+            boolean isShown = mMatches == null || (newIndex < mMatchCount && mMatches[newIndex] == i);
+            if (oldMatches != null && wasShown) oldIndex++;
+            if (mMatches != null && isShown) newIndex++;
+            if (wasShown == isShown) {
+                if (runCount > 0) {
+                    report(callback, runInserted, runStart, runCount);
+                    runCount = 0;
+                }
+                if (isShown) shownPosition++;
+                continue;
+            }
+            if (runCount > 0 && runInserted != isShown) {
+                report(callback, runInserted, runStart, runCount);
+                runCount = 0;
+            }
+            if (runCount == 0) {
+                runStart = shownPosition;
+                runInserted = isShown;
+            }
+            runCount++;
+            //Removed rows don't move the position, inserted rows do
+            if (isShown) shownPosition++;
+        }
+        if (runCount > 0) report(callback, runInserted, runStart, runCount);
+    }
+
+    private static void report(ListDiff.UpdateCallback callback, boolean inserted, int position, int count) {
+        if (inserted) {
+            callback.onInserted(position, count);
+        } else {
+            callback.onRemoved(position, count);
+        }
+    }
+
+    /**
+     * The names that are filtered.
+     */
+    public interface Names {
+        /***
+         * Returns the number of names.
+         * @return The number of names.
+         */
+        int size();
+
+        /***
+         * Returns if a name contains a query, ignoring case.
+         * @param position The position of the name.
+         * @param foldedQuery The query, case-folded with {@link NameFilter#fold(String)}.
+         * @return True if the name contains the query.
+         */
+        boolean contains(int position, String foldedQuery);
+    }
+}
@@ -0,0 +1,124 @@
+package de.mxapplications.openfiledialog.core;
+
+/**
+ * Where the time of opening a folder has gone, reported to a {@link MetricsListener} once the folder has been shown. Times are in
+ * nanoseconds. Times of a listing that has been taken from a cache are 0, except the time to sort a cached listing again in
+ * another order.
+ */
+public final class NavigationMetrics {
+    /**
+     * Where the children of the folder came from.
+     */
+    public enum CacheResult {
+        /** From the cache of folders that have been shown before. */
+        HIT,
+        /** From the folders that have been listed in advance, because the user was likely to open them. */
+        PREFETCHED,
+        /** The folder has been listed. */
+        MISS
+    }
+
+    private final String mPath;
+    private final int mEntryCount;
+    private final CacheResult mCacheResult;
+    private final long mScanNanos;
+    private final int mStatCount;
+    private final long mSortNanos;
+    private final long mFilterNanos;
+    private final long mTimeToFirstBindNanos;
+
+    /***
+     * Constructs NavigationMetrics.
+     * @param path The absolute path of the folder.
+     * @param entryCount The number of children that are shown.
+     * @param cacheResult Where the children came from.
+     * @param scanNanos The time spent reading the folder, without sorting and filtering.
+     * @param statCount The number of children whose type or metadata has been read from the file system, as the DirectoryLister has
+     *                  reported them to a {@link DirectoryLister.CountingVisitor}.
+     * @param sortNanos The time spent sorting.
+     * @param filterNanos The time spent checking the children with the EntryFilter.
+     * @param timeToFirstBindNanos The time from the start of the navigation until the first child has been bound to a row, or -1 if none has.
+     */
+    public NavigationMetrics(String path, int entryCount, CacheResult cacheResult, long scanNanos, int statCount, long sortNanos, long filterNanos,
+                             long timeToFirstBindNanos) {
+        this.mPath = path;
+        this.mEntryCount = entryCount;
+        this.mCacheResult = cacheResult;
+        this.mScanNanos = scanNanos;
+        this.mStatCount = statCount;
+        this.mSortNanos = sortNanos;
+        this.mFilterNanos = filterNanos;
+        this.mTimeToFirstBindNanos = timeToFirstBindNanos;
+    }
+
+    /***
+     * Returns the absolute path of the folder.
+     * @return The path.
+     */
+    public String getPath() {
+        return mPath;
+    }
+
+    /***
+     * Returns the number of children that are shown.
+     * @return The number of children.
+     */
+    public int getEntryCount() {
+        return mEntryCount;
+    }
+
+    /***
+     * Returns where the children came from.
+     * @return The cache result.
+     */
+    public CacheResult getCacheResult() {
+        return mCacheResult;
+    }
+
+    /***
+     * Returns the time spent reading the folder, without sorting and filtering.
+     * @return The time in nanoseconds.
+     */
+    public long getScanNanos() {
+        return mScanNanos;
+    }
+
+    /***
+     * Returns the number of children whose type or metadata has been read from the file system. Children that the EntryFilter rules out
+     * by their name are skipped before, see {@link DirectoryLister.FilteringVisitor}.
+     * @return The number of children.
+     */
+    public int getStatCount() {
+        return mStatCount;
+    }
+
+    /***
+     * Returns the time spent sorting the children.
+     * @return The time in nanoseconds.
+     */
+    public long getSortNanos() {
+        return mSortNanos;
+    }
+
+    /***
+     * Returns the time spent checking the children with the EntryFilter.
+     * @return The time in nanoseconds.
+     */
+    public long getFilterNanos() {
+        return mFilterNanos;
+    }
+
+    /***
+     * Returns the time from the start of the navigation until the first child has been bound to a row.
+     * @return The time in nanoseconds, or -1 if no child has been bound, e.g. because the folder is empty.
+     */
+    public long getTimeToFirstBindNanos() {
+        return mTimeToFirstBindNanos;
+    }
+
+    @Override
+    public String toString() {
+        return mPath + ": " + mEntryCount + " entries, " + mCacheResult + ", scan " + mScanNanos / 1000 + " us, " + mStatCount + " stats, sort "
+                + mSortNanos / 1000 + " us, filter " + mFilterNanos / 1000 + " us, first bind " + mTimeToFirstBindNanos / 1000 + " us";
+    }
+}
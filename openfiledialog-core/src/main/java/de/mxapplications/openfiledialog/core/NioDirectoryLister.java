@@ -0,0 +1,96 @@
+package de.mxapplications.openfiledialog.core;
+
+import java.io.IOException;
+import java.nio.file.DirectoryIteratorException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.attribute.BasicFileAttributes;
+
+/**
+ * DirectoryLister based on java.nio.file, which is available on Java 7 and Android 8.0 (API 26) and newer.
+ * <p>The folder is read with a {@link DirectoryStream}, which hands out the names while the folder is being read instead of
+ * collecting all of them first. Type, size and modification time of a child are then read together as
+ * {@link BasicFileAttributes} in a single call, unless the name check of a {@link DirectoryLister.FilteringVisitor} rules the
+ * child out, which costs no call at all. Links are followed, like {@link java.io.File#isDirectory()} does; broken links
+ * are reported as files.</p>
+ * <p>Use {@link DirectoryListers#getDefault()} instead of constructing this class on platforms that might not support it.</p>
+ */
+public class NioDirectoryLister implements DirectoryLister {
+    @Override
+    public boolean list(String path, boolean readMetadata, Visitor visitor) {
+        Path parent = Paths.get(path);
+        EntryFilter filter = visitor instanceof FilteringVisitor ? ((FilteringVisitor) visitor).getFilter() : null;
+        CountingVisitor counter = visitor instanceof CountingVisitor ? (CountingVisitor) visitor : null;
+        DirectoryStream<Path> stream;
+        try {
+            stream = Files.newDirectoryStream(parent);
+        } catch (IOException e) {
+            //Also thrown if the path isn't a folder
+            return false;
+        }
+        try {
+            for (Path file : stream) {
+                String name = file.getFileName().toString();
+                EntryFilter.NameMatch nameMatch = filter != null ? filter.matchName(name) : EntryFilter.NameMatch.ACCEPT;
+                if (nameMatch == EntryFilter.NameMatch.REJECT) continue;
+                if (counter != null) counter.onStat();
+                BasicFileAttributes attributes = readAttributes(file);
+                //The child vanished while the folder was being read
+                if (attributes == null) continue;
+                if (nameMatch == EntryFilter.NameMatch.FOLDER_ONLY && !attributes.isDirectory()) continue;
+                DirectoryEntry entry = new DirectoryEntry(name, attributes.isDirectory(),
+                        attributes.size(), attributes.lastModifiedTime().toMillis());
+                if (!visitor.visit(entry)) break;
+            }
+        } catch (DirectoryIteratorException e) {
+            return false;
+        } finally {
+            close(stream);
+        }
+        return true;
+    }
+
+    @Override
+    public long getLastModified(String path) {
+        try {
+            return Files.getLastModifiedTime(Paths.get(path)).toMillis();
+        } catch (IOException e) {
+            return 0;
+        }
+    }
+
+    @Override
+    public DirectoryEntry getEntry(String path, String name, boolean readMetadata) {
+        BasicFileAttributes attributes;
+        try {
+            attributes = Files.readAttributes(Paths.get(path, name), BasicFileAttributes.class);
+        } catch (IOException e) {
+            return null;
+        }
+        return new DirectoryEntry(name, attributes.isDirectory(), attributes.size(), attributes.lastModifiedTime().toMillis());
+    }
+
+    private static BasicFileAttributes readAttributes(Path file) {
+        try {
+            return Files.readAttributes(file, BasicFileAttributes.class);
+        } catch (IOException e) {
+            //A broken link, its own attributes describe it as a file
+        }
+        try {
+            return Files.readAttributes(file, BasicFileAttributes.class, LinkOption.NOFOLLOW_LINKS);
+        } catch (IOException e) {
+            return null;
+        }
+    }
+
+    private static void close(DirectoryStream<Path> stream) {
+        try {
+            stream.close();
+        } catch (IOException e) {
+            //Nothing left to do
+        }
+    }
+}
@@ -0,0 +1,92 @@
+package de.mxapplications.openfiledialog.core;
+
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * DirectoryWatcher based on the {@link WatchService} of java.nio.file, which is available on Java 7 and Android 8.0 (API 26)
+ * and newer. All folders share one WatchService, whose events are read on a single daemon thread.
+ */
+public class NioDirectoryWatcher implements DirectoryWatcher {
+    private final Map<WatchKey, Listener> mListeners = new HashMap<>();
+    private WatchService mWatchService = null;
+
+    @Override
+    public synchronized Watch watch(String path, Listener listener) {
+        final WatchKey key;
+        try {
+            if (mWatchService == null) {
+                mWatchService = FileSystems.getDefault().newWatchService();
+                startPolling(mWatchService);
+            }
+            key = Paths.get(path).register(mWatchService, StandardWatchEventKinds.ENTRY_CREATE,
+                    StandardWatchEventKinds.ENTRY_DELETE, StandardWatchEventKinds.ENTRY_MODIFY);
+        } catch (IOException e) {
+            return null;
+        }
+        mListeners.put(key, listener);
+        return new Watch() {
+            @Override
+            public void close() {
+                synchronized (NioDirectoryWatcher.this) {
+                    mListeners.remove(key);
+                    key.cancel();
+                }
+            }
+        };
+    }
+
+    private void startPolling(final WatchService watchService) {
+        Thread thread = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                while (true) {
+                    WatchKey key;
+                    try {
+                        key = watchService.take();
+                    } catch (InterruptedException | ClosedWatchServiceException e) {
+                        return;
+                    }
+                    //Listeners are called while holding the lock, so no event is reported after close() has returned
+                    synchronized (NioDirectoryWatcher.this) {
+                        Listener listener = mListeners.get(key);
+                        for (WatchEvent<?> event : key.pollEvents()) {
+                            if (listener != null) dispatch(listener, event);
+                        }
+                        if (!key.reset() && mListeners.remove(key) != null && listener != null) {
+                            //The folder has been deleted or moved
+                            listener.onEvent(EventType.OVERFLOW, null);
+                        }
+                    }
+                }
+            }
+        }, "OpenFileDialog-watcher");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    private static void dispatch(Listener listener, WatchEvent<?> event) {
+        WatchEvent.Kind<?> kind = event.kind();
+        if (kind == StandardWatchEventKinds.OVERFLOW) {
+            listener.onEvent(EventType.OVERFLOW, null);
+            return;
+        }
+        String name = ((Path) event.context()).toString();
+        if (kind == StandardWatchEventKinds.ENTRY_CREATE) {
+            listener.onEvent(EventType.CREATED, name);
+        } else if (kind == StandardWatchEventKinds.ENTRY_DELETE) {
+            listener.onEvent(EventType.DELETED, name);
+        } else {
+            listener.onEvent(EventType.MODIFIED, name);
+        }
+    }
+}
@@ -0,0 +1,247 @@
+package de.mxapplications.openfiledialog.core;
+
+import java.util.ArrayDeque;
+import java.util.Collection;
+import java.util.concurrent.Executor;
+
+/**
+ * Lists folders speculatively in the background, e.g. the folders the user is likely to open next, and keeps their listings in
+ * a {@link ListingCache} of its own.
+ * <p>Prefetching is bounded in two ways: at most the given number of folders are listed at the same time, and the listings
+ * are kept in their own cache, so they never occupy more memory than its limits allow and never evict listings of folders the
+ * user has actually opened. A listing is taken out of that cache with {@link #take(String, long)} when the user opens the
+ * folder, which counts as a hit.</p>
+ * <p>{@link #prefetch(Collection)} replaces all outstanding work, and {@link #cancel()} drops it, e.g. when the user scrolls or
+ * navigates. Folders that are being listed when their work is cancelled notice it through their {@link Cancellation}. This class
+ * is safe to use from several threads at once.</p>
+ *
+ * @param <T> The type of a listing.
+ */
+public class Prefetcher<T> {
+    private final Executor mExecutor;
+    private final int mMaxConcurrent;
+    private final ListingCache<T> mCache;
+    private final Task<T> mTask;
+
+    private final ArrayDeque<String> mQueue = new ArrayDeque<>();
+    private int mRunningCount = 0;
+    private volatile int mGeneration = 0;
+    private long mRequestCount = 0;
+    private long mCompletedCount = 0;
+    private long mCancelledCount = 0;
+    private long mSkippedCount = 0;
+    private long mHitCount = 0;
+    private long mMissCount = 0;
+
+    /***
+     * Constructs a Prefetcher.
+     * @param executor The executor the folders are listed on, preferably with threads of a low priority.
+     * @param maxConcurrent The maximum number of folders that are listed at the same time, at least 1.
+     * @param cache The cache the prefetched listings are kept in.
+     * @param task Lists a folder into the cache.
+     */
+    public Prefetcher(Executor executor, int maxConcurrent, ListingCache<T> cache, Task<T> task) {
+        if (maxConcurrent < 1) throw new IllegalArgumentException("maxConcurrent must be at least 1");
+        this.mExecutor = executor;
+        this.mMaxConcurrent = maxConcurrent;
+        this.mCache = cache;
+        this.mTask = task;
+    }
+
+    /***
+     * Replaces the outstanding work with the given folders, which are listed in the given order.
+     * @param paths The absolute paths of the folders, the most likely one first.
+     */
+    public synchronized void prefetch(Collection<String> paths) {
+        cancel();
+        for (String path : paths) {
+            if (!mQueue.contains(path)) mQueue.add(path);
+        }
+        mRequestCount += mQueue.size();
+        startQueued();
+    }
+
+    /***
+     * Drops all outstanding work. Folders that are being listed are cancelled.
+     */
+    public synchronized void cancel() {
+        mCancelledCount += mQueue.size();
+        mQueue.clear();
+        mGeneration++;
+    }
+
+    /***
+     * Takes the prefetched listing of a folder out of the cache, if it is still valid. Every call counts as a hit or a miss.
+     * @param path The absolute path of the folder.
+     * @param lastModified The current modification time of the folder.
+     * @return The listing, or null if the folder hasn't been prefetched or has been modified since.
+     */
+    public T take(String path, long lastModified) {
+        T listing = mCache.get(path, lastModified);
+        if (listing != null) mCache.remove(path);
+        synchronized (this) {
+            if (listing != null) {
+                mHitCount++;
+            } else {
+                mMissCount++;
+            }
+        }
+        return listing;
+    }
+
+    /***
+     * Returns the current counters of the prefetcher.
+     * @return A snapshot of the counters.
+     */
+    public synchronized Stats getStats() {
+        return new Stats(mRequestCount, mCompletedCount, mCancelledCount, mSkippedCount, mHitCount, mMissCount);
+    }
+
+    private void startQueued() {
+        while (mRunningCount < mMaxConcurrent && !mQueue.isEmpty()) {
+            final String path = mQueue.poll();
+            final int generation = mGeneration;
+            mRunningCount++;
+            mExecutor.execute(new Runnable() {
+                @Override
+                public void run() {
+                    Cancellation cancellation = new Cancellation() {
+                        @Override
+                        public boolean isCancelled() {
+                            return mGeneration != generation;
+                        }
+                    };
+                    boolean stored = false;
+                    try {
+                        if (!cancellation.isCancelled()) stored = mTask.prefetch(path, mCache, cancellation);
+                    } finally {
+                        synchronized (Prefetcher.this) {
+                            mRunningCount--;
+                            if (stored) {
+                                mCompletedCount++;
+                            } else if (cancellation.isCancelled()) {
+                                mCancelledCount++;
+                            } else {
+                                mSkippedCount++;
+                            }
+                            startQueued();
+                        }
+                    }
+                }
+            });
+        }
+    }
+
+    /**
+     * Tells a task that its work has been cancelled.
+     */
+    public interface Cancellation {
+        /***
+         * Returns if the work has been cancelled. Tasks should check this regularly, e.g. for every child they list.
+         * @return True if the task should stop.
+         */
+        boolean isCancelled();
+    }
+
+    /**
+     * Lists a folder into the cache of a Prefetcher.
+     *
+     * @param <T> The type of a listing.
+     */
+    public interface Task<T> {
+        /***
+         * Lists a folder and stores its listing in the cache. Called on the executor of the Prefetcher.
+         * @param path The absolute path of the folder.
+         * @param cache The cache to store the listing in. Listings that are larger than its maximum size are not stored, so a
+         *              task can stop listing as soon as it exceeds {@link ListingCache#getMaxBytes()}.
+         * @param cancellation Tells if the work has been cancelled.
+         * @return True if a listing has been stored, false if the folder didn't need to be listed, couldn't be listed or the
+         * work has been cancelled.
+         */
+        boolean prefetch(String path, ListingCache<T> cache, Cancellation cancellation);
+    }
+
+    /**
+     * Snapshot of the counters of a Prefetcher.
+     */
+    public static final class Stats {
+        private final long mRequestCount;
+        private final long mCompletedCount;
+        private final long mCancelledCount;
+        private final long mSkippedCount;
+        private final long mHitCount;
+        private final long mMissCount;
+
+        Stats(long requestCount, long completedCount, long cancelledCount, long skippedCount, long hitCount, long missCount) {
+            this.mRequestCount = requestCount;
+            this.mCompletedCount = completedCount;
+            this.mCancelledCount = cancelledCount;
+            this.mSkippedCount = skippedCount;
+            this.mHitCount = hitCount;
+            this.mMissCount = missCount;
+        }
+
+        /***
+         * Returns how many folders have been requested to be prefetched.
+         * @return The number of requested folders.
+         */
+        public long getRequestCount() {
+            return mRequestCount;
+        }
+
+        /***
+         * Returns how many folders have been prefetched and stored in the cache.
+         * @return The number of prefetched folders.
+         */
+        public long getCompletedCount() {
+            return mCompletedCount;
+        }
+
+        /***
+         * Returns how many requested folders have been cancelled before or while they were listed.
+         * @return The number of cancelled folders.
+         */
+        public long getCancelledCount() {
+            return mCancelledCount;
+        }
+
+        /***
+         * Returns how many requested folders haven't been stored, because they were cached already, couldn't be read or were
+         * too large.
+         * @return The number of skipped folders.
+         */
+        public long getSkippedCount() {
+            return mSkippedCount;
+        }
+
+        /***
+         * Returns how often an opened folder has been found among the prefetched ones.
+         * @return The number of hits.
+         */
+        public long getHitCount() {
+            return mHitCount;
+        }
+
+        /***
+         * Returns how often an opened folder hasn't been found among the prefetched ones.
+         * @return The number of misses.
+         */
+        public long getMissCount() {
+            return mMissCount;
+        }
+
+        /***
+         * Returns the share of opened folders that have been found among the prefetched ones.
+         * @return The hit rate between 0 and 1, or 0 if no folder has been opened yet.
+         */
+        public double getHitRate() {
+            return mHitCount + mMissCount == 0 ? 0 : (double) mHitCount / (mHitCount + mMissCount);
+        }
+
+        @Override
+        public String toString() {
+            return "requests=" + mRequestCount + " completed=" + mCompletedCount + " cancelled=" + mCancelledCount
+                    + " skipped=" + mSkippedCount + " hits=" + mHitCount + " misses=" + mMissCount;
+        }
+    }
+}
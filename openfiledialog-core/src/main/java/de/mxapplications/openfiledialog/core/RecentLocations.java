@@ -0,0 +1,212 @@
+package de.mxapplications.openfiledialog.core;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The folders that have been opened most recently and most frequently, kept in a small file so they survive the process.
+ * <p>Every location has a count of its visits and the time of the last one. They are ranked by their visits, each of which counts
+ * half as much after {@link #HALF_LIFE_MILLIS}, so a folder that used to be opened often but isn't anymore falls behind. The
+ * location that has been visited last always comes first, that's the one that is most likely opened again. When there are more
+ * than the maximum number of locations, the lowest ranked one is dropped.</p>
+ * <p>The file is read on first use and only written by {@link #save()}, to a temporary file that is renamed, so a crash never
+ * leaves a partial file behind; a file that can't be read is ignored. All methods may block on the file and are safe to use from
+ * several threads at once.</p>
+ */
+public class RecentLocations {
+    /***
+     * The time after which a visit counts half as much.
+     */
+    public static final long HALF_LIFE_MILLIS = 7L * 24 * 60 * 60 * 1000;
+
+    private static final int MAGIC = 0x4f46444c;
+    private static final int VERSION = 1;
+    private static final String TEMPORARY_SUFFIX = ".tmp";
+
+    private final File mFile;
+    private final int mMaxLocations;
+    private Map<String, Location> mLocations = null;
+    private boolean mChanged = false;
+
+    /***
+     * Constructs a RecentLocations.
+     * @param file The file the locations are kept in.
+     * @param maxLocations The maximum number of locations that are kept.
+     */
+    public RecentLocations(File file, int maxLocations) {
+        this.mFile = file;
+        this.mMaxLocations = maxLocations;
+    }
+
+    /***
+     * Records a visit of a folder.
+     * @param path The absolute path of the folder.
+     * @param nowMillis The current time in milliseconds since the epoch.
+     */
+    public synchronized void visit(String path, long nowMillis) {
+        open();
+        Location location = mLocations.get(path);
+        if (location == null) {
+            location = new Location(path);
+            mLocations.put(path, location);
+        }
+        location.mVisits++;
+        location.mLastVisitMillis = nowMillis;
+        mChanged = true;
+        if (mLocations.size() > mMaxLocations) {
+            List<Location> ranked = rank(nowMillis);
+            mLocations.remove(ranked.get(ranked.size() - 1).mPath);
+        }
+    }
+
+    /***
+     * Forgets a location, e.g. because the folder doesn't exist anymore.
+     * @param path The absolute path of the folder.
+     */
+    public synchronized void remove(String path) {
+        open();
+        if (mLocations.remove(path) != null) mChanged = true;
+    }
+
+    /***
+     * Returns the highest ranked locations: the one that has been visited last, then the others by their decayed visits.
+     * @param count The maximum number of locations.
+     * @param nowMillis The current time in milliseconds since the epoch.
+     * @return The absolute paths of the folders.
+     */
+    public synchronized List<String> getTop(int count, long nowMillis) {
+        open();
+        List<String> top = new ArrayList<>();
+        for (Location location : rank(nowMillis)) {
+            if (top.size() == count) break;
+            top.add(location.mPath);
+        }
+        return top;
+    }
+
+    /***
+     * Returns the number of locations.
+     * @return The number of locations.
+     */
+    public synchronized int size() {
+        open();
+        return mLocations.size();
+    }
+
+    /***
+     * Writes the locations to the file, if they have changed since they have been read or written.
+     * @return False if the file can't be written.
+     */
+    public synchronized boolean save() {
+        if (mLocations == null || !mChanged) return true;
+        File temporary = new File(mFile.getPath() + TEMPORARY_SUFFIX);
+        DataOutputStream out = null;
+        try {
+            File parent = mFile.getParentFile();
+            if (parent != null && !parent.isDirectory() && !parent.mkdirs()) return false;
+            out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(temporary)));
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeInt(mLocations.size());
+            for (Location location : mLocations.values()) {
+                out.writeUTF(location.mPath);
+                out.writeInt(location.mVisits);
+                out.writeLong(location.mLastVisitMillis);
+            }
+            out.close();
+            out = null;
+            if (!temporary.renameTo(mFile)) {
+                temporary.delete();
+                return false;
+            }
+            mChanged = false;
+            return true;
+        } catch (IOException e) {
+            temporary.delete();
+            return false;
+        } finally {
+            close(out);
+        }
+    }
+
+    private void open() {
+        if (mLocations != null) return;
+        mLocations = new HashMap<>();
+        if (!mFile.isFile()) return;
+        DataInputStream in = null;
+        try {
+            in = new DataInputStream(new BufferedInputStream(new FileInputStream(mFile)));
+            if (in.readInt() != MAGIC || in.readInt() != VERSION) return;
+            int size = in.readInt();
+            for (int i = 0; i < size; i++) {
+                Location location = new Location(in.readUTF());
+                location.mVisits = in.readInt();
+                location.mLastVisitMillis = in.readLong();
+                mLocations.put(location.mPath, location);
+            }
+        } catch (IOException e) {
+            //A file that has been written by another version or is damaged is started over
+            mLocations.clear();
+        } finally {
+            close(in);
+        }
+    }
+
+    private List<Location> rank(final long nowMillis) {
+        List<Location> ranked = new ArrayList<>(mLocations.values());
+        if (ranked.isEmpty()) return ranked;
+        Location last = ranked.get(0);
+        for (Location location : ranked) {
+            if (location.mLastVisitMillis > last.mLastVisitMillis) last = location;
+        }
+        final Location mostRecent = last;
+        Collections.sort(ranked, new Comparator<Location>() {
+            @Override
+            public int compare(Location lhs, Location rhs) {
+                if (lhs == mostRecent) return rhs == mostRecent ? 0 : -1;
+                if (rhs == mostRecent) return 1;
+                int byScore = Double.compare(rhs.score(nowMillis), lhs.score(nowMillis));
+                if (byScore != 0) return byScore;
+                return rhs.mLastVisitMillis < lhs.mLastVisitMillis ? -1 : rhs.mLastVisitMillis == lhs.mLastVisitMillis ? 0 : 1;
+            }
+        });
+        return ranked;
+    }
+
+    private static void close(Closeable closeable) {
+        if (closeable == null) return;
+        try {
+            closeable.close();
+        } catch (IOException e) {
+            //Nothing left to do with it
+        }
+    }
+
+    private static final class Location {
+        final String mPath;
+        int mVisits = 0;
+        long mLastVisitMillis = 0;
+
+        Location(String path) {
+            this.mPath = path;
+        }
+
+        double score(long nowMillis) {
+            long age = Math.max(0, nowMillis - mLastVisitMillis);
+            return mVisits * Math.pow(0.5, (double) age / HALF_LIFE_MILLIS);
+        }
+    }
+}
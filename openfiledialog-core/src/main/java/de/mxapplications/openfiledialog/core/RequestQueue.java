@@ -0,0 +1,221 @@
+package de.mxapplications.openfiledialog.core;
+
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executor;
+
+/**
+ * Runs tasks for the rows of a list in the background, e.g. decoding thumbnails or reading metadata, and delivers their results
+ * on the callback executor (usually the UI thread).
+ * <p>Tasks are identified by a key, and requests for a key whose task is waiting or running are merged into it, so a row that is
+ * bound again doesn't start the same work twice. At most the given number of tasks run at the same time, and the task that has
+ * been requested last runs first: while the user flings through a list, the rows that have just appeared come first. A
+ * {@link Request} that is cancelled, e.g. because its row has been recycled, is never delivered. A task that nobody waits for
+ * anymore is dropped before it runs, and a running one is told through its {@link Prefetcher.Cancellation}. That cancellation is
+ * final: a later request for the same key starts a new task instead of waiting for the one that may have stopped early.</p>
+ * <p>This class is safe to use from several threads at once. A {@link Callback} is called on the callback executor.</p>
+ *
+ * @param <T> The type of a result.
+ */
+public class RequestQueue<T> {
+    private final Executor mBackgroundExecutor;
+    private final int mMaxConcurrent;
+    private final Executor mCallbackExecutor;
+
+    //The tasks that haven't been started, the one requested last at the end
+    private final ArrayDeque<Pending> mQueue = new ArrayDeque<>();
+    //All tasks that haven't finished and haven't been cancelled, by their key
+    private final Map<String, Pending> mPending = new HashMap<>();
+    private int mRunningCount = 0;
+
+    /***
+     * Constructs a RequestQueue.
+     * @param backgroundExecutor The executor the tasks run on.
+     * @param maxConcurrent The maximum number of tasks that run at the same time, at least 1.
+     * @param callbackExecutor The executor the results are delivered on.
+     */
+    public RequestQueue(Executor backgroundExecutor, int maxConcurrent, Executor callbackExecutor) {
+        if (maxConcurrent < 1) throw new IllegalArgumentException("maxConcurrent must be at least 1");
+        this.mBackgroundExecutor = backgroundExecutor;
+        this.mMaxConcurrent = maxConcurrent;
+        this.mCallbackExecutor = callbackExecutor;
+    }
+
+    /***
+     * Requests the result of a task. If a task with the same key is waiting or running, the request waits for that one instead.
+     * @param key The key of the task.
+     * @param task The task, only run if there is no task with the key yet.
+     * @param callback Receives the result, unless the request is cancelled first or the result is null.
+     * @return The request, to cancel it.
+     */
+    public synchronized Request submit(String key, Task<T> task, Callback<T> callback) {
+        Pending pending = mPending.get(key);
+        if (pending == null) {
+            pending = new Pending(key, task);
+            mPending.put(key, pending);
+            mQueue.addLast(pending);
+        } else if (!pending.mRunning) {
+            //Requested again, e.g. scrolled back into view, so it moves to the front
+            mQueue.remove(pending);
+            mQueue.addLast(pending);
+        }
+        Request request = new Request(pending, callback);
+        pending.mRequests.add(request);
+        startQueued();
+        return request;
+    }
+
+    /***
+     * Cancels all requests, e.g. when the list is closed.
+     */
+    public synchronized void cancelAll() {
+        for (Pending pending : mPending.values()) {
+            for (Request request : pending.mRequests) {
+                request.mCancelled = true;
+            }
+            pending.mRequests.clear();
+            pending.mCancelled = true;
+        }
+        mPending.clear();
+        mQueue.clear();
+    }
+
+    /***
+     * Returns the number of tasks that are waiting or running, without running tasks that have been cancelled.
+     * @return The number of tasks.
+     */
+    public synchronized int getPendingCount() {
+        return mPending.size();
+    }
+
+    private void startQueued() {
+        while (mRunningCount < mMaxConcurrent && !mQueue.isEmpty()) {
+            final Pending pending = mQueue.pollLast();
+            pending.mRunning = true;
+            mRunningCount++;
+            mBackgroundExecutor.execute(new Runnable() {
+                @Override
+                public void run() {
+                    T result = null;
+                    try {
+                        result = pending.mTask.run(pending);
+                    } catch (IOException | RuntimeException e) {
+                        //The task has no result
+                    }
+                    finish(pending, result);
+                }
+            });
+        }
+    }
+
+    private void finish(Pending pending, final T result) {
+        final List<Request> requests;
+        synchronized (this) {
+            //A cancelled task may have been replaced by a new one for the same key
+            if (mPending.get(pending.mKey) == pending) mPending.remove(pending.mKey);
+            requests = new ArrayList<>(pending.mRequests);
+            pending.mRequests.clear();
+            mRunningCount--;
+            startQueued();
+        }
+        if (result == null || requests.isEmpty()) return;
+        mCallbackExecutor.execute(new Runnable() {
+            @Override
+            public void run() {
+                for (Request request : requests) {
+                    //Cancelled after the task has finished
+                    if (!request.mCancelled) request.mCallback.onResult(result);
+                }
+            }
+        });
+    }
+
+    private class Pending implements Prefetcher.Cancellation {
+        final String mKey;
+        final Task<T> mTask;
+        final List<Request> mRequests = new ArrayList<>(1);
+        boolean mRunning = false;
+        //Set once the last request is gone, and never reset, so the task can't take a result it has given up on for a complete one
+        boolean mCancelled = false;
+
+        Pending(String key, Task<T> task) {
+            this.mKey = key;
+            this.mTask = task;
+        }
+
+        @Override
+        public boolean isCancelled() {
+            synchronized (RequestQueue.this) {
+                return mCancelled;
+            }
+        }
+    }
+
+    /**
+     * A request for the result of a task, see {@link #submit(String, Task, Callback)}.
+     */
+    public final class Request {
+        private final Pending mPending;
+        private final Callback<T> mCallback;
+        private volatile boolean mCancelled = false;
+
+        private Request(Pending pending, Callback<T> callback) {
+            this.mPending = pending;
+            this.mCallback = callback;
+        }
+
+        /***
+         * Cancels the request. The result is never delivered to its callback, and the task is dropped or told to stop if no other request waits for it.
+         */
+        public void cancel() {
+            synchronized (RequestQueue.this) {
+                mCancelled = true;
+                if (mPending.mRequests.remove(this) && mPending.mRequests.isEmpty()) {
+                    mPending.mCancelled = true;
+                    if (!mPending.mRunning) mQueue.remove(mPending);
+                    RequestQueue.this.mPending.remove(mPending.mKey);
+                }
+            }
+        }
+
+        /***
+         * Returns if the request has been cancelled.
+         * @return True if the request has been cancelled.
+         */
+        public boolean isCancelled() {
+            return mCancelled;
+        }
+    }
+
+    /**
+     * Computes a result on the background executor.
+     *
+     * @param <T> The type of the result.
+     */
+    public interface Task<T> {
+        /***
+         * Computes the result.
+         * @param cancellation Tells if nobody waits for the result anymore. Long tasks should check it regularly.
+         * @return The result, or null if there is none.
+         * @throws IOException If the result can't be computed.
+         */
+        T run(Prefetcher.Cancellation cancellation) throws IOException;
+    }
+
+    /**
+     * Receives the result of a task.
+     *
+     * @param <T> The type of the result.
+     */
+    public interface Callback<T> {
+        /***
+         * Called on the callback executor when the task has finished.
+         * @param result The result.
+         */
+        void onResult(T result);
+    }
+}
@@ -0,0 +1,259 @@
+package de.mxapplications.openfiledialog.core;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The files that have been selected, in any number of folders, e.g. while the user picks files in several folders one after another.
+ * <p>Files are kept per folder by a 64 bit FNV-1a hash of their name, in a set of primitive longs, so a selected file costs about 16
+ * bytes and no object. Selecting all files of a folder only marks the folder, the files that are deselected afterwards are kept as
+ * exceptions, so it takes constant time however many files the folder has. Selecting a range of a {@link CompactListing} takes the
+ * hashes straight from the packed names, without creating a String for any of them. Folders themselves can't be selected.</p>
+ * <p>The paths of the selected files are only built by {@link #collect(DirectoryLister, EntryFilter, int, BatchListener, Prefetcher.Cancellation)},
+ * which lists every folder with a selection again and delivers the files that are still there in batches. Two names with the same
+ * hash can't be told apart, with 64 bit hashes that is unlikely enough to be ignored.</p>
+ * <p>This class is safe to use from several threads at once.</p>
+ */
+public class SelectionSet {
+    static final long FNV_OFFSET_BASIS = 0xcbf29ce484222325L;
+    static final long FNV_PRIME = 0x100000001b3L;
+
+    //By the path of the folder, in the order the folders have been selected in first
+    private final Map<String, Folder> mFolders = new LinkedHashMap<>();
+
+    /***
+     * Constructs an empty SelectionSet.
+     */
+    public SelectionSet() {
+    }
+
+    /***
+     * Returns the hash that a file is identified by in its folder.
+     * @param text A text that contains the name of the file, e.g. its absolute path.
+     * @param start The index of the first character of the name.
+     * @param end The index after the last character of the name.
+     * @return The 64 bit FNV-1a hash of the name.
+     */
+    public static long hashName(CharSequence text, int start, int end) {
+        long hash = FNV_OFFSET_BASIS;
+        for (int i = start; i < end; i++) {
+            hash = (hash ^ text.charAt(i)) * FNV_PRIME;
+        }
+        return hash;
+    }
+
+    /***
+     * Returns if a file is selected.
+     * @param path The absolute path of the file.
+     * @return True if it is selected.
+     */
+    public synchronized boolean isSelected(String path) {
+        int separator = path.lastIndexOf(File.separatorChar);
+        if (separator < 0) return false;
+        Folder folder = mFolders.get(parentPath(path, separator));
+        return folder != null && folder.isSelected(hashName(path, separator + 1, path.length()));
+    }
+
+    /***
+     * Selects or deselects a file.
+     * @param path The absolute path of the file.
+     * @param selected True to select it, false to deselect it.
+     */
+    public synchronized void setSelected(String path, boolean selected) {
+        int separator = path.lastIndexOf(File.separatorChar);
+        if (separator < 0) return;
+        String parentPath = parentPath(path, separator);
+        long hash = hashName(path, separator + 1, path.length());
+        Folder folder = mFolders.get(parentPath);
+        if (folder == null) {
+            if (!selected) return;
+            folder = new Folder();
+            mFolders.put(parentPath, folder);
+        }
+        folder.setSelected(hash, selected);
+        if (folder.isEmpty()) mFolders.remove(parentPath);
+    }
+
+    /***
+     * Selects a file that isn't selected and deselects a file that is.
+     * @param path The absolute path of the file.
+     * @return True if the file is selected now.
+     */
+    public synchronized boolean toggle(String path) {
+        boolean selected = !isSelected(path);
+        setSelected(path, selected);
+        return selected;
+    }
+
+    /***
+     * Selects the files in a range of positions of a listing, skipping its folders. Takes time in proportion to the range, not to the
+     * size of the listing.
+     * @param listing The children of the folder.
+     * @param from The first position.
+     * @param to The position after the last one.
+     */
+    public synchronized void selectRange(CompactListing listing, int from, int to) {
+        Folder folder = mFolders.get(listing.getParentPath());
+        if (folder == null) {
+            folder = new Folder();
+            mFolders.put(listing.getParentPath(), folder);
+        }
+        for (int i = Math.max(from, 0); i < Math.min(to, listing.size()); i++) {
+            if (!listing.isDirectory(i)) folder.setSelected(listing.nameHash(i), true);
+        }
+        if (folder.isEmpty()) mFolders.remove(listing.getParentPath());
+    }
+
+    /***
+     * Selects all files of a folder that pass the filter they are collected with, including the ones that are added later. Takes
+     * constant time.
+     * @param parentPath The absolute path of the folder.
+     */
+    public synchronized void selectAll(String parentPath) {
+        Folder folder = new Folder();
+        folder.mAll = true;
+        mFolders.put(parentPath, folder);
+    }
+
+    /***
+     * Deselects all files of a folder. Takes constant time.
+     * @param parentPath The absolute path of the folder.
+     */
+    public synchronized void deselectAll(String parentPath) {
+        mFolders.remove(parentPath);
+    }
+
+    /***
+     * Deselects all files of all folders.
+     */
+    public synchronized void clear() {
+        mFolders.clear();
+    }
+
+    /***
+     * Returns if no file is selected.
+     * @return True if no file is selected, false if at least one file or all files of a folder are selected.
+     */
+    public synchronized boolean isEmpty() {
+        return mFolders.isEmpty();
+    }
+
+    /***
+     * Returns the folders that have a selection.
+     * @return The absolute paths of the folders, in the order they have been selected in first.
+     */
+    public synchronized List<String> getFolders() {
+        return Collections.unmodifiableList(new ArrayList<>(mFolders.keySet()));
+    }
+
+    /***
+     * Returns a copy that doesn't change with this selection, e.g. to collect it in the background while the user goes on selecting.
+     * @return The copy.
+     */
+    public synchronized SelectionSet copy() {
+        SelectionSet copy = new SelectionSet();
+        for (Map.Entry<String, Folder> folder : mFolders.entrySet()) {
+            copy.mFolders.put(folder.getKey(), folder.getValue().copy());
+        }
+        return copy;
+    }
+
+    /***
+     * Lists every folder with a selection and delivers the absolute paths of the selected files that are still there and pass the
+     * filter, in batches, folder by folder. Runs on the calling thread, on a copy of the selection, so it should be called in the
+     * background.
+     * @param directoryLister The DirectoryLister that lists the folders.
+     * @param filter The filter the files have to pass, e.g. the one they have been shown with.
+     * @param batchSize The number of paths in a batch, at least 1.
+     * @param listener Receives the batches.
+     * @param cancellation Stops collecting when it is cancelled, no more batches are delivered then.
+     */
+    public void collect(DirectoryLister directoryLister, final EntryFilter filter, final int batchSize, final BatchListener listener,
+                        final Prefetcher.Cancellation cancellation) {
+        SelectionSet selection = copy();
+        final List<String> batch = new ArrayList<>(Math.min(batchSize, 1024));
+        for (final Map.Entry<String, Folder> entry : selection.mFolders.entrySet()) {
+            if (cancellation.isCancelled()) return;
+            final String parentPath = entry.getKey();
+            final Folder folder = entry.getValue();
+            directoryLister.list(parentPath, filter.needsMetadata(), new DirectoryLister.FilteringVisitor() {
+                @Override
+                public EntryFilter getFilter() {
+                    return filter;
+                }
+
+                @Override
+                public boolean visit(DirectoryEntry child) {
+                    if (cancellation.isCancelled()) return false;
+                    if (child.isDirectory() || !filter.accept(child)) return true;
+                    String name = child.getName();
+                    if (!folder.isSelected(hashName(name, 0, name.length()))) return true;
+                    batch.add(parentPath.endsWith(File.separator) ? parentPath + name : parentPath + File.separator + name);
+                    if (batch.size() >= batchSize) {
+                        listener.onBatch(new ArrayList<>(batch), false);
+                        batch.clear();
+                    }
+                    return true;
+                }
+            });
+        }
+        if (!cancellation.isCancelled()) listener.onBatch(batch, true);
+    }
+
+    private static String parentPath(String path, int separator) {
+        return separator == 0 ? File.separator : path.substring(0, separator);
+    }
+
+    /***
+     * Receives the selected files.
+     */
+    public interface BatchListener {
+        /***
+         * Called for every batch of selected files.
+         * @param paths The absolute paths of the files.
+         * @param last True for the last batch, which may be empty.
+         */
+        void onBatch(List<String> paths, boolean last);
+    }
+
+    /**
+     * The selection in a folder: the hashes of the selected files, or all files but the hashes.
+     */
+    private static final class Folder {
+        private boolean mAll = false;
+        private final LongHashSet mHashes;
+
+        Folder() {
+            this.mHashes = new LongHashSet();
+        }
+
+        private Folder(Folder source) {
+            this.mAll = source.mAll;
+            this.mHashes = source.mHashes.copy();
+        }
+
+        boolean isSelected(long hash) {
+            return mAll != mHashes.contains(hash);
+        }
+
+        void setSelected(long hash, boolean selected) {
+            if (selected != mAll) {
+                mHashes.add(hash);
+            } else {
+                mHashes.remove(hash);
+            }
+        }
+
+        boolean isEmpty() {
+            return !mAll && mHashes.size() == 0;
+        }
+
+        Folder copy() {
+            return new Folder(this);
+        }
+    }
+}
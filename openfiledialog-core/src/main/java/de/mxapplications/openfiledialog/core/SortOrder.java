@@ -0,0 +1,187 @@
+package de.mxapplications.openfiledialog.core;
+
+import java.util.Locale;
+
+/**
+ * The order in which the children of a folder are shown.
+ * <p>Sorting with a SortOrder is done in two steps: {@link #createKey(String, boolean, long, long)} computes a {@link SortKey}
+ * once for every entry, then {@link #compare(SortKey, SortKey)} compares the keys without allocating anything. This way the
+ * names are lower-cased once per entry instead of twice per comparison.</p>
+ */
+public final class SortOrder {
+    /**
+     * The property the entries are sorted by.
+     */
+    public enum Mode {
+        /** By name, ignoring case. */
+        NAME,
+        /** By name, ignoring case, with runs of digits compared by their numeric value ("file2" before "file10"). */
+        NATURAL,
+        /** By size, then by name. */
+        SIZE,
+        /** By modification time, then by name. */
+        DATE,
+        /** By extension, then by name. */
+        EXTENSION
+    }
+
+    /***
+     * Sorts by name ignoring case, with folders and files mixed. This is the order OpenFileDialog has always used.
+     */
+    public static final SortOrder DEFAULT = new SortOrder(Mode.NAME, false, false);
+
+    private final Mode mMode;
+    private final boolean mFoldersFirst;
+    private final boolean mDescending;
+
+    /***
+     * Constructs a SortOrder.
+     * @param mode The property the entries are sorted by.
+     * @param foldersFirst True to show all folders before all files.
+     * @param descending True to reverse the order (folders still come first if foldersFirst is true).
+     */
+    public SortOrder(Mode mode, boolean foldersFirst, boolean descending) {
+        if (mode == null) throw new IllegalArgumentException("mode must not be null");
+        this.mMode = mode;
+        this.mFoldersFirst = foldersFirst;
+        this.mDescending = descending;
+    }
+
+    /***
+     * Returns the property the entries are sorted by.
+     * @return The mode of the order.
+     */
+    public Mode getMode() {
+        return mMode;
+    }
+
+    /***
+     * Returns if all folders are shown before all files.
+     * @return True if folders come first.
+     */
+    public boolean isFoldersFirst() {
+        return mFoldersFirst;
+    }
+
+    /***
+     * Returns if the order is reversed.
+     * @return True if the order is descending.
+     */
+    public boolean isDescending() {
+        return mDescending;
+    }
+
+    /***
+     * Returns if the order needs the size or the modification time of the entries, which some listers only read on request.
+     * @return True if the entries have to be listed with metadata.
+     */
+    public boolean needsMetadata() {
+        return mMode == Mode.SIZE || mMode == Mode.DATE;
+    }
+
+    /***
+     * Computes the key that an entry is sorted by.
+     * @param name The name of the entry.
+     * @param directory True if the entry is a folder.
+     * @param size The size of the entry, or {@link DirectoryEntry#UNKNOWN}.
+     * @param lastModified The modification time of the entry, or {@link DirectoryEntry#UNKNOWN}.
+     * @return The key of the entry.
+     */
+    public SortKey createKey(String name, boolean directory, long size, long lastModified) {
+        String lowerCaseName = name.toLowerCase(Locale.ROOT);
+        int group = mFoldersFirst && !directory ? 1 : 0;
+        switch (mMode) {
+            case NATURAL:
+                return new SortKey(group, 0, naturalKey(lowerCaseName));
+            case SIZE:
+                return new SortKey(group, directory ? 0 : size, lowerCaseName);
+            case DATE:
+                return new SortKey(group, lastModified, lowerCaseName);
+            case EXTENSION:
+                int dot = lowerCaseName.lastIndexOf('.');
+                String extension = directory || dot <= 0 ? "" : lowerCaseName.substring(dot + 1);
+                return new SortKey(group, 0, extension + '\u0000' + lowerCaseName);
+            default:
+                return new SortKey(group, 0, lowerCaseName);
+        }
+    }
+
+    /***
+     * Compares two keys that have been created by this SortOrder.
+     * @param lhs The first key.
+     * @param rhs The second key.
+     * @return A negative number, zero or a positive number if the first key sorts before, equal to or after the second key.
+     */
+    public int compare(SortKey lhs, SortKey rhs) {
+        if (lhs.mGroup != rhs.mGroup) return lhs.mGroup < rhs.mGroup ? -1 : 1;
+        int result = lhs.mNumber < rhs.mNumber ? -1 : lhs.mNumber == rhs.mNumber ? 0 : 1;
+        if (result == 0) result = lhs.mText.compareTo(rhs.mText);
+        return mDescending ? -result : result;
+    }
+
+    /***
+     * Encodes every run of digits as a marker, the number of significant digits and the digits, so that comparing the
+     * encoded strings compares the runs by their numeric value. The plain name is appended to order "07" and "7" consistently.
+     */
+    static String naturalKey(String lowerCaseName) {
+        int length = lowerCaseName.length();
+        StringBuilder key = new StringBuilder(length * 2 + 4);
+        int i = 0;
+        while (i < length) {
+            char c = lowerCaseName.charAt(i);
+            if (c < '0' || c > '9') {
+                key.append(c);
+                i++;
+                continue;
+            }
+            int start = i;
+            while (i < length && lowerCaseName.charAt(i) >= '0' && lowerCaseName.charAt(i) <= '9') i++;
+            int significant = start;
+            while (significant < i - 1 && lowerCaseName.charAt(significant) == '0') significant++;
+            //The marker '0' keeps digits sorting before letters, like in a plain comparison
+            key.append('0').append((char) (i - significant)).append(lowerCaseName, significant, i);
+        }
+        return key.append('\u0000').append(lowerCaseName).toString();
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (!(o instanceof SortOrder)) return false;
+        SortOrder other = (SortOrder) o;
+        return mMode == other.mMode && mFoldersFirst == other.mFoldersFirst && mDescending == other.mDescending;
+    }
+
+    @Override
+    public int hashCode() {
+        return mMode.hashCode() * 4 + (mFoldersFirst ? 2 : 0) + (mDescending ? 1 : 0);
+    }
+
+    @Override
+    public String toString() {
+        return mMode + (mFoldersFirst ? ",foldersFirst" : "") + (mDescending ? ",descending" : "");
+    }
+
+    /**
+     * The precomputed key an entry is sorted by, see {@link SortOrder#createKey(String, boolean, long, long)}.
+     */
+    public static final class SortKey {
+        final int mGroup;
+        final long mNumber;
+        final String mText;
+
+        SortKey(int group, long number, String text) {
+            this.mGroup = group;
+            this.mNumber = number;
+            this.mText = text;
+        }
+
+        /***
+         * Returns the text part of the key, e.g. to estimate its memory.
+         * @return The text the entry is compared by after group and number.
+         */
+        public String getText() {
+            return mText;
+        }
+    }
+}
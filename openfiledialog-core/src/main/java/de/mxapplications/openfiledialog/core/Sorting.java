@@ -0,0 +1,146 @@
+package de.mxapplications.openfiledialog.core;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.ListIterator;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Stable sort that spreads large lists over all processors.
+ * <p>Lists with fewer than {@link #PARALLEL_THRESHOLD} elements, or any list on a single processor, are sorted with
+ * {@link Collections#sort(List, Comparator)}. Larger lists are split into one chunk per processor, the chunks are sorted
+ * concurrently and then merged pairwise. Like {@code Arrays.parallelSort}, which isn't available before Java 8 and Android
+ * 7.0, the result is the same as that of a sequential stable sort.</p>
+ */
+public final class Sorting {
+    /***
+     * Lists with at least this many elements are sorted in parallel.
+     */
+    public static final int PARALLEL_THRESHOLD = 8192;
+
+    private static final int PROCESSORS = Runtime.getRuntime().availableProcessors();
+    private static Executor sExecutor = null;
+
+    private Sorting() {
+    }
+
+    /***
+     * Sorts a list, in parallel if it is large.
+     * @param list The list to sort.
+     * @param comparator The comparator that defines the order.
+     * @param <T> The type of the elements.
+     */
+    @SuppressWarnings("unchecked")
+    public static <T> void sort(List<T> list, Comparator<? super T> comparator) {
+        if (list.size() < PARALLEL_THRESHOLD || PROCESSORS < 2) {
+            Collections.sort(list, comparator);
+            return;
+        }
+        Object[] array = list.toArray();
+        parallelSort(array, (Comparator<Object>) comparator);
+        ListIterator<T> iterator = list.listIterator();
+        for (Object element : array) {
+            iterator.next();
+            iterator.set((T) element);
+        }
+    }
+
+    private static void parallelSort(final Object[] array, final Comparator<Object> comparator) {
+        int chunks = Math.min(PROCESSORS, array.length / (PARALLEL_THRESHOLD / 4));
+        final int[] bounds = new int[chunks + 1];
+        for (int i = 0; i <= chunks; i++) {
+            bounds[i] = (int) ((long) array.length * i / chunks);
+        }
+
+        final CountDownLatch latch = new CountDownLatch(chunks - 1);
+        final RuntimeException[] failure = new RuntimeException[1];
+        for (int i = 1; i < chunks; i++) {
+            final int chunk = i;
+            getExecutor().execute(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        Arrays.sort(array, bounds[chunk], bounds[chunk + 1], comparator);
+                    } catch (RuntimeException e) {
+                        synchronized (failure) {
+                            failure[0] = e;
+                        }
+                    } finally {
+                        latch.countDown();
+                    }
+                }
+            });
+        }
+        Arrays.sort(array, bounds[0], bounds[1], comparator);
+        try {
+            latch.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while sorting", e);
+        }
+        synchronized (failure) {
+            if (failure[0] != null) throw failure[0];
+        }
+
+        //Merge neighbouring chunks until only one is left
+        Object[] source = array;
+        Object[] target = new Object[array.length];
+        int[] currentBounds = bounds;
+        while (currentBounds.length > 2) {
+            int chunkCount = currentBounds.length - 1;
+            int merged = (chunkCount + 1) / 2;
+            int[] nextBounds = new int[merged + 1];
+            for (int i = 0; i < merged; i++) {
+                int start = currentBounds[2 * i];
+                int middle = currentBounds[Math.min(2 * i + 1, currentBounds.length - 1)];
+                int end = currentBounds[Math.min(2 * i + 2, currentBounds.length - 1)];
+                merge(source, start, middle, end, target, comparator);
+                nextBounds[i] = start;
+                nextBounds[i + 1] = end;
+            }
+            Object[] swap = source;
+            source = target;
+            target = swap;
+            currentBounds = nextBounds;
+        }
+        if (source != array) {
+            System.arraycopy(source, 0, array, 0, array.length);
+        }
+    }
+
+    private static void merge(Object[] source, int start, int middle, int end, Object[] target, Comparator<Object> comparator) {
+        int i = start;
+        int j = middle;
+        int k = start;
+        while (i < middle && j < end) {
+            //Taking from the left run on ties keeps the sort stable
+            target[k++] = comparator.compare(source[j], source[i]) < 0 ? source[j++] : source[i++];
+        }
+        while (i < middle) target[k++] = source[i++];
+        while (j < end) target[k++] = source[j++];
+    }
+
+    private static synchronized Executor getExecutor() {
+        if (sExecutor == null) {
+            ThreadPoolExecutor executor = new ThreadPoolExecutor(PROCESSORS - 1, PROCESSORS - 1, 10, TimeUnit.SECONDS,
+                    new LinkedBlockingQueue<Runnable>(), new ThreadFactory() {
+                @Override
+                public Thread newThread(Runnable r) {
+                    Thread thread = new Thread(r, "OpenFileDialog-sort");
+                    thread.setDaemon(true);
+                    return thread;
+                }
+            });
+            executor.allowCoreThreadTimeOut(true);
+            sExecutor = executor;
+        }
+        return sExecutor;
+    }
+}
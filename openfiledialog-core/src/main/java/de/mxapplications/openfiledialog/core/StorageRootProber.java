@@ -0,0 +1,284 @@
+package de.mxapplications.openfiledialog.core;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Finds the storage volumes that are mounted and readable, e.g. the internal storage, SD cards and USB drives, to show them as a
+ * level above their roots.
+ * <p>The candidates come from a {@link Source}. They are all probed at the same time, each by its own task on the probe executor
+ * that lists the root with a {@link DirectoryLister} until the first child. Every root has its own timeout, a root that doesn't
+ * answer in time is left out, so a slow or unmounted card can't hold back the others. Its task keeps running until the file system
+ * gives up on it, so the probe executor should be able to run several tasks at once. Roots that turn out to be the same folder,
+ * e.g. a link to the internal storage, are only reported once, by the first candidate.</p>
+ * <p>The roots are delivered as they answer, always in the order of the candidates. This class is safe to use from several threads
+ * at once.</p>
+ */
+public class StorageRootProber {
+    private static final DirectoryLister.Visitor FIRST_CHILD = new DirectoryLister.Visitor() {
+        @Override
+        public boolean visit(DirectoryEntry entry) {
+            return false;
+        }
+    };
+
+    private final Source mSource;
+    private final DirectoryLister mDirectoryLister;
+    private final Executor mProbeExecutor;
+    private final ScheduledExecutorService mScheduler;
+    private final Executor mCallbackExecutor;
+    private final long mTimeoutMillis;
+
+    /***
+     * Constructs a StorageRootProber.
+     * @param source The source of the candidates.
+     * @param directoryLister The DirectoryLister that lists the roots.
+     * @param probeExecutor The executor the candidates are found and probed on.
+     * @param scheduler The executor that ends the probes that take too long.
+     * @param callbackExecutor The executor the roots are delivered on.
+     * @param timeoutMillis The time in milliseconds a root has to answer, counted from when its probe has been started.
+     */
+    public StorageRootProber(Source source, DirectoryLister directoryLister, Executor probeExecutor, ScheduledExecutorService scheduler,
+                             Executor callbackExecutor, long timeoutMillis) {
+        this.mSource = source;
+        this.mDirectoryLister = directoryLister;
+        this.mProbeExecutor = probeExecutor;
+        this.mScheduler = scheduler;
+        this.mCallbackExecutor = callbackExecutor;
+        this.mTimeoutMillis = timeoutMillis;
+    }
+
+    /***
+     * Starts probing the candidates in the background.
+     * @param listener Receives the roots that have answered, until the probe is cancelled.
+     * @return The probe, to cancel it.
+     */
+    public Probe probe(Listener listener) {
+        final Probe probe = new Probe(listener);
+        mProbeExecutor.execute(new Runnable() {
+            @Override
+            public void run() {
+                probe.start();
+            }
+        });
+        return probe;
+    }
+
+    /**
+     * A storage volume, by the path of its root and the name it is shown with.
+     */
+    public static final class Root {
+        private final String mPath;
+        private final String mLabel;
+
+        /***
+         * Constructs a Root.
+         * @param path The absolute path of the root.
+         * @param label The name it is shown with.
+         */
+        public Root(String path, String label) {
+            this.mPath = path;
+            this.mLabel = label;
+        }
+
+        /***
+         * Returns the absolute path of the root.
+         * @return The path.
+         */
+        public String getPath() {
+            return mPath;
+        }
+
+        /***
+         * Returns the name the root is shown with.
+         * @return The name.
+         */
+        public String getLabel() {
+            return mLabel;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (!(o instanceof Root)) return false;
+            Root root = (Root) o;
+            return mPath.equals(root.mPath) && mLabel.equals(root.mLabel);
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * mPath.hashCode() + mLabel.hashCode();
+        }
+
+        @Override
+        public String toString() {
+            return mLabel + " (" + mPath + ")";
+        }
+    }
+
+    /***
+     * Finds the candidates, e.g. from the mount points. It is called on the probe executor and shouldn't touch the volumes themselves,
+     * so a slow volume can only hold back its own probe.
+     */
+    public interface Source {
+        /***
+         * Returns the roots that may be mounted, the most important first.
+         * @return The candidates.
+         */
+        List<Root> getCandidates();
+    }
+
+    /***
+     * Receives the roots.
+     */
+    public interface Listener {
+        /***
+         * Called each time a root has answered or timed out.
+         * @param roots All roots that have answered so far and are readable, in the order of the candidates.
+         * @param finished True if every root has answered or timed out.
+         */
+        void onRoots(List<Root> roots, boolean finished);
+    }
+
+    /**
+     * A running probe of all candidates.
+     */
+    public final class Probe {
+        private final Listener mListener;
+        private List<Root> mCandidates = null;
+        //The canonical path of every root that has answered and is readable, null for the others
+        private String[] mCanonicalPaths;
+        private boolean[] mAnswered;
+        private ScheduledFuture<?>[] mTimeouts;
+        private int mPending = 0;
+        private int mTimedOut = 0;
+        private boolean mCancelled = false;
+
+        private Probe(Listener listener) {
+            this.mListener = listener;
+        }
+
+        /***
+         * Stops delivering roots. Probes that are running finish in the background.
+         */
+        public synchronized void cancel() {
+            mCancelled = true;
+            if (mTimeouts == null) return;
+            for (ScheduledFuture<?> timeout : mTimeouts) {
+                if (timeout != null) timeout.cancel(false);
+            }
+        }
+
+        /***
+         * Returns the number of roots that haven't answered in time.
+         * @return The number of roots.
+         */
+        public synchronized int getTimedOutCount() {
+            return mTimedOut;
+        }
+
+        private void start() {
+            List<Root> candidates;
+            try {
+                candidates = mSource.getCandidates();
+            } catch (RuntimeException e) {
+                candidates = new ArrayList<>();
+            }
+            //The same path twice would only be probed twice
+            Map<String, Root> byPath = new LinkedHashMap<>();
+            for (Root candidate : candidates) {
+                if (!byPath.containsKey(candidate.getPath())) byPath.put(candidate.getPath(), candidate);
+            }
+            synchronized (this) {
+                if (mCancelled) return;
+                mCandidates = new ArrayList<>(byPath.values());
+                mCanonicalPaths = new String[mCandidates.size()];
+                mAnswered = new boolean[mCandidates.size()];
+                mTimeouts = new ScheduledFuture<?>[mCandidates.size()];
+                mPending = mCandidates.size();
+                if (mPending == 0) {
+                    deliver();
+                    return;
+                }
+            }
+            for (int i = 0; i < mCandidates.size(); i++) {
+                final int index = i;
+                mProbeExecutor.execute(new Runnable() {
+                    @Override
+                    public void run() {
+                        probe(index);
+                    }
+                });
+            }
+        }
+
+        private void probe(final int index) {
+            synchronized (this) {
+                if (mCancelled || mAnswered[index]) return;
+                //The timeout starts with the probe, not while it waits for a thread
+                mTimeouts[index] = mScheduler.schedule(new Runnable() {
+                    @Override
+                    public void run() {
+                        answer(index, null, true);
+                    }
+                }, mTimeoutMillis, TimeUnit.MILLISECONDS);
+            }
+            String path = mCandidates.get(index).getPath();
+            String canonicalPath = null;
+            if (mDirectoryLister.list(path, false, FIRST_CHILD)) {
+                try {
+                    canonicalPath = new File(path).getCanonicalPath();
+                } catch (IOException e) {
+                    canonicalPath = path;
+                }
+            }
+            answer(index, canonicalPath, false);
+        }
+
+        private synchronized void answer(int index, String canonicalPath, boolean timedOut) {
+            if (mCancelled || mAnswered[index]) return;
+            mAnswered[index] = true;
+            mCanonicalPaths[index] = canonicalPath;
+            if (timedOut) {
+                mTimedOut++;
+            } else if (mTimeouts[index] != null) {
+                mTimeouts[index].cancel(false);
+            }
+            mPending--;
+            deliver();
+        }
+
+        /***
+         * Hands the roots that have answered to the listener. Called while holding the lock, so the deliveries keep their order.
+         */
+        private void deliver() {
+            final List<Root> roots = new ArrayList<>();
+            Set<String> canonicalPaths = new HashSet<>();
+            for (int i = 0; i < mCandidates.size(); i++) {
+                if (mCanonicalPaths[i] != null && canonicalPaths.add(mCanonicalPaths[i])) {
+                    roots.add(mCandidates.get(i));
+                }
+            }
+            final boolean finished = mPending == 0;
+            mCallbackExecutor.execute(new Runnable() {
+                @Override
+                public void run() {
+                    synchronized (Probe.this) {
+                        if (mCancelled) return;
+                    }
+                    mListener.onRoots(roots, finished);
+                }
+            });
+        }
+    }
+}
@@ -0,0 +1,151 @@
+package de.mxapplications.openfiledialog.core;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Bounded least-recently-used cache of thumbnails in memory, keyed by the absolute path of a file and the size of the thumbnail.
+ * <p>A thumbnail is stored together with the modification time and the size the file had when it was decoded, and is only returned
+ * as long as the file still has them. A caller that doesn't know them, e.g. because the folder has been listed without metadata,
+ * passes {@link DirectoryEntry#UNKNOWN} and gets the thumbnail that has been decoded last.</p>
+ * <p>The cache evicts the least recently used thumbnails when the memory of all thumbnails, as estimated by the caller, exceeds the
+ * maximum number of bytes. It is safe to use from several threads at once.</p>
+ *
+ * @param <T> The type of a thumbnail.
+ */
+public class ThumbnailCache<T> {
+    private final LinkedHashMap<String, CachedThumbnail<T>> mThumbnails = new LinkedHashMap<>(64, 0.75f, true);
+    private final long mMaxBytes;
+    private long mBytes = 0;
+    private long mHitCount = 0;
+    private long mMissCount = 0;
+    private long mEvictionCount = 0;
+
+    /***
+     * Constructs a ThumbnailCache.
+     * @param maxBytes The maximum estimated memory of all thumbnails that are kept, in bytes.
+     */
+    public ThumbnailCache(long maxBytes) {
+        if (maxBytes < 0) throw new IllegalArgumentException("maxBytes must not be negative");
+        this.mMaxBytes = maxBytes;
+    }
+
+    /***
+     * Returns the thumbnail of a file if it is cached and the file hasn't changed since it was decoded.
+     * @param path The absolute path of the file.
+     * @param targetSize The size the thumbnail has been decoded for, in pixels.
+     * @param lastModified The current modification time of the file, or {@link DirectoryEntry#UNKNOWN}.
+     * @param size The current size of the file, or {@link DirectoryEntry#UNKNOWN}.
+     * @return The thumbnail, or null if there is no valid thumbnail for the file.
+     */
+    public synchronized T get(String path, int targetSize, long lastModified, long size) {
+        String key = key(path, targetSize);
+        CachedThumbnail<T> thumbnail = mThumbnails.get(key);
+        if (thumbnail != null && ((lastModified != DirectoryEntry.UNKNOWN && thumbnail.mLastModified != lastModified)
+                || (size != DirectoryEntry.UNKNOWN && thumbnail.mSize != size))) {
+            remove(key);
+            thumbnail = null;
+        }
+        if (thumbnail == null) {
+            mMissCount++;
+            return null;
+        }
+        mHitCount++;
+        return thumbnail.mThumbnail;
+    }
+
+    /***
+     * Stores the thumbnail of a file. Thumbnails larger than the whole cache aren't stored.
+     * @param path The absolute path of the file.
+     * @param targetSize The size the thumbnail has been decoded for, in pixels.
+     * @param lastModified The modification time of the file when it was decoded.
+     * @param size The size of the file when it was decoded.
+     * @param thumbnail The thumbnail. It must not be modified anymore.
+     * @param estimatedBytes The estimated memory of the thumbnail, in bytes.
+     */
+    public synchronized void put(String path, int targetSize, long lastModified, long size, T thumbnail, long estimatedBytes) {
+        String key = key(path, targetSize);
+        remove(key);
+        if (estimatedBytes > mMaxBytes) return;
+        mThumbnails.put(key, new CachedThumbnail<>(lastModified, size, thumbnail, estimatedBytes));
+        mBytes += estimatedBytes;
+        Iterator<Map.Entry<String, CachedThumbnail<T>>> iterator = mThumbnails.entrySet().iterator();
+        while (mBytes > mMaxBytes && iterator.hasNext()) {
+            mBytes -= iterator.next().getValue().mEstimatedBytes;
+            iterator.remove();
+            mEvictionCount++;
+        }
+    }
+
+    /***
+     * Removes all thumbnails.
+     */
+    public synchronized void clear() {
+        mThumbnails.clear();
+        mBytes = 0;
+    }
+
+    /***
+     * Returns the number of thumbnails that are cached.
+     * @return The number of thumbnails.
+     */
+    public synchronized int size() {
+        return mThumbnails.size();
+    }
+
+    /***
+     * Returns the estimated memory of all thumbnails that are cached.
+     * @return The estimated memory in bytes.
+     */
+    public synchronized long getEstimatedBytes() {
+        return mBytes;
+    }
+
+    /***
+     * Returns how often a valid thumbnail has been found.
+     * @return The number of hits.
+     */
+    public synchronized long getHitCount() {
+        return mHitCount;
+    }
+
+    /***
+     * Returns how often no thumbnail or only an outdated one has been found.
+     * @return The number of misses.
+     */
+    public synchronized long getMissCount() {
+        return mMissCount;
+    }
+
+    /***
+     * Returns how many thumbnails have been evicted because the cache was full.
+     * @return The number of evictions.
+     */
+    public synchronized long getEvictionCount() {
+        return mEvictionCount;
+    }
+
+    private void remove(String key) {
+        CachedThumbnail<T> thumbnail = mThumbnails.remove(key);
+        if (thumbnail != null) mBytes -= thumbnail.mEstimatedBytes;
+    }
+
+    private static String key(String path, int targetSize) {
+        return targetSize + ":" + path;
+    }
+
+    private static class CachedThumbnail<T> {
+        final long mLastModified;
+        final long mSize;
+        final T mThumbnail;
+        final long mEstimatedBytes;
+
+        CachedThumbnail(long lastModified, long size, T thumbnail, long estimatedBytes) {
+            this.mLastModified = lastModified;
+            this.mSize = size;
+            this.mThumbnail = thumbnail;
+            this.mEstimatedBytes = estimatedBytes;
+        }
+    }
+}
@@ -0,0 +1,196 @@
+package de.mxapplications.openfiledialog.core;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.Executor;
+
+/**
+ * Decodes thumbnails of files in the background and delivers them on the callback executor (usually the UI thread).
+ * <p>Thumbnails are looked up in a {@link ThumbnailCache} in memory, then in an optional {@link DiskCache} whose entries are keyed by
+ * the path, the modification time and the size of the file, and only decoded by the {@link Decoder} if neither has them. A file
+ * whose modification time or size isn't known to the caller is read once on the background thread.</p>
+ * <p>The thumbnails are decoded by a {@link RequestQueue}: requests for the same thumbnail are merged, so a file is only decoded
+ * once however often its row is bound, the thumbnail that has been requested last is decoded first, and a thumbnail that nobody
+ * waits for anymore isn't decoded at all.</p>
+ * <p>This class is safe to use from several threads at once. A {@link Target} is called on the callback executor.</p>
+ *
+ * @param <T> The type of a thumbnail.
+ */
+public class ThumbnailLoader<T> {
+    private final Decoder<T> mDecoder;
+    private final ThumbnailCache<T> mCache;
+    private final DiskCache mDiskCache;
+    private final RequestQueue<T> mQueue;
+    private long mDecodedCount = 0;
+    private long mDiskHitCount = 0;
+
+    /***
+     * Constructs a ThumbnailLoader.
+     * @param decoder Decodes the thumbnails.
+     * @param cache The cache for the thumbnails in memory.
+     * @param diskCache The cache for the encoded thumbnails on disk, or null.
+     * @param backgroundExecutor The executor the thumbnails are decoded on.
+     * @param maxConcurrent The maximum number of thumbnails that are decoded at the same time, at least 1.
+     * @param callbackExecutor The executor the thumbnails are delivered on.
+     */
+    public ThumbnailLoader(Decoder<T> decoder, ThumbnailCache<T> cache, DiskCache diskCache, Executor backgroundExecutor, int maxConcurrent,
+                           Executor callbackExecutor) {
+        this.mDecoder = decoder;
+        this.mCache = cache;
+        this.mDiskCache = diskCache;
+        this.mQueue = new RequestQueue<>(backgroundExecutor, maxConcurrent, callbackExecutor);
+    }
+
+    /***
+     * Returns the thumbnail of a file if it is in memory, without decoding anything. Cheap enough for the UI thread.
+     * @param path The absolute path of the file.
+     * @param targetSize The size of the thumbnail, in pixels.
+     * @param lastModified The modification time of the file, or {@link DirectoryEntry#UNKNOWN}.
+     * @param size The size of the file, or {@link DirectoryEntry#UNKNOWN}.
+     * @return The thumbnail, or null if it has to be loaded.
+     */
+    public T getCached(String path, int targetSize, long lastModified, long size) {
+        return mCache.get(path, targetSize, lastModified, size);
+    }
+
+    /***
+     * Loads the thumbnail of a file in the background. Nothing is delivered if the file has no thumbnail.
+     * @param path The absolute path of the file.
+     * @param targetSize The size of the thumbnail, in pixels.
+     * @param lastModified The modification time of the file, or {@link DirectoryEntry#UNKNOWN}.
+     * @param size The size of the file, or {@link DirectoryEntry#UNKNOWN}.
+     * @param target Receives the thumbnail, unless the request is cancelled first.
+     * @return The request, to cancel it.
+     */
+    public RequestQueue<T>.Request load(final String path, final int targetSize, final long lastModified, final long size, final Target<T> target) {
+        return mQueue.submit(targetSize + ":" + path, new RequestQueue.Task<T>() {
+            @Override
+            public T run(Prefetcher.Cancellation cancellation) throws IOException {
+                return loadThumbnail(path, targetSize, lastModified, size);
+            }
+        }, new RequestQueue.Callback<T>() {
+            @Override
+            public void onResult(T thumbnail) {
+                target.onThumbnail(path, thumbnail);
+            }
+        });
+    }
+
+    /***
+     * Cancels all requests, e.g. when the dialog is closed.
+     */
+    public void cancelAll() {
+        mQueue.cancelAll();
+    }
+
+    /***
+     * Returns the number of thumbnails that are waiting to be decoded or are being decoded.
+     * @return The number of thumbnails.
+     */
+    public int getPendingCount() {
+        return mQueue.getPendingCount();
+    }
+
+    /***
+     * Returns how many thumbnails have been decoded from their files.
+     * @return The number of decoded thumbnails.
+     */
+    public synchronized long getDecodedCount() {
+        return mDecodedCount;
+    }
+
+    /***
+     * Returns how many thumbnails have been read from the DiskCache.
+     * @return The number of thumbnails read from disk.
+     */
+    public synchronized long getDiskHitCount() {
+        return mDiskHitCount;
+    }
+
+    private T loadThumbnail(String path, int targetSize, long lastModified, long size) throws IOException {
+        if (lastModified == DirectoryEntry.UNKNOWN || size == DirectoryEntry.UNKNOWN) {
+            File file = new File(path);
+            lastModified = file.lastModified();
+            size = file.length();
+            //The file has been removed
+            if (lastModified == 0) return null;
+        }
+        T thumbnail = mCache.get(path, targetSize, lastModified, size);
+        if (thumbnail != null) return thumbnail;
+
+        String diskKey = targetSize + ":" + lastModified + ":" + size + ":" + path;
+        byte[] data = mDiskCache != null ? mDiskCache.get(diskKey) : null;
+        if (data != null) {
+            thumbnail = mDecoder.decode(data);
+            if (thumbnail != null) {
+                synchronized (this) {
+                    mDiskHitCount++;
+                }
+            }
+        }
+        if (thumbnail == null) {
+            thumbnail = mDecoder.decode(path, targetSize);
+            if (thumbnail == null) return null;
+            synchronized (this) {
+                mDecodedCount++;
+            }
+            if (mDiskCache != null) {
+                byte[] encoded = mDecoder.encode(thumbnail);
+                if (encoded != null) mDiskCache.put(diskKey, encoded);
+            }
+        }
+        mCache.put(path, targetSize, lastModified, size, thumbnail, mDecoder.getByteCount(thumbnail));
+        return thumbnail;
+    }
+
+    /**
+     * Decodes thumbnails and converts them from and to the form they are stored in the {@link DiskCache}. Called on background threads.
+     *
+     * @param <T> The type of a thumbnail.
+     */
+    public interface Decoder<T> {
+        /***
+         * Decodes the thumbnail of a file.
+         * @param path The absolute path of the file.
+         * @param targetSize The size of the thumbnail, in pixels. The thumbnail should not be much larger.
+         * @return The thumbnail, or null if the file has none.
+         * @throws IOException If the file can't be read.
+         */
+        T decode(String path, int targetSize) throws IOException;
+
+        /***
+         * Decodes a thumbnail that has been encoded by {@link #encode(Object)}.
+         * @param data The encoded thumbnail.
+         * @return The thumbnail, or null if the data can't be decoded.
+         */
+        T decode(byte[] data);
+
+        /***
+         * Encodes a thumbnail for the DiskCache.
+         * @param thumbnail The thumbnail.
+         * @return The encoded thumbnail, or null if it can't be encoded.
+         */
+        byte[] encode(T thumbnail);
+
+        /***
+         * Estimates the memory a thumbnail occupies, for the {@link ThumbnailCache}.
+         * @param thumbnail The thumbnail.
+         * @return The estimated memory in bytes.
+         */
+        long getByteCount(T thumbnail);
+    }
+
+    /**
+     * Receives a thumbnail that has been loaded.
+     *
+     * @param <T> The type of a thumbnail.
+     */
+    public interface Target<T> {
+        /***
+         * Called on the callback executor when the thumbnail of a file has been loaded.
+         * @param path The absolute path of the file.
+         * @param thumbnail The thumbnail.
+         */
+        void onThumbnail(String path, T thumbnail);
+    }
+}
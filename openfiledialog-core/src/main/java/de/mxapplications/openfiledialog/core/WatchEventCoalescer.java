@@ -0,0 +1,141 @@
+package de.mxapplications.openfiledialog.core;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Listener of a {@link DirectoryWatcher} that collapses bursts of events into their net changes.
+ * <p>Events are collected until no event has arrived for the quiet period, or until the oldest collected event is older than
+ * the maximum delay, so that a steady stream of events is still reported regularly. All events about the same child are then
+ * reduced to a single change: a child that is created and deleted again isn't reported at all, a child that is deleted and
+ * created again (e.g. replaced by a rename) is reported as modified, and any number of modifications are reported once.</p>
+ */
+public class WatchEventCoalescer implements DirectoryWatcher.Listener {
+    /**
+     * The net change of a child.
+     */
+    public enum Change {
+        /** The child didn't exist before and exists now. */
+        ADDED,
+        /** The child existed before and doesn't exist anymore. */
+        REMOVED,
+        /** The child existed before and still exists, but has been modified or replaced. */
+        MODIFIED
+    }
+
+    private final ScheduledExecutorService mScheduler;
+    private final long mQuietMillis;
+    private final long mMaxDelayMillis;
+    private final Callback mCallback;
+    private final Runnable mFlushRunnable = new Runnable() {
+        @Override
+        public void run() {
+            flush();
+        }
+    };
+
+    private LinkedHashMap<String, boolean[]> mPending = new LinkedHashMap<>();
+    private boolean mOverflow = false;
+    private long mFirstEventNanos = 0;
+    private ScheduledFuture<?> mScheduledFlush = null;
+    private boolean mClosed = false;
+
+    /***
+     * Constructs a WatchEventCoalescer.
+     * @param scheduler The scheduler that delays the reports. The callback is called on its threads.
+     * @param quietMillis The time without events after which the collected events are reported.
+     * @param maxDelayMillis The maximum time an event is held back.
+     * @param callback The callback that receives the net changes.
+     */
+    public WatchEventCoalescer(ScheduledExecutorService scheduler, long quietMillis, long maxDelayMillis, Callback callback) {
+        this.mScheduler = scheduler;
+        this.mQuietMillis = quietMillis;
+        this.mMaxDelayMillis = Math.max(quietMillis, maxDelayMillis);
+        this.mCallback = callback;
+    }
+
+    @Override
+    public synchronized void onEvent(DirectoryWatcher.EventType type, String name) {
+        if (mClosed) return;
+        if (type == DirectoryWatcher.EventType.OVERFLOW) {
+            mOverflow = true;
+        } else {
+            //The state of a child is {existed before the first event, exists after the last event}
+            boolean[] state = mPending.get(name);
+            if (state == null) {
+                state = new boolean[]{type != DirectoryWatcher.EventType.CREATED, true};
+                mPending.put(name, state);
+            }
+            state[1] = type != DirectoryWatcher.EventType.DELETED;
+        }
+
+        long now = System.nanoTime();
+        if (mScheduledFlush == null) {
+            mFirstEventNanos = now;
+        } else {
+            mScheduledFlush.cancel(false);
+        }
+        long maxDelayLeft = mMaxDelayMillis - TimeUnit.NANOSECONDS.toMillis(now - mFirstEventNanos);
+        mScheduledFlush = mScheduler.schedule(mFlushRunnable, Math.max(0, Math.min(mQuietMillis, maxDelayLeft)),
+                TimeUnit.MILLISECONDS);
+    }
+
+    /***
+     * Reports the collected events right away instead of waiting for the quiet period.
+     */
+    public void flush() {
+        Map<String, Change> changes = new LinkedHashMap<>();
+        boolean overflow;
+        synchronized (this) {
+            if (mScheduledFlush != null) {
+                mScheduledFlush.cancel(false);
+                mScheduledFlush = null;
+            }
+            if (mClosed || (mPending.isEmpty() && !mOverflow)) return;
+            overflow = mOverflow;
+            if (!overflow) {
+                for (Map.Entry<String, boolean[]> entry : mPending.entrySet()) {
+                    boolean[] state = entry.getValue();
+                    if (state[0] && state[1]) {
+                        changes.put(entry.getKey(), Change.MODIFIED);
+                    } else if (state[0]) {
+                        changes.put(entry.getKey(), Change.REMOVED);
+                    } else if (state[1]) {
+                        changes.put(entry.getKey(), Change.ADDED);
+                    }
+                }
+            }
+            mPending = new LinkedHashMap<>();
+            mOverflow = false;
+        }
+        if (overflow || !changes.isEmpty()) mCallback.onChanges(changes, overflow);
+    }
+
+    /***
+     * Drops the collected events and ignores all further ones.
+     */
+    public synchronized void close() {
+        mClosed = true;
+        mPending.clear();
+        if (mScheduledFlush != null) {
+            mScheduledFlush.cancel(false);
+            mScheduledFlush = null;
+        }
+    }
+
+    /**
+     * Receives the net changes of the watched folder.
+     */
+    public interface Callback {
+        /***
+         * Called with the net changes of a burst of events.
+         * @param changes The net change of every child, by name, in the order the children have first been reported.
+         * @param overflow True if events have been lost, in which case the changes are empty and the folder has to be
+         *                 listed again.
+         */
+        void onChanges(Map<String, Change> changes, boolean overflow);
+    }
+}
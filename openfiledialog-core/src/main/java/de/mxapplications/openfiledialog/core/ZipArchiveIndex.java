@@ -0,0 +1,341 @@
+package de.mxapplications.openfiledialog.core;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Calendar;
+import java.util.GregorianCalendar;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The folder tree of a ZIP or JAR archive, read from its central directory without inflating any entry.
+ * <p>The central directory at the end of the archive is memory-mapped once and parsed into one {@link CompactListing} per folder,
+ * so listing a folder of the archive afterwards costs no access to the storage. Folders that the archive only contains
+ * implicitly, e.g. "a/b" of an entry "a/b/c.txt", are created. ZIP64 archives with more than 65535 entries or entries larger
+ * than 4 GB are supported, archives that span several files are not.</p>
+ * <p>Paths inside the archive are relative, separated by "/" and without a "/" at the start or the end; the root of the archive
+ * is "". Entries with ".." in their name are left out, so they can't point outside of the archive.</p>
+ */
+public final class ZipArchiveIndex {
+    private static final int END_SIGNATURE = 0x06054b50;
+    private static final int END_SIZE = 22;
+    private static final int ZIP64_LOCATOR_SIGNATURE = 0x07064b50;
+    private static final int ZIP64_LOCATOR_SIZE = 20;
+    private static final int ZIP64_END_SIGNATURE = 0x06064b50;
+    private static final int CENTRAL_HEADER_SIGNATURE = 0x02014b50;
+    private static final int CENTRAL_HEADER_SIZE = 46;
+    private static final int ZIP64_EXTRA_ID = 0x0001;
+    private static final long ZIP64_MAGIC = 0xFFFFFFFFL;
+    private static final int MAX_COMMENT_LENGTH = 0xFFFF;
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    private final String mArchivePath;
+    private final long mArchiveLastModified;
+    private final long mArchiveLength;
+    private final int mEntryCount;
+    private final Map<String, CompactListing> mFolders;
+
+    private ZipArchiveIndex(String archivePath, long archiveLastModified, long archiveLength, int entryCount, Map<String, CompactListing> folders) {
+        this.mArchivePath = archivePath;
+        this.mArchiveLastModified = archiveLastModified;
+        this.mArchiveLength = archiveLength;
+        this.mEntryCount = entryCount;
+        this.mFolders = folders;
+    }
+
+    /***
+     * Reads the central directory of an archive.
+     * @param archive The archive.
+     * @return The index.
+     * @throws IOException If the archive can't be read or isn't a ZIP archive.
+     */
+    public static ZipArchiveIndex read(File archive) throws IOException {
+        String archivePath = archive.getAbsolutePath();
+        long lastModified = archive.lastModified();
+        RandomAccessFile file = null;
+        try {
+            file = new RandomAccessFile(archive, "r");
+            FileChannel channel = file.getChannel();
+            long length = channel.size();
+            long[] centralDirectory = findCentralDirectory(channel, length);
+            long offset = centralDirectory[0];
+            long size = centralDirectory[1];
+            if (offset < 0 || size < 0 || offset + size > length || size > Integer.MAX_VALUE) {
+                throw new IOException("Invalid central directory in " + archivePath);
+            }
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, offset, size);
+            buffer.order(ByteOrder.LITTLE_ENDIAN);
+            return new Parser(archivePath, lastModified).parse(buffer, length);
+        } finally {
+            close(file);
+        }
+    }
+
+    /***
+     * Returns the absolute path of the archive.
+     * @return The path.
+     */
+    public String getArchivePath() {
+        return mArchivePath;
+    }
+
+    /***
+     * Returns the time the archive had been modified when it was read.
+     * @return The time in milliseconds since the epoch.
+     */
+    public long getArchiveLastModified() {
+        return mArchiveLastModified;
+    }
+
+    /***
+     * Returns if the index still describes the archive, i.e. it has neither been modified nor changed its size since it was read.
+     * @param archive The archive.
+     * @return True if the index is still valid.
+     */
+    public boolean isCurrent(File archive) {
+        return archive.lastModified() == mArchiveLastModified && archive.length() == mArchiveLength;
+    }
+
+    /***
+     * Returns the number of files and folders the central directory lists.
+     * @return The number of entries, without the folders that are only contained implicitly.
+     */
+    public int getEntryCount() {
+        return mEntryCount;
+    }
+
+    /***
+     * Returns the number of folders in the archive, including the root.
+     * @return The number of folders.
+     */
+    public int getFolderCount() {
+        return mFolders.size();
+    }
+
+    /***
+     * Returns the children of a folder in the archive, unsorted. The parent path of the listing is the path of the archive
+     * followed by the path of the folder, so {@link CompactListing#getPath(int)} returns paths that
+     * {@link ArchiveDirectoryLister} can list and open.
+     * @param folder The path of the folder inside the archive, "" for the root.
+     * @return The children, or null if there is no such folder.
+     */
+    public CompactListing getFolder(String folder) {
+        return mFolders.get(folder);
+    }
+
+    /***
+     * Returns where the central directory is: its offset and size, from the end of central directory record and, if it
+     * has been written, the ZIP64 one before it.
+     */
+    private static long[] findCentralDirectory(FileChannel channel, long length) throws IOException {
+        int tailLength = (int) Math.min(length, END_SIZE + MAX_COMMENT_LENGTH + ZIP64_LOCATOR_SIZE);
+        if (tailLength < END_SIZE) throw new IOException("Not a ZIP archive");
+        long tailOffset = length - tailLength;
+        MappedByteBuffer tail = channel.map(FileChannel.MapMode.READ_ONLY, tailOffset, tailLength);
+        tail.order(ByteOrder.LITTLE_ENDIAN);
+        //The record is at the end, only followed by the comment
+        int end = -1;
+        for (int position = tailLength - END_SIZE; position >= 0; position--) {
+            if (tail.getInt(position) == END_SIGNATURE && position + END_SIZE + (tail.getShort(position + 20) & 0xFFFF) == tailLength) {
+                end = position;
+                break;
+            }
+        }
+        if (end < 0) throw new IOException("Not a ZIP archive");
+        long size = tail.getInt(end + 12) & ZIP64_MAGIC;
+        long offset = tail.getInt(end + 16) & ZIP64_MAGIC;
+        int locator = end - ZIP64_LOCATOR_SIZE;
+        if (locator >= 0 && tail.getInt(locator) == ZIP64_LOCATOR_SIGNATURE) {
+            long zip64EndOffset = tail.getLong(locator + 8);
+            if (zip64EndOffset < 0 || zip64EndOffset + 56 > length) throw new IOException("Invalid ZIP64 record");
+            MappedByteBuffer zip64End = channel.map(FileChannel.MapMode.READ_ONLY, zip64EndOffset, 56);
+            zip64End.order(ByteOrder.LITTLE_ENDIAN);
+            if (zip64End.getInt(0) != ZIP64_END_SIGNATURE) throw new IOException("Invalid ZIP64 record");
+            size = zip64End.getLong(40);
+            offset = zip64End.getLong(48);
+        }
+        return new long[]{offset, size};
+    }
+
+    private static void close(Closeable closeable) {
+        if (closeable == null) return;
+        try {
+            closeable.close();
+        } catch (IOException e) {
+            //The mapping stays valid without the file
+        }
+    }
+
+    /**
+     * Turns the entries of the central directory into the listings of the folders, in two passes: the first one collects the
+     * files and the folders with their modification times, the second one adds every child to its parent.
+     */
+    private static final class Parser {
+        private final String mArchivePath;
+        private final long mArchiveLastModified;
+        private final GregorianCalendar mCalendar = new GregorianCalendar();
+        private int mLastDosTime = -1;
+        private long mLastTime;
+        private char[] mChars = new char[256];
+
+        //The modification time of every folder, the one of the archive for the folders that have no entry of their own
+        private final Map<String, Long> mFolderTimes = new HashMap<>();
+        private final List<String> mFileFolders = new ArrayList<>();
+        private final List<String> mFileNames = new ArrayList<>();
+        private long[] mFileSizes = new long[64];
+        private long[] mFileTimes = new long[64];
+
+        Parser(String archivePath, long archiveLastModified) {
+            this.mArchivePath = archivePath;
+            this.mArchiveLastModified = archiveLastModified;
+            mFolderTimes.put("", archiveLastModified);
+        }
+
+        ZipArchiveIndex parse(MappedByteBuffer buffer, long archiveLength) throws IOException {
+            int entryCount = 0;
+            int position = 0;
+            int limit = buffer.limit();
+            while (position + CENTRAL_HEADER_SIZE <= limit && buffer.getInt(position) == CENTRAL_HEADER_SIGNATURE) {
+                int flags = buffer.getShort(position + 8) & 0xFFFF;
+                int dosTime = buffer.getInt(position + 12);
+                long size = buffer.getInt(position + 24) & ZIP64_MAGIC;
+                int nameLength = buffer.getShort(position + 28) & 0xFFFF;
+                int extraLength = buffer.getShort(position + 30) & 0xFFFF;
+                int commentLength = buffer.getShort(position + 32) & 0xFFFF;
+                int namePosition = position + CENTRAL_HEADER_SIZE;
+                int next = namePosition + nameLength + extraLength + commentLength;
+                if (next > limit) throw new IOException("Truncated central directory in " + mArchivePath);
+                if (size == ZIP64_MAGIC) {
+                    size = readZip64Size(buffer, namePosition + nameLength, extraLength);
+                }
+                //Bit 11 marks UTF-8 names, the others are decoded as UTF-8 as well, like java.util.zip does
+                add(decodeName(buffer, namePosition, nameLength, (flags & 0x800) != 0), size, toMillis(dosTime));
+                entryCount++;
+                position = next;
+            }
+            return new ZipArchiveIndex(mArchivePath, mArchiveLastModified, archiveLength, entryCount, build());
+        }
+
+        private void add(String name, long size, long time) {
+            boolean isDirectory = name.endsWith("/");
+            int start = 0;
+            int end = name.length();
+            while (start < end && name.charAt(start) == '/') start++;
+            while (end > start && name.charAt(end - 1) == '/') end--;
+            if (start == end) return;
+            String path = start == 0 && end == name.length() ? name : name.substring(start, end);
+            if (!isSafe(path)) return;
+            if (isDirectory) {
+                mFolderTimes.put(path, time);
+                addParents(path);
+                return;
+            }
+            int separator = path.lastIndexOf('/');
+            String folder = separator < 0 ? "" : path.substring(0, separator);
+            addParents(path);
+            int file = mFileNames.size();
+            if (file == mFileSizes.length) {
+                mFileSizes = Arrays.copyOf(mFileSizes, file * 2);
+                mFileTimes = Arrays.copyOf(mFileTimes, file * 2);
+            }
+            mFileFolders.add(folder);
+            mFileNames.add(separator < 0 ? path : path.substring(separator + 1));
+            mFileSizes[file] = size;
+            mFileTimes[file] = time;
+        }
+
+        private void addParents(String path) {
+            int separator = path.lastIndexOf('/');
+            while (separator > 0) {
+                String parent = path.substring(0, separator);
+                if (mFolderTimes.containsKey(parent)) return;
+                mFolderTimes.put(parent, mArchiveLastModified);
+                separator = parent.lastIndexOf('/');
+            }
+        }
+
+        private Map<String, CompactListing> build() {
+            Map<String, CompactListing.Builder> builders = new HashMap<>(mFolderTimes.size() * 2);
+            for (String folder : mFolderTimes.keySet()) {
+                builders.put(folder, new CompactListing.Builder(folder.isEmpty() ? mArchivePath : mArchivePath + "/" + folder, 8));
+            }
+            for (Map.Entry<String, Long> folder : mFolderTimes.entrySet()) {
+                String path = folder.getKey();
+                if (path.isEmpty()) continue;
+                int separator = path.lastIndexOf('/');
+                builders.get(separator < 0 ? "" : path.substring(0, separator))
+                        .add(path.substring(separator + 1), true, DirectoryEntry.UNKNOWN, folder.getValue());
+            }
+            for (int file = 0; file < mFileNames.size(); file++) {
+                builders.get(mFileFolders.get(file)).add(mFileNames.get(file), false, mFileSizes[file], mFileTimes[file]);
+            }
+            Map<String, CompactListing> folders = new HashMap<>(builders.size() * 2);
+            for (Map.Entry<String, CompactListing.Builder> builder : builders.entrySet()) {
+                folders.put(builder.getKey(), builder.getValue().build());
+            }
+            return folders;
+        }
+
+        private String decodeName(MappedByteBuffer buffer, int position, int length, boolean utf8) {
+            if (mChars.length < length) mChars = new char[Math.max(length, mChars.length * 2)];
+            //Most names are ASCII, they are copied without a decoder
+            for (int i = 0; i < length; i++) {
+                byte b = buffer.get(position + i);
+                if (b < 0) {
+                    byte[] bytes = new byte[length];
+                    for (int j = 0; j < length; j++) {
+                        bytes[j] = buffer.get(position + j);
+                    }
+                    return new String(bytes, UTF_8);
+                }
+                mChars[i] = (char) b;
+            }
+            return new String(mChars, 0, length);
+        }
+
+        private long readZip64Size(MappedByteBuffer buffer, int position, int length) throws IOException {
+            int end = position + length;
+            while (position + 4 <= end) {
+                int id = buffer.getShort(position) & 0xFFFF;
+                int size = buffer.getShort(position + 2) & 0xFFFF;
+                //The uncompressed size is the first field of the ZIP64 extra field
+                if (id == ZIP64_EXTRA_ID && size >= 8) return buffer.getLong(position + 4);
+                position += 4 + size;
+            }
+            throw new IOException("Missing ZIP64 size in " + mArchivePath);
+        }
+
+        //MS-DOS time and date in local time, the date in the upper half
+        private long toMillis(int dosTime) {
+            if (dosTime == mLastDosTime) return mLastTime;
+            mCalendar.clear();
+            mCalendar.set(((dosTime >> 25) & 0x7F) + 1980, ((dosTime >> 21) & 0x0F) - 1, (dosTime >> 16) & 0x1F,
+                    (dosTime >> 11) & 0x1F, (dosTime >> 5) & 0x3F, (dosTime & 0x1F) * 2);
+            mCalendar.set(Calendar.MILLISECOND, 0);
+            mLastDosTime = dosTime;
+            mLastTime = mCalendar.getTimeInMillis();
+            return mLastTime;
+        }
+
+        private static boolean isSafe(String path) {
+            int start = 0;
+            while (start <= path.length()) {
+                int end = path.indexOf('/', start);
+                if (end < 0) end = path.length();
+                int length = end - start;
+                if (length == 0 || (path.charAt(start) == '.' && (length == 1 || (length == 2 && path.charAt(start + 1) == '.')))) return false;
+                start = end + 1;
+            }
+            return true;
+        }
+    }
+}
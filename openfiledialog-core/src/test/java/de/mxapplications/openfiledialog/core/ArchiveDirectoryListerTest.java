@@ -0,0 +1,128 @@
+package de.mxapplications.openfiledialog.core;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.GregorianCalendar;
+import java.util.List;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+import static org.junit.Assert.*;
+
+public class ArchiveDirectoryListerTest {
+    private static final long TIME = new GregorianCalendar(2019, 4, 17, 10, 30, 42).getTimeInMillis();
+
+    @Rule
+    public TemporaryFolder mFolder = new TemporaryFolder();
+
+    @Test
+    public void archivesAreBrowsedLikeFolders() throws IOException {
+        File root = mFolder.getRoot();
+        File archive = new File(root, "docs.zip");
+        try (ZipOutputStream zip = new ZipOutputStream(new FileOutputStream(archive))) {
+            addEntry(zip, "readme.txt", "Read me");
+            addEntry(zip, "a/b/c.txt", "Nested");
+            addEntry(zip, "empty/", null);
+            addEntry(zip, "../outside.txt", "Skipped");
+        }
+        assertTrue(new File(root, "plain.txt").createNewFile());
+        assertTrue(new File(root, ".hidden").createNewFile());
+        ArchiveDirectoryLister lister = new ArchiveDirectoryLister(new FileDirectoryLister(), 4);
+
+        assertEquals("[docs.zip/, plain.txt]", list(lister, root.getAbsolutePath(), EntryFilter.DEFAULT).toString());
+        //Archives stay visible like folders when only other files are shown
+        EntryFilter csvOnly = new EntryFilter.Builder().addExtensions("csv").build();
+        assertEquals("[docs.zip/]", list(lister, root.getAbsolutePath(), csvOnly).toString());
+        //The other children are still checked by name first: the hidden one costs no stat, the text file only the one for its type
+        SlowDirectoryLister slowLister = new SlowDirectoryLister(new FileDirectoryLister());
+        assertEquals("[docs.zip/]", list(new ArchiveDirectoryLister(slowLister, 4), root.getAbsolutePath(), csvOnly).toString());
+        assertEquals(2 + 1, slowLister.getStatCount());
+
+        String archivePath = archive.getAbsolutePath();
+        assertEquals("[a/, empty/, readme.txt]", list(lister, archivePath, EntryFilter.DEFAULT).toString());
+        assertEquals("[b/]", list(lister, archivePath + "/a", EntryFilter.DEFAULT).toString());
+        assertEquals("[]", list(lister, archivePath + "/empty", EntryFilter.DEFAULT).toString());
+        assertFalse(lister.list(archivePath + "/missing", false, new DirectoryLister.Visitor() {
+            @Override
+            public boolean visit(DirectoryEntry entry) {
+                return true;
+            }
+        }));
+
+        DirectoryEntry nested = lister.getEntry(archivePath + "/a/b", "c.txt", true);
+        assertEquals(6, nested.getSize());
+        assertEquals(TIME, nested.getLastModified());
+        assertTrue(lister.getEntry(root.getAbsolutePath(), "docs.zip", false).isDirectory());
+        assertEquals(archive.lastModified(), lister.getLastModified(archivePath + "/a"));
+
+        try (InputStream in = ArchiveDirectoryLister.openStream(archivePath + "/a/b/c.txt")) {
+            byte[] buffer = new byte[16];
+            assertEquals(6, in.read(buffer));
+            assertEquals("Nested", new String(buffer, 0, 6, "UTF-8"));
+        }
+    }
+
+    @Test
+    public void indexOf200kEntriesIsBuiltQuickly() throws IOException {
+        File archive = mFolder.newFile("large.zip");
+        int folders = 1000;
+        int filesPerFolder = 200;
+        try (ZipOutputStream zip = new ZipOutputStream(new BufferedOutputStream(new FileOutputStream(archive), 1 << 16))) {
+            zip.setLevel(0);
+            for (int folder = 0; folder < folders; folder++) {
+                for (int file = 0; file < filesPerFolder; file++) {
+                    addEntry(zip, "data/d" + folder + "/f" + file + ".bin", null);
+                }
+            }
+        }
+
+        //The first read also pays for loading the classes
+        ZipArchiveIndex.read(archive);
+        long start = System.nanoTime();
+        ZipArchiveIndex index = ZipArchiveIndex.read(archive);
+        long millis = (System.nanoTime() - start) / 1000000;
+
+        //More than 65535 entries, the counts are read from the ZIP64 record
+        assertEquals(folders * filesPerFolder, index.getEntryCount());
+        assertEquals(folders + 2, index.getFolderCount());
+        assertEquals(folders, index.getFolder("data").size());
+        assertEquals(filesPerFolder, index.getFolder("data/d999").size());
+        assertEquals(archive.getAbsolutePath() + "/data/d999", index.getFolder("data/d999").getParentPath());
+        assertTrue("Building the index took " + millis + " ms", millis < 3000);
+    }
+
+    private static void addEntry(ZipOutputStream zip, String name, String content) throws IOException {
+        ZipEntry entry = new ZipEntry(name);
+        entry.setTime(TIME);
+        zip.putNextEntry(entry);
+        if (content != null) zip.write(content.getBytes("UTF-8"));
+        zip.closeEntry();
+    }
+
+    private static List<String> list(DirectoryLister lister, String path, final EntryFilter filter) {
+        final List<String> entries = new ArrayList<>();
+        assertTrue(lister.list(path, true, new DirectoryLister.FilteringVisitor() {
+            @Override
+            public EntryFilter getFilter() {
+                return filter;
+            }
+
+            @Override
+            public boolean visit(DirectoryEntry entry) {
+                if (filter.accept(entry)) entries.add(entry.toString());
+                return true;
+            }
+        }));
+        Collections.sort(entries);
+        return entries;
+    }
+}
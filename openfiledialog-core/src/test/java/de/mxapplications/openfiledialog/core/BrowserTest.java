@@ -0,0 +1,409 @@
+package de.mxapplications.openfiledialog.core;
+
+import org.junit.After;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+public class BrowserTest {
+    private final ExecutorService mBackgroundExecutor = Executors.newFixedThreadPool(4);
+    private final ExecutorService mCallbackExecutor = Executors.newSingleThreadExecutor();
+
+    @After
+    public void shutDown() throws InterruptedException {
+        //Loads that are given up still post to the callback thread, so it's shut down last
+        mBackgroundExecutor.shutdownNow();
+        mBackgroundExecutor.awaitTermination(5, TimeUnit.SECONDS);
+        mCallbackExecutor.shutdownNow();
+    }
+
+    @Test
+    public void pathsAreSplitAndJoinedWithoutTheFileSystem() {
+        assertEquals("/sdcard", BrowserPaths.parentPath("/sdcard/Music"));
+        assertEquals("/", BrowserPaths.parentPath("/sdcard"));
+        assertNull(BrowserPaths.parentPath("/"));
+        assertNull(BrowserPaths.parentPath("relative"));
+        assertEquals("/sdcard/Music", BrowserPaths.childPath("/sdcard", "Music"));
+        assertEquals("/sdcard", BrowserPaths.childPath("/", "sdcard"));
+        assertEquals("Music", BrowserPaths.name("/sdcard/Music"));
+        assertEquals("/sdcard/Music", BrowserPaths.normalize("//sdcard/./Download/../Music/"));
+        assertEquals("/", BrowserPaths.normalize("/sdcard/../.."));
+    }
+
+    @Test
+    public void historyFollowsTheNavigation() {
+        Browser browser = new Browser(new SyntheticDirectoryLister("/r", 3, 2, 2), mBackgroundExecutor, mCallbackExecutor, "/r/");
+        assertEquals("/r", browser.getPath());
+        assertFalse(browser.canNavigateBack());
+        assertTrue(browser.navigateToChild("d1"));
+        assertTrue(browser.navigateToChild("d2"));
+        assertFalse(browser.navigateToChild("."));
+        assertEquals("/r/d1/d2", browser.getPath());
+        assertEquals(Arrays.asList("/r/d1", "/r"), browser.getBackHistory());
+
+        assertTrue(browser.navigateBack());
+        assertTrue(browser.navigateBack());
+        assertFalse(browser.navigateBack());
+        assertEquals("/r", browser.getPath());
+        assertTrue(browser.navigateForward());
+        assertEquals("/r/d1", browser.getPath());
+        //A new way drops the folders ahead
+        assertTrue(browser.navigateUp());
+        assertFalse(browser.canNavigateForward());
+        assertEquals("/r", browser.getPath());
+        assertTrue(browser.navigateUp());
+        assertEquals("/", browser.getPath());
+        assertFalse(browser.navigateUp());
+
+        browser.reset("/r");
+        assertFalse(browser.canNavigateBack());
+        //The oldest folders are dropped
+        Browser shortHistory = new Browser(new SyntheticDirectoryLister("/r", 3, 2, 2), mBackgroundExecutor, mCallbackExecutor, "/r", 2);
+        shortHistory.navigateToChild("d0");
+        shortHistory.navigateToChild("d0");
+        shortHistory.navigateUp();
+        assertEquals(Arrays.asList("/r/d0/d0", "/r/d0"), shortHistory.getBackHistory());
+    }
+
+    @Test
+    public void listingsAreFilteredAndSorted() {
+        Browser browser = new Browser(new SyntheticDirectoryLister("/r", 3, 12, 1), mBackgroundExecutor, mCallbackExecutor, "/r");
+        browser.setSortOrder(new SortOrder(SortOrder.Mode.NATURAL, true, true));
+        browser.setEntryFilter(new EntryFilter.Builder().setShowHidden(true).build());
+        CompactListing listing = browser.list();
+        assertEquals(3 + 12 + 1, listing.size());
+        //Folders first, descending, numbers by their value
+        assertEquals("d2", listing.getName(0));
+        assertEquals("f11.txt", listing.getName(3));
+        assertEquals("f10.txt", listing.getName(4));
+
+        List<String> names = new ArrayList<>();
+        browser.setEntryFilter(new EntryFilter.Builder().addExtensions("txt").build());
+        for (DirectoryEntry entry : browser) {
+            names.add(entry.getName());
+        }
+        assertEquals(3 + 12, names.size());
+        assertFalse(names.contains(".hidden"));
+
+        browser.navigateTo("/missing");
+        assertNull(browser.list());
+        assertFalse(browser.iterator().hasNext());
+    }
+
+    @Test
+    public void concurrentNavigationsAreEachRecordedOnce() throws InterruptedException {
+        final Browser browser = new Browser(new SyntheticDirectoryLister("/r", 3, 2, 2), mBackgroundExecutor, mCallbackExecutor, "/r", 10000);
+        final int threads = 8;
+        final int navigationsPerThread = 500;
+        final CountDownLatch start = new CountDownLatch(1);
+        final CountDownLatch done = new CountDownLatch(threads);
+        for (int t = 0; t < threads; t++) {
+            final int thread = t;
+            new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        start.await();
+                        for (int i = 0; i < navigationsPerThread; i++) {
+                            //Distinct folders, so no navigation is a no-op
+                            browser.navigateTo("/t" + thread + "/" + i);
+                            browser.getSelection().setSelected("/t" + thread + "/f" + i, true);
+                        }
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    } finally {
+                        done.countDown();
+                    }
+                }
+            }).start();
+        }
+        start.countDown();
+        assertTrue(done.await(30, TimeUnit.SECONDS));
+
+        List<String> history = browser.getBackHistory();
+        assertEquals(threads * navigationsPerThread, history.size());
+        Set<String> visited = new HashSet<>(history);
+        visited.add(browser.getPath());
+        assertTrue(visited.remove("/r"));
+        assertEquals(threads * navigationsPerThread, visited.size());
+        //Every thread's folders are in its own order
+        for (int t = 0; t < threads; t++) {
+            List<String> own = new ArrayList<>();
+            for (String path : history) {
+                if (path.startsWith("/t" + t + "/")) own.add(path);
+            }
+            Collections.reverse(own);
+            for (int i = 1; i < own.size(); i++) {
+                assertTrue(Integer.parseInt(BrowserPaths.name(own.get(i))) > Integer.parseInt(BrowserPaths.name(own.get(i - 1))));
+            }
+        }
+        assertEquals(threads, browser.getSelection().getFolders().size());
+    }
+
+    @Test
+    public void listingsGoThroughTheListingCache() {
+        SlowDirectoryLister lister = new SlowDirectoryLister(new SyntheticDirectoryLister("/r", 3, 12, 1));
+        Browser browser = new Browser(lister, mBackgroundExecutor, mCallbackExecutor, "/r");
+        browser.setListingCache(new ListingCache<DirectoryLoader.Listing>(8, 1024 * 1024));
+        CompactListing listed = browser.list();
+        assertEquals(3 + 12, listed.size());
+        assertSame(listed, browser.list());
+        //Another order is sorted from the cached listing
+        browser.setSortOrder(new SortOrder(SortOrder.Mode.NATURAL, true, true));
+        assertEquals("d2", browser.list().getName(0));
+        assertEquals(1, lister.getListingCount());
+
+        browser.setListingCache(null);
+        assertEquals(3 + 12, browser.list().size());
+        assertEquals(2, lister.getListingCount());
+    }
+
+    @Test
+    public void onlyTheLastLoadIsDelivered() throws Exception {
+        final CountDownLatch release = new CountDownLatch(1);
+        DirectoryLister slowLister = new SyntheticDirectoryLister("/r", 3, 20, 3) {
+            @Override
+            public boolean list(String path, boolean readMetadata, Visitor visitor) {
+                try {
+                    release.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                return super.list(path, readMetadata, visitor);
+            }
+        };
+        final Browser browser = new Browser(slowLister, mBackgroundExecutor, mCallbackExecutor, "/r");
+        final AtomicInteger deliveries = new AtomicInteger();
+        final List<String> deliveredPaths = Collections.synchronizedList(new ArrayList<String>());
+        final CountDownLatch delivered = new CountDownLatch(1);
+        final DirectoryLoader.Listener listener = new DirectoryLoader.Listener() {
+            @Override
+            public void onBatch(String path, List<FileItem> children, List<int[]> insertedRanges, boolean finished) {
+                deliveries.incrementAndGet();
+                deliveredPaths.add(path);
+                assertEquals(3 + 20, children.size());
+                delivered.countDown();
+            }
+        };
+        //Loads are started on the thread they are delivered on, like the UI thread of the dialog
+        onCallbackThread(new Callable<Void>() {
+            @Override
+            public Void call() {
+                browser.load(null, listener);
+                browser.navigateToChild("d0");
+                browser.load(null, listener);
+                browser.load(null, listener);
+                browser.cancelLoad();
+                browser.navigateToChild("d1");
+                browser.load(null, listener);
+                return null;
+            }
+        });
+        release.countDown();
+
+        assertTrue(delivered.await(5, TimeUnit.SECONDS));
+        //Give the dropped loads the time to show up if they weren't dropped
+        mBackgroundExecutor.shutdown();
+        assertTrue(mBackgroundExecutor.awaitTermination(5, TimeUnit.SECONDS));
+        mCallbackExecutor.shutdown();
+        assertTrue(mCallbackExecutor.awaitTermination(5, TimeUnit.SECONDS));
+        assertEquals(1, deliveries.get());
+        assertEquals(Arrays.asList("/r/d0/d1"), deliveredPaths);
+    }
+
+    @Test
+    public void navigatingAwayDropsTheLoad() throws Exception {
+        final CountDownLatch release = new CountDownLatch(1);
+        SlowDirectoryLister slowLister = new SlowDirectoryLister(new SyntheticDirectoryLister("/r", 3, 2000, 1) {
+            @Override
+            public boolean list(String path, boolean readMetadata, Visitor visitor) {
+                try {
+                    release.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                return super.list(path, readMetadata, visitor);
+            }
+        });
+        final Browser browser = new Browser(slowLister, mBackgroundExecutor, mCallbackExecutor, "/r");
+        final AtomicInteger deliveries = new AtomicInteger();
+        onCallbackThread(new Callable<Void>() {
+            @Override
+            public Void call() {
+                browser.load(null, new DirectoryLoader.Listener() {
+                    @Override
+                    public void onBatch(String path, List<FileItem> children, List<int[]> insertedRanges, boolean finished) {
+                        deliveries.incrementAndGet();
+                    }
+                });
+                return null;
+            }
+        });
+        //From another thread, without starting a load
+        browser.navigateToChild("d0");
+        release.countDown();
+
+        mBackgroundExecutor.shutdown();
+        assertTrue(mBackgroundExecutor.awaitTermination(5, TimeUnit.SECONDS));
+        boolean loading = onCallbackThread(new Callable<Boolean>() {
+            @Override
+            public Boolean call() {
+                return browser.isLoading();
+            }
+        });
+        assertFalse(loading);
+        assertEquals(0, deliveries.get());
+        //The listing has stopped at the first child
+        assertTrue("The listing cost " + slowLister.getStatCount() + " stats", slowLister.getStatCount() < 10);
+    }
+
+    @Test
+    public void watchedChangesAreMergedRowByRow() {
+        Browser browser = new Browser(new SyntheticDirectoryLister("/r", 3, 12, 1), mBackgroundExecutor, mCallbackExecutor, "/r");
+        SortOrder bySize = new SortOrder(SortOrder.Mode.SIZE, false, false);
+        browser.setSortOrder(bySize);
+        List<FileItem> rows = new ArrayList<>(Arrays.asList(new FileItem("..", true), file("a", 10, bySize), file("b", 20, bySize),
+                file("c", 30, bySize), file("d", 40, bySize)));
+        browser.addChanges(Collections.singletonList(file("e", 1, bySize)), Collections.singletonList("/r/b"));
+        //A later change of the same child replaces the earlier one
+        browser.addChanges(Arrays.asList(file("e", 25, bySize), file("a", 35, bySize)), Collections.<String>emptyList());
+        assertTrue(browser.hasChanges());
+
+        final List<String> updates = new ArrayList<>();
+        assertTrue(browser.applyChanges(rows, 1, new Browser.ChangeCallback() {
+            @Override
+            public void onMoved(int fromPosition, int toPosition) {
+                updates.add("moved " + fromPosition + " " + toPosition);
+            }
+
+            @Override
+            public void onInserted(int position, int count) {
+                updates.add("inserted " + position);
+            }
+
+            @Override
+            public void onRemoved(int position, int count) {
+                updates.add("removed " + position);
+            }
+
+            @Override
+            public void onChanged(int position, int count) {
+                updates.add("changed " + position);
+            }
+        }));
+        assertEquals(Arrays.asList("removed 2", "inserted 2", "moved 1 3", "changed 3"), updates);
+        List<String> names = new ArrayList<>();
+        for (FileItem row : rows) {
+            names.add(row.name + (row.isDirectory ? "" : ":" + row.size));
+        }
+        assertEquals(Arrays.asList("..", "e:25", "c:30", "a:35", "d:40"), names);
+        assertFalse(browser.hasChanges());
+
+        //A paged listing can't be changed row by row, it has to be loaded again
+        browser.addChanges(Collections.<FileItem>emptyList(), Collections.singletonList("/r/f0.txt"));
+        CompactFileList paged = new CompactFileList(browser.list(), bySize);
+        assertFalse(browser.applyChanges(paged, 0, null));
+        assertFalse(browser.hasChanges());
+        assertEquals(3 + 12, paged.size());
+    }
+
+    @Test
+    public void rangesAreSelectedFromTheLastSelectedFile() {
+        Browser browser = new Browser(new SyntheticDirectoryLister("/r", 3, 12, 1), mBackgroundExecutor, mCallbackExecutor, "/r");
+        List<FileItem> rows = Arrays.asList(new FileItem("..", true), file("a", 1, SortOrder.DEFAULT),
+                FileItem.create("/r", "b", true, DirectoryEntry.UNKNOWN, DirectoryEntry.UNKNOWN, SortOrder.DEFAULT), file("c", 1, SortOrder.DEFAULT),
+                file("d", 1, SortOrder.DEFAULT));
+        SelectionSet selection = browser.getSelection();
+        //Nothing has been selected yet, so the file is toggled
+        assertArrayEquals(new int[]{3, 3}, browser.selectRange(rows, 3));
+        assertTrue(selection.isSelected("/r/c"));
+        assertEquals("/r/c", browser.getSelectionAnchor());
+        //Upwards, skipping the folder, then downwards from the file that has been pressed last
+        assertArrayEquals(new int[]{1, 3}, browser.selectRange(rows, 1));
+        assertTrue(selection.isSelected("/r/a"));
+        assertFalse(selection.isSelected("/r/b"));
+        assertArrayEquals(new int[]{1, 4}, browser.selectRange(rows, 4));
+        assertTrue(selection.isSelected("/r/d"));
+        assertFalse(browser.toggleSelected("/r/a"));
+
+        //The rows of a paged listing are selected by their names: "..", d0 to d2, f0.txt, f1.txt, f10.txt, f11.txt, f2.txt
+        browser.clearSelection();
+        assertNull(browser.getSelectionAnchor());
+        CompactFileList paged = new CompactFileList(new FileItem("..", true), browser.list(), SortOrder.DEFAULT);
+        assertTrue(browser.toggleSelected(paged.get(8).absolutePath));
+        assertArrayEquals(new int[]{4, 8}, browser.selectRange(paged, 4));
+        for (int i = 0; i < paged.size(); i++) {
+            assertEquals(paged.get(i).name, i >= 4 && i <= 8, selection.isSelected(paged.get(i).absolutePath));
+        }
+        //A file of another folder isn't among the rows
+        browser.toggleSelected("/r/d0/f0.txt");
+        assertArrayEquals(new int[]{9, 9}, browser.selectRange(paged, 9));
+        assertTrue(selection.isSelected(paged.get(9).absolutePath));
+        assertFalse(selection.isSelected(paged.get(10).absolutePath));
+    }
+
+    @Test
+    public void searchResultsAndStorageRootsAreShownUntilTheNextLoad() throws Exception {
+        final ForkJoinPool pool = new ForkJoinPool(2);
+        final Browser browser = new Browser(new SyntheticDirectoryLister("/r", 3, 12, 2), mBackgroundExecutor, mCallbackExecutor, "/r");
+        final DirectoryLoader.Listener listener = new DirectoryLoader.Listener() {
+            @Override
+            public void onBatch(String path, List<FileItem> children, List<int[]> insertedRanges, boolean finished) {
+            }
+        };
+        try {
+            onCallbackThread(new Callable<Void>() {
+                @Override
+                public Void call() {
+                    browser.search("/r", "f1", 2, 100, new DirectoryWalker(new SyntheticDirectoryLister("/r", 3, 12, 2), pool), listener);
+                    assertEquals("f1", browser.getSearchQuery());
+                    assertFalse(browser.isShowingStorageRoots());
+
+                    //The volumes end the search, and the changes of the folder that has been shown are dropped
+                    browser.addChanges(Collections.<FileItem>emptyList(), Collections.singletonList("/r/f0.txt"));
+                    browser.showStorageRoots();
+                    assertTrue(browser.isShowingStorageRoots());
+                    assertNull(browser.getSearchQuery());
+                    assertFalse(browser.hasChanges());
+                    assertFalse(browser.isLoading());
+                    browser.leaveStorageRoots();
+                    assertFalse(browser.isShowingStorageRoots());
+
+                    browser.showStorageRoots();
+                    browser.load(null, listener);
+                    assertFalse(browser.isShowingStorageRoots());
+                    browser.search("/r", "f1", 2, 100, new DirectoryWalker(new SyntheticDirectoryLister("/r", 3, 12, 2), pool), listener);
+                    browser.load(null, listener);
+                    assertNull(browser.getSearchQuery());
+                    browser.cancelLoad();
+                    return null;
+                }
+            });
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    private static FileItem file(String name, long size, SortOrder sortOrder) {
+        return FileItem.create("/r", name, false, size, 1, sortOrder);
+    }
+
+    private <T> T onCallbackThread(Callable<T> callable) throws InterruptedException, ExecutionException {
+        return mCallbackExecutor.submit(callable).get();
+    }
+}
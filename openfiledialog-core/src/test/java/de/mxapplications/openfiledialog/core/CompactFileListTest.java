@@ -0,0 +1,107 @@
+package de.mxapplications.openfiledialog.core;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class CompactFileListTest {
+    private static final String PATH = "/storage/emulated/0/DCIM/Camera";
+    private static final int SIZE = 100000;
+
+    @Test
+    public void viewsEqualTheItemsTheyWereCompactedFrom() {
+        List<FileItem> items = createItems(1000);
+        CompactFileList views = new CompactFileList(DirectoryLoader.compact(PATH, items), SortOrder.DEFAULT);
+
+        assertEquals(items.size(), views.size());
+        for (int i = 0; i < items.size(); i++) {
+            FileItem item = items.get(i);
+            FileItem view = views.get(i);
+            assertEquals(item.absolutePath, view.absolutePath);
+            assertEquals(item.name, view.name);
+            assertEquals(item.isDirectory, view.isDirectory);
+            assertEquals(item.size, view.size);
+            assertEquals(item.lastModified, view.lastModified);
+            assertEquals(item.foldedName, view.foldedName);
+            assertEquals(0, SortOrder.DEFAULT.compare(item.sortKey, view.sortKey));
+            assertEquals(item.getId(), view.getId());
+        }
+    }
+
+    @Test
+    public void windowKeepsOnlyTheItemsAroundTheVisibleRows() {
+        CompactFileList list = new CompactFileList(new FileItem("..", true), DirectoryLoader.compact(PATH, createItems(SIZE)), SortOrder.DEFAULT);
+        assertEquals(SIZE + 1, list.size());
+        assertEquals("..", list.get(0).name);
+
+        //Without a window every read creates a FileItem
+        assertNotSame(list.get(500), list.get(500));
+        list.setWindow(0, 99);
+        FileItem item = list.get(50);
+        assertSame(item, list.get(50));
+        list.setWindow(40, 139);
+        assertSame(item, list.get(50));
+        list.setWindow(60, 159);
+        assertEquals(0, list.getWindowItemCount());
+
+        //Scrolling through all rows, a screenful of 20 rows at a time
+        for (int first = 0; first < list.size(); first += 7) {
+            list.setWindow(first - 64, first + 19 + 64);
+            for (int i = first; i < Math.min(first + 20, list.size()); i++) {
+                list.get(i);
+            }
+            assertTrue(list.getWindowItemCount() <= 20 + 2 * 64);
+        }
+        list.setWindow(0, SIZE);
+        assertEquals(0, list.getWindowItemCount());
+    }
+
+    @Test
+    public void childrenAreFoundByPathWithoutCreatingThem() {
+        CompactFileList list = new CompactFileList(new FileItem("..", true), DirectoryLoader.compact(PATH, createItems(1000)), SortOrder.DEFAULT);
+
+        assertEquals(0, list.indexOfPath(".."));
+        assertEquals(734, list.indexOfPath(list.get(734).absolutePath));
+        assertEquals(-1, list.indexOfPath(PATH + "/missing.jpg"));
+        assertEquals(-1, list.indexOfPath("/storage/emulated/0/DCIM/" + list.get(734).name));
+    }
+
+    @Test
+    public void compactListingNeedsAFractionOfTheMemory() {
+        long baseline = usedHeap();
+        List<FileItem> items = createItems(SIZE);
+        long itemBytes = usedHeap() - baseline;
+        CompactListing listing = DirectoryLoader.compact(PATH, items);
+        items = null;
+        long compactBytes = usedHeap() - baseline;
+
+        assertTrue("List<FileItem> " + itemBytes + " bytes, CompactListing " + compactBytes + " bytes", compactBytes * 4 < itemBytes);
+        //The estimate that the ListingCache is limited by is close to the real size
+        assertTrue(listing.estimateBytes() > compactBytes / 2 && listing.estimateBytes() < compactBytes * 2);
+    }
+
+    private static List<FileItem> createItems(int count) {
+        List<FileItem> items = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            String name = i % 50 == 0 ? "Folder " + i : "IMG_20160" + (100000 + i) + "_" + (i * 7919 % 1000000) + ".jpg";
+            items.add(FileItem.create(PATH, name, i % 50 == 0, i % 50 == 0 ? DirectoryEntry.UNKNOWN : i * 31L, 1450000000000L + i, SortOrder.DEFAULT));
+        }
+        return items;
+    }
+
+    /***
+     * Returns the used heap after collecting garbage, the lowest of a few tries since a collection isn't guaranteed.
+     */
+    private static long usedHeap() {
+        Runtime runtime = Runtime.getRuntime();
+        long used = Long.MAX_VALUE;
+        for (int i = 0; i < 5; i++) {
+            System.gc();
+            used = Math.min(used, runtime.totalMemory() - runtime.freeMemory());
+        }
+        return used;
+    }
+}
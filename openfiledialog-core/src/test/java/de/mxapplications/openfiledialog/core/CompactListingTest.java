@@ -0,0 +1,123 @@
+package de.mxapplications.openfiledialog.core;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class CompactListingTest {
+    @Test
+    public void childrenKeepTheirNamesTypesAndMetadata() {
+        CompactListing.Builder builder = new CompactListing.Builder("/sdcard/DCIM", 2);
+        builder.add("Camera", true, 4096, 1000);
+        builder.add("IMG_0001.jpg", false, 123456, 2000);
+        builder.add("", false, 0, 3000);
+        builder.add("\u00dcberweisung \u2013 M\u00e4rz.pdf", false, 42, 4000);
+        CompactListing listing = builder.build();
+
+        assertEquals(4, listing.size());
+        assertEquals("/sdcard/DCIM", listing.getParentPath());
+        assertEquals("Camera", listing.getName(0));
+        assertEquals("/sdcard/DCIM/Camera", listing.getPath(0));
+        assertTrue(listing.isDirectory(0));
+        assertFalse(listing.isDirectory(1));
+        assertEquals(123456, listing.getSize(1));
+        assertEquals(2000, listing.getLastModified(1));
+        assertEquals("", listing.getName(2));
+        assertEquals("/sdcard/DCIM/\u00dcberweisung \u2013 M\u00e4rz.pdf", listing.getPath(3));
+        assertTrue(listing.hasMetadata());
+    }
+
+    @Test
+    public void unknownMetadataIsNotStored() {
+        CompactListing listing = new CompactListing.Builder("/", 0)
+                .add("sdcard", true, DirectoryEntry.UNKNOWN, DirectoryEntry.UNKNOWN)
+                .add("system", true, DirectoryEntry.UNKNOWN, DirectoryEntry.UNKNOWN)
+                .build();
+
+        assertEquals("/sdcard", listing.getPath(0));
+        assertEquals(DirectoryEntry.UNKNOWN, listing.getSize(1));
+        assertEquals(DirectoryEntry.UNKNOWN, listing.getLastModified(1));
+        assertFalse(listing.hasMetadata());
+        //Without metadata there are no arrays for it
+        CompactListing withMetadata = new CompactListing.Builder("/", 0).add("sdcard", true, 0, 1).add("system", true, 0, 1).build();
+        assertEquals(2 * 16, withMetadata.estimateBytes() - listing.estimateBytes());
+        assertFalse(new CompactListing.Builder("/", 0).add("a", false, 1, DirectoryEntry.UNKNOWN).build().hasMetadata());
+    }
+
+    @Test
+    public void nameContainsMatchesNameFilter() {
+        Random random = new Random(7);
+        String alphabet = "aAbB\u00e4\u00c41._";
+        CompactListing.Builder builder = new CompactListing.Builder("/", 0);
+        String[] names = new String[2000];
+        for (int i = 0; i < names.length; i++) {
+            char[] name = new char[random.nextInt(8)];
+            for (int j = 0; j < name.length; j++) name[j] = alphabet.charAt(random.nextInt(alphabet.length()));
+            names[i] = new String(name);
+            builder.add(names[i], false, DirectoryEntry.UNKNOWN, DirectoryEntry.UNKNOWN);
+        }
+        CompactListing listing = builder.build();
+        for (String query : new String[]{"", "a", "ab", "\u00c4", "\u00e4.", "1_", "aaaaaaaaa"}) {
+            String folded = NameFilter.fold(query);
+            for (int i = 0; i < names.length; i++) {
+                assertEquals(names[i] + " contains " + query, NameFilter.contains(names[i], folded), listing.nameContains(i, folded));
+            }
+        }
+    }
+
+    @Test
+    public void sortedMatchesSortingByKeys() {
+        Random random = new Random(11);
+        CompactListing.Builder builder = new CompactListing.Builder("/sdcard", 0);
+        final List<String> names = new ArrayList<>();
+        for (int i = 0; i < 3000; i++) {
+            String name = (random.nextBoolean() ? "img" : "Doc") + random.nextInt(500) + (random.nextBoolean() ? ".jpg" : ".PDF");
+            names.add(name);
+            builder.add(name, i % 10 == 0, i % 7, 1000 - i % 13);
+        }
+        CompactListing listing = builder.build();
+        for (SortOrder.Mode mode : SortOrder.Mode.values()) {
+            final SortOrder sortOrder = new SortOrder(mode, true, mode == SortOrder.Mode.DATE);
+            List<Integer> expected = new ArrayList<>();
+            for (int i = 0; i < names.size(); i++) expected.add(i);
+            //Collections.sort is stable like CompactListing.sorted
+            Collections.sort(expected, new Comparator<Integer>() {
+                @Override
+                public int compare(Integer lhs, Integer rhs) {
+                    return sortOrder.compare(key(lhs), key(rhs));
+                }
+
+                private SortOrder.SortKey key(int i) {
+                    return sortOrder.createKey(names.get(i), i % 10 == 0, i % 7, 1000 - i % 13);
+                }
+            });
+            CompactListing sorted = listing.sorted(sortOrder);
+            assertEquals(listing.size(), sorted.size());
+            for (int i = 0; i < sorted.size(); i++) {
+                int position = expected.get(i);
+                assertEquals(mode.toString(), names.get(position), sorted.getName(i));
+                assertEquals(position % 10 == 0, sorted.isDirectory(i));
+                assertEquals(position % 7, sorted.getSize(i));
+                assertEquals(1000 - position % 13, sorted.getLastModified(i));
+            }
+        }
+    }
+
+    @Test
+    public void indexOfFindsExactNames() {
+        CompactListing listing = new CompactListing.Builder("/", 0)
+                .add("a", false, 0, 0).add("ab", false, 0, 0).add("AB", false, 0, 0).add("", false, 0, 0).build();
+
+        assertEquals(1, listing.indexOf("ab"));
+        assertEquals(2, listing.indexOf("AB"));
+        assertEquals(3, listing.indexOf(""));
+        assertEquals(-1, listing.indexOf("b"));
+        assertEquals(-1, listing.indexOf("abc"));
+    }
+}
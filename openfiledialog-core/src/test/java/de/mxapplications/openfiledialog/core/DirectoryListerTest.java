@@ -0,0 +1,175 @@
+package de.mxapplications.openfiledialog.core;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class DirectoryListerTest {
+    @Rule
+    public TemporaryFolder mFolder = new TemporaryFolder();
+
+    private final DirectoryLister mFileLister = new FileDirectoryLister();
+    private final DirectoryLister mNioLister = new NioDirectoryLister();
+
+    @Before
+    public void createTree() throws IOException {
+        File root = mFolder.getRoot();
+        for (int i = 0; i < 50; i++) {
+            assertTrue(new File(root, "Folder " + i).mkdir());
+            writeFile(new File(root, "file" + i + ".txt"), i * 10);
+        }
+        writeFile(new File(root, ".hidden"), 1);
+        assertTrue(new File(root, ".hiddenFolder").mkdir());
+        writeFile(new File(root, "Folder 0/nested.txt"), 3);
+        try {
+            Files.createSymbolicLink(new File(root, "link to folder").toPath(), new File(root, "Folder 1").toPath());
+            Files.createSymbolicLink(new File(root, "link to file").toPath(), new File(root, "file1.txt").toPath());
+            Files.createSymbolicLink(new File(root, "broken link").toPath(), new File(root, "missing").toPath());
+        } catch (UnsupportedOperationException | IOException e) {
+            //The file system doesn't support links, the listings are compared without them
+        }
+    }
+
+    @Test
+    public void backendsReturnIdenticalListings() {
+        String path = mFolder.getRoot().getAbsolutePath();
+        List<DirectoryEntry> fileEntries = listSorted(mFileLister, path);
+        List<DirectoryEntry> nioEntries = listSorted(mNioLister, path);
+
+        assertEquals(fileEntries.toString(), nioEntries.toString());
+        assertEquals(fileEntries.size(), new File(path).list().length);
+    }
+
+    @Test
+    public void nioBackendReadsMetadata() {
+        String path = mFolder.getRoot().getAbsolutePath();
+        for (DirectoryEntry entry : listSorted(mNioLister, path)) {
+            File file = new File(path, entry.getName());
+            //A broken link has no target to compare with
+            if (!file.exists()) continue;
+            assertEquals(entry.getName(), file.lastModified(), entry.getLastModified());
+            if (!entry.isDirectory()) {
+                assertEquals(entry.getName(), file.length(), entry.getSize());
+            }
+        }
+    }
+
+    @Test
+    public void fileBackendReadsMetadataOnRequest() {
+        String path = mFolder.getRoot().getAbsolutePath();
+        CollectingVisitor visitor = new CollectingVisitor();
+        assertTrue(mFileLister.list(path, true, visitor));
+        for (DirectoryEntry entry : visitor.mEntries) {
+            File file = new File(path, entry.getName());
+            assertEquals(entry.getName(), file.lastModified(), entry.getLastModified());
+            assertEquals(entry.getName(), file.length(), entry.getSize());
+        }
+    }
+
+    @Test
+    public void backendsAgreeOnUnreadablePaths() throws IOException {
+        String missing = new File(mFolder.getRoot(), "missing").getAbsolutePath();
+        String file = new File(mFolder.getRoot(), "file1.txt").getAbsolutePath();
+        String empty = mFolder.newFolder("empty").getAbsolutePath();
+
+        assertFalse(mFileLister.list(missing, false, new CollectingVisitor()));
+        assertFalse(mNioLister.list(missing, false, new CollectingVisitor()));
+        assertFalse(mFileLister.list(file, false, new CollectingVisitor()));
+        assertFalse(mNioLister.list(file, false, new CollectingVisitor()));
+        assertTrue(mFileLister.list(empty, false, new CollectingVisitor()));
+        assertTrue(mNioLister.list(empty, false, new CollectingVisitor()));
+    }
+
+    @Test
+    public void visitorCanStopTheListing() {
+        for (DirectoryLister lister : new DirectoryLister[]{mFileLister, mNioLister}) {
+            final int[] visited = {0};
+            assertTrue(lister.list(mFolder.getRoot().getAbsolutePath(), false, new DirectoryLister.Visitor() {
+                @Override
+                public boolean visit(DirectoryEntry entry) {
+                    return ++visited[0] < 5;
+                }
+            }));
+            assertEquals(5, visited[0]);
+        }
+    }
+
+    @Test
+    public void backendsOnlyReportStatsOfNamesThatPass() {
+        String path = mFolder.getRoot().getAbsolutePath();
+        //Text files pass by their name, the others only if they are folders, hidden children not at all
+        final EntryFilter filter = new EntryFilter.Builder().addExtensions("txt").build();
+        for (DirectoryLister lister : new DirectoryLister[]{mFileLister, mNioLister}) {
+            final int[] stats = {0};
+            final int[] visited = {0};
+            assertTrue(lister.list(path, false, new DirectoryLister.CountingVisitor() {
+                @Override
+                public EntryFilter getFilter() {
+                    return filter;
+                }
+
+                @Override
+                public void onStat() {
+                    stats[0]++;
+                }
+
+                @Override
+                public boolean visit(DirectoryEntry entry) {
+                    visited[0]++;
+                    return true;
+                }
+            }));
+            assertEquals(new File(path).list().length - 2, stats[0]);
+            assertTrue(visited[0] < stats[0]);
+        }
+    }
+
+    @Test
+    public void defaultUsesNioWhereSupported() {
+        assertTrue(DirectoryListers.isNioSupported());
+        assertTrue(DirectoryListers.getDefault() instanceof NioDirectoryLister);
+    }
+
+    private static List<DirectoryEntry> listSorted(DirectoryLister lister, String path) {
+        CollectingVisitor visitor = new CollectingVisitor();
+        assertTrue(lister.list(path, false, visitor));
+        Collections.sort(visitor.mEntries, new Comparator<DirectoryEntry>() {
+            @Override
+            public int compare(DirectoryEntry lhs, DirectoryEntry rhs) {
+                return lhs.getName().compareTo(rhs.getName());
+            }
+        });
+        return visitor.mEntries;
+    }
+
+    private static void writeFile(File file, int size) throws IOException {
+        FileOutputStream out = new FileOutputStream(file);
+        try {
+            out.write(new byte[size]);
+        } finally {
+            out.close();
+        }
+    }
+
+    private static class CollectingVisitor implements DirectoryLister.Visitor {
+        final List<DirectoryEntry> mEntries = new ArrayList<>();
+
+        @Override
+        public boolean visit(DirectoryEntry entry) {
+            mEntries.add(entry);
+            return true;
+        }
+    }
+}
@@ -0,0 +1,261 @@
+package de.mxapplications.openfiledialog.core;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executor;
+
+import static org.junit.Assert.*;
+
+public class DirectoryLoaderTest {
+    private static final Executor DIRECT_EXECUTOR = new Executor() {
+        @Override
+        public void execute(Runnable command) {
+            command.run();
+        }
+    };
+
+    @Rule
+    public TemporaryFolder mFolder = new TemporaryFolder();
+    @Rule
+    public TemporaryFolder mCacheFolder = new TemporaryFolder();
+
+    @Before
+    public void createFiles() throws Exception {
+        for (int i = 0; i < 500; i++) {
+            assertTrue(new File(mFolder.getRoot(), "File" + (i * 7919 % 500)).createNewFile());
+        }
+        assertTrue(new File(mFolder.getRoot(), ".hidden").createNewFile());
+    }
+
+    @Test
+    public void batchesAreSortedAndRangesReproduceTheList() {
+        DirectoryLoader loader = new DirectoryLoader(new FileDirectoryLister(), null, DIRECT_EXECUTOR, DIRECT_EXECUTOR);
+        loader.setBatchSize(10);
+        RecordingListener listener = new RecordingListener();
+        loader.load(mFolder.getRoot().getAbsolutePath(), listener);
+
+        assertTrue(listener.mFinished);
+        assertFalse(loader.isLoading());
+        //The first batch may be flushed early if listing takes longer than a frame
+        assertTrue(listener.mBatchSizes.get(0) > 0 && listener.mBatchSizes.get(0) <= 10);
+        assertEquals(500, listener.mAdapterList.size());
+        for (int i = 1; i < listener.mAdapterList.size(); i++) {
+            assertTrue(listener.mAdapterList.get(i - 1).name.compareToIgnoreCase(listener.mAdapterList.get(i).name) < 0);
+        }
+    }
+
+    @Test
+    public void pagedLoadDeliversOneCompactBatch() {
+        DirectoryLoader loader = new DirectoryLoader(new FileDirectoryLister(), null, DIRECT_EXECUTOR, DIRECT_EXECUTOR);
+        loader.setPaged(true);
+        final List<List<FileItem>> batches = new ArrayList<>();
+        loader.load(mFolder.getRoot().getAbsolutePath(), new DirectoryLoader.Listener() {
+            @Override
+            public void onBatch(String path, List<FileItem> children, List<int[]> insertedRanges, boolean finished) {
+                assertTrue(finished);
+                assertEquals(1, insertedRanges.size());
+                assertEquals(children.size(), insertedRanges.get(0)[1]);
+                batches.add(children);
+            }
+        });
+
+        assertEquals(1, batches.size());
+        assertTrue(batches.get(0) instanceof CompactFileList);
+        List<FileItem> children = batches.get(0);
+        assertEquals(500, children.size());
+        for (int i = 1; i < children.size(); i++) {
+            assertTrue(children.get(i - 1).name.compareToIgnoreCase(children.get(i).name) < 0);
+        }
+    }
+
+    @Test
+    public void timeToFirstRowIsMeasured() {
+        DirectoryLoader loader = new DirectoryLoader(new FileDirectoryLister(), null, DIRECT_EXECUTOR, DIRECT_EXECUTOR);
+        assertEquals(-1, loader.getTimeToFirstRowNanos());
+        long start = System.nanoTime();
+        loader.load(mFolder.getRoot().getAbsolutePath(), new RecordingListener());
+        long total = System.nanoTime() - start;
+
+        assertTrue(loader.getTimeToFirstRowNanos() >= 0);
+        assertTrue(loader.getTimeToFirstRowNanos() <= total);
+    }
+
+    @Test
+    public void loadsAreOnlyMeasuredIfRequested() {
+        //A listing of a folder that has just been modified isn't trusted by the cache
+        assertTrue(mFolder.getRoot().setLastModified(System.currentTimeMillis() - 10000));
+        ListingCache<DirectoryLoader.Listing> cache = new ListingCache<>(4, 1024 * 1024);
+        DirectoryLoader loader = new DirectoryLoader(new FileDirectoryLister(), cache, DIRECT_EXECUTOR, DIRECT_EXECUTOR);
+        loader.load(mFolder.getRoot().getAbsolutePath(), new RecordingListener());
+        assertNull(loader.getLoadStats());
+
+        cache.clear();
+        loader.setCollectStats(true);
+        loader.load(mFolder.getRoot().getAbsolutePath(), new RecordingListener());
+        DirectoryLoader.LoadStats listed = loader.getLoadStats();
+        assertEquals(NavigationMetrics.CacheResult.MISS, listed.mCacheResult);
+        assertEquals(500, listed.mEntryCount);
+        //The hidden file is ruled out by its name before it is read
+        assertEquals(500, listed.mStatCount);
+        assertTrue(listed.mScanNanos > 0);
+        assertTrue(listed.mSortNanos > 0);
+
+        //Cached listings create their FileItems on access, so RecordingListener can't compare them
+        loader.load(mFolder.getRoot().getAbsolutePath(), new DirectoryLoader.Listener() {
+            @Override
+            public void onBatch(String path, List<FileItem> children, List<int[]> insertedRanges, boolean finished) {
+            }
+        });
+        DirectoryLoader.LoadStats cached = loader.getLoadStats();
+        assertEquals(NavigationMetrics.CacheResult.HIT, cached.mCacheResult);
+        assertEquals(500, cached.mEntryCount);
+        assertEquals(0, cached.mStatCount);
+
+        //Files that only a folder could have been shown for are read for their type, though none of them is shown
+        loader.setEntryFilter(new EntryFilter.Builder().addExtensions("csv").build());
+        loader.load(mFolder.getRoot().getAbsolutePath(), new RecordingListener());
+        DirectoryLoader.LoadStats filtered = loader.getLoadStats();
+        assertEquals(0, filtered.mEntryCount);
+        assertEquals(500, filtered.mStatCount);
+    }
+
+    @Test
+    public void preloadIsTakenOverByTheLoad() {
+        assertTrue(mFolder.getRoot().setLastModified(System.currentTimeMillis() - 10000));
+        final int[] listings = {0};
+        FileDirectoryLister countingLister = new FileDirectoryLister() {
+            @Override
+            public boolean list(String path, boolean readMetadata, Visitor visitor) {
+                listings[0]++;
+                return super.list(path, readMetadata, visitor);
+            }
+        };
+        QueueExecutor background = new QueueExecutor();
+        DirectoryLoader loader = new DirectoryLoader(countingLister, new ListingCache<DirectoryLoader.Listing>(4, 1024 * 1024), background, DIRECT_EXECUTOR);
+        loader.setCollectStats(true);
+        String path = mFolder.getRoot().getAbsolutePath();
+        //Only the last preload is listed
+        loader.preload(mCacheFolder.getRoot().getAbsolutePath());
+        loader.preload(path);
+        final List<Integer> sizes = new ArrayList<>();
+        loader.load(path, new DirectoryLoader.Listener() {
+            @Override
+            public void onBatch(String path, List<FileItem> children, List<int[]> insertedRanges, boolean finished) {
+                sizes.add(children.size());
+            }
+        });
+        background.runAll();
+
+        assertEquals(1, listings[0]);
+        assertEquals(1, sizes.size());
+        assertEquals(500, (int) sizes.get(0));
+        assertEquals(NavigationMetrics.CacheResult.PREFETCHED, loader.getLoadStats().mCacheResult);
+    }
+
+    @Test
+    public void staleLoadIsNotDelivered() {
+        QueueExecutor background = new QueueExecutor();
+        DirectoryLoader loader = new DirectoryLoader(new FileDirectoryLister(), null, background, DIRECT_EXECUTOR);
+        RecordingListener stale = new RecordingListener();
+        RecordingListener current = new RecordingListener();
+        loader.load(mFolder.getRoot().getAbsolutePath(), stale);
+        loader.load(mFolder.getRoot().getAbsolutePath(), current);
+        background.runAll();
+
+        assertTrue(stale.mBatchSizes.isEmpty());
+        assertTrue(current.mFinished);
+    }
+
+    @Test
+    public void cancelledLoadIsNotDelivered() {
+        QueueExecutor background = new QueueExecutor();
+        DirectoryLoader loader = new DirectoryLoader(new FileDirectoryLister(), null, background, DIRECT_EXECUTOR);
+        RecordingListener listener = new RecordingListener();
+        loader.load(mFolder.getRoot().getAbsolutePath(), listener);
+        assertTrue(loader.isLoading());
+        loader.cancel();
+        background.runAll();
+
+        assertFalse(loader.isLoading());
+        assertTrue(listener.mBatchSizes.isEmpty());
+    }
+
+    @Test
+    public void snapshotIsReplacedByTheListingInOneBatch() throws Exception {
+        String path = mFolder.getRoot().getAbsolutePath();
+        ListingSnapshotStore store = new ListingSnapshotStore(new DiskCache(mCacheFolder.getRoot(), 1024 * 1024));
+        DirectoryLoader loader = new DirectoryLoader(new FileDirectoryLister(), null, DIRECT_EXECUTOR, DIRECT_EXECUTOR);
+        loader.setSnapshotStore(store);
+        loader.load(path, new RecordingListener());
+
+        //A file is deleted without changing the modification time of the folder, the snapshot is out of date but not stale
+        long lastModified = mFolder.getRoot().lastModified();
+        assertTrue(new File(mFolder.getRoot(), "File0").delete());
+        assertTrue(mFolder.getRoot().setLastModified(lastModified));
+        //Like after a restart: no ListingCache, only the snapshot on disk
+        loader = new DirectoryLoader(new FileDirectoryLister(), null, DIRECT_EXECUTOR, DIRECT_EXECUTOR);
+        loader.setSnapshotStore(store);
+        loader.setBatchSize(10);
+        final List<List<FileItem>> snapshots = new ArrayList<>();
+        RecordingListener listener = new RecordingListener();
+        loader.load(path, new DirectoryLoader.SnapshotListener() {
+            @Override
+            public void onSnapshot(String path, List<FileItem> children) {
+                snapshots.add(children);
+            }
+        }, listener);
+
+        assertEquals(1, snapshots.size());
+        assertEquals(500, snapshots.get(0).size());
+        assertEquals("File0", snapshots.get(0).get(0).name);
+        assertEquals(new File(mFolder.getRoot(), "File0").getAbsolutePath(), snapshots.get(0).get(0).absolutePath);
+        assertEquals("[499]", listener.mBatchSizes.toString());
+        assertTrue(listener.mFinished);
+        assertEquals("File1", listener.mAdapterList.get(0).name);
+    }
+
+    private static class RecordingListener implements DirectoryLoader.Listener {
+        final List<FileItem> mAdapterList = new ArrayList<>();
+        final List<Integer> mBatchSizes = new ArrayList<>();
+        boolean mFinished = false;
+
+        @Override
+        public void onBatch(String path, List<FileItem> children, List<int[]> insertedRanges, boolean finished) {
+            assertFalse(mFinished);
+            int inserted = 0;
+            for (int[] range : insertedRanges) {
+                //Replay the notifications the adapter would send, they have to reproduce the delivered list.
+                mAdapterList.addAll(range[0], children.subList(range[0], range[0] + range[1]));
+                inserted += range[1];
+            }
+            assertEquals(children.size(), mAdapterList.size());
+            for (int i = 0; i < children.size(); i++) {
+                assertSame(children.get(i), mAdapterList.get(i));
+            }
+            mBatchSizes.add(inserted);
+            mFinished = finished;
+        }
+    }
+
+    private static class QueueExecutor implements Executor {
+        private final List<Runnable> mQueue = new ArrayList<>();
+
+        @Override
+        public void execute(Runnable command) {
+            mQueue.add(command);
+        }
+
+        void runAll() {
+            for (Runnable runnable : mQueue) {
+                runnable.run();
+            }
+            mQueue.clear();
+        }
+    }
+}
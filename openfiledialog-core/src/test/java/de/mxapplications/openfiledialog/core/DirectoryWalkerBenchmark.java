@@ -0,0 +1,47 @@
+package de.mxapplications.openfiledialog.core;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Measures how many entries per second {@link DirectoryWalker} visits, on a generated tree of 11,111 folders with 90 files each
+ * (about 1M files) that is listed from memory, so the overhead of the walk itself is measured rather than the storage. With a
+ * folder as argument, that folder is walked with {@link NioDirectoryLister} instead.
+ * <p>Run with {@code java -cp <test classes>:<classes> de.mxapplications.openfiledialog.core.DirectoryWalkerBenchmark [parallelism] [folder]}.</p>
+ */
+public class DirectoryWalkerBenchmark {
+    private static final int WARMUP_RUNS = 3;
+    private static final int MEASURED_RUNS = 5;
+
+    public static void main(String[] args) throws InterruptedException {
+        int parallelism = args.length > 0 ? Integer.parseInt(args[0]) : Runtime.getRuntime().availableProcessors();
+        String root = args.length > 1 ? args[1] : "/synthetic";
+        DirectoryLister lister = args.length > 1 ? new NioDirectoryLister() : new SyntheticDirectoryLister(root, 10, 90, 4);
+
+        ForkJoinPool pool = new ForkJoinPool(parallelism);
+        DirectoryWalker walker = new DirectoryWalker(lister, pool);
+        for (int run = 0; run < WARMUP_RUNS + MEASURED_RUNS; run++) {
+            final AtomicLong matches = new AtomicLong();
+            DirectoryWalker.Walk walk = walker.walk(root, Integer.MAX_VALUE, EntryFilter.DEFAULT, new DirectoryWalker.Visitor() {
+                @Override
+                public boolean visit(String parentPath, DirectoryEntry entry) {
+                    //The work of a search: one case-insensitive check per name
+                    if (NameFilter.contains(entry.getName(), "f42")) matches.incrementAndGet();
+                    return true;
+                }
+
+                @Override
+                public void onFinished(DirectoryWalker.Walk walk) {
+                }
+            });
+            if (!walk.await(10, TimeUnit.MINUTES)) throw new IllegalStateException("The walk didn't finish");
+            if (run >= WARMUP_RUNS) {
+                double seconds = walk.getDurationNanos() / 1e9;
+                System.out.printf("parallelism %d: %d folders, %d entries, %d matches in %.0f ms, %.0f entries/s%n", parallelism,
+                        walk.getFolderCount(), walk.getEntryCount(), matches.get(), seconds * 1000, walk.getEntryCount() / seconds);
+            }
+        }
+        pool.shutdown();
+    }
+}
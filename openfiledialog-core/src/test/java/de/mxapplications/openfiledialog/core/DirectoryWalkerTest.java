@@ -0,0 +1,127 @@
+package de.mxapplications.openfiledialog.core;
+
+import org.junit.After;
+import org.junit.Assume;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+public class DirectoryWalkerTest {
+    @Rule
+    public TemporaryFolder mFolder = new TemporaryFolder();
+
+    private final ForkJoinPool mPool = new ForkJoinPool(4);
+
+    @After
+    public void shutDown() {
+        mPool.shutdownNow();
+    }
+
+    @Test
+    public void visitsEveryVisibleEntryOnce() throws InterruptedException {
+        SyntheticDirectoryLister lister = new SyntheticDirectoryLister("/synthetic", 3, 4, 3);
+        CollectingVisitor visitor = new CollectingVisitor(Integer.MAX_VALUE);
+        DirectoryWalker.Walk walk = new DirectoryWalker(lister, mPool).walk("/synthetic", 10, EntryFilter.DEFAULT, visitor);
+
+        assertTrue(walk.await(10, TimeUnit.SECONDS));
+        assertEquals(lister.getEntryCount(), visitor.mPaths.size());
+        assertEquals(lister.getEntryCount(), walk.getEntryCount());
+        assertEquals(lister.getFolderCount(), walk.getFolderCount());
+        assertTrue(visitor.mPaths.contains("/synthetic/d2/d0/d1/f3.txt"));
+        assertFalse(visitor.mPaths.contains("/synthetic/.hidden"));
+        assertEquals(1, visitor.mFinishedCount.get());
+        assertFalse(walk.isCancelled());
+        assertTrue(walk.getDurationNanos() >= 0);
+    }
+
+    @Test
+    public void stopsAtMaxDepth() throws InterruptedException {
+        SyntheticDirectoryLister lister = new SyntheticDirectoryLister("/synthetic", 3, 4, 3);
+        CollectingVisitor visitor = new CollectingVisitor(Integer.MAX_VALUE);
+        DirectoryWalker.Walk walk = new DirectoryWalker(lister, mPool).walk("/synthetic", 1, EntryFilter.DEFAULT, visitor);
+
+        assertTrue(walk.await(10, TimeUnit.SECONDS));
+        //The children of the root and of its 3 subfolders
+        assertEquals(4 * (3 + 4), visitor.mPaths.size());
+        assertEquals(4, walk.getFolderCount());
+    }
+
+    @Test
+    public void visitorCancelsTheWalk() throws InterruptedException {
+        SyntheticDirectoryLister lister = new SyntheticDirectoryLister("/synthetic", 10, 10, 4);
+        CollectingVisitor visitor = new CollectingVisitor(50);
+        DirectoryWalker.Walk walk = new DirectoryWalker(lister, mPool).walk("/synthetic", 10, EntryFilter.DEFAULT, visitor);
+
+        assertTrue(walk.await(10, TimeUnit.SECONDS));
+        assertTrue(walk.isCancelled());
+        assertTrue(walk.getEntryCount() < lister.getEntryCount() / 10);
+        assertEquals(1, visitor.mFinishedCount.get());
+    }
+
+    @Test
+    public void linksToAncestorsAreNotFollowed() throws IOException, InterruptedException {
+        File root = mFolder.getRoot();
+        assertTrue(new File(root, "a/b").mkdirs());
+        assertTrue(new File(root, "a/b/file.txt").createNewFile());
+        assertTrue(new File(root, "a/.git").mkdir());
+        assertTrue(new File(root, "a/.git/config").createNewFile());
+        try {
+            Files.createSymbolicLink(new File(root, "a/b/up").toPath(), new File(root, "a").toPath());
+        } catch (UnsupportedOperationException | IOException e) {
+            Assume.assumeNoException(e);
+        }
+
+        CollectingVisitor visitor = new CollectingVisitor(Integer.MAX_VALUE);
+        String path = new File(root, "a").getCanonicalPath();
+        DirectoryWalker.Walk walk = new DirectoryWalker(new FileDirectoryLister(), mPool).walk(path, 100, EntryFilter.DEFAULT, visitor);
+
+        assertTrue(walk.await(10, TimeUnit.SECONDS));
+        //The link is visited as a child of b, but a isn't entered a second time through it
+        assertEquals(Collections.singleton(path + "/b/up"), filter(visitor.mPaths, "/up"));
+        assertTrue(visitor.mPaths.contains(path + "/b/file.txt"));
+        assertEquals(3, visitor.mPaths.size());
+        assertEquals(1, walk.getSkippedFolderCount());
+    }
+
+    private static Set<String> filter(Set<String> paths, String suffix) {
+        Set<String> filtered = new HashSet<>();
+        for (String path : paths) {
+            if (path.contains(suffix)) filtered.add(path);
+        }
+        return filtered;
+    }
+
+    private static class CollectingVisitor implements DirectoryWalker.Visitor {
+        private final int mMaxEntries;
+        final Set<String> mPaths = Collections.newSetFromMap(new ConcurrentHashMap<String, Boolean>());
+        final AtomicInteger mFinishedCount = new AtomicInteger();
+
+        CollectingVisitor(int maxEntries) {
+            this.mMaxEntries = maxEntries;
+        }
+
+        @Override
+        public boolean visit(String parentPath, DirectoryEntry entry) {
+            assertTrue("Visited twice: " + entry, mPaths.add(parentPath + "/" + entry.getName()));
+            return mPaths.size() < mMaxEntries;
+        }
+
+        @Override
+        public void onFinished(DirectoryWalker.Walk walk) {
+            mFinishedCount.incrementAndGet();
+        }
+    }
+}
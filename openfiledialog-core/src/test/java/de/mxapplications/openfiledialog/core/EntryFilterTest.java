@@ -0,0 +1,119 @@
+package de.mxapplications.openfiledialog.core;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class EntryFilterTest {
+    @Rule
+    public TemporaryFolder mFolder = new TemporaryFolder();
+
+    @Test
+    public void nameRulesOnlyApplyToFiles() {
+        EntryFilter filter = new EntryFilter.Builder().addExtensions("csv", ".TAR.GZ").build();
+
+        assertEquals(EntryFilter.NameMatch.ACCEPT, filter.matchName("report.CSV"));
+        assertEquals(EntryFilter.NameMatch.ACCEPT, filter.matchName("backup.tar.gz"));
+        assertEquals(EntryFilter.NameMatch.FOLDER_ONLY, filter.matchName("photo.jpg"));
+        assertEquals(EntryFilter.NameMatch.FOLDER_ONLY, filter.matchName("csv"));
+        assertEquals(EntryFilter.NameMatch.REJECT, filter.matchName(".hidden.csv"));
+
+        assertTrue(filter.accept(file("report.csv", 10)));
+        assertFalse(filter.accept(file("photo.jpg", 10)));
+        assertTrue(filter.accept(folder("Photos.jpg")));
+        assertFalse(filter.accept(folder(".git")));
+    }
+
+    @Test
+    public void mimeGroupsMatchByExtension() {
+        EntryFilter filter = new EntryFilter.Builder().addMimeTypes("image/*").build();
+
+        assertEquals(EntryFilter.NameMatch.ACCEPT, filter.matchName("IMG_0001.JPG"));
+        assertEquals(EntryFilter.NameMatch.ACCEPT, filter.matchName("icon.png"));
+        assertEquals(EntryFilter.NameMatch.FOLDER_ONLY, filter.matchName("notes.txt"));
+        assertEquals(EntryFilter.NameMatch.FOLDER_ONLY, filter.matchName("no extension"));
+    }
+
+    @Test
+    public void sizeRangeAndPredicatesNeedMetadata() {
+        assertFalse(EntryFilter.DEFAULT.needsMetadata());
+        EntryFilter filter = new EntryFilter.Builder().setSizeRange(100, 1000).setShowHidden(true).build();
+        assertTrue(filter.needsMetadata());
+
+        assertTrue(filter.accept(file(".profile", 100)));
+        assertFalse(filter.accept(file("small", 99)));
+        assertFalse(filter.accept(file("large", 1001)));
+        assertTrue(filter.accept(file("unknown", DirectoryEntry.UNKNOWN)));
+        assertTrue(filter.accept(folder("empty")));
+
+        EntryFilter.Predicate noTemporaryFiles = new EntryFilter.Predicate() {
+            @Override
+            public boolean accept(DirectoryEntry entry) {
+                return !entry.getName().endsWith("~");
+            }
+        };
+        EntryFilter withPredicate = new EntryFilter.Builder().addPredicate(noTemporaryFiles, false).build();
+        assertFalse(withPredicate.needsMetadata());
+        assertFalse(withPredicate.accept(file("draft~", 1)));
+        assertTrue(withPredicate.accept(file("draft", 1)));
+
+        //Cached listings are reused for equal filters only
+        assertEquals(EntryFilter.DEFAULT, new EntryFilter.Builder().build());
+        assertEquals(withPredicate, new EntryFilter.Builder().addPredicate(noTemporaryFiles, false).build());
+        assertNotEquals(EntryFilter.DEFAULT, withPredicate);
+        assertNotEquals(EntryFilter.DEFAULT, new EntryFilter.Builder().setShowHidden(true).build());
+    }
+
+    @Test
+    public void listersSkipRejectedNamesBeforeReadingThem() throws IOException {
+        File root = mFolder.getRoot();
+        for (int i = 0; i < 2000; i++) {
+            assertTrue(new File(root, "IMG_" + i + ".jpg").createNewFile());
+        }
+        for (int i = 0; i < 3; i++) {
+            assertTrue(new File(root, "table" + i + ".csv").createNewFile());
+        }
+        assertTrue(new File(root, "Exports.jpg").mkdir());
+        assertTrue(new File(root, ".cache").mkdir());
+        EntryFilter filter = new EntryFilter.Builder().addExtensions("csv").build();
+
+        for (DirectoryLister lister : new DirectoryLister[]{new FileDirectoryLister(), new NioDirectoryLister()}) {
+            List<String> visited = list(lister, root.getAbsolutePath(), filter);
+            assertEquals(lister.getClass().getSimpleName(), "[Exports.jpg, table0.csv, table1.csv, table2.csv]", visited.toString());
+        }
+    }
+
+    private static List<String> list(DirectoryLister lister, String path, final EntryFilter filter) {
+        final List<String> names = new ArrayList<>();
+        assertTrue(lister.list(path, false, new DirectoryLister.FilteringVisitor() {
+            @Override
+            public EntryFilter getFilter() {
+                return filter;
+            }
+
+            @Override
+            public boolean visit(DirectoryEntry entry) {
+                names.add(entry.getName());
+                return true;
+            }
+        }));
+        Collections.sort(names);
+        return names;
+    }
+
+    private static DirectoryEntry file(String name, long size) {
+        return new DirectoryEntry(name, false, size, DirectoryEntry.UNKNOWN);
+    }
+
+    private static DirectoryEntry folder(String name) {
+        return new DirectoryEntry(name, true, DirectoryEntry.UNKNOWN, DirectoryEntry.UNKNOWN);
+    }
+}
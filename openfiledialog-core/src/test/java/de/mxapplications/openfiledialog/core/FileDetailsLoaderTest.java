@@ -0,0 +1,211 @@
+package de.mxapplications.openfiledialog.core;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executor;
+
+import static org.junit.Assert.*;
+
+public class FileDetailsLoaderTest {
+    private static final Executor DIRECT_EXECUTOR = new Executor() {
+        @Override
+        public void execute(Runnable command) {
+            command.run();
+        }
+    };
+
+    @Rule
+    public TemporaryFolder mFolder = new TemporaryFolder();
+
+    private File mRoot;
+
+    @Before
+    public void createTree() throws IOException {
+        mRoot = mFolder.newFolder("root");
+        writeFile(new File(mRoot, "a.txt"), 100);
+        writeFile(new File(mRoot, "b.jpg"), 20);
+        writeFile(new File(mRoot, ".hidden"), 1000);
+        assertTrue(new File(mRoot, "sub/deeper").mkdirs());
+        writeFile(new File(mRoot, "sub/c.txt"), 5);
+        writeFile(new File(mRoot, "sub/deeper/d.txt"), 7);
+        try {
+            //Must not be entered twice
+            Files.createSymbolicLink(new File(mRoot, "sub/deeper/loop").toPath(), mRoot.toPath());
+        } catch (UnsupportedOperationException | IOException e) {
+            //Not supported here
+        }
+    }
+
+    @Test
+    public void foldersAreCountedWithTheFilterAndSummedUpOnRequest() {
+        FileDetailsLoader loader = new FileDetailsLoader(new FileDirectoryLister(), DIRECT_EXECUTOR, 2, DIRECT_EXECUTOR, 16);
+        Recorder recorder = new Recorder();
+        loader.load(mRoot.getAbsolutePath(), true, EntryFilter.DEFAULT, false, recorder);
+        FileDetailsLoader.Details details = recorder.mResults.get(0);
+        assertTrue(details.isDirectory());
+        assertEquals(3, details.getChildCount());
+        assertEquals(DirectoryEntry.UNKNOWN, details.getSize());
+        //Cached, but without the total size
+        assertSame(details, loader.getCached(mRoot.getAbsolutePath(), false));
+        assertNull(loader.getCached(mRoot.getAbsolutePath(), true));
+
+        loader.load(mRoot.getAbsolutePath(), true, EntryFilter.DEFAULT, true, recorder);
+        assertEquals(100 + 20 + 5 + 7, recorder.mResults.get(1).getSize());
+        assertNotNull(loader.getCached(mRoot.getAbsolutePath(), true));
+
+        loader.clear();
+        EntryFilter textFiles = new EntryFilter.Builder().addExtensions("txt").build();
+        loader.load(mRoot.getAbsolutePath(), true, textFiles, true, recorder);
+        //Folders always pass
+        assertEquals(2, recorder.mResults.get(2).getChildCount());
+        assertEquals(100 + 5 + 7, recorder.mResults.get(2).getSize());
+    }
+
+    @Test
+    public void filesHaveSizeAndModificationTime() {
+        File file = new File(mRoot, "a.txt");
+        FileDetailsLoader loader = new FileDetailsLoader(new FileDirectoryLister(), DIRECT_EXECUTOR, 2, DIRECT_EXECUTOR, 1);
+        Recorder recorder = new Recorder();
+        loader.load(file.getAbsolutePath(), false, EntryFilter.DEFAULT, true, recorder);
+        FileDetailsLoader.Details details = recorder.mResults.get(0);
+        assertFalse(details.isDirectory());
+        assertEquals(100, details.getSize());
+        assertEquals(file.lastModified(), details.getLastModified());
+        assertEquals(-1, details.getChildCount());
+        assertSame(details, loader.getCached(file.getAbsolutePath(), true));
+
+        //Only one is kept
+        loader.load(new File(mRoot, "b.jpg").getAbsolutePath(), false, EntryFilter.DEFAULT, true, recorder);
+        assertNull(loader.getCached(file.getAbsolutePath(), true));
+        //Files that are gone have no details
+        loader.load(new File(mRoot, "missing").getAbsolutePath(), false, EntryFilter.DEFAULT, true, recorder);
+        assertEquals(2, recorder.mResults.size());
+    }
+
+    @Test
+    public void cancelledFolderSizesStop() {
+        final List<Runnable> queue = new ArrayList<>();
+        Executor background = new Executor() {
+            @Override
+            public void execute(Runnable command) {
+                queue.add(command);
+            }
+        };
+        //Cancels the request after the first child of the walk
+        final List<RequestQueue<FileDetailsLoader.Details>.Request> requests = new ArrayList<>();
+        final int[] visited = {0};
+        DirectoryLister lister = new DirectoryLister() {
+            private final DirectoryLister mLister = new FileDirectoryLister();
+
+            @Override
+            public boolean list(String path, boolean readMetadata, final Visitor visitor) {
+                return mLister.list(path, readMetadata, new Visitor() {
+                    @Override
+                    public boolean visit(DirectoryEntry entry) {
+                        visited[0]++;
+                        if (!requests.isEmpty()) requests.get(0).cancel();
+                        return visitor.visit(entry);
+                    }
+                });
+            }
+
+            @Override
+            public long getLastModified(String path) {
+                return mLister.getLastModified(path);
+            }
+
+            @Override
+            public DirectoryEntry getEntry(String path, String name, boolean readMetadata) {
+                return mLister.getEntry(path, name, readMetadata);
+            }
+        };
+        FileDetailsLoader loader = new FileDetailsLoader(lister, background, 1, DIRECT_EXECUTOR, 16);
+        Recorder recorder = new Recorder();
+        requests.add(loader.load(mRoot.getAbsolutePath(), true, EntryFilter.DEFAULT, true, recorder));
+        queue.remove(0).run();
+
+        assertEquals(1, visited[0]);
+        assertTrue(recorder.mResults.isEmpty());
+        assertNull(loader.getCached(mRoot.getAbsolutePath(), false));
+    }
+
+    @Test
+    public void folderSizeRequestedAgainAfterItStoppedIsReadCompletely() {
+        final List<Runnable> queue = new ArrayList<>();
+        Executor background = new Executor() {
+            @Override
+            public void execute(Runnable command) {
+                queue.add(command);
+            }
+        };
+        //The row is recycled during the first folder of the walk, which stops it, and bound again right after, like during a fling
+        final List<RequestQueue<FileDetailsLoader.Details>.Request> requests = new ArrayList<>();
+        final Recorder recorder = new Recorder();
+        final FileDetailsLoader[] loader = new FileDetailsLoader[1];
+        DirectoryLister lister = new DirectoryLister() {
+            private final DirectoryLister mLister = new FileDirectoryLister();
+            private int mListings = 0;
+
+            @Override
+            public boolean list(String path, boolean readMetadata, final Visitor visitor) {
+                //The first listing counts the children, the second one starts the walk
+                final boolean rebind = ++mListings == 2;
+                boolean readable = mLister.list(path, readMetadata, new Visitor() {
+                    @Override
+                    public boolean visit(DirectoryEntry entry) {
+                        if (rebind) requests.get(0).cancel();
+                        return visitor.visit(entry);
+                    }
+                });
+                if (rebind) requests.add(loader[0].load(mRoot.getAbsolutePath(), true, EntryFilter.DEFAULT, true, recorder));
+                return readable;
+            }
+
+            @Override
+            public long getLastModified(String path) {
+                return mLister.getLastModified(path);
+            }
+
+            @Override
+            public DirectoryEntry getEntry(String path, String name, boolean readMetadata) {
+                return mLister.getEntry(path, name, readMetadata);
+            }
+        };
+        loader[0] = new FileDetailsLoader(lister, background, 1, DIRECT_EXECUTOR, 16);
+        requests.add(loader[0].load(mRoot.getAbsolutePath(), true, EntryFilter.DEFAULT, true, recorder));
+        queue.remove(0).run();
+
+        //The stopped task delivers nothing, and the request that came in while it was stopping gets a task of its own
+        assertTrue(recorder.mResults.isEmpty());
+        assertNull(loader[0].getCached(mRoot.getAbsolutePath(), true));
+        assertEquals(1, queue.size());
+        queue.remove(0).run();
+        assertEquals(1, recorder.mResults.size());
+        assertEquals(3, recorder.mResults.get(0).getChildCount());
+        assertEquals(100 + 20 + 5 + 7, recorder.mResults.get(0).getSize());
+    }
+
+    private static void writeFile(File file, int length) throws IOException {
+        try (FileOutputStream out = new FileOutputStream(file)) {
+            out.write(new byte[length]);
+        }
+    }
+
+    private static class Recorder implements RequestQueue.Callback<FileDetailsLoader.Details> {
+        final List<FileDetailsLoader.Details> mResults = new ArrayList<>();
+
+        @Override
+        public void onResult(FileDetailsLoader.Details result) {
+            mResults.add(result);
+        }
+    }
+}
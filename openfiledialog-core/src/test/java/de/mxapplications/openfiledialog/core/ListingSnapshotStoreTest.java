@@ -0,0 +1,93 @@
+package de.mxapplications.openfiledialog.core;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+
+import static org.junit.Assert.*;
+
+public class ListingSnapshotStoreTest {
+    private static final String PATH = "/storage/emulated/0/Download";
+
+    @Rule
+    public TemporaryFolder mFolder = new TemporaryFolder();
+
+    @Test
+    public void snapshotsSurviveTheStore() throws IOException {
+        File directory = mFolder.newFolder("snapshots");
+        CompactListing listing = new CompactListing.Builder(PATH, 3)
+                .add("Music", true, DirectoryEntry.UNKNOWN, 1000)
+                .add("b.txt", false, 10, 2000)
+                .add("\u00e4.jpg", false, 20, 3000)
+                .build();
+        SortOrder sortOrder = new SortOrder(SortOrder.Mode.DATE, true, true);
+        new ListingSnapshotStore(new DiskCache(directory, 1024 * 1024)).write(42, sortOrder, listing);
+
+        //Another store reads it, like after a restart of the process
+        ListingSnapshotStore store = new ListingSnapshotStore(new DiskCache(directory, 1024 * 1024));
+        assertNull(store.read("/storage/emulated/0", 42));
+        ListingSnapshotStore.Snapshot snapshot = store.read(PATH, 42);
+        assertNotNull(snapshot);
+        assertEquals(sortOrder, snapshot.getSortOrder());
+        CompactListing read = snapshot.getListing();
+        assertEquals(PATH, read.getParentPath());
+        assertEquals(3, read.size());
+        assertEquals("\u00e4.jpg", read.getName(2));
+        assertEquals(PATH + "/b.txt", read.getPath(1));
+        assertTrue(read.isDirectory(0));
+        assertFalse(read.isDirectory(1));
+        assertEquals(20, read.getSize(2));
+        assertEquals(2000, read.getLastModified(1));
+        assertFalse(read.hasMetadata());
+        assertEquals(2, read.filtered(new EntryFilter.Builder().addExtensions("jpg").build()).size());
+
+        //A listing without any metadata has no arrays for it
+        store.write(43, SortOrder.DEFAULT, new CompactListing.Builder(PATH, 1).add("a", false, DirectoryEntry.UNKNOWN, DirectoryEntry.UNKNOWN).build());
+        read = store.read(PATH, 43).getListing();
+        assertEquals("a", read.getName(0));
+        assertEquals(DirectoryEntry.UNKNOWN, read.getSize(0));
+    }
+
+    @Test
+    public void staleAndCorruptSnapshotsAreDropped() throws IOException {
+        File directory = mFolder.newFolder("snapshots");
+        DiskCache diskCache = new DiskCache(directory, 1024 * 1024);
+        ListingSnapshotStore store = new ListingSnapshotStore(diskCache);
+        CompactListing listing = new CompactListing.Builder(PATH, 1).add("a.txt", false, 1, 1).build();
+
+        store.write(42, SortOrder.DEFAULT, listing);
+        //The folder has been modified since
+        assertNull(store.read(PATH, 43));
+        assertNull(store.read(PATH, 42));
+        assertEquals(0, diskCache.size());
+
+        store.write(42, SortOrder.DEFAULT, listing);
+        File[] files = directory.listFiles();
+        assertEquals(1, files.length);
+        RandomAccessFile file = new RandomAccessFile(files[0], "rw");
+        try {
+            //Flips a bit of the name
+            file.seek(file.length() - 6);
+            int b = file.read();
+            file.seek(file.length() - 6);
+            file.write(b ^ 1);
+        } finally {
+            file.close();
+        }
+        assertNull(store.read(PATH, 42));
+        assertEquals(0, diskCache.size());
+
+        store.write(42, SortOrder.DEFAULT, listing);
+        file = new RandomAccessFile(directory.listFiles()[0], "rw");
+        try {
+            file.setLength(file.length() - 10);
+        } finally {
+            file.close();
+        }
+        assertNull(new ListingSnapshotStore(new DiskCache(directory, 1024 * 1024)).read(PATH, 42));
+    }
+}
@@ -0,0 +1,64 @@
+package de.mxapplications.openfiledialog.core;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class MetricsHistogramTest {
+    @Test
+    public void percentilesAreWithinAnEighth() {
+        MetricsHistogram.Histogram histogram = new MetricsHistogram.Histogram();
+        for (long value = 1; value <= 100000; value++) {
+            histogram.record(value * 1000);
+        }
+        assertEquals(100000, histogram.getCount());
+        assertEquals(100000000, histogram.getMax());
+        assertWithinAnEighth(50000000, histogram.getPercentile(50));
+        assertWithinAnEighth(99000000, histogram.getPercentile(99));
+        assertEquals(100000000, histogram.getPercentile(100));
+        //Small values are exact
+        MetricsHistogram.Histogram small = new MetricsHistogram.Histogram();
+        small.record(3);
+        small.record(-5);
+        assertEquals(0, small.getPercentile(50));
+        assertEquals(3, small.getPercentile(100));
+        //The buckets cover every value without gaps
+        for (int i = 1; i < 300; i++) {
+            assertEquals(i, MetricsHistogram.Histogram.indexOf(MetricsHistogram.Histogram.upperBoundOf(i - 1) + 1));
+            assertEquals(i, MetricsHistogram.Histogram.indexOf(MetricsHistogram.Histogram.upperBoundOf(i)));
+        }
+        assertEquals(Long.MAX_VALUE, MetricsHistogram.Histogram.upperBoundOf(MetricsHistogram.Histogram.indexOf(Long.MAX_VALUE)));
+    }
+
+    @Test
+    public void navigationsAreCountedAndDumped() {
+        MetricsHistogram metrics = new MetricsHistogram();
+        metrics.onNavigation(new NavigationMetrics("/sdcard", 500, NavigationMetrics.CacheResult.MISS, 8000000, 500, 2000000, 500000, 12000000));
+        metrics.onNavigation(new NavigationMetrics("/sdcard", 500, NavigationMetrics.CacheResult.HIT, 0, 0, 0, 0, 3000000));
+        metrics.onNavigation(new NavigationMetrics("/empty", 0, NavigationMetrics.CacheResult.MISS, 100000, 0, 0, 0, -1));
+        metrics.onRowBound(40000);
+        metrics.onFramesDropped(2);
+        metrics.onFramesDropped(1);
+
+        assertEquals(2, metrics.getNavigationCount(NavigationMetrics.CacheResult.MISS));
+        assertEquals(1, metrics.getNavigationCount(NavigationMetrics.CacheResult.HIT));
+        assertEquals(0, metrics.getNavigationCount(NavigationMetrics.CacheResult.PREFETCHED));
+        //Only listed folders count for the scan time, only bound rows for the time to the first bind
+        assertEquals(2, metrics.getScanNanos().getCount());
+        assertEquals(2, metrics.getTimeToFirstBindNanos().getCount());
+        assertEquals(3, metrics.getDroppedFrames());
+
+        String dump = metrics.dump();
+        assertTrue(dump, dump.contains("navigations: hit=1 prefetched=0 miss=2"));
+        assertTrue(dump, dump.contains("bind us: count=1 p50=40 p90=40 p99=40 max=40"));
+        assertTrue(dump, dump.contains("dropped frames: 3 in 2 janky frames"));
+
+        metrics.reset();
+        assertEquals(0, metrics.getBindNanos().getCount());
+        assertEquals(0, metrics.getNavigationCount(NavigationMetrics.CacheResult.MISS));
+    }
+
+    private static void assertWithinAnEighth(long expected, long actual) {
+        assertTrue(expected + " vs " + actual, actual >= expected && actual <= expected + expected / 8);
+    }
+}
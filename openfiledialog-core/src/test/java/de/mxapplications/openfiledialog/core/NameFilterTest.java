@@ -0,0 +1,126 @@
+package de.mxapplications.openfiledialog.core;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class NameFilterTest {
+    @Test
+    public void narrowingQueryOnlyChecksPreviousMatches() {
+        List<String> names = new ArrayList<>();
+        for (int i = 0; i < 30000; i++) {
+            names.add(NameFilter.fold((i % 100 == 0 ? "Report " : "IMG_") + i + ".jpg"));
+        }
+        NameFilter filter = new NameFilter();
+        NameFilter.Names source = names(names);
+
+        filter.setQuery("rep", source, 0, new RowModel(names));
+        assertEquals(30000, filter.getCheckedCount());
+        assertEquals(300, filter.getCount(source));
+
+        filter.setQuery("REPORT 1", source, 0, new RowModel(names));
+        assertEquals(300, filter.getCheckedCount());
+        assertEquals(111, filter.getCount(source));
+        assertEquals("report 100.jpg", names.get(filter.getPosition(0)));
+
+        //A query that doesn't contain the previous one starts over
+        filter.setQuery("img", source, 0, new RowModel(names));
+        assertEquals(30000, filter.getCheckedCount());
+        assertEquals(29700, filter.getCount(source));
+    }
+
+    @Test
+    public void reportedUpdatesTransformTheRows() {
+        Random random = new Random(42);
+        for (int iteration = 0; iteration < 500; iteration++) {
+            List<String> names = new ArrayList<>();
+            int size = random.nextInt(40);
+            for (int i = 0; i < size; i++) {
+                char[] name = new char[4];
+                for (int j = 0; j < name.length; j++) name[j] = (char) ('a' + random.nextInt(4));
+                names.add(new String(name));
+            }
+            NameFilter filter = new NameFilter();
+            NameFilter.Names source = names(names);
+            RowModel rows = new RowModel(names);
+            String query = "";
+            for (int step = 0; step < 6; step++) {
+                int kind = random.nextInt(3);
+                if (kind == 0 || query.isEmpty()) {
+                    query = query + (char) ('a' + random.nextInt(4));
+                } else if (kind == 1) {
+                    query = query.substring(0, query.length() - 1);
+                } else {
+                    query = String.valueOf((char) ('a' + random.nextInt(4)));
+                }
+                filter.setQuery(query, source, 1, rows);
+
+                List<String> expected = new ArrayList<>(Arrays.asList(".."));
+                for (String name : names) {
+                    if (name.contains(query)) expected.add(name);
+                }
+                rows.resolve(expected);
+                assertEquals("query=" + query, expected, rows.mRows);
+                for (int i = 0; i < filter.getCount(source); i++) {
+                    assertEquals(expected.get(i + 1), names.get(filter.getPosition(i)));
+                    assertEquals(i, filter.indexOf(filter.getPosition(i)));
+                }
+            }
+        }
+    }
+
+    private static NameFilter.Names names(final List<String> names) {
+        return new NameFilter.Names() {
+            @Override
+            public int size() {
+                return names.size();
+            }
+
+            @Override
+            public boolean contains(int position, String foldedQuery) {
+                return names.get(position).contains(foldedQuery);
+            }
+        };
+    }
+
+    /**
+     * Applies the reported updates to a list of rows. Inserted rows are placeholders that are checked by position and resolved
+     * with the expected rows afterwards.
+     */
+    private static class RowModel implements ListDiff.UpdateCallback {
+        private static final String INSERTED = "\u0000inserted";
+        final List<String> mRows = new ArrayList<>();
+
+        RowModel(List<String> names) {
+            mRows.add("..");
+            mRows.addAll(names);
+        }
+
+        void resolve(List<String> expected) {
+            assertEquals(expected.size(), mRows.size());
+            for (int i = 0; i < mRows.size(); i++) {
+                if (mRows.get(i).equals(INSERTED)) mRows.set(i, expected.get(i));
+            }
+        }
+
+        @Override
+        public void onInserted(int position, int count) {
+            for (int i = 0; i < count; i++) mRows.add(position + i, INSERTED);
+        }
+
+        @Override
+        public void onRemoved(int position, int count) {
+            for (int i = 0; i < count; i++) mRows.remove(position);
+        }
+
+        @Override
+        public void onChanged(int position, int count) {
+            fail("Filtering doesn't change rows");
+        }
+    }
+}
@@ -0,0 +1,51 @@
+package de.mxapplications.openfiledialog.core;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+
+import static org.junit.Assert.*;
+
+public class RecentLocationsTest {
+    private static final long DAY = 24 * 60 * 60 * 1000L;
+
+    @Rule
+    public TemporaryFolder mFolder = new TemporaryFolder();
+
+    @Test
+    public void locationsAreRankedAndKeptAcrossInstances() throws IOException {
+        File file = new File(mFolder.getRoot(), "locations");
+        RecentLocations locations = new RecentLocations(file, 3);
+        long now = 100 * DAY;
+        //Often, but a month ago
+        for (int i = 0; i < 8; i++) {
+            locations.visit("/sdcard/Old", now - 30 * DAY);
+        }
+        for (int i = 0; i < 3; i++) {
+            locations.visit("/sdcard/Download", now - DAY);
+        }
+        locations.visit("/sdcard/Music", now - 2 * DAY);
+        locations.visit("/sdcard/DCIM", now);
+        //The one visited last comes first, the old one has decayed below the others and is dropped
+        assertEquals(3, locations.size());
+        assertEquals(Arrays.asList("/sdcard/DCIM", "/sdcard/Download", "/sdcard/Music"), locations.getTop(5, now));
+        assertEquals(Arrays.asList("/sdcard/DCIM"), locations.getTop(1, now));
+
+        assertTrue(locations.save());
+        RecentLocations reopened = new RecentLocations(file, 3);
+        assertEquals(locations.getTop(5, now), reopened.getTop(5, now));
+        reopened.remove("/sdcard/Music");
+        assertEquals(2, reopened.size());
+
+        //A damaged file is started over
+        try (FileOutputStream out = new FileOutputStream(file)) {
+            out.write(new byte[]{1, 2, 3});
+        }
+        assertEquals(0, new RecentLocations(file, 3).size());
+    }
+}
@@ -0,0 +1,313 @@
+package de.mxapplications.openfiledialog.core;
+
+import org.junit.After;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.Assert.*;
+
+/**
+ * Browses trees on a {@link SlowDirectoryLister} the way the dialog does: every navigation and load is started on a single UI
+ * thread, the listings are delivered back to it, and the Browser runs with a ListingCache, the preload and prefetching. Whatever
+ * the storage does, the UI thread must never wait for it.
+ */
+public class ResponsivenessTest {
+    private static final String UI_THREAD = "ui";
+    //Generous, a frame is 16 ms, but the UI thread must not come near a listing of the slow storage
+    private static final long BUDGET_MILLIS = 50;
+
+    private final ExecutorService mBackgroundExecutor = Executors.newFixedThreadPool(4);
+    private final ExecutorService mPrefetchExecutor = Executors.newFixedThreadPool(2);
+    private final ListingCache<DirectoryLoader.Listing> mListingCache = new ListingCache<>(20, 16 * 1024 * 1024);
+    private final ExecutorService mUiExecutor = Executors.newSingleThreadExecutor(new ThreadFactory() {
+        @Override
+        public Thread newThread(Runnable runnable) {
+            return new Thread(runnable, UI_THREAD);
+        }
+    });
+
+    @After
+    public void shutDown() throws InterruptedException {
+        //Loads that are given up still post to the UI thread, so it's shut down last
+        mBackgroundExecutor.shutdownNow();
+        mPrefetchExecutor.shutdownNow();
+        mBackgroundExecutor.awaitTermination(5, TimeUnit.SECONDS);
+        mPrefetchExecutor.awaitTermination(5, TimeUnit.SECONDS);
+        mUiExecutor.shutdownNow();
+    }
+
+    @Test
+    public void uiThreadNeverWaitsForSlowStorage() throws Exception {
+        SlowDirectoryLister lister = new SlowDirectoryLister(new SyntheticDirectoryLister("/r", 4, 2000, 4))
+                .setListingLatency(200, TimeUnit.MILLISECONDS)
+                .setStatLatency(20, TimeUnit.MICROSECONDS);
+        final Browser browser = newBrowser(lister);
+        final RecordingListener listener = new RecordingListener(1);
+
+        //The dialog preloads its first folder while it is being created
+        long worstMillis = timeOnUiThread(new Runnable() {
+            @Override
+            public void run() {
+                browser.preload();
+            }
+        });
+        for (final String name : Arrays.asList("d0", "d1", "..", "d2", "d3", "..", "d1")) {
+            worstMillis = Math.max(worstMillis, timeOnUiThread(new Runnable() {
+                @Override
+                public void run() {
+                    browser.navigateToChild(name);
+                    browser.load(null, listener);
+                    browser.prefetch(Collections.singletonList(BrowserPaths.childPath(browser.getPath(), "d1")));
+                }
+            }));
+        }
+
+        assertTrue(listener.await());
+        assertEquals(Arrays.asList("/r/d0/d2/d1"), listener.getPaths());
+        assertEquals(4 + 2000, listener.getLastListing().size());
+        assertTrue(lister.getListingCount() > 0);
+
+        //Back to a folder that has been prefetched in the meantime, then forward to the one that has just been cached: neither is listed again
+        worstMillis = Math.max(worstMillis, timeOnUiThread(new Runnable() {
+            @Override
+            public void run() {
+                browser.prefetch(Collections.singletonList("/r/d0/d2"));
+            }
+        }));
+        awaitPrefetches(browser);
+        int listingCount = lister.getListingCount();
+        assertTrue(browser.navigateBack());
+        final RecordingListener back = new RecordingListener(1);
+        worstMillis = Math.max(worstMillis, timeOnUiThread(new Runnable() {
+            @Override
+            public void run() {
+                browser.load(null, back);
+            }
+        }));
+        assertTrue(back.await());
+        assertEquals(4 + 2000, back.getLastListing().size());
+        assertEquals(1, browser.getPrefetchStats().getHitCount());
+        assertTrue(browser.navigateForward());
+        final RecordingListener forward = new RecordingListener(1);
+        worstMillis = Math.max(worstMillis, timeOnUiThread(new Runnable() {
+            @Override
+            public void run() {
+                browser.load(null, forward);
+            }
+        }));
+        assertTrue(forward.await());
+        assertEquals(4 + 2000, forward.getLastListing().size());
+        assertEquals(listingCount, lister.getListingCount());
+
+        assertTrue("The UI thread took " + worstMillis + " ms for a step", worstMillis < BUDGET_MILLIS);
+        assertFalse(lister.getListingThreads().contains(UI_THREAD));
+    }
+
+    @Test
+    public void supersededLoadStopsListing() throws Exception {
+        int files = 5000;
+        SlowDirectoryLister lister = new SlowDirectoryLister(new SyntheticDirectoryLister("/r", 2, files, 30))
+                .setStatLatency(200, TimeUnit.MICROSECONDS);
+        final Browser browser = newBrowser(lister);
+        final RecordingListener listener = new RecordingListener(1);
+
+        //A wide folder that takes a second to list is preloaded, and its load takes the running preload over. Then quickly down a deep
+        //path of more such folders before it's done, which gives up the preload together with the load
+        onUiThread(new Callable<Void>() {
+            @Override
+            public Void call() {
+                browser.preload();
+                return null;
+            }
+        });
+        Thread.sleep(20);
+        onUiThread(new Callable<Void>() {
+            @Override
+            public Void call() {
+                browser.load(null, listener);
+                return null;
+            }
+        });
+        Thread.sleep(50);
+        final StringBuilder deepPath = new StringBuilder("/r");
+        for (int level = 0; level < 30; level++) {
+            onUiThread(new Callable<Void>() {
+                @Override
+                public Void call() {
+                    browser.navigateToChild("d1");
+                    browser.load(null, listener);
+                    return null;
+                }
+            });
+            deepPath.append("/d1");
+        }
+
+        assertTrue(listener.await());
+        mBackgroundExecutor.shutdown();
+        assertTrue(mBackgroundExecutor.awaitTermination(5, TimeUnit.SECONDS));
+        mPrefetchExecutor.shutdown();
+        assertTrue(mPrefetchExecutor.awaitTermination(5, TimeUnit.SECONDS));
+        mUiExecutor.shutdown();
+        assertTrue(mUiExecutor.awaitTermination(5, TimeUnit.SECONDS));
+        assertEquals(Arrays.asList(deepPath.toString()), listener.getPaths());
+        //Only the last folder has been listed completely, the others and the preload have been given up long before their last child
+        assertTrue("The listings cost " + lister.getStatCount() + " stats", lister.getStatCount() < files * 3 / 2);
+    }
+
+    @Test
+    public void failedListingKeepsTheHistory() throws Exception {
+        SlowDirectoryLister lister = new SlowDirectoryLister(new SyntheticDirectoryLister("/r", 3, 10, 3))
+                .setListingLatency(20, TimeUnit.MILLISECONDS)
+                .addFailingPath("/r/d1/d2");
+        final Browser browser = newBrowser(lister);
+
+        RecordingListener failed = navigateAndLoad(browser, "d1", "d2");
+        assertEquals(Arrays.asList("/r/d1/d2"), failed.getPaths());
+        //An unreadable folder is delivered without children
+        assertTrue(failed.getLastListing().isEmpty());
+        assertEquals(Arrays.asList("/r/d1", "/r"), browser.getBackHistory());
+
+        //Going back to a readable folder works as before
+        assertTrue(browser.navigateBack());
+        RecordingListener back = navigateAndLoad(browser);
+        assertEquals(3 + 10, back.getLastListing().size());
+        assertTrue(browser.canNavigateForward());
+
+        //Every other listing failing doesn't get in the way of the history either. A folder that couldn't be read isn't cached and is
+        //listed again, a readable one is taken from the cache
+        lister.setFailEvery(2);
+        int listingCount = lister.getListingCount();
+        int delivered = 0;
+        int unreadable = 0;
+        for (int i = 0; i < 6; i++) {
+            browser.navigateTo(i % 2 == 0 ? "/r/d0" : "/r/d2");
+            RecordingListener listener = navigateAndLoad(browser);
+            delivered++;
+            if (listener.getLastListing().isEmpty()) {
+                unreadable++;
+            } else {
+                awaitCached(browser.getPath());
+            }
+        }
+        assertEquals(6, delivered);
+        assertEquals(1, unreadable);
+        assertEquals(listingCount + 3, lister.getListingCount());
+        assertEquals("/r/d2", browser.getPath());
+        assertEquals("/r/d0", browser.getBackHistory().get(0));
+    }
+
+    private Browser newBrowser(DirectoryLister lister) {
+        Browser browser = new Browser(lister, mBackgroundExecutor, mUiExecutor, "/r");
+        browser.setListingCache(mListingCache);
+        browser.setPrefetching(mPrefetchExecutor, 2, new ListingCache<DirectoryLoader.Listing>(8, 16 * 1024 * 1024));
+        return browser;
+    }
+
+    /***
+     * Waits until a folder that has been delivered is in the ListingCache, it is stored there after its last batch.
+     */
+    private void awaitCached(String path) throws InterruptedException {
+        long end = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        //SyntheticDirectoryLister reports 1 as the modification time of every folder
+        while (!mListingCache.contains(path, 1)) {
+            if (System.nanoTime() > end) fail(path + " hasn't been cached");
+            Thread.sleep(1);
+        }
+    }
+
+    private static void awaitPrefetches(Browser browser) throws InterruptedException {
+        long end = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        while (System.nanoTime() < end) {
+            Prefetcher.Stats stats = browser.getPrefetchStats();
+            if (stats.getCompletedCount() + stats.getCancelledCount() + stats.getSkippedCount() == stats.getRequestCount()) return;
+            Thread.sleep(10);
+        }
+        fail("The prefetches haven't finished");
+    }
+
+    private RecordingListener navigateAndLoad(final Browser browser, final String... names) throws Exception {
+        final RecordingListener listener = new RecordingListener(1);
+        onUiThread(new Callable<Void>() {
+            @Override
+            public Void call() {
+                for (String name : names) {
+                    browser.navigateToChild(name);
+                }
+                browser.load(null, listener);
+                return null;
+            }
+        });
+        assertTrue(listener.await());
+        return listener;
+    }
+
+    /***
+     * Runs a step on the UI thread and measures it from posting until it's done, which shows both the step itself and any wait behind a delivery.
+     * @return The time in milliseconds.
+     */
+    private long timeOnUiThread(final Runnable step) throws InterruptedException, ExecutionException {
+        long start = System.nanoTime();
+        onUiThread(new Callable<Void>() {
+            @Override
+            public Void call() {
+                step.run();
+                return null;
+            }
+        });
+        return TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+    }
+
+    private <T> T onUiThread(Callable<T> callable) throws InterruptedException, ExecutionException {
+        return mUiExecutor.submit(callable).get();
+    }
+
+    /***
+     * Records the folders whose last batch has been delivered.
+     */
+    private static final class RecordingListener implements DirectoryLoader.Listener {
+        private final CountDownLatch mDelivered;
+        private final List<String> mPaths = Collections.synchronizedList(new ArrayList<String>());
+        private final AtomicReference<List<FileItem>> mLastListing = new AtomicReference<>();
+        private final AtomicInteger mWrongThread = new AtomicInteger();
+
+        RecordingListener(int deliveries) {
+            this.mDelivered = new CountDownLatch(deliveries);
+        }
+
+        @Override
+        public void onBatch(String path, List<FileItem> children, List<int[]> insertedRanges, boolean finished) {
+            if (!UI_THREAD.equals(Thread.currentThread().getName())) mWrongThread.incrementAndGet();
+            if (!finished) return;
+            mPaths.add(path);
+            mLastListing.set(children);
+            mDelivered.countDown();
+        }
+
+        boolean await() throws InterruptedException {
+            return mDelivered.await(10, TimeUnit.SECONDS) && mWrongThread.get() == 0;
+        }
+
+        List<String> getPaths() {
+            synchronized (mPaths) {
+                return new ArrayList<>(mPaths);
+            }
+        }
+
+        List<FileItem> getLastListing() {
+            return mLastListing.get();
+        }
+    }
+}
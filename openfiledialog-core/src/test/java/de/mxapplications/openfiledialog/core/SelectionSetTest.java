@@ -0,0 +1,114 @@
+package de.mxapplications.openfiledialog.core;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+import static org.junit.Assert.*;
+
+public class SelectionSetTest {
+    private static final Prefetcher.Cancellation NOT_CANCELLED = new Prefetcher.Cancellation() {
+        @Override
+        public boolean isCancelled() {
+            return false;
+        }
+    };
+
+    @Test
+    public void selectionSurvivesAcrossFolders() {
+        SelectionSet selection = new SelectionSet();
+        assertTrue(selection.isEmpty());
+
+        selection.setSelected("/sdcard/a/f0.txt", true);
+        assertTrue(selection.toggle("/sdcard/a/f1.txt"));
+        assertFalse(selection.toggle("/sdcard/a/f1.txt"));
+        selection.setSelected("/sdcard/b/x.txt", true);
+        selection.setSelected("/sdcard/b/x.txt", false);
+        assertEquals(Arrays.asList("/sdcard/a"), selection.getFolders());
+        assertTrue(selection.isSelected("/sdcard/a/f0.txt"));
+        assertFalse(selection.isSelected("/sdcard/a/f1.txt"));
+
+        //A range of the packed listing is hashed like the paths
+        CompactListing listing = new CompactListing.Builder("/sdcard/c", 4)
+                .add("sub", true, DirectoryEntry.UNKNOWN, DirectoryEntry.UNKNOWN)
+                .add("one.txt", false, 1, 1)
+                .add("two.txt", false, 2, 2)
+                .add("three.txt", false, 3, 3)
+                .build();
+        selection.selectRange(listing, 0, 3);
+        assertFalse(selection.isSelected("/sdcard/c/sub"));
+        assertTrue(selection.isSelected("/sdcard/c/one.txt"));
+        assertTrue(selection.isSelected("/sdcard/c/two.txt"));
+        assertFalse(selection.isSelected("/sdcard/c/three.txt"));
+
+        //All files of a folder, with exceptions
+        selection.selectAll("/sdcard/d");
+        selection.setSelected("/sdcard/d/skip.txt", false);
+        assertTrue(selection.isSelected("/sdcard/d/anything.txt"));
+        assertFalse(selection.isSelected("/sdcard/d/skip.txt"));
+
+        SelectionSet copy = selection.copy();
+        selection.clear();
+        assertTrue(selection.isEmpty());
+        assertTrue(copy.isSelected("/sdcard/a/f0.txt"));
+        assertEquals(Arrays.asList("/sdcard/a", "/sdcard/c", "/sdcard/d"), copy.getFolders());
+    }
+
+    @Test
+    public void selectedFilesAreCollectedInBatches() {
+        SyntheticDirectoryLister lister = new SyntheticDirectoryLister("/sdcard/a", 2, 1000, 1);
+        SelectionSet selection = new SelectionSet();
+        selection.selectAll("/sdcard/a");
+        selection.setSelected("/sdcard/a/f3.txt", false);
+        //A file that has been removed since isn't delivered
+        selection.setSelected("/sdcard/b/gone.txt", true);
+
+        final List<Integer> batchSizes = new ArrayList<>();
+        final Set<String> paths = new HashSet<>();
+        final boolean[] last = {false};
+        selection.collect(lister, EntryFilter.DEFAULT, 256, new SelectionSet.BatchListener() {
+            @Override
+            public void onBatch(List<String> batch, boolean isLast) {
+                assertFalse(last[0]);
+                batchSizes.add(batch.size());
+                paths.addAll(batch);
+                last[0] = isLast;
+            }
+        }, NOT_CANCELLED);
+        assertTrue(last[0]);
+        //The hidden file and the subfolders don't pass
+        assertEquals(999, paths.size());
+        assertFalse(paths.contains("/sdcard/a/f3.txt"));
+        assertTrue(paths.contains("/sdcard/a/f4.txt"));
+        assertEquals(Arrays.asList(256, 256, 256, 231), batchSizes);
+    }
+
+    @Test
+    public void longHashSetMatchesHashSet() {
+        Random random = new Random(42);
+        LongHashSet set = new LongHashSet();
+        Set<Long> expected = new HashSet<>();
+        for (int i = 0; i < 100000; i++) {
+            //Few distinct values, so removals hit present values and clusters form
+            long value = random.nextInt(2000) - 10;
+            if (random.nextBoolean()) {
+                assertEquals(expected.add(value), set.add(value));
+            } else {
+                assertEquals(expected.remove(value), set.remove(value));
+            }
+        }
+        assertEquals(expected.size(), set.size());
+        for (long value = -10; value < 1990; value++) {
+            assertEquals(expected.contains(value), set.contains(value));
+        }
+        LongHashSet copy = set.copy();
+        set.clear();
+        assertEquals(0, set.size());
+        assertEquals(expected.size(), copy.size());
+    }
+}
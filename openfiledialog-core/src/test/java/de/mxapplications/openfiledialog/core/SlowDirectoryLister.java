@@ -0,0 +1,163 @@
+package de.mxapplications.openfiledialog.core;
+
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * A DirectoryLister for tests that behaves like slow storage, e.g. an SD card or a folder behind FUSE. It wraps another lister,
+ * usually a {@link SyntheticDirectoryLister} with a very wide or very deep tree, and adds latency: every listing waits before its
+ * first child, and every child costs a stat for its type and another one for its metadata if that is requested, like
+ * {@link FileDirectoryLister}. Children that the name check of a {@link DirectoryLister.FilteringVisitor} rules out cost no stat.
+ * <p>Listings can be made to fail, for chosen folders or every n-th listing, and are then reported as unreadable. The threads
+ * that have listed are recorded, so a test can make sure the UI thread never touched the storage.</p>
+ */
+class SlowDirectoryLister implements DirectoryLister {
+    private final DirectoryLister mDirectoryLister;
+    private volatile long mListingLatencyNanos = 0;
+    private volatile long mStatLatencyNanos = 0;
+    private volatile int mFailEvery = 0;
+    private final Set<String> mFailingPaths = Collections.synchronizedSet(new HashSet<String>());
+    private final Set<String> mListingThreads = Collections.synchronizedSet(new HashSet<String>());
+    private final AtomicInteger mListingCount = new AtomicInteger();
+    private final AtomicLong mStatCount = new AtomicLong();
+
+    /***
+     * Constructs a SlowDirectoryLister without any latency or failure.
+     * @param directoryLister The lister that generates the children.
+     */
+    SlowDirectoryLister(DirectoryLister directoryLister) {
+        this.mDirectoryLister = directoryLister;
+    }
+
+    /***
+     * Sets the time every listing waits before its first child.
+     * @param latency The latency.
+     * @param unit The unit of the latency.
+     * @return The SlowDirectoryLister.
+     */
+    SlowDirectoryLister setListingLatency(long latency, TimeUnit unit) {
+        this.mListingLatencyNanos = unit.toNanos(latency);
+        return this;
+    }
+
+    /***
+     * Sets the time every stat of a child takes.
+     * @param latency The latency.
+     * @param unit The unit of the latency.
+     * @return The SlowDirectoryLister.
+     */
+    SlowDirectoryLister setStatLatency(long latency, TimeUnit unit) {
+        this.mStatLatencyNanos = unit.toNanos(latency);
+        return this;
+    }
+
+    /***
+     * Makes every n-th listing fail, counting all listings since the lister has been constructed.
+     * @param n The interval, 0 to not fail any listing by count.
+     * @return The SlowDirectoryLister.
+     */
+    SlowDirectoryLister setFailEvery(int n) {
+        this.mFailEvery = n;
+        return this;
+    }
+
+    /***
+     * Makes every listing of a folder fail, and its entry unreadable.
+     * @param path The absolute path of the folder.
+     * @return The SlowDirectoryLister.
+     */
+    SlowDirectoryLister addFailingPath(String path) {
+        mFailingPaths.add(path);
+        return this;
+    }
+
+    /***
+     * Returns how many listings have been started, including failed ones.
+     * @return The number of listings.
+     */
+    int getListingCount() {
+        return mListingCount.get();
+    }
+
+    /***
+     * Returns how many stats the children have cost.
+     * @return The number of stats.
+     */
+    long getStatCount() {
+        return mStatCount.get();
+    }
+
+    /***
+     * Returns the names of the threads that have listed a folder or read an entry.
+     * @return A copy of the names.
+     */
+    Set<String> getListingThreads() {
+        synchronized (mListingThreads) {
+            return new HashSet<>(mListingThreads);
+        }
+    }
+
+    @Override
+    public boolean list(String path, final boolean readMetadata, final Visitor visitor) {
+        mListingThreads.add(Thread.currentThread().getName());
+        int listing = mListingCount.incrementAndGet();
+        sleep(mListingLatencyNanos);
+        int failEvery = mFailEvery;
+        if (mFailingPaths.contains(path) || (failEvery > 0 && listing % failEvery == 0)) return false;
+        final EntryFilter filter = visitor instanceof FilteringVisitor ? ((FilteringVisitor) visitor).getFilter() : null;
+        final CountingVisitor counter = visitor instanceof CountingVisitor ? (CountingVisitor) visitor : null;
+        return mDirectoryLister.list(path, readMetadata, new Visitor() {
+            @Override
+            public boolean visit(DirectoryEntry entry) {
+                EntryFilter.NameMatch nameMatch = filter != null ? filter.matchName(entry.getName()) : EntryFilter.NameMatch.ACCEPT;
+                if (nameMatch == EntryFilter.NameMatch.REJECT) return true;
+                stat();
+                if (counter != null) counter.onStat();
+                if (nameMatch == EntryFilter.NameMatch.FOLDER_ONLY && !entry.isDirectory()) return true;
+                return visitor.visit(readMetadata ? withMetadata(entry) : entry);
+            }
+        });
+    }
+
+    @Override
+    public long getLastModified(String path) {
+        mListingThreads.add(Thread.currentThread().getName());
+        stat();
+        return mFailingPaths.contains(path) ? 0 : mDirectoryLister.getLastModified(path);
+    }
+
+    @Override
+    public DirectoryEntry getEntry(String path, String name, boolean readMetadata) {
+        mListingThreads.add(Thread.currentThread().getName());
+        stat();
+        if (mFailingPaths.contains(path)) return null;
+        DirectoryEntry entry = mDirectoryLister.getEntry(path, name, false);
+        return entry != null && readMetadata ? withMetadata(entry) : entry;
+    }
+
+    private DirectoryEntry withMetadata(DirectoryEntry entry) {
+        stat();
+        return new DirectoryEntry(entry.getName(), entry.isDirectory(), entry.getName().length(), 1);
+    }
+
+    private void stat() {
+        mStatCount.incrementAndGet();
+        sleep(mStatLatencyNanos);
+    }
+
+    private static void sleep(long nanos) {
+        if (nanos <= 0) return;
+        //parkNanos returns early when the thread is interrupted, like a read that is aborted
+        long end = System.nanoTime() + nanos;
+        long remaining = nanos;
+        while (remaining > 0 && !Thread.currentThread().isInterrupted()) {
+            LockSupport.parkNanos(remaining);
+            remaining = end - System.nanoTime();
+        }
+    }
+}
@@ -0,0 +1,136 @@
+package de.mxapplications.openfiledialog.core;
+
+import org.junit.After;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+public class StorageRootProberTest {
+    @Rule
+    public TemporaryFolder mFolder = new TemporaryFolder();
+
+    private final ExecutorService mProbeExecutor = Executors.newCachedThreadPool();
+    private final ScheduledExecutorService mScheduler = Executors.newSingleThreadScheduledExecutor();
+    private final ExecutorService mCallbackExecutor = Executors.newSingleThreadExecutor();
+    private final CountDownLatch mSlowCardUnmounted = new CountDownLatch(1);
+
+    @After
+    public void shutDown() {
+        mSlowCardUnmounted.countDown();
+        mProbeExecutor.shutdownNow();
+        mScheduler.shutdownNow();
+        mCallbackExecutor.shutdownNow();
+    }
+
+    @Test
+    public void aSlowCardDoesNotHoldBackTheOthers() throws IOException, InterruptedException {
+        File internal = mFolder.newFolder("emulated", "0");
+        assertTrue(new File(internal, "Download").mkdir());
+        final File slowCard = mFolder.newFolder("1A2B-3C4D");
+        File usbDrive = mFolder.newFolder("usb");
+        File link = new File(mFolder.getRoot(), "sdcard0");
+        try {
+            //The same volume under another path must only be shown once
+            Files.createSymbolicLink(link.toPath(), internal.toPath());
+        } catch (UnsupportedOperationException | IOException e) {
+            link = internal;
+        }
+        final List<StorageRootProber.Root> candidates = Arrays.asList(
+                new StorageRootProber.Root(internal.getPath(), "Internal storage"),
+                new StorageRootProber.Root(slowCard.getPath(), "SD card"),
+                new StorageRootProber.Root(new File(mFolder.getRoot(), "unmounted").getPath(), "Unmounted"),
+                new StorageRootProber.Root(link.getPath(), "Link"),
+                new StorageRootProber.Root(usbDrive.getPath(), "USB"));
+        DirectoryLister lister = new FileDirectoryLister() {
+            @Override
+            public boolean list(String path, boolean readMetadata, Visitor visitor) {
+                if (path.equals(slowCard.getPath())) {
+                    try {
+                        mSlowCardUnmounted.await();
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                    return false;
+                }
+                return super.list(path, readMetadata, visitor);
+            }
+        };
+        StorageRootProber prober = new StorageRootProber(new StorageRootProber.Source() {
+            @Override
+            public List<StorageRootProber.Root> getCandidates() {
+                return candidates;
+            }
+        }, lister, mProbeExecutor, mScheduler, mCallbackExecutor, 2000);
+
+        final LinkedBlockingQueue<List<StorageRootProber.Root>> deliveries = new LinkedBlockingQueue<>();
+        final List<StorageRootProber.Root> finalRoots = new ArrayList<>();
+        final CountDownLatch finished = new CountDownLatch(1);
+        StorageRootProber.Probe probe = prober.probe(new StorageRootProber.Listener() {
+            @Override
+            public void onRoots(List<StorageRootProber.Root> roots, boolean done) {
+                deliveries.add(roots);
+                if (done) {
+                    finalRoots.addAll(roots);
+                    finished.countDown();
+                }
+            }
+        });
+
+        //The other roots are shown long before the slow card times out
+        List<StorageRootProber.Root> expected = Arrays.asList(candidates.get(0), candidates.get(4));
+        List<StorageRootProber.Root> roots = deliveries.poll(5, TimeUnit.SECONDS);
+        while (roots != null && !roots.equals(expected)) {
+            roots = deliveries.poll(5, TimeUnit.SECONDS);
+        }
+        assertEquals(expected, roots);
+        assertEquals(1, finished.getCount());
+
+        assertTrue(finished.await(5, TimeUnit.SECONDS));
+        assertEquals(expected, finalRoots);
+        assertEquals(1, probe.getTimedOutCount());
+    }
+
+    @Test
+    public void aCancelledProbeDeliversNothing() throws InterruptedException {
+        final CountDownLatch sourceCalled = new CountDownLatch(1);
+        final CountDownLatch release = new CountDownLatch(1);
+        StorageRootProber prober = new StorageRootProber(new StorageRootProber.Source() {
+            @Override
+            public List<StorageRootProber.Root> getCandidates() {
+                sourceCalled.countDown();
+                try {
+                    release.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                return Arrays.asList(new StorageRootProber.Root(mFolder.getRoot().getPath(), "Root"));
+            }
+        }, new FileDirectoryLister(), mProbeExecutor, mScheduler, mCallbackExecutor, 1000);
+        final LinkedBlockingQueue<List<StorageRootProber.Root>> deliveries = new LinkedBlockingQueue<>();
+        StorageRootProber.Probe probe = prober.probe(new StorageRootProber.Listener() {
+            @Override
+            public void onRoots(List<StorageRootProber.Root> roots, boolean finished) {
+                deliveries.add(roots);
+            }
+        });
+        assertTrue(sourceCalled.await(5, TimeUnit.SECONDS));
+        probe.cancel();
+        release.countDown();
+        assertNull(deliveries.poll(300, TimeUnit.MILLISECONDS));
+    }
+}
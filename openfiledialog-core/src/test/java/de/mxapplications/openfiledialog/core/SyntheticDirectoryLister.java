@@ -0,0 +1,97 @@
+package de.mxapplications.openfiledialog.core;
+
+/**
+ * A DirectoryLister for tests and benchmarks that generates a regular folder tree in memory instead of reading the file system:
+ * every folder above the last level has the same number of subfolders ("d0", "d1", ...) and every folder has the same number of
+ * files ("f0.txt", "f1.txt", ...) plus one hidden file. The tree lives below a root path that doesn't need to exist.
+ */
+class SyntheticDirectoryLister implements DirectoryLister {
+    private final String mRoot;
+    private final int mFoldersPerFolder;
+    private final int mFilesPerFolder;
+    private final int mDepth;
+
+    /***
+     * Constructs a SyntheticDirectoryLister.
+     * @param root The absolute path of the root of the tree.
+     * @param foldersPerFolder The number of subfolders of every folder above the last level.
+     * @param filesPerFolder The number of visible files of every folder.
+     * @param depth The number of levels of subfolders below the root.
+     */
+    SyntheticDirectoryLister(String root, int foldersPerFolder, int filesPerFolder, int depth) {
+        this.mRoot = root;
+        this.mFoldersPerFolder = foldersPerFolder;
+        this.mFilesPerFolder = filesPerFolder;
+        this.mDepth = depth;
+    }
+
+    /***
+     * Returns the number of folders in the tree, including the root.
+     * @return The number of folders.
+     */
+    long getFolderCount() {
+        long folders = 0;
+        long level = 1;
+        for (int i = 0; i <= mDepth; i++) {
+            folders += level;
+            level *= mFoldersPerFolder;
+        }
+        return folders;
+    }
+
+    /***
+     * Returns the number of visible files and folders in the tree, not including the root.
+     * @return The number of entries.
+     */
+    long getEntryCount() {
+        return getFolderCount() - 1 + getFolderCount() * mFilesPerFolder;
+    }
+
+    @Override
+    public boolean list(String path, boolean readMetadata, Visitor visitor) {
+        int depth = depthOf(path);
+        if (depth < 0) return false;
+        if (depth < mDepth) {
+            for (int i = 0; i < mFoldersPerFolder; i++) {
+                if (!visitor.visit(new DirectoryEntry("d" + i, true, DirectoryEntry.UNKNOWN, DirectoryEntry.UNKNOWN))) return true;
+            }
+        }
+        for (int i = 0; i < mFilesPerFolder; i++) {
+            if (!visitor.visit(new DirectoryEntry("f" + i + ".txt", false, DirectoryEntry.UNKNOWN, DirectoryEntry.UNKNOWN))) return true;
+        }
+        visitor.visit(new DirectoryEntry(".hidden", false, DirectoryEntry.UNKNOWN, DirectoryEntry.UNKNOWN));
+        return true;
+    }
+
+    @Override
+    public long getLastModified(String path) {
+        return depthOf(path) < 0 ? 0 : 1;
+    }
+
+    @Override
+    public DirectoryEntry getEntry(String path, final String name, boolean readMetadata) {
+        final DirectoryEntry[] found = {null};
+        list(path, false, new Visitor() {
+            @Override
+            public boolean visit(DirectoryEntry entry) {
+                if (entry.getName().equals(name)) found[0] = entry;
+                return found[0] == null;
+            }
+        });
+        return found[0];
+    }
+
+    /***
+     * Returns the level of a folder below the root, or -1 if it isn't a folder of the tree.
+     */
+    private int depthOf(String path) {
+        if (path.equals(mRoot)) return 0;
+        if (!path.startsWith(mRoot + "/")) return -1;
+        int depth = 0;
+        for (String part : path.substring(mRoot.length() + 1).split("/")) {
+            if (!part.startsWith("d")) return -1;
+            depth++;
+        }
+        return depth <= mDepth ? depth : -1;
+    }
+}
@@ -0,0 +1,201 @@
+package de.mxapplications.openfiledialog.core;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executor;
+
+import static org.junit.Assert.*;
+
+public class ThumbnailLoaderTest {
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+    private static final Executor DIRECT_EXECUTOR = new Executor() {
+        @Override
+        public void execute(Runnable command) {
+            command.run();
+        }
+    };
+
+    @Rule
+    public TemporaryFolder mFolder = new TemporaryFolder();
+
+    @Test
+    public void requestsForTheSameThumbnailAreMerged() {
+        QueueExecutor background = new QueueExecutor();
+        RecordingDecoder decoder = new RecordingDecoder();
+        ThumbnailLoader<String> loader = new ThumbnailLoader<>(decoder, new ThumbnailCache<String>(1024), null, background, 2, DIRECT_EXECUTOR);
+        RecordingTarget first = new RecordingTarget();
+        RecordingTarget second = new RecordingTarget();
+        loader.load("/a.jpg", 48, 1, 1, first);
+        loader.load("/a.jpg", 48, 1, 1, second);
+        assertEquals(1, loader.getPendingCount());
+        background.runAll();
+
+        assertEquals("[/a.jpg]", decoder.mDecoded.toString());
+        assertEquals("[thumbnail of /a.jpg]", first.mThumbnails.toString());
+        assertEquals("[thumbnail of /a.jpg]", second.mThumbnails.toString());
+        //Now it comes from memory
+        assertEquals("thumbnail of /a.jpg", loader.getCached("/a.jpg", 48, 1, 1));
+        assertNull(loader.getCached("/a.jpg", 96, 1, 1));
+        assertNull(loader.getCached("/a.jpg", 48, 2, 1));
+    }
+
+    @Test
+    public void cancelledRequestsAreNotDecodedOrDelivered() {
+        QueueExecutor background = new QueueExecutor();
+        RecordingDecoder decoder = new RecordingDecoder();
+        ThumbnailLoader<String> loader = new ThumbnailLoader<>(decoder, new ThumbnailCache<String>(1024), null, background, 1, DIRECT_EXECUTOR);
+        RecordingTarget target = new RecordingTarget();
+        RequestQueue<String>.Request running = loader.load("/running.jpg", 48, 1, 1, target);
+        RequestQueue<String>.Request queued = loader.load("/queued.jpg", 48, 1, 1, target);
+        queued.cancel();
+        assertEquals(1, loader.getPendingCount());
+        running.cancel();
+        assertTrue(running.isCancelled());
+        background.runAll();
+
+        //The running one is finished and cached, but not delivered
+        assertEquals("[/running.jpg]", decoder.mDecoded.toString());
+        assertTrue(target.mThumbnails.isEmpty());
+        assertEquals(0, loader.getPendingCount());
+        assertNotNull(loader.getCached("/running.jpg", 48, 1, 1));
+    }
+
+    @Test
+    public void lastRequestIsDecodedFirst() {
+        QueueExecutor background = new QueueExecutor();
+        RecordingDecoder decoder = new RecordingDecoder();
+        ThumbnailLoader<String> loader = new ThumbnailLoader<>(decoder, new ThumbnailCache<String>(1024), null, background, 1, DIRECT_EXECUTOR);
+        RecordingTarget target = new RecordingTarget();
+        for (String path : new String[]{"/1.jpg", "/2.jpg", "/3.jpg", "/4.jpg"}) {
+            loader.load(path, 48, 1, 1, target);
+        }
+        //Requested again, e.g. scrolled back into view
+        loader.load("/2.jpg", 48, 1, 1, target);
+        background.runAll();
+
+        assertEquals("[/1.jpg, /2.jpg, /4.jpg, /3.jpg]", decoder.mDecoded.toString());
+        assertEquals(5, target.mThumbnails.size());
+    }
+
+    @Test
+    public void diskCacheKeepsThumbnailsOfUnchangedFiles() throws IOException {
+        File image = mFolder.newFile("IMG_0001.jpg");
+        File cacheDirectory = new File(mFolder.getRoot(), "cache");
+        RecordingDecoder decoder = new RecordingDecoder();
+        ThumbnailLoader<String> loader = new ThumbnailLoader<>(decoder, new ThumbnailCache<String>(1024), new DiskCache(cacheDirectory, 4096),
+                DIRECT_EXECUTOR, 1, DIRECT_EXECUTOR);
+        //The modification time and the size are read in the background if they aren't known
+        loader.load(image.getAbsolutePath(), 48, DirectoryEntry.UNKNOWN, DirectoryEntry.UNKNOWN, new RecordingTarget());
+        assertEquals(1, loader.getDecodedCount());
+
+        //Like after a restart: nothing in memory, a new DiskCache on the same directory
+        RecordingTarget target = new RecordingTarget();
+        ThumbnailLoader<String> restarted = new ThumbnailLoader<>(decoder, new ThumbnailCache<String>(1024), new DiskCache(cacheDirectory, 4096),
+                DIRECT_EXECUTOR, 1, DIRECT_EXECUTOR);
+        restarted.load(image.getAbsolutePath(), 48, image.lastModified(), image.length(), target);
+        assertEquals(1, restarted.getDiskHitCount());
+        assertEquals(0, restarted.getDecodedCount());
+        assertEquals("[thumbnail of " + image.getAbsolutePath() + "]", target.mThumbnails.toString());
+
+        //A modified file is decoded again
+        assertTrue(image.setLastModified(image.lastModified() - 10000));
+        restarted.load(image.getAbsolutePath(), 48, image.lastModified(), image.length(), target);
+        assertEquals(1, restarted.getDecodedCount());
+
+        //Files that are gone have no thumbnail
+        restarted.load(new File(mFolder.getRoot(), "missing.jpg").getAbsolutePath(), 48, DirectoryEntry.UNKNOWN, DirectoryEntry.UNKNOWN, target);
+        assertEquals(1, restarted.getDecodedCount());
+        assertEquals(2, target.mThumbnails.size());
+    }
+
+    @Test
+    public void cachesAreBoundedByBytes() throws IOException {
+        ThumbnailCache<String> cache = new ThumbnailCache<>(250);
+        cache.put("/1.jpg", 48, 1, 1, "1", 100);
+        cache.put("/2.jpg", 48, 1, 1, "2", 100);
+        assertEquals("1", cache.get("/1.jpg", 48, 1, 1));
+        cache.put("/3.jpg", 48, 1, 1, "3", 100);
+        cache.put("/4.jpg", 48, 1, 1, "4", 1000);
+
+        //The least recently used one is evicted, one larger than the whole cache isn't stored
+        assertEquals(2, cache.size());
+        assertEquals(200, cache.getEstimatedBytes());
+        assertNull(cache.get("/2.jpg", 48, 1, 1));
+        assertEquals("3", cache.get("/3.jpg", 48, DirectoryEntry.UNKNOWN, DirectoryEntry.UNKNOWN));
+        assertEquals(1, cache.getEvictionCount());
+
+        File directory = mFolder.newFolder("disk");
+        DiskCache diskCache = new DiskCache(directory, 300);
+        diskCache.put("a", new byte[100]);
+        diskCache.put("b", new byte[100]);
+        assertNotNull(diskCache.get("a"));
+        diskCache.put("c", new byte[100]);
+        assertEquals(2, diskCache.size());
+        assertTrue(diskCache.getBytes() <= 300);
+        assertNull(diskCache.get("b"));
+        assertEquals(100, diskCache.get("a").length);
+        //A crash while writing leaves a temporary file behind, which is deleted when the cache is opened
+        assertTrue(new File(directory, "0.entry.tmp").createNewFile());
+        DiskCache reopened = new DiskCache(directory, 300);
+        assertEquals(2, reopened.size());
+        assertNotNull(reopened.get("c"));
+        assertFalse(new File(directory, "0.entry.tmp").exists());
+    }
+
+    private static class RecordingDecoder implements ThumbnailLoader.Decoder<String> {
+        final List<String> mDecoded = new ArrayList<>();
+
+        @Override
+        public synchronized String decode(String path, int targetSize) {
+            if (path.contains("missing")) return null;
+            mDecoded.add(path);
+            return "thumbnail of " + path;
+        }
+
+        @Override
+        public String decode(byte[] data) {
+            return new String(data, UTF_8);
+        }
+
+        @Override
+        public byte[] encode(String thumbnail) {
+            return thumbnail.getBytes(UTF_8);
+        }
+
+        @Override
+        public long getByteCount(String thumbnail) {
+            return 2L * thumbnail.length();
+        }
+    }
+
+    private static class RecordingTarget implements ThumbnailLoader.Target<String> {
+        final List<String> mThumbnails = new ArrayList<>();
+
+        @Override
+        public void onThumbnail(String path, String thumbnail) {
+            mThumbnails.add(thumbnail);
+        }
+    }
+
+    private static class QueueExecutor implements Executor {
+        private final List<Runnable> mQueue = new ArrayList<>();
+
+        @Override
+        public void execute(Runnable command) {
+            mQueue.add(command);
+        }
+
+        void runAll() {
+            while (!mQueue.isEmpty()) {
+                mQueue.remove(0).run();
+            }
+        }
+    }
+}
@@ -0,0 +1,171 @@
+package de.mxapplications.openfiledialog.core;
+
+import org.junit.After;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+public class WatchEventCoalescerTest {
+    @Rule
+    public TemporaryFolder mFolder = new TemporaryFolder();
+
+    private final ScheduledExecutorService mScheduler = Executors.newSingleThreadScheduledExecutor();
+    private final CollectingCallback mCallback = new CollectingCallback();
+
+    @After
+    public void shutDown() {
+        mScheduler.shutdownNow();
+    }
+
+    @Test
+    public void eventsAreReducedToNetChanges() {
+        WatchEventCoalescer coalescer = new WatchEventCoalescer(mScheduler, 60000, 60000, mCallback);
+        coalescer.onEvent(DirectoryWatcher.EventType.CREATED, "temporary");
+        coalescer.onEvent(DirectoryWatcher.EventType.DELETED, "temporary");
+        coalescer.onEvent(DirectoryWatcher.EventType.DELETED, "replaced");
+        coalescer.onEvent(DirectoryWatcher.EventType.CREATED, "replaced");
+        coalescer.onEvent(DirectoryWatcher.EventType.CREATED, "download");
+        coalescer.onEvent(DirectoryWatcher.EventType.MODIFIED, "download");
+        coalescer.onEvent(DirectoryWatcher.EventType.MODIFIED, "download");
+        coalescer.onEvent(DirectoryWatcher.EventType.MODIFIED, "deleted");
+        coalescer.onEvent(DirectoryWatcher.EventType.DELETED, "deleted");
+        coalescer.onEvent(DirectoryWatcher.EventType.MODIFIED, "written");
+        coalescer.onEvent(DirectoryWatcher.EventType.MODIFIED, "written");
+        coalescer.flush();
+
+        assertEquals(1, mCallback.mReports.size());
+        Map<String, WatchEventCoalescer.Change> changes = mCallback.mReports.poll();
+        Map<String, WatchEventCoalescer.Change> expected = new HashMap<>();
+        expected.put("replaced", WatchEventCoalescer.Change.MODIFIED);
+        expected.put("download", WatchEventCoalescer.Change.ADDED);
+        expected.put("deleted", WatchEventCoalescer.Change.REMOVED);
+        expected.put("written", WatchEventCoalescer.Change.MODIFIED);
+        assertEquals(expected, changes);
+    }
+
+    @Test
+    public void overflowReplacesChanges() {
+        WatchEventCoalescer coalescer = new WatchEventCoalescer(mScheduler, 60000, 60000, mCallback);
+        coalescer.onEvent(DirectoryWatcher.EventType.CREATED, "file");
+        coalescer.onEvent(DirectoryWatcher.EventType.OVERFLOW, null);
+        coalescer.flush();
+
+        assertEquals(1, mCallback.mReports.size());
+        assertTrue(mCallback.mReports.poll().isEmpty());
+        assertEquals(1, mCallback.mOverflowCount);
+    }
+
+    @Test
+    public void closeDropsCollectedEvents() throws InterruptedException {
+        WatchEventCoalescer coalescer = new WatchEventCoalescer(mScheduler, 10, 10, mCallback);
+        coalescer.onEvent(DirectoryWatcher.EventType.CREATED, "file");
+        coalescer.close();
+        coalescer.onEvent(DirectoryWatcher.EventType.CREATED, "other file");
+
+        assertNull(mCallback.mReports.poll(200, TimeUnit.MILLISECONDS));
+    }
+
+    @Test
+    public void steadyStreamIsReportedWithinMaxDelay() throws InterruptedException {
+        WatchEventCoalescer coalescer = new WatchEventCoalescer(mScheduler, 200, 400, mCallback);
+        long start = System.nanoTime();
+        int events = 0;
+        //An event every 20 ms never leaves a quiet period, so only the maximum delay makes the changes appear
+        while (System.nanoTime() - start < TimeUnit.MILLISECONDS.toNanos(1500)) {
+            coalescer.onEvent(DirectoryWatcher.EventType.CREATED, "file" + events++);
+            Thread.sleep(20);
+        }
+        coalescer.flush();
+
+        int reported = 0;
+        int reports = 0;
+        Map<String, WatchEventCoalescer.Change> changes;
+        while ((changes = mCallback.mReports.poll()) != null) {
+            reported += changes.size();
+            reports++;
+        }
+        assertEquals(events, reported);
+        assertTrue("reports=" + reports, reports >= 3);
+        assertTrue("reports=" + reports + " events=" + events, reports < events / 5);
+    }
+
+    @Test
+    public void burstOfFileSystemEventsIsReportedOnce() throws IOException, InterruptedException {
+        File root = mFolder.getRoot();
+        WatchEventCoalescer coalescer = new WatchEventCoalescer(mScheduler, 500, 5000, mCallback);
+        DirectoryWatcher.Watch watch = new NioDirectoryWatcher().watch(root.getAbsolutePath(), coalescer);
+        assertNotNull(watch);
+        try {
+            for (int i = 0; i < 100; i++) {
+                assertTrue(new File(root, "file" + i).createNewFile());
+            }
+            assertTrue(new File(root, "file0").delete());
+            assertTrue(new File(root, "file1").renameTo(new File(root, "renamed")));
+
+            Map<String, WatchEventCoalescer.Change> changes = mCallback.mReports.poll(10, TimeUnit.SECONDS);
+            assertNotNull(changes);
+            assertNull(mCallback.mReports.poll(1, TimeUnit.SECONDS));
+            assertEquals(99, changes.size());
+            assertFalse(changes.containsKey("file0"));
+            assertFalse(changes.containsKey("file1"));
+            assertEquals(WatchEventCoalescer.Change.ADDED, changes.get("renamed"));
+            assertEquals(WatchEventCoalescer.Change.ADDED, changes.get("file99"));
+        } finally {
+            watch.close();
+        }
+    }
+
+    @Test
+    public void renameOfExistingFileIsReportedAsRemovalAndAddition() throws IOException, InterruptedException {
+        File root = mFolder.getRoot();
+        assertTrue(new File(root, "old name").createNewFile());
+        WatchEventCoalescer coalescer = new WatchEventCoalescer(mScheduler, 200, 5000, mCallback);
+        DirectoryWatcher.Watch watch = new NioDirectoryWatcher().watch(root.getAbsolutePath(), coalescer);
+        assertNotNull(watch);
+        try {
+            assertTrue(new File(root, "old name").renameTo(new File(root, "new name")));
+
+            Map<String, WatchEventCoalescer.Change> changes = mCallback.mReports.poll(10, TimeUnit.SECONDS);
+            assertNotNull(changes);
+            assertEquals(WatchEventCoalescer.Change.REMOVED, changes.get("old name"));
+            assertEquals(WatchEventCoalescer.Change.ADDED, changes.get("new name"));
+        } finally {
+            watch.close();
+        }
+    }
+
+    @Test
+    public void watchOfMissingFolderFails() {
+        assertNull(new NioDirectoryWatcher().watch(new File(mFolder.getRoot(), "missing").getAbsolutePath(), ignoringListener()));
+    }
+
+    private static DirectoryWatcher.Listener ignoringListener() {
+        return new DirectoryWatcher.Listener() {
+            @Override
+            public void onEvent(DirectoryWatcher.EventType type, String name) {
+            }
+        };
+    }
+
+    private static class CollectingCallback implements WatchEventCoalescer.Callback {
+        final LinkedBlockingQueue<Map<String, WatchEventCoalescer.Change>> mReports = new LinkedBlockingQueue<>();
+        volatile int mOverflowCount = 0;
+
+        @Override
+        public void onChanges(Map<String, WatchEventCoalescer.Change> changes, boolean overflow) {
+            if (overflow) mOverflowCount++;
+            mReports.add(changes);
+        }
+    }
+}
@@ -0,0 +1,84 @@
+package de.mxapplications.openfiledialog;
+
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+import android.media.ThumbnailUtils;
+import android.provider.MediaStore;
+
+import java.io.ByteArrayOutputStream;
+import java.net.URLConnection;
+
+import de.mxapplications.openfiledialog.core.ThumbnailLoader;
+
+/**
+ * Decodes square thumbnails of images and videos into Bitmaps.
+ * <p>An image is decoded in two passes: the first one only reads its dimensions, the second one decodes it with the largest power of
+ * two as sample size that keeps it at least as large as the thumbnail, so a 12 megapixel photo never occupies more than a few times
+ * the memory of the thumbnail while it is decoded. JPEG images are decoded without an alpha channel, with half the memory. Videos
+ * are decoded from a frame by the platform. Both are cropped to the center square at the target size.</p>
+ * <p>Thumbnails without an alpha channel are stored as JPEG in the DiskCache, others as PNG.</p>
+ */
+class BitmapThumbnailDecoder implements ThumbnailLoader.Decoder<Bitmap> {
+    private static final int JPEG_QUALITY = 85;
+
+    /***
+     * Returns if a file has a thumbnail, by the MIME type of its extension.
+     * @param name The name of the file.
+     * @return True for images and videos.
+     */
+    static boolean isSupported(String name) {
+        String mimeType = URLConnection.guessContentTypeFromName(name);
+        return mimeType != null && (mimeType.startsWith("image/") || mimeType.startsWith("video/"));
+    }
+
+    @Override
+    public Bitmap decode(String path, int targetSize) {
+        String mimeType = URLConnection.guessContentTypeFromName(path);
+        Bitmap bitmap;
+        try {
+            if (mimeType != null && mimeType.startsWith("video/")) {
+                bitmap = ThumbnailUtils.createVideoThumbnail(path, MediaStore.Video.Thumbnails.MINI_KIND);
+            } else {
+                BitmapFactory.Options options = new BitmapFactory.Options();
+                options.inJustDecodeBounds = true;
+                BitmapFactory.decodeFile(path, options);
+                if (options.outWidth <= 0 || options.outHeight <= 0) return null;
+                options.inJustDecodeBounds = false;
+                options.inSampleSize = 1;
+                while (options.outWidth / (options.inSampleSize * 2) >= targetSize && options.outHeight / (options.inSampleSize * 2) >= targetSize) {
+                    options.inSampleSize *= 2;
+                }
+                options.inPreferredConfig = "image/jpeg".equals(options.outMimeType) ? Bitmap.Config.RGB_565 : Bitmap.Config.ARGB_8888;
+                bitmap = BitmapFactory.decodeFile(path, options);
+            }
+            if (bitmap == null) return null;
+            return ThumbnailUtils.extractThumbnail(bitmap, targetSize, targetSize, ThumbnailUtils.OPTIONS_RECYCLE_INPUT);
+        } catch (OutOfMemoryError e) {
+            //A broken or huge file must not take the dialog down, its row keeps the icon
+            return null;
+        }
+    }
+
+    @Override
+    public Bitmap decode(byte[] data) {
+        BitmapFactory.Options options = new BitmapFactory.Options();
+        options.inJustDecodeBounds = true;
+        BitmapFactory.decodeByteArray(data, 0, data.length, options);
+        options.inJustDecodeBounds = false;
+        options.inPreferredConfig = "image/jpeg".equals(options.outMimeType) ? Bitmap.Config.RGB_565 : Bitmap.Config.ARGB_8888;
+        return BitmapFactory.decodeByteArray(data, 0, data.length, options);
+    }
+
+    @Override
+    public byte[] encode(Bitmap thumbnail) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        boolean opaque = thumbnail.getConfig() == Bitmap.Config.RGB_565;
+        if (!thumbnail.compress(opaque ? Bitmap.CompressFormat.JPEG : Bitmap.CompressFormat.PNG, JPEG_QUALITY, out)) return null;
+        return out.toByteArray();
+    }
+
+    @Override
+    public long getByteCount(Bitmap thumbnail) {
+        return (long) thumbnail.getRowBytes() * thumbnail.getHeight();
+    }
+}
@@ -0,0 +1,58 @@
+package de.mxapplications.openfiledialog;
+
+import android.view.Choreographer;
+
+import de.mxapplications.openfiledialog.core.MetricsListener;
+
+/**
+ * Counts the frames that are dropped while it is running, by the time between two frames that {@link Choreographer} reports: a frame
+ * that comes more than one and a half frame intervals after the previous one means that the frames in between have been dropped.
+ * Frames are assumed to be drawn at 60 frames per second.
+ * <p>Choreographer is only available on Android 4.1 and newer, so this class must only be loaded there. Has to be used on the UI thread.</p>
+ */
+class DroppedFrameCounter implements Choreographer.FrameCallback {
+    private static final long FRAME_INTERVAL_NANOS = 16666667L;
+
+    private final MetricsListener mListener;
+    private long mLastFrameNanos = -1;
+    private boolean mRunning = false;
+
+    /***
+     * Constructs a DroppedFrameCounter.
+     * @param listener The listener that receives the dropped frames.
+     */
+    DroppedFrameCounter(MetricsListener listener) {
+        this.mListener = listener;
+    }
+
+    /***
+     * Starts counting, e.g. when the dialog is shown.
+     */
+    void start() {
+        if (mRunning) return;
+        mRunning = true;
+        mLastFrameNanos = -1;
+        Choreographer.getInstance().postFrameCallback(this);
+    }
+
+    /***
+     * Stops counting, e.g. when the dialog is closed.
+     */
+    void stop() {
+        mRunning = false;
+        Choreographer.getInstance().removeFrameCallback(this);
+    }
+
+    @Override
+    public void doFrame(long frameTimeNanos) {
+        if (!mRunning) return;
+        if (mLastFrameNanos >= 0) {
+            long interval = frameTimeNanos - mLastFrameNanos;
+            if (interval > FRAME_INTERVAL_NANOS * 3 / 2) {
+                mListener.onFramesDropped((int) Math.max(1, Math.round((double) interval / FRAME_INTERVAL_NANOS) - 1));
+            }
+        }
+        mLastFrameNanos = frameTimeNanos;
+        Choreographer.getInstance().postFrameCallback(this);
+    }
+}
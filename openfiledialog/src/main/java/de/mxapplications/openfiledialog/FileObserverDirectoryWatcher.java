@@ -0,0 +1,57 @@
+package de.mxapplications.openfiledialog;
+
+import android.os.FileObserver;
+
+import de.mxapplications.openfiledialog.core.DirectoryWatcher;
+
+/**
+ * DirectoryWatcher based on {@link FileObserver}, i.e. on inotify, which is available on every Android version.
+ * <p>A file is reported as modified when it is closed after writing, so a download that is still being written causes a
+ * single event when it has finished instead of one for every write.</p>
+ */
+public class FileObserverDirectoryWatcher implements DirectoryWatcher {
+    private static final int MASK = FileObserver.CREATE | FileObserver.DELETE | FileObserver.MOVED_FROM | FileObserver.MOVED_TO
+            | FileObserver.CLOSE_WRITE | FileObserver.DELETE_SELF | FileObserver.MOVE_SELF;
+
+    @Override
+    public Watch watch(String path, final Listener listener) {
+        final Object lock = new Object();
+        final boolean[] closed = {false};
+        //FileObservers stop watching when they are garbage collected, the returned Watch keeps a reference
+        final FileObserver observer = new FileObserver(path, MASK) {
+            @Override
+            public void onEvent(int event, String name) {
+                synchronized (lock) {
+                    if (closed[0]) return;
+                    switch (event & FileObserver.ALL_EVENTS) {
+                        case FileObserver.CREATE:
+                        case FileObserver.MOVED_TO:
+                            if (name != null) listener.onEvent(EventType.CREATED, name);
+                            break;
+                        case FileObserver.DELETE:
+                        case FileObserver.MOVED_FROM:
+                            if (name != null) listener.onEvent(EventType.DELETED, name);
+                            break;
+                        case FileObserver.CLOSE_WRITE:
+                            if (name != null) listener.onEvent(EventType.MODIFIED, name);
+                            break;
+                        case FileObserver.DELETE_SELF:
+                        case FileObserver.MOVE_SELF:
+                            listener.onEvent(EventType.OVERFLOW, null);
+                            break;
+                    }
+                }
+            }
+        };
+        observer.startWatching();
+        return new Watch() {
+            @Override
+            public void close() {
+                synchronized (lock) {
+                    closed[0] = true;
+                }
+                observer.stopWatching();
+            }
+        };
+    }
+}
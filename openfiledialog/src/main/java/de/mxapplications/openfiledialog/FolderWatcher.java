@@ -0,0 +1,167 @@
+package de.mxapplications.openfiledialog;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ScheduledExecutorService;
+
+import de.mxapplications.openfiledialog.core.BrowserPaths;
+import de.mxapplications.openfiledialog.core.DirectoryEntry;
+import de.mxapplications.openfiledialog.core.DirectoryLister;
+import de.mxapplications.openfiledialog.core.DirectoryWatcher;
+import de.mxapplications.openfiledialog.core.EntryFilter;
+import de.mxapplications.openfiledialog.core.FileItem;
+import de.mxapplications.openfiledialog.core.SortOrder;
+import de.mxapplications.openfiledialog.core.WatchEventCoalescer;
+
+/**
+ * Watches the folder that is shown and delivers its changes as FileItems on the callback executor (usually the UI thread).
+ * <p>The events of the {@link DirectoryWatcher} are coalesced by a {@link WatchEventCoalescer}, then every child that has been
+ * added or modified is read with {@link DirectoryLister#getEntry(String, String, boolean)} on the scheduler, so a burst of
+ * events results in a single delivery and the callback executor never touches the file system. Hidden children are ignored,
+ * like in a listing.</p>
+ * <p>Only one folder is watched at a time: {@link #watch(String, SortOrder, Listener)} stops watching the previous one.
+ * Changes that arrive after a watch has been stopped are dropped. {@link #watch(String, SortOrder, Listener)} and
+ * {@link #stop()} have to be called on the thread the callback executor runs on.</p>
+ */
+class FolderWatcher {
+    static final long QUIET_MILLIS = 100;
+    static final long MAX_DELAY_MILLIS = 500;
+
+    private final DirectoryWatcher mDirectoryWatcher;
+    private final DirectoryLister mDirectoryLister;
+    private final ScheduledExecutorService mScheduler;
+    private final Executor mCallbackExecutor;
+    private Session mCurrentSession = null;
+
+    /***
+     * Constructs a FolderWatcher.
+     * @param directoryWatcher The DirectoryWatcher that reports the events.
+     * @param directoryLister The DirectoryLister that reads added and modified children.
+     * @param scheduler The scheduler that coalesces the events and reads the children.
+     * @param callbackExecutor The executor the changes are delivered on.
+     */
+    FolderWatcher(DirectoryWatcher directoryWatcher, DirectoryLister directoryLister, ScheduledExecutorService scheduler, Executor callbackExecutor) {
+        this.mDirectoryWatcher = directoryWatcher;
+        this.mDirectoryLister = directoryLister;
+        this.mScheduler = scheduler;
+        this.mCallbackExecutor = callbackExecutor;
+    }
+
+    /***
+     * Starts watching a folder. The folder that is currently watched isn't watched anymore.
+     * @param path The absolute path of the folder.
+     * @param sortOrder The order the sort keys of the delivered FileItems are created for.
+     * @param filter The filter of the listing. Children it rejects are reported as removed, they may have been shown before.
+     * @param listener The listener that receives the changes, until the watch is stopped.
+     */
+    void watch(String path, SortOrder sortOrder, EntryFilter filter, Listener listener) {
+        stop();
+        final Session session = new Session(path, sortOrder, filter, listener);
+        mCurrentSession = session;
+        //Registering and unregistering the watch are calls to the file system, so they are done on the scheduler as well
+        mScheduler.execute(new Runnable() {
+            @Override
+            public void run() {
+                session.start();
+            }
+        });
+    }
+
+    /***
+     * Stops watching the folder that is currently watched. Its listener will not be called anymore.
+     */
+    void stop() {
+        if (mCurrentSession != null) {
+            final Session session = mCurrentSession;
+            mCurrentSession = null;
+            mScheduler.execute(new Runnable() {
+                @Override
+                public void run() {
+                    session.close();
+                }
+            });
+        }
+    }
+
+    /***
+     * Returns the path of the folder that is watched.
+     * @return The absolute path of the folder, or null if no folder is watched.
+     */
+    String getWatchedPath() {
+        return mCurrentSession != null ? mCurrentSession.mPath : null;
+    }
+
+    private class Session implements WatchEventCoalescer.Callback {
+        private final String mPath;
+        private final SortOrder mSortOrder;
+        private final EntryFilter mFilter;
+        private final Listener mListener;
+
+        //Only touched on the scheduler
+        private WatchEventCoalescer mCoalescer = null;
+        private DirectoryWatcher.Watch mWatch = null;
+        private volatile boolean mClosed = false;
+
+        Session(String path, SortOrder sortOrder, EntryFilter filter, Listener listener) {
+            this.mPath = path;
+            this.mSortOrder = sortOrder;
+            this.mFilter = filter;
+            this.mListener = listener;
+        }
+
+        void start() {
+            if (mClosed) return;
+            mCoalescer = new WatchEventCoalescer(mScheduler, QUIET_MILLIS, MAX_DELAY_MILLIS, this);
+            mWatch = mDirectoryWatcher.watch(mPath, mCoalescer);
+        }
+
+        void close() {
+            mClosed = true;
+            if (mWatch != null) mWatch.close();
+            if (mCoalescer != null) mCoalescer.close();
+        }
+
+        @Override
+        public void onChanges(Map<String, WatchEventCoalescer.Change> changes, final boolean overflow) {
+            if (mClosed) return;
+            final List<FileItem> updated = new ArrayList<>();
+            final List<String> removed = new ArrayList<>();
+            for (Map.Entry<String, WatchEventCoalescer.Change> change : changes.entrySet()) {
+                String name = change.getKey();
+                if (mFilter.matchName(name) == EntryFilter.NameMatch.REJECT) continue;
+                DirectoryEntry entry = change.getValue() == WatchEventCoalescer.Change.REMOVED ? null
+                        : mDirectoryLister.getEntry(mPath, name, mSortOrder.needsMetadata() || mFilter.needsMetadata());
+                if (entry == null || !mFilter.accept(entry)) {
+                    //Removed, already gone again when it was read, or e.g. grown beyond the size range
+                    removed.add(BrowserPaths.childPath(mPath, name));
+                } else {
+                    updated.add(FileItem.create(mPath, name, entry.isDirectory(), entry.getSize(), entry.getLastModified(), mSortOrder));
+                }
+            }
+            if (!overflow && updated.isEmpty() && removed.isEmpty()) return;
+            mCallbackExecutor.execute(new Runnable() {
+                @Override
+                public void run() {
+                    if (mCurrentSession != Session.this) return;
+                    mListener.onChanges(mPath, updated, removed, overflow);
+                }
+            });
+        }
+    }
+
+    /***
+     * Receives the changes of the watched folder.
+     */
+    interface Listener {
+        /***
+         * Called on the callback executor with the net changes of a burst of events.
+         * @param path The absolute path of the folder.
+         * @param updated The children that have been added or modified, with their current type and metadata.
+         * @param removedPaths The absolute paths of the children that have been removed.
+         * @param reload True if events have been lost and the folder has to be listed again.
+         */
+        void onChanges(String path, List<FileItem> updated, List<String> removedPaths, boolean reload);
+    }
+}
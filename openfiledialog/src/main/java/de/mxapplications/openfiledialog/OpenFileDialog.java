@@ -2,30 +2,85 @@ package de.mxapplications.openfiledialog;
 
 import android.app.Dialog;
 import android.content.Context;
+import android.content.res.ColorStateList;
 import android.content.res.Resources;
+import android.graphics.Bitmap;
 import android.graphics.Color;
 import android.graphics.Typeface;
 import android.os.Build;
 import android.os.Bundle;
 import android.os.Environment;
+import android.os.Handler;
+import android.os.Looper;
+import android.os.Process;
+import android.text.Editable;
+import android.text.TextWatcher;
+import android.text.format.DateFormat;
+import android.text.format.Formatter;
 import android.support.v7.widget.LinearLayoutManager;
 import android.support.v7.widget.RecyclerView;
 import android.util.TypedValue;
 import android.view.LayoutInflater;
 import android.view.View;
+import android.view.Gravity;
+import android.view.KeyEvent;
 import android.view.ViewGroup;
 import android.view.Window;
 import android.view.WindowManager;
+import android.view.inputmethod.EditorInfo;
 import android.widget.Button;
+import android.widget.EditText;
+import android.widget.FrameLayout;
+import android.widget.HorizontalScrollView;
 import android.widget.ImageView;
 import android.widget.LinearLayout;
+import android.widget.ProgressBar;
 import android.widget.TextView;
 
 import java.io.File;
+import java.util.AbstractList;
 import java.util.ArrayList;
-import java.util.Arrays;
-import java.util.Comparator;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import de.mxapplications.openfiledialog.core.ArchiveDirectoryLister;
+import de.mxapplications.openfiledialog.core.Browser;
+import de.mxapplications.openfiledialog.core.BrowserPaths;
+import de.mxapplications.openfiledialog.core.CompactFileList;
+import de.mxapplications.openfiledialog.core.DirectoryEntry;
+import de.mxapplications.openfiledialog.core.DiskCache;
+import de.mxapplications.openfiledialog.core.DirectoryLister;
+import de.mxapplications.openfiledialog.core.DirectoryListers;
+import de.mxapplications.openfiledialog.core.DirectoryLoader;
+import de.mxapplications.openfiledialog.core.DirectoryWalker;
+import de.mxapplications.openfiledialog.core.DirectoryWatcher;
+import de.mxapplications.openfiledialog.core.EntryFilter;
+import de.mxapplications.openfiledialog.core.FileDetailsLoader;
+import de.mxapplications.openfiledialog.core.FileItem;
+import de.mxapplications.openfiledialog.core.ListDiff;
+import de.mxapplications.openfiledialog.core.ListingCache;
+import de.mxapplications.openfiledialog.core.ListingSnapshotStore;
+import de.mxapplications.openfiledialog.core.MetricsListener;
+import de.mxapplications.openfiledialog.core.NameFilter;
+import de.mxapplications.openfiledialog.core.Prefetcher;
+import de.mxapplications.openfiledialog.core.RecentLocations;
+import de.mxapplications.openfiledialog.core.RequestQueue;
+import de.mxapplications.openfiledialog.core.SelectionSet;
+import de.mxapplications.openfiledialog.core.SortOrder;
+import de.mxapplications.openfiledialog.core.StorageRootProber;
+import de.mxapplications.openfiledialog.core.ThumbnailCache;
+import de.mxapplications.openfiledialog.core.ThumbnailLoader;
 
 
 /**
@@ -51,7 +106,11 @@ public class OpenFileDialog extends Dialog {
     //View references
     private TextView mTitleTextView = null;
     private TextView mPathTextView = null;
+    private HorizontalScrollView mQuickJumpScrollView = null;
+    private LinearLayout mQuickJumpLayout = null;
+    private EditText mFilterEditText = null;
     private RecyclerView mFileListView = null;
+    private ProgressBar mLoadingProgressBar = null;
     private Button mOkButton = null;
     private Button mCancelButton = null;
 //    private FileListAdapter mFileListAdapter = null;
@@ -66,7 +125,7 @@ public class OpenFileDialog extends Dialog {
 
     //Settings for OpenFileDialog
     private boolean mFolderSelectable=false;
-    private String mPath;
+    private boolean mFilterEnabled=true;
     private FileItem mSelectedFile;
     private String mTitle;
     private String mOkButtonText;
@@ -74,6 +133,98 @@ public class OpenFileDialog extends Dialog {
 
     private OnCloseListener mOnCloseListener;
 
+    //Files picked in several folders, delivered in batches when OK is touched
+    private static final int MULTI_SELECT_BATCH_SIZE = 256;
+    private boolean mMultiSelectEnabled = false;
+    private OnMultiSelectListener mOnMultiSelectListener;
+
+    //Background loading of the folder content
+    private static Executor sDefaultExecutor = null;
+    private static final ListingCache<DirectoryLoader.Listing> sListingCache = new ListingCache<>(32, 4 * 1024 * 1024);
+    private boolean mListingCacheEnabled = true;
+    private static final long LISTING_SNAPSHOT_DISK_BYTES = 8 * 1024 * 1024;
+    private static ListingSnapshotStore sListingSnapshotStore = null;
+    private boolean mListingSnapshotsEnabled = true;
+    private Executor mExecutor = null;
+    //The current folder, its history, the order, the filter and the selection, and the listing, caching and prefetching of the folders; the dialog only shows them
+    private Browser mBrowser;
+    private DirectoryLister mDirectoryLister = null;
+    private boolean mReloadOnStart = false;
+    private final Handler mHandler = new Handler(Looper.getMainLooper());
+
+    //Watching the current folder for changes
+    private static ScheduledExecutorService sWatchScheduler = null;
+    private boolean mWatchEnabled = false;
+    private DirectoryWatcher mDirectoryWatcher = null;
+    private FolderWatcher mFolderWatcher = null;
+
+    //Prefetching the folders the user is likely to open next
+    private static final int PREFETCH_MAX_CONCURRENT = 2;
+    private static final int PREFETCH_MAX_VISIBLE_FOLDERS = 8;
+    private static Executor sPrefetchExecutor = null;
+    private static final ListingCache<DirectoryLoader.Listing> sPrefetchCache = new ListingCache<>(16, 1024 * 1024);
+    private boolean mPrefetchEnabled = true;
+
+    //The folders the user opens most, kept across processes and offered as quick jumps
+    private static final int RECENT_LOCATIONS_MAX = 32;
+    private static final int QUICK_JUMPS_MAX = 4;
+    private static RecentLocations sRecentLocations = null;
+    private boolean mRecentLocationsEnabled = false;
+    private List<String> mQuickJumpPaths = Collections.emptyList();
+
+    //Recursive search, only on Android 5.0 and newer where ForkJoinPool is available
+    private static final int DEFAULT_SEARCH_MAX_DEPTH = 32;
+    private static final int DEFAULT_SEARCH_MAX_RESULTS = 1000;
+    private String mSearchRoot = null;
+    private int mSearchMaxDepth = DEFAULT_SEARCH_MAX_DEPTH;
+    private int mSearchMaxResults = DEFAULT_SEARCH_MAX_RESULTS;
+
+    //Paged listing, rows are only created around the visible ones
+    private static final int PAGED_WINDOW_MARGIN = 64;
+    private boolean mPagedListing = false;
+
+    //Thumbnails of images and videos, decoded at the size of the row icons
+    private static final int THUMBNAIL_SIZE_DP = 48;
+    private static final int THUMBNAIL_MAX_CONCURRENT = 2;
+    private static final long THUMBNAIL_DISK_CACHE_BYTES = 32 * 1024 * 1024;
+    private static Executor sThumbnailExecutor = null;
+    private static final ThumbnailCache<Bitmap> sThumbnailCache = new ThumbnailCache<>(Math.min(Runtime.getRuntime().maxMemory() / 8, 16 * 1024 * 1024));
+    private static DiskCache sThumbnailDiskCache = null;
+    private boolean mThumbnailsEnabled = false;
+    private boolean mThumbnailDiskCacheEnabled = true;
+    private ThumbnailLoader<Bitmap> mThumbnailLoader = null;
+
+    //Size, modification time and number of children below the names, read in the background for the rows that are bound
+    private static final int DETAILS_MAX_CONCURRENT = 2;
+    private static final int DETAILS_MAX_CACHED = 1024;
+    private static Executor sDetailsExecutor = null;
+    private boolean mDetailsEnabled = false;
+    private boolean mFolderSizeEnabled = false;
+    private FileDetailsLoader mFileDetailsLoader = null;
+
+    //A level above the roots of the storage volumes, which are probed in the background each time it is shown
+    private static final int STORAGE_ROOTS_MAX_CONCURRENT = 4;
+    private static final long STORAGE_ROOT_TIMEOUT_MILLIS = 2000;
+    private static Executor sStorageRootExecutor = null;
+    //The roots that have been found, ".." leads from them to the storage level. Only used on the UI thread.
+    private static final Set<String> sStorageRootPaths = new HashSet<>();
+    private boolean mStorageRootsEnabled = false;
+    private StorageRootProber mStorageRootProber = null;
+
+    //ZIP and JAR archives browsed like folders, from the index of their central directory
+    private static final int ARCHIVE_MAX_INDEXES = 4;
+    private boolean mArchivesEnabled = false;
+    private ArchiveDirectoryLister mArchiveDirectoryLister = null;
+
+    //Rows of the list, possibly shared with other dialogs and created ahead of time
+    private static final int PREWARM_MAX_ROWS = 64;
+    private RecyclerView.RecycledViewPool mRecycledViewPool = null;
+    private boolean mRecycledViewPoolShared = false;
+
+    //Measurements for the MetricsListener. Nothing is measured while it is MetricsListener.NONE.
+    private MetricsListener mMetricsListener = MetricsListener.NONE;
+    private DroppedFrameCounter mDroppedFrameCounter = null;
+
     /***
      * Constructs an OpenFileDialog object with default settings.
      *
@@ -121,7 +272,15 @@ public class OpenFileDialog extends Dialog {
 
         mFileSelectedColor = Color.WHITE;
 
-        setPath(Environment.getExternalStorageDirectory().getAbsolutePath());
+        mBrowser = new Browser(DirectoryListers.getDefault(), new Executor() {
+            @Override
+            public void execute(Runnable command) {
+                (mExecutor!=null ? mExecutor : getDefaultExecutor()).execute(command);
+            }
+        }, getMainThreadExecutor(), Environment.getExternalStorageDirectory().getAbsolutePath());
+        mBrowser.setSnapshotStore(mListingSnapshotsEnabled?getListingSnapshotStore(getContext()):null);
+        configureBrowser();
+        preloadFolder();
     }
 
     @Override
@@ -138,6 +297,69 @@ public class OpenFileDialog extends Dialog {
         this.getWindow().setAttributes(layoutParams);
     }
 
+    @Override
+    protected void onStart() {
+        super.onStart();
+        if(mReloadOnStart){
+            mReloadOnStart = false;
+            mFileListAdapter.loadFolder();
+        }else if(mThumbnailsEnabled||mDetailsEnabled){
+            //The thumbnails and details that were still loading when the dialog was closed have been cancelled
+            mFileListAdapter.notifyDataSetChanged();
+        }
+        startDroppedFrameCounter();
+    }
+
+    @Override
+    protected void onStop() {
+        super.onStop();
+        //Don't keep listing or watching a folder after the dialog has been closed. If it is shown again the folder is listed again.
+        if(isLoading()){
+            mBrowser.cancelLoad();
+            mReloadOnStart = true;
+        }
+        if(mFileListAdapter!=null&&mFileListAdapter.cancelStorageRoots()){
+            mReloadOnStart = true;
+        }
+        if(mFolderWatcher!=null&&mFolderWatcher.getWatchedPath()!=null){
+            mFolderWatcher.stop();
+            mReloadOnStart = true;
+        }
+        mBrowser.cancelPrefetch();
+        if(mRecentLocationsEnabled){
+            final RecentLocations recentLocations = getRecentLocations(getContext());
+            (mExecutor!=null?mExecutor:getDefaultExecutor()).execute(new Runnable() {
+                @Override
+                public void run() {
+                    recentLocations.save();
+                }
+            });
+        }
+        if(mThumbnailLoader!=null){
+            mThumbnailLoader.cancelAll();
+        }
+        if(mFileDetailsLoader!=null){
+            mFileDetailsLoader.cancelAll();
+        }
+        stopDroppedFrameCounter();
+    }
+
+    private void startDroppedFrameCounter(){
+        if(mMetricsListener==MetricsListener.NONE||Build.VERSION.SDK_INT<Build.VERSION_CODES.JELLY_BEAN){
+            return;
+        }
+        if(mDroppedFrameCounter==null){
+            mDroppedFrameCounter = new DroppedFrameCounter(mMetricsListener);
+        }
+        mDroppedFrameCounter.start();
+    }
+
+    private void stopDroppedFrameCounter(){
+        if(mDroppedFrameCounter!=null){
+            mDroppedFrameCounter.stop();
+        }
+    }
+
     private View createView(){
         //Create the basic layout (LinearLayout)
         LinearLayout layout = new LinearLayout(getContext());
@@ -179,17 +401,96 @@ public class OpenFileDialog extends Dialog {
         mPathTextView.setLayoutParams(linearLayoutParams);
         padding = convertDpToPixels(4);
         mPathTextView.setPadding(padding, padding, 0, 0);
-        mPathTextView.setText(mPath);
+        mPathTextView.setText(mBrowser.getPath());
         layout.addView(mPathTextView);
 
-        //Create the ListView for the children of the current folder
-        mFileListView = new RecyclerView(getContext());
+        //Create the row of quick jumps to the folders the user opens most, it is hidden while there are none
+        mQuickJumpScrollView = new HorizontalScrollView(getContext());
+        mQuickJumpScrollView.setLayoutParams(new LinearLayout.LayoutParams(ViewGroup.LayoutParams.MATCH_PARENT, ViewGroup.LayoutParams.WRAP_CONTENT));
+        mQuickJumpScrollView.setHorizontalScrollBarEnabled(false);
+        mQuickJumpLayout = new LinearLayout(getContext());
+        mQuickJumpLayout.setOrientation(LinearLayout.HORIZONTAL);
+        mQuickJumpScrollView.addView(mQuickJumpLayout);
+        layout.addView(mQuickJumpScrollView);
+        showQuickJumps();
+
+        //Create the field that filters the entries of the current folder by name while the user types
+        mFilterEditText = new EditText(getContext());
+        mFilterEditText.setLayoutParams(new LinearLayout.LayoutParams(ViewGroup.LayoutParams.MATCH_PARENT, ViewGroup.LayoutParams.WRAP_CONTENT));
+        mFilterEditText.setSingleLine(true);
+        mFilterEditText.setHint(R.string.open_file_dialog_filter_hint);
+        if(isSearchSupported()){
+            //The search key of the keyboard searches all subfolders for the text that filters the current folder
+            mFilterEditText.setImeOptions(EditorInfo.IME_ACTION_SEARCH);
+            mFilterEditText.setOnEditorActionListener(new TextView.OnEditorActionListener() {
+                @Override
+                public boolean onEditorAction(TextView v, int actionId, KeyEvent event) {
+                    if(actionId==EditorInfo.IME_ACTION_SEARCH){
+                        return search(v.getText().toString());
+                    }
+                    return false;
+                }
+            });
+        }
+        mFilterEditText.addTextChangedListener(new TextWatcher() {
+            @Override
+            public void beforeTextChanged(CharSequence s, int start, int count, int after) {
+            }
+
+            @Override
+            public void onTextChanged(CharSequence s, int start, int before, int count) {
+            }
+
+            @Override
+            public void afterTextChanged(Editable s) {
+                mFileListAdapter.setQuery(s.toString());
+            }
+        });
+        if(!mFilterEnabled){
+            mFilterEditText.setVisibility(View.GONE);
+        }
+        layout.addView(mFilterEditText);
+
+        //Create the ListView for the children of the current folder, with a progress indicator on top of it that is shown while the folder is being loaded
+        FrameLayout listLayout = new FrameLayout(getContext());
         linearLayoutParams = new LinearLayout.LayoutParams(LinearLayout.LayoutParams.MATCH_PARENT, LinearLayout.LayoutParams.MATCH_PARENT, 1.0f);
-        mFileListView.setLayoutParams(linearLayoutParams);
-        layout.addView(mFileListView);
-        mFileListView.setLayoutManager(new LinearLayoutManager(getContext(), LinearLayoutManager.VERTICAL, false));
+        listLayout.setLayoutParams(linearLayoutParams);
+        layout.addView(listLayout);
+
+        mFileListView = new RecyclerView(getContext());
+        mFileListView.setLayoutParams(new FrameLayout.LayoutParams(FrameLayout.LayoutParams.MATCH_PARENT, FrameLayout.LayoutParams.MATCH_PARENT));
+        listLayout.addView(mFileListView);
+        LinearLayoutManager layoutManager = new LinearLayoutManager(getContext(), LinearLayoutManager.VERTICAL, false);
+        //The rows go back to the shared pool when the dialog is closed, so the next dialog takes them instead of inflating its own
+        layoutManager.setRecycleChildrenOnDetach(mRecycledViewPoolShared);
+        mFileListView.setLayoutManager(layoutManager);
+        if(mRecycledViewPool!=null){
+            mFileListView.setRecycledViewPool(mRecycledViewPool);
+        }
         mFileListAdapter = new FileListRecyclerViewAdapter();
         mFileListView.setAdapter(mFileListAdapter);
+        mFileListView.addOnScrollListener(new RecyclerView.OnScrollListener() {
+            @Override
+            public void onScrolled(RecyclerView recyclerView, int dx, int dy) {
+                mFileListAdapter.updateWindow();
+            }
+
+            @Override
+            public void onScrollStateChanged(RecyclerView recyclerView, int newState) {
+                //The folders that will be visible are only known once the list has stopped
+                if(newState==RecyclerView.SCROLL_STATE_IDLE){
+                    mFileListAdapter.prefetchLikelyFolders();
+                }else{
+                    mBrowser.cancelPrefetch();
+                }
+            }
+        });
+
+        mLoadingProgressBar = new ProgressBar(getContext());
+        mLoadingProgressBar.setIndeterminate(true);
+        mLoadingProgressBar.setLayoutParams(new FrameLayout.LayoutParams(FrameLayout.LayoutParams.WRAP_CONTENT, FrameLayout.LayoutParams.WRAP_CONTENT, Gravity.CENTER));
+        mLoadingProgressBar.setVisibility(View.GONE);
+        listLayout.addView(mLoadingProgressBar);
 
 
         //Create the layout for the OK and Cancel button
@@ -212,12 +513,14 @@ public class OpenFileDialog extends Dialog {
         }else{
             mOkButton.setText(mOkButtonText);
         }
-        mOkButton.setEnabled(mFolderSelectable);
+        mOkButton.setEnabled(isOkEnabledWithoutFile());
         mOkButton.setOnClickListener(new View.OnClickListener() {
             @Override
             public void onClick(View v) {
                 OpenFileDialog.this.dismiss();
-                if (mOnCloseListener != null) {
+                if (mMultiSelectEnabled) {
+                    deliverSelection();
+                } else if (mOnCloseListener != null) {
                     mOnCloseListener.onOk(getSelectedFile());
                 }
             }
@@ -241,6 +544,7 @@ public class OpenFileDialog extends Dialog {
             @Override
             public void onClick(View v) {
                 mSelectedFile = null;
+                mBrowser.clearSelection();
                 OpenFileDialog.this.cancel();
                 if (mOnCloseListener != null) {
                     mOnCloseListener.onCancel();
@@ -249,16 +553,57 @@ public class OpenFileDialog extends Dialog {
         });
         buttonLayout.addView(mCancelButton);
 
+        mFileListAdapter.loadFolder();
+
         return layout;
     }
 
+    /***
+     * Prepares the dialog before it is shown, e.g. while the screen that opens it is idle, so its first frame doesn't have to wait: creates the views of the dialog
+     * and starts loading its folder (Android 5.0 and newer), and inflates rows into its RecycledViewPool. A dialog keeps its views when it is dismissed, so showing
+     * the same OpenFileDialog again is cheap without this.
+     * @param rowCount The number of rows to inflate, e.g. as many as fit on the screen, at most 64.
+     * @return The OpenFileDialog-object
+     */
+    public OpenFileDialog prewarm(int rowCount){
+        if(mFileListView==null&&Build.VERSION.SDK_INT>=Build.VERSION_CODES.LOLLIPOP){
+            create();
+        }
+        if(mRecycledViewPool==null){
+            mRecycledViewPool = mFileListView!=null ? mFileListView.getRecycledViewPool() : new RecyclerView.RecycledViewPool();
+        }
+        rowCount = Math.min(rowCount, PREWARM_MAX_ROWS);
+        //The pool keeps 5 rows by default, a screenful is more
+        mRecycledViewPool.setMaxRecycledViews(0, Math.max(rowCount, 5));
+        FileListRecyclerViewAdapter adapter = mFileListAdapter!=null ? mFileListAdapter : new FileListRecyclerViewAdapter();
+        ViewGroup parent = mFileListView!=null ? mFileListView : new FrameLayout(getContext());
+        for(int i=0;i<rowCount;i++){
+            mRecycledViewPool.putRecycledView(adapter.createViewHolder(parent, 0));
+        }
+        return this;
+    }
+
+    /***
+     * Sets the pool the rows of the list are recycled through, to share them between OpenFileDialogs, e.g. all the dialogs a screen opens one after another. A new
+     * dialog then takes the rows of a dismissed one instead of inflating its own, and {@link #prewarm(int)} fills the pool for all of them. The rows are inflated
+     * with the Context of the dialog that creates them, so only dialogs with the same Context and theme should share a pool. By default every dialog has a pool
+     * of its own. Has to be called before the dialog is shown for the first time.
+     * @param recycledViewPool The pool, or null for a pool of its own.
+     * @return The OpenFileDialog-object
+     */
+    public OpenFileDialog setRecycledViewPool(RecyclerView.RecycledViewPool recycledViewPool){
+        this.mRecycledViewPool = recycledViewPool;
+        this.mRecycledViewPoolShared = recycledViewPool!=null;
+        return this;
+    }
+
     /***
      * Returns the file the user selected.
      * @return The file the user selected, or null if no file was selected
      */
     public String getSelectedFile(){
         if(mFolderSelectable&&mSelectedFile==null){
-            return mPath;
+            return mBrowser.getPath();
         }else{
             return  mSelectedFile.absolutePath;
         }
@@ -271,328 +616,2023 @@ public class OpenFileDialog extends Dialog {
      * @return The OpenFileDialog object.
      */
     public OpenFileDialog setPath(String path) {
-        this.mPath = path;
+        mBrowser.reset(path);
         if(mFileListAdapter!=null) {
-            mPathTextView.setText(path);
-            if(!mPath.equals(File.separator))mFileListAdapter.mFileList.add(new FileItem(PARENT_FOLDER, true));
-            mFileListAdapter.mFileList.addAll(new FileItem(mPath, true).listChildren());
-            mFileListAdapter.notifyDataSetChanged();
+            mFileListAdapter.leaveStorageRoots();
+            mFileListAdapter.loadFolder();
+        }else{
+            preloadFolder();
         }
         return this;
     }
 
     /***
-     * Returns the OK-button that the dialog shows on the bottom. The {@link #show()} has to have been called before this method returns a value different from null.
-     * @return The OK-button
+     * Returns the Browser behind the dialog: the current folder with its history, the order, the filter and the selected files.
+     * The dialog only shows its state, so e.g. the history can be inspected without a user interface.
+     * @return The Browser.
      */
-    public Button getOkButton() {
-        return mOkButton;
+    public Browser getBrowser() {
+        return mBrowser;
     }
 
     /***
-     * Set the text that the left-hand button will show. By default this is "OK".
-     * @param text The text that the button will show
+     * Goes back to the folder that has been shown before the current one.
+     * @return False if there is none.
+     */
+    public boolean navigateBack() {
+        if(!mBrowser.navigateBack()){
+            return false;
+        }
+        showBrowserPath();
+        return true;
+    }
+
+    /***
+     * Goes forward to the folder that has been shown after the current one, after going back.
+     * @return False if there is none.
+     */
+    public boolean navigateForward() {
+        if(!mBrowser.navigateForward()){
+            return false;
+        }
+        showBrowserPath();
+        return true;
+    }
+
+    private void showBrowserPath(){
+        mSelectedFile = null;
+        if(mFileListAdapter!=null) {
+            mFileListAdapter.leaveStorageRoots();
+            mFileListAdapter.loadFolder();
+        }
+    }
+
+    /***
+     * Sets the Executor that the content of folders is listed on. By default a small pool of background threads that is shared by all OpenFileDialogs is used.
+     * The results are always delivered on the UI thread.
+     * @param executor The Executor that lists the content of folders, or null to use the default one.
      * @return The OpenFileDialog-object
      */
-    public OpenFileDialog setOkButtonText(String text) {
-        this.mOkButtonText = text;
+    public OpenFileDialog setExecutor(Executor executor) {
+        this.mExecutor = executor;
+        resetBrowser();
         return this;
     }
 
     /***
-     * Returns the Cancel-button that the dialog shows on the bottom. The {@link #show()} has to have been called before this method returns a value different from null.
-     * @return The Cancel-button
+     * Sets the DirectoryLister that reads the content of folders. By default {@link DirectoryListers#getDefault()} is used, which reads type and metadata
+     * of the entries in one pass with java.nio.file where the platform supports it (Android 8.0 and newer) and falls back to java.io.File otherwise.
+     * @param directoryLister The DirectoryLister that reads the content of folders, or null to use the default one.
+     * @return The OpenFileDialog-object
      */
-    public Button getCancelButton() {
-        return mCancelButton;
+    public OpenFileDialog setDirectoryLister(DirectoryLister directoryLister) {
+        this.mDirectoryLister = directoryLister;
+        mArchiveDirectoryLister = null;
+        resetBrowser();
+        return this;
     }
 
     /***
-     * Set the text that the right-hand button will show. By default this is "Cancel".
-     * @param text The text that the button will show
+     * Sets if the listings of folders are taken from and stored in the listing cache that all OpenFileDialogs share. A cached listing is used as long as the modification time of its
+     * folder hasn't changed, so navigating back to a folder or opening the dialog at the same folder again doesn't list it again. By default the cache is enabled.
+     * @param enabled True to use the listing cache.
      * @return The OpenFileDialog-object
      */
-    public OpenFileDialog setCancelButtonText(String text) {
-        this.mCancelButtonText = text;
+    public OpenFileDialog setListingCacheEnabled(boolean enabled) {
+        this.mListingCacheEnabled = enabled;
+        resetBrowser();
         return this;
     }
 
     /***
-     * Returns the Resource id that references the drawable used to indicate a file in the dialog's list of entries.
-     * @return The Resource id that references the drawable used to indicate a file in the dialog's list of entries.
+     * Sets if the listings of the folders that have been opened are kept in the cache directory of the app, up to 8 MB, so a folder that is opened again after the
+     * app has been restarted shows its last known content right away. The folder is listed in the background all the same and only the differences are applied
+     * to the rows when it is complete. A snapshot is only shown as long as the modification time of its folder hasn't changed. Enabled by default.
+     * @param enabled True to keep snapshots of the listings on disk.
+     * @return The OpenFileDialog-object
      */
-    public int getFileIcon() {
-        return mFileIcon;
+    public OpenFileDialog setListingSnapshotsEnabled(boolean enabled) {
+        this.mListingSnapshotsEnabled = enabled;
+        mBrowser.setSnapshotStore(enabled?getListingSnapshotStore(getContext()):null);
+        return this;
     }
 
     /***
-     * Sets the icon that indicates a file in the dialog's list of entries in form of a Resource id.
-     * @param fileIcon The Resource id of the drawable used to indicate a file in the dialog's list of entries.
+     * Sets if the folder that is shown is watched for changes, so that files that are created, deleted or renamed while the dialog is showing (e.g. a download
+     * that finishes) appear and disappear without listing the folder again. Bursts of changes are applied together, at most every half second. The folder is
+     * only watched while the dialog is showing. By default the folder isn't watched.
+     * @param watchEnabled True to watch the folder that is shown.
      * @return The OpenFileDialog-object
      */
-    public OpenFileDialog setFileIcon(int fileIcon) {
-        this.mFileIcon = fileIcon;
+    public OpenFileDialog setWatchEnabled(boolean watchEnabled) {
+        if(this.mWatchEnabled!=watchEnabled){
+            this.mWatchEnabled = watchEnabled;
+            if(mFileListAdapter!=null){
+                mFileListAdapter.loadFolder();
+            }
+        }
         return this;
     }
 
     /***
-     * Returns the Resource id that references the drawable used to indicate a folder in the dialog's list of entries.
-     * @return The Resource id that references the drawable used to indicate a folder in the dialog's list of entries.
+     * Returns if the folder that is shown is watched for changes.
+     * @return True if the folder that is shown is watched.
      */
-    public int getFolderIcon() {
-        return mFolderIcon;
+    public boolean isWatchEnabled() {
+        return mWatchEnabled;
     }
 
     /***
-     * Sets the icon that indicates a folder in the dialog's list of entries in form of a Resource id.
-     * @param folderIcon The Resource id of the drawable used to indicate a folder in the dialog's list of entries.
+     * Sets the DirectoryWatcher that watches the folder that is shown if {@link #setWatchEnabled(boolean)} has been called with "true". By default a
+     * {@link FileObserverDirectoryWatcher} is used.
+     * @param directoryWatcher The DirectoryWatcher that watches the folder that is shown, or null to use the default one.
      * @return The OpenFileDialog-object
      */
-    public OpenFileDialog setFolderIcon(int folderIcon) {
-        this.mFolderIcon = folderIcon;
+    public OpenFileDialog setDirectoryWatcher(DirectoryWatcher directoryWatcher) {
+        this.mDirectoryWatcher = directoryWatcher;
+        resetBrowser();
         return this;
     }
 
     /***
-     * Returns the Resource id that references the drawable used to indicate the up-navigation (i.e. one hierarchy up in the folder-hierarchy) in the dialog's list of entries.
-     * @return The Resource id that references the drawable used to indicate the up-navigation (i.e. one hierarchy up in the folder-hierarchy) in the dialog's list of entries.
+     * Sets if the folders the user is likely to open next are listed in the background, so that opening them doesn't have to wait for the file system: the parent
+     * folder, the folders that are visible in the list and the other ancestors of the current folder. Prefetching runs on low priority threads, at most two folders at a
+     * time, and is cancelled when the user scrolls or navigates. By default prefetching is enabled.
+     * @param prefetchEnabled True to prefetch folders.
+     * @return The OpenFileDialog-object
      */
-    public int getFolderUpIcon(){
-        return mFolderUpIcon;
+    public OpenFileDialog setPrefetchEnabled(boolean prefetchEnabled) {
+        if(this.mPrefetchEnabled!=prefetchEnabled){
+            this.mPrefetchEnabled = prefetchEnabled;
+            resetBrowser();
+        }
+        return this;
     }
 
     /***
-     * Sets the icon that indicates the up-navigation (i.e. one hierarchy up in the folder-hierarchy) in the dialog's list of entries in form of a Resource id.
-     * @param folderUpIcon The Resource id of the drawable used to indicate the up-navigation (i.e. one hierarchy up in the folder-hierarchy) in the dialog's list of entries.
+     * Enables or disables remembering the folders the user opens, in a small file in the app's files directory that all OpenFileDialogs share. The folders
+     * that are opened most often and most recently, with the last one first, are offered as quick jumps below the path and are prefetched as soon as they
+     * have been read, so opening the same folder as last time doesn't have to wait for the file system. Disabled by default.
+     * @param recentLocationsEnabled True to remember the folders and offer quick jumps.
      * @return The OpenFileDialog-object
      */
-    public OpenFileDialog setFolderUpIcon(int folderUpIcon){
-        this.mFolderUpIcon = folderUpIcon;
+    public OpenFileDialog setRecentLocationsEnabled(boolean recentLocationsEnabled) {
+        this.mRecentLocationsEnabled = recentLocationsEnabled;
+        if(recentLocationsEnabled){
+            warmRecentLocations();
+        }else{
+            mQuickJumpPaths = Collections.emptyList();
+        }
+        showQuickJumps();
         return this;
     }
 
     /***
-     * Returns if folders can be selected. If true, folders can be selected instead of files in the dialog.
-     * @return The boolean indicating if folders can be selected. If true, folders can be selected instead of files in the dialog.
+     * Returns if the folders the user opens are remembered and offered as quick jumps.
+     * @return True if the folders are remembered.
      */
-    public boolean isFolderSelectable() {
-        return mFolderSelectable;
+    public boolean isRecentLocationsEnabled() {
+        return mRecentLocationsEnabled;
     }
 
     /***
-     * Sets if folders can be selected. If the argument is true, folders can be selected instead of files in the dialog.
-     * @param folderSelectable The boolean indicating if folders can be selected. If true, folders can be selected instead of files in the dialog.
-     * @return The OpenFileDialog-object.
+     * Sets a listener that receives measurements of the dialog, to find out where the time goes when it is slow: for every folder that has been shown the time spent
+     * listing, sorting and filtering it, how many entries have been read from the file system, if it came from a cache and the time until its first entry has been
+     * bound to a row, the time it took to bind every row, and the frames dropped while the dialog is visible (Android 4.1 and newer). {@link de.mxapplications.openfiledialog.core.MetricsHistogram}
+     * keeps them in memory to be dumped. By default nothing is measured ({@link MetricsListener#NONE}).
+     * @param metricsListener The listener, or null to stop measuring.
+     * @return The OpenFileDialog-object
      */
-    public OpenFileDialog setFolderSelectable(boolean folderSelectable) {
-        this.mFolderSelectable = folderSelectable;
+    public OpenFileDialog setMetricsListener(MetricsListener metricsListener) {
+        stopDroppedFrameCounter();
+        mDroppedFrameCounter = null;
+        this.mMetricsListener = metricsListener!=null ? metricsListener : MetricsListener.NONE;
+        mBrowser.setCollectStats(mMetricsListener!=MetricsListener.NONE);
+        if(isShowing()){
+            startDroppedFrameCounter();
+        }
         return this;
     }
 
     /***
-     * Returns the text color that is used for selected files.
-     * @return The text color that is used for selected files.
+     * Returns the listener that receives measurements of the dialog.
+     * @return The listener, {@link MetricsListener#NONE} if nothing is measured.
      */
-    public int getFileSelectedColor() {
-        return mFileSelectedColor;
+    public MetricsListener getMetricsListener() {
+        return mMetricsListener;
     }
 
     /***
-     * Sets the text color used for selected files. This should be a color value not a resource id.
-     * @param fileSelectedColor The text color used for selected files.
+     * Returns the counters of the folders this dialog has prefetched, including how many of the folders the user opened had been prefetched.
+     * @return A snapshot of the counters, or null if prefetching is disabled.
+     */
+    public Prefetcher.Stats getPrefetchStats() {
+        return mBrowser.getPrefetchStats();
+    }
+
+    /***
+     * Sets the maximum size of the cache for prefetched folders that all OpenFileDialogs share. A prefetched folder moves to the listing cache when it is opened,
+     * so prefetching never evicts folders the user has opened. Folders that are larger than the cache are not prefetched. By default it keeps up to 16 folders and 1 MB.
+     * @param maxFolders The maximum number of prefetched folders that are kept.
+     * @param maxBytes The maximum estimated memory of all prefetched folders that are kept, in bytes.
+     */
+    public static void setPrefetchCacheLimits(int maxFolders, long maxBytes) {
+        sPrefetchCache.setLimits(maxFolders, maxBytes);
+    }
+
+    /***
+     * Sets the maximum size of the listing cache that all OpenFileDialogs share. By default it keeps up to 32 folders and 4 MB.
+     * @param maxFolders The maximum number of folders whose listings are kept.
+     * @param maxBytes The maximum estimated memory of all listings that are kept, in bytes.
+     */
+    public static void setListingCacheLimits(int maxFolders, long maxBytes) {
+        sListingCache.setLimits(maxFolders, maxBytes);
+    }
+
+    /***
+     * Returns the hit, miss and eviction counters and the current size of the listing cache that all OpenFileDialogs share.
+     * @return A snapshot of the counters of the listing cache.
+     */
+    public static ListingCache.Stats getListingCacheStats() {
+        return sListingCache.getStats();
+    }
+
+    /***
+     * Removes all listings from the listing cache that all OpenFileDialogs share, e.g. when memory is low.
+     */
+    public static void clearListingCache() {
+        sListingCache.clear();
+    }
+
+    /***
+     * Sets the order in which the entries of a folder are shown, e.g. {@code new SortOrder(SortOrder.Mode.NATURAL, true, false)} to sort by name with numbers
+     * compared by their value and folders first. By default the entries are sorted by name ignoring case, with folders and files mixed ({@link SortOrder#DEFAULT}).
+     * If the dialog is showing, the current folder is shown again in the new order.
+     * @param sortOrder The order of the entries.
      * @return The OpenFileDialog-object
      */
-    public OpenFileDialog setFileSelectedColor(int fileSelectedColor) {
-        this.mFileSelectedColor = fileSelectedColor;
+    public OpenFileDialog setSortOrder(SortOrder sortOrder) {
+        if(sortOrder==null){
+            throw new IllegalArgumentException("sortOrder must not be null");
+        }
+        mBrowser.setSortOrder(sortOrder);
+        if(mFileListAdapter!=null){
+            mFileListAdapter.loadFolder();
+        }else{
+            preloadFolder();
+        }
         return this;
     }
 
     /***
-     * Returns the background color that is used for selected files.
-     * @return The background color that is used for selected files.
+     * Returns the order in which the entries of a folder are shown.
+     * @return The order of the entries.
      */
-    public int getFileSelectedBackgroundColor() {
-        return mFileSelectedBackgroundColor;
+    public SortOrder getSortOrder() {
+        return mBrowser.getSortOrder();
     }
 
     /***
-     * Sets the background color used for selected files. This should be a color value not a resource id.
-     * @param fileSelectedBackgroundColor The text color used for selected files.
+     * Sets which entries of a folder are shown, e.g. only CSV files:
+     * {@code new EntryFilter.Builder().addExtensions("csv").build()}. Extensions, MIME types and the size range only apply to files, folders are
+     * always shown so the user can navigate. The filter is applied while a folder is being listed, entries that it rejects by their name aren't
+     * even read. By default all entries but hidden ones are shown ({@link EntryFilter#DEFAULT}).
+     * If the dialog is showing, the current folder is shown again with the new filter.
+     * @param entryFilter The filter.
      * @return The OpenFileDialog-object
      */
-    public OpenFileDialog setFileSelectedBackgroundColor(int fileSelectedBackgroundColor) {
-        this.mFileSelectedBackgroundColor = fileSelectedBackgroundColor;
+    public OpenFileDialog setEntryFilter(EntryFilter entryFilter) {
+        if(entryFilter==null){
+            throw new IllegalArgumentException("entryFilter must not be null");
+        }
+        mBrowser.setEntryFilter(entryFilter);
+        if(mFileDetailsLoader!=null){
+            //The children of the folders are counted with the filter
+            mFileDetailsLoader.clear();
+        }
+        if(mFileListAdapter!=null){
+            mFileListAdapter.loadFolder();
+        }else{
+            preloadFolder();
+        }
         return this;
     }
 
     /***
-     * Returns the text that will be displayed as the title of the dialog.
-     * @return The text that will be displayed as the title of the dialog.
+     * Returns the filter that decides which entries of a folder are shown.
+     * @return The filter.
      */
-    public String getTitle(){
-        return mTitle;
+    public EntryFilter getEntryFilter() {
+        return mBrowser.getEntryFilter();
     }
 
     /***
-     * Sets the text that will be displayed as the title of the dialog.
-     * @param title The text that will be displayed as the title of the dialog.
+     * Enables or disables the paged listing, for folders with very many entries. In the paged mode the names of a folder are read once into a compact form,
+     * and the objects for the rows are only created for the visible rows and some rows around them, and dropped again as the list is scrolled. The memory
+     * used for the rows stays the same however many entries a folder has. A folder is shown once it has been listed completely instead of batch by batch,
+     * and changes of a watched folder list it again instead of updating single rows. Disabled by default.
+     * If the dialog is showing, the current folder is shown again.
+     * @param pagedListing True to enable the paged listing.
+     * @return The OpenFileDialog-object
      */
-    @Override
-    public void setTitle(CharSequence title) {
-        if(title!=null) {
-            mTitle = title.toString();
-            if(mTitleTextView!=null){
-                mTitleTextView.setText(mTitle);
-                mTitleTextView.setVisibility(View.VISIBLE);
-            }else{
-                requestWindowFeature(Window.FEATURE_NO_TITLE);
-            }
+    public OpenFileDialog setPagedListing(boolean pagedListing) {
+        this.mPagedListing = pagedListing;
+        mBrowser.setPaged(pagedListing);
+        if(mFileListAdapter!=null){
+            mFileListAdapter.loadFolder();
         }
+        return this;
     }
 
     /***
-     * Sets the text that will be displayed as the title of the dialog in form of a Resource id.
-     * @param titleId The text that will be displayed as the title of the dialog in form of a Resource id.
+     * Returns if the paged listing is enabled.
+     * @return True if the paged listing is enabled.
      */
-    @Override
-    public void setTitle(int titleId) {
-        setTitle(getContext().getString(titleId));
+    public boolean isPagedListing() {
+        return mPagedListing;
     }
 
     /***
-     * Sets the OnCloseListener that's methods will be called when the dialog is closed by the user.
-     * @param onCloseListener The OnCloseListener-object that's methods will be called when the dialog is closed by the user.
-     * @return
+     * Enables or disables thumbnails for images and videos instead of the file icon. Thumbnails are decoded in the background at the size of the icon,
+     * the ones of the rows that have appeared last first, and the icon is shown until the thumbnail is ready. Recently shown thumbnails are kept in memory,
+     * up to an eighth of the heap or 16 MB, for all dialogs. Disabled by default.
+     * @param thumbnailsEnabled True to show thumbnails.
+     * @return The OpenFileDialog-object
      */
-    public OpenFileDialog setOnCloseListener(OnCloseListener onCloseListener){
-        this.mOnCloseListener = onCloseListener;
+    public OpenFileDialog setThumbnailsEnabled(boolean thumbnailsEnabled) {
+        this.mThumbnailsEnabled = thumbnailsEnabled;
+        if(!thumbnailsEnabled&&mThumbnailLoader!=null){
+            mThumbnailLoader.cancelAll();
+        }
+        if(mFileListAdapter!=null){
+            mFileListAdapter.notifyDataSetChanged();
+        }
         return this;
     }
 
-    private static int convertDpToPixels(int dp){
-        return Math.round(TypedValue.applyDimension(TypedValue.COMPLEX_UNIT_DIP, dp, Resources.getSystem().getDisplayMetrics()));
+    /***
+     * Returns if thumbnails are shown for images and videos.
+     * @return True if thumbnails are shown.
+     */
+    public boolean isThumbnailsEnabled() {
+        return mThumbnailsEnabled;
     }
 
-    private class FileListRecyclerViewAdapter extends RecyclerView.Adapter<FileListRecyclerViewAdapter.ViewHolder>{
-        private List<FileItem> mFileList = new ArrayList<>();
-
-        public FileListRecyclerViewAdapter(){
-            if(mPath!=null){
-                if(!mPath.equals(File.separator))mFileList.add(new FileItem(PARENT_FOLDER, true));
-                mFileList.addAll(new FileItem(mPath, true).listChildren());
-            }
+    /***
+     * Enables or disables keeping thumbnails in the cache directory of the app, up to 32 MB, so they don't have to be decoded again after the app has
+     * been restarted. A thumbnail is stored for the path, the modification time and the size of its file. Enabled by default.
+     * @param enabled True to keep thumbnails on disk.
+     * @return The OpenFileDialog-object
+     */
+    public OpenFileDialog setThumbnailDiskCacheEnabled(boolean enabled) {
+        this.mThumbnailDiskCacheEnabled = enabled;
+        if(mThumbnailLoader!=null){
+            //The next thumbnail is loaded with or without the DiskCache
+            mThumbnailLoader.cancelAll();
+            mThumbnailLoader = null;
         }
+        return this;
+    }
 
-        @Override
-        public FileListRecyclerViewAdapter.ViewHolder onCreateViewHolder(ViewGroup parent, int viewType) {
-            View view = LayoutInflater.from(parent.getContext())
-                    .inflate(R.layout.open_file_dialog_item_layout, parent, false);
-            return new FileListRecyclerViewAdapter.ViewHolder(view);
+    /***
+     * Enables or disables a second line below the name of every row: the size and the modification time of a file, the number of children and the
+     * modification time of a folder. Details that the folder listing hasn't read already are read in the background, only for the rows that are shown and
+     * the ones that have appeared last first, and each row shows them as soon as they have been read. The details of the last 1024 rows are kept, so
+     * scrolling back shows them at once. Disabled by default.
+     * @param detailsEnabled True to show the details.
+     * @return The OpenFileDialog-object
+     */
+    public OpenFileDialog setDetailsEnabled(boolean detailsEnabled) {
+        this.mDetailsEnabled = detailsEnabled;
+        if(!detailsEnabled&&mFileDetailsLoader!=null){
+            mFileDetailsLoader.cancelAll();
         }
+        if(mFileListAdapter!=null){
+            mFileListAdapter.notifyDataSetChanged();
+        }
+        return this;
+    }
 
-        @Override
-        public void onBindViewHolder(final FileListRecyclerViewAdapter.ViewHolder holder, int position) {
-            holder.mFileItem = mFileList.get(position);
+    /***
+     * Returns if the details are shown below the names.
+     * @return True if the details are shown.
+     */
+    public boolean isDetailsEnabled() {
+        return mDetailsEnabled;
+    }
 
-            holder.mIconImageView.setImageResource(holder.mFileItem.name.equals(PARENT_FOLDER) ? mFolderUpIcon : holder.mFileItem.isDirectory ? mFolderIcon : mFileIcon);
-            if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.JELLY_BEAN) {
-                holder.mIconImageView.setImageAlpha(138);
-            }
+    /***
+     * Enables or disables the total size of all files below a folder in its details, see {@link #setDetailsEnabled(boolean)}. The whole tree below the
+     * folder is listed for it, which takes a while for large folders, so a row shows the number of children first and is updated once the size has been
+     * added up. Rows that scroll out of view before stop adding up. Disabled by default.
+     * @param folderSizeEnabled True to show the total size of folders.
+     * @return The OpenFileDialog-object
+     */
+    public OpenFileDialog setFolderSizeEnabled(boolean folderSizeEnabled) {
+        this.mFolderSizeEnabled = folderSizeEnabled;
+        if(mFileListAdapter!=null&&mDetailsEnabled){
+            mFileListAdapter.notifyDataSetChanged();
+        }
+        return this;
+    }
+
+    /***
+     * Returns if the total size of all files below a folder is shown in its details.
+     * @return True if the total size of folders is shown.
+     */
+    public boolean isFolderSizeEnabled() {
+        return mFolderSizeEnabled;
+    }
+
+    /***
+     * Enables or disables a level above the roots of the storage volumes, which ".." leads to from the root of a volume: it lists the internal storage,
+     * the SD cards and the USB drives that are mounted and readable. The volumes are probed at the same time each time the level is shown, and each one
+     * is shown as soon as it has answered. A volume that doesn't answer within 2 seconds, e.g. a slow or unmounted card, is left out without holding
+     * back the others. Disabled by default, ".." then leads to the parent folder up to "/".
+     * @param storageRootsEnabled True to show the storage volumes above their roots.
+     * @return The OpenFileDialog-object
+     */
+    public OpenFileDialog setStorageRootsEnabled(boolean storageRootsEnabled) {
+        this.mStorageRootsEnabled = storageRootsEnabled;
+        return this;
+    }
+
+    /***
+     * Returns if the storage volumes are shown above their roots.
+     * @return True if the storage volumes are shown.
+     */
+    public boolean isStorageRootsEnabled() {
+        return mStorageRootsEnabled;
+    }
+
+    /***
+     * Enables or disables browsing ZIP and JAR archives like folders. The user enters an archive like a folder and picks a file inside it, the selected
+     * path then leads through the archive, e.g. "/sdcard/docs.zip/2019/report.pdf", and can be opened with {@link ArchiveDirectoryLister#openStream(String)}.
+     * Entering an archive only reads its central directory, no file in it is inflated, and the index is kept for the next visits. The shared listing cache
+     * isn't used while archives are browsed, since the listings of other dialogs show archives as files. Disabled by default, archives are then picked like other files.
+     * @param archivesEnabled True to browse archives like folders.
+     * @return The OpenFileDialog-object
+     */
+    public OpenFileDialog setArchivesEnabled(boolean archivesEnabled) {
+        this.mArchivesEnabled = archivesEnabled;
+        mArchiveDirectoryLister = null;
+        resetBrowser();
+        return this;
+    }
+
+    /***
+     * Returns if ZIP and JAR archives are browsed like folders.
+     * @return True if archives are browsed.
+     */
+    public boolean isArchivesEnabled() {
+        return mArchivesEnabled;
+    }
+
+    /***
+     * Sets how many entries of a folder are shown at once when the folder is loaded. The first entries are shown as soon as this many have been listed,
+     * the remaining ones are added in growing batches while the folder is being listed. The default is 32, about a screenful of rows.
+     * @param batchSize The number of entries that are shown first, at least 1.
+     * @return The OpenFileDialog-object
+     */
+    public OpenFileDialog setBatchSize(int batchSize) {
+        if(batchSize<1){
+            throw new IllegalArgumentException("batchSize must be at least 1");
+        }
+        mBrowser.setBatchSize(batchSize);
+        return this;
+    }
+
+    /***
+     * Returns the time it took from starting to load the current folder until its first entries were shown.
+     * @return The time to the first entry in milliseconds, or -1 if no entry of the current folder has been shown yet.
+     */
+    public long getTimeToFirstRowMillis() {
+        if(mBrowser.getTimeToFirstRowNanos()<0){
+            return -1;
+        }
+        return TimeUnit.NANOSECONDS.toMillis(mBrowser.getTimeToFirstRowNanos());
+    }
+
+    /***
+     * Returns if the content of the folder that is currently shown is still being loaded.
+     * @return True if the content of the current folder is still being loaded.
+     */
+    public boolean isLoading() {
+        return mBrowser.isLoading();
+    }
+
+    /***
+     * Returns if the dialog can search subfolders recursively, which needs Android 5.0 (API 21) or newer.
+     * @return True if {@link #search(String)} is supported.
+     */
+    public static boolean isSearchSupported() {
+        return Build.VERSION.SDK_INT >= Build.VERSION_CODES.LOLLIPOP;
+    }
+
+    /***
+     * Searches the search root and its subfolders for entries whose name contains the query, ignoring case. The subfolders are listed in parallel
+     * and the matches are shown as they are found, with their path below the search root. Entries that the filter set with {@link #setEntryFilter(EntryFilter)}
+     * rejects, e.g. hidden ones, are neither found nor searched, like they aren't shown in a folder. The search stops after the limits set with
+     * {@link #setSearchLimits(int, int)}. Opening a folder or the ".." entry ends the search.
+     * <p>The user starts a search with the search key of the keyboard while typing into the filter field.</p>
+     * @param query The text the names have to contain.
+     * @return True if the search has been started, false if the query is empty, the dialog isn't showing or searching isn't supported
+     * ({@link #isSearchSupported()}).
+     */
+    public boolean search(String query) {
+        if(!isSearchSupported()||mFileListAdapter==null||query.trim().isEmpty()){
+            return false;
+        }
+        mFileListAdapter.searchFolders(query);
+        return true;
+    }
+
+    /***
+     * Sets the folder that {@link #search(String)} searches. By default Environment.getExternalStorageDirectory() is searched.
+     * @param searchRoot The absolute path of the folder, or null to search the default one.
+     * @return The OpenFileDialog-object
+     */
+    public OpenFileDialog setSearchRoot(String searchRoot) {
+        this.mSearchRoot = searchRoot;
+        return this;
+    }
+
+    /***
+     * Sets how far {@link #search(String)} searches. By default 32 levels of subfolders are searched and the search stops after 1000 matches.
+     * @param maxDepth The number of levels of subfolders below the search root that are searched, 0 to only search the search root itself.
+     * @param maxResults The number of matches after which the search stops, at least 1.
+     * @return The OpenFileDialog-object
+     */
+    public OpenFileDialog setSearchLimits(int maxDepth, int maxResults) {
+        if(maxDepth<0){
+            throw new IllegalArgumentException("maxDepth must not be negative");
+        }
+        if(maxResults<1){
+            throw new IllegalArgumentException("maxResults must be at least 1");
+        }
+        this.mSearchMaxDepth = maxDepth;
+        this.mSearchMaxResults = maxResults;
+        return this;
+    }
+
+    /***
+     * Passes the settings that decide where folders are listed from to the Browser: the DirectoryLister, the listing cache and prefetching.
+     */
+    private void configureBrowser(){
+        mBrowser.setDirectoryLister(getDirectoryLister());
+        mBrowser.setListingCache(mListingCacheEnabled&&!mArchivesEnabled?sListingCache:null);
+        mBrowser.setPrefetching(mPrefetchEnabled?getPrefetchExecutor():null, PREFETCH_MAX_CONCURRENT, sPrefetchCache);
+    }
+
+    /***
+     * Applies changed settings to the Browser and drops the watcher, so they are created again with the current settings. A load that is running is
+     * started again.
+     */
+    private void resetBrowser(){
+        mBrowser.cancelLoad();
+        configureBrowser();
+        if(mFolderWatcher!=null){
+            mFolderWatcher.stop();
+            mFolderWatcher = null;
+        }
+        mStorageRootProber = null;
+        if(mFileListAdapter!=null){
+            mFileListAdapter.loadFolder();
+        }else{
+            preloadFolder();
+        }
+    }
+
+    private ThumbnailLoader<Bitmap> getThumbnailLoader(){
+        if(mThumbnailLoader==null){
+            mThumbnailLoader = new ThumbnailLoader<>(new BitmapThumbnailDecoder(), sThumbnailCache, mThumbnailDiskCacheEnabled?getThumbnailDiskCache(getContext()):null,
+                    getThumbnailExecutor(), THUMBNAIL_MAX_CONCURRENT, getMainThreadExecutor());
+        }
+        return mThumbnailLoader;
+    }
+
+    private FileDetailsLoader getFileDetailsLoader(){
+        if(mFileDetailsLoader==null){
+            mFileDetailsLoader = new FileDetailsLoader(getDirectoryLister(), getDetailsExecutor(),
+                    DETAILS_MAX_CONCURRENT, getMainThreadExecutor(), DETAILS_MAX_CACHED);
+        }
+        return mFileDetailsLoader;
+    }
+
+    private static synchronized DiskCache getThumbnailDiskCache(Context context){
+        if(sThumbnailDiskCache==null){
+            //Shared by all dialogs, only one DiskCache may use the directory
+            sThumbnailDiskCache = new DiskCache(new File(context.getApplicationContext().getCacheDir(), "open_file_dialog_thumbnails"), THUMBNAIL_DISK_CACHE_BYTES);
+        }
+        return sThumbnailDiskCache;
+    }
+
+    private static synchronized RecentLocations getRecentLocations(Context context){
+        if(sRecentLocations==null){
+            sRecentLocations = new RecentLocations(new File(context.getApplicationContext().getFilesDir(), "open_file_dialog_locations"), RECENT_LOCATIONS_MAX);
+        }
+        return sRecentLocations;
+    }
+
+    /***
+     * Starts listing the folder the dialog is going to show, as long as it isn't showing yet, so the listing is ready when the list is created.
+     */
+    private void preloadFolder(){
+        if(mFileListAdapter==null){
+            mBrowser.preload();
+        }
+    }
+
+    /***
+     * Reads the recent locations in the background, then offers the top ones as quick jumps and prefetches them.
+     */
+    private void warmRecentLocations(){
+        final RecentLocations recentLocations = getRecentLocations(getContext());
+        (mExecutor!=null?mExecutor:getDefaultExecutor()).execute(new Runnable() {
+            @Override
+            public void run() {
+                final List<String> top = recentLocations.getTop(QUICK_JUMPS_MAX, System.currentTimeMillis());
+                mHandler.post(new Runnable() {
+                    @Override
+                    public void run() {
+                        if(!mRecentLocationsEnabled){
+                            return;
+                        }
+                        mQuickJumpPaths = top;
+                        showQuickJumps();
+                        mBrowser.prefetch(top);
+                    }
+                });
+            }
+        });
+    }
+
+    private void recordRecentLocation(final String path){
+        if(!mRecentLocationsEnabled){
+            return;
+        }
+        final RecentLocations recentLocations = getRecentLocations(getContext());
+        (mExecutor!=null?mExecutor:getDefaultExecutor()).execute(new Runnable() {
+            @Override
+            public void run() {
+                recentLocations.visit(path, System.currentTimeMillis());
+            }
+        });
+    }
+
+    private void showQuickJumps(){
+        if(mQuickJumpLayout==null){
+            return;
+        }
+        mQuickJumpLayout.removeAllViews();
+        int padding = convertDpToPixels(8);
+        for(final String path : mQuickJumpPaths){
+            TextView jumpView = new TextView(getContext());
+            String name = BrowserPaths.name(path);
+            jumpView.setText(name.isEmpty() ? path : name);
+            jumpView.setTextColor(mFileSelectedBackgroundColor);
+            jumpView.setPadding(padding, padding, padding, padding);
+            jumpView.setOnClickListener(new View.OnClickListener() {
+                @Override
+                public void onClick(View v) {
+                    mBrowser.navigateTo(path);
+                    showBrowserPath();
+                }
+            });
+            mQuickJumpLayout.addView(jumpView);
+        }
+        mQuickJumpScrollView.setVisibility(mQuickJumpPaths.isEmpty() ? View.GONE : View.VISIBLE);
+    }
+
+    private static synchronized ListingSnapshotStore getListingSnapshotStore(Context context){
+        if(sListingSnapshotStore==null){
+            sListingSnapshotStore = new ListingSnapshotStore(new DiskCache(new File(context.getApplicationContext().getCacheDir(), "open_file_dialog_listings"), LISTING_SNAPSHOT_DISK_BYTES));
+        }
+        return sListingSnapshotStore;
+    }
+
+    private DirectoryWalker getDirectoryWalker(){
+        return new DirectoryWalker(getDirectoryLister(), SearchPool.get());
+    }
+
+    private FolderWatcher getFolderWatcher(){
+        if(mFolderWatcher==null){
+            mFolderWatcher = new FolderWatcher(mDirectoryWatcher!=null?mDirectoryWatcher:new FileObserverDirectoryWatcher(), getDirectoryLister(), getWatchScheduler(), getMainThreadExecutor());
+        }
+        return mFolderWatcher;
+    }
+
+    private DirectoryLister getDirectoryLister(){
+        DirectoryLister directoryLister = mDirectoryLister!=null?mDirectoryLister:DirectoryListers.getDefault();
+        if(!mArchivesEnabled){
+            return directoryLister;
+        }
+        if(mArchiveDirectoryLister==null){
+            mArchiveDirectoryLister = new ArchiveDirectoryLister(directoryLister, ARCHIVE_MAX_INDEXES);
+        }
+        return mArchiveDirectoryLister;
+    }
+
+    private Executor getMainThreadExecutor(){
+        return new Executor() {
+            @Override
+            public void execute(Runnable command) {
+                mHandler.post(command);
+            }
+        };
+    }
+
+    private static synchronized ScheduledExecutorService getWatchScheduler(){
+        if(sWatchScheduler==null){
+            //A single thread, FolderWatcher relies on its sessions being started, closed and flushed one after the other.
+            ScheduledThreadPoolExecutor scheduler = new ScheduledThreadPoolExecutor(1, new ThreadFactory() {
+                @Override
+                public Thread newThread(final Runnable r) {
+                    Thread thread = new Thread(new Runnable() {
+                        @Override
+                        public void run() {
+                            Process.setThreadPriority(Process.THREAD_PRIORITY_BACKGROUND);
+                            r.run();
+                        }
+                    }, "OpenFileDialog-watch");
+                    thread.setDaemon(true);
+                    return thread;
+                }
+            });
+            scheduler.setKeepAliveTime(30, TimeUnit.SECONDS);
+            scheduler.allowCoreThreadTimeOut(true);
+            sWatchScheduler = scheduler;
+        }
+        return sWatchScheduler;
+    }
+
+    private static synchronized Executor getPrefetchExecutor(){
+        if(sPrefetchExecutor==null){
+            //Lowest priority, prefetching must never compete with listing the folder the user is looking at.
+            sPrefetchExecutor = createBackgroundExecutor(PREFETCH_MAX_CONCURRENT, Process.THREAD_PRIORITY_LOWEST, "OpenFileDialog-prefetch");
+        }
+        return sPrefetchExecutor;
+    }
+
+    private static synchronized Executor getThumbnailExecutor(){
+        if(sThumbnailExecutor==null){
+            //Thumbnails are decoration, listing the folder comes first
+            sThumbnailExecutor = createBackgroundExecutor(THUMBNAIL_MAX_CONCURRENT, Process.THREAD_PRIORITY_BACKGROUND, "OpenFileDialog-thumbnail");
+        }
+        return sThumbnailExecutor;
+    }
+
+    private StorageRootProber getStorageRootProber(){
+        if(mStorageRootProber==null){
+            mStorageRootProber = new StorageRootProber(new StorageVolumeSource(getContext().getString(R.string.open_file_dialog_internal_storage)),
+                    getDirectoryLister(), getStorageRootExecutor(), getWatchScheduler(),
+                    getMainThreadExecutor(), STORAGE_ROOT_TIMEOUT_MILLIS);
+        }
+        return mStorageRootProber;
+    }
+
+    private static synchronized Executor getStorageRootExecutor(){
+        if(sStorageRootExecutor==null){
+            //A probe that hangs on a slow card keeps its thread, the others still get one
+            sStorageRootExecutor = createBackgroundExecutor(STORAGE_ROOTS_MAX_CONCURRENT, Process.THREAD_PRIORITY_DEFAULT, "OpenFileDialog-storage");
+        }
+        return sStorageRootExecutor;
+    }
+
+    private static synchronized Executor getDetailsExecutor(){
+        if(sDetailsExecutor==null){
+            sDetailsExecutor = createBackgroundExecutor(DETAILS_MAX_CONCURRENT, Process.THREAD_PRIORITY_BACKGROUND, "OpenFileDialog-details");
+        }
+        return sDetailsExecutor;
+    }
+
+    /***
+     * Creates a pool of daemon threads with the given priority, whose threads stop after 30 seconds without work.
+     */
+    private static Executor createBackgroundExecutor(int threads, final int priority, final String name){
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(threads, threads, 30, TimeUnit.SECONDS, new LinkedBlockingQueue<Runnable>(), new ThreadFactory() {
+            @Override
+            public Thread newThread(final Runnable r) {
+                Thread thread = new Thread(new Runnable() {
+                    @Override
+                    public void run() {
+                        Process.setThreadPriority(priority);
+                        r.run();
+                    }
+                }, name);
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+        executor.allowCoreThreadTimeOut(true);
+        return executor;
+    }
+
+    /***
+     * Holds the ForkJoinPool for searches. It is a class of its own so ForkJoinPool is only loaded when a search is started, on Android 5.0 and newer.
+     */
+    private static class SearchPool{
+        private static ForkJoinPool sPool = null;
+
+        static synchronized ForkJoinPool get(){
+            if(sPool==null){
+                //Listing folders mostly waits for the storage, so a few more threads than cores keep it busy
+                sPool = new ForkJoinPool(Math.max(2, Runtime.getRuntime().availableProcessors()+1));
+            }
+            return sPool;
+        }
+    }
+
+    private static synchronized Executor getDefaultExecutor(){
+        if(sDefaultExecutor==null){
+            //Two threads, so that a folder on fast storage can be shown while a listing on slow storage that has been cancelled is still blocked in I/O.
+            ThreadPoolExecutor executor = new ThreadPoolExecutor(2, 2, 30, TimeUnit.SECONDS, new LinkedBlockingQueue<Runnable>(), new ThreadFactory() {
+                @Override
+                public Thread newThread(final Runnable r) {
+                    Thread thread = new Thread(new Runnable() {
+                        @Override
+                        public void run() {
+                            Process.setThreadPriority(Process.THREAD_PRIORITY_BACKGROUND);
+                            r.run();
+                        }
+                    }, "OpenFileDialog-loader");
+                    thread.setDaemon(true);
+                    return thread;
+                }
+            });
+            executor.allowCoreThreadTimeOut(true);
+            sDefaultExecutor = executor;
+        }
+        return sDefaultExecutor;
+    }
+
+    /***
+     * Returns the OK-button that the dialog shows on the bottom. The {@link #show()} has to have been called before this method returns a value different from null.
+     * @return The OK-button
+     */
+    public Button getOkButton() {
+        return mOkButton;
+    }
+
+    /***
+     * Set the text that the left-hand button will show. By default this is "OK".
+     * @param text The text that the button will show
+     * @return The OpenFileDialog-object
+     */
+    public OpenFileDialog setOkButtonText(String text) {
+        this.mOkButtonText = text;
+        return this;
+    }
+
+    /***
+     * Returns the Cancel-button that the dialog shows on the bottom. The {@link #show()} has to have been called before this method returns a value different from null.
+     * @return The Cancel-button
+     */
+    public Button getCancelButton() {
+        return mCancelButton;
+    }
+
+    /***
+     * Set the text that the right-hand button will show. By default this is "Cancel".
+     * @param text The text that the button will show
+     * @return The OpenFileDialog-object
+     */
+    public OpenFileDialog setCancelButtonText(String text) {
+        this.mCancelButtonText = text;
+        return this;
+    }
+
+    /***
+     * Returns the Resource id that references the drawable used to indicate a file in the dialog's list of entries.
+     * @return The Resource id that references the drawable used to indicate a file in the dialog's list of entries.
+     */
+    public int getFileIcon() {
+        return mFileIcon;
+    }
+
+    /***
+     * Sets the icon that indicates a file in the dialog's list of entries in form of a Resource id.
+     * @param fileIcon The Resource id of the drawable used to indicate a file in the dialog's list of entries.
+     * @return The OpenFileDialog-object
+     */
+    public OpenFileDialog setFileIcon(int fileIcon) {
+        this.mFileIcon = fileIcon;
+        return this;
+    }
+
+    /***
+     * Returns the Resource id that references the drawable used to indicate a folder in the dialog's list of entries.
+     * @return The Resource id that references the drawable used to indicate a folder in the dialog's list of entries.
+     */
+    public int getFolderIcon() {
+        return mFolderIcon;
+    }
+
+    /***
+     * Sets the icon that indicates a folder in the dialog's list of entries in form of a Resource id.
+     * @param folderIcon The Resource id of the drawable used to indicate a folder in the dialog's list of entries.
+     * @return The OpenFileDialog-object
+     */
+    public OpenFileDialog setFolderIcon(int folderIcon) {
+        this.mFolderIcon = folderIcon;
+        return this;
+    }
+
+    /***
+     * Returns the Resource id that references the drawable used to indicate the up-navigation (i.e. one hierarchy up in the folder-hierarchy) in the dialog's list of entries.
+     * @return The Resource id that references the drawable used to indicate the up-navigation (i.e. one hierarchy up in the folder-hierarchy) in the dialog's list of entries.
+     */
+    public int getFolderUpIcon(){
+        return mFolderUpIcon;
+    }
+
+    /***
+     * Sets the icon that indicates the up-navigation (i.e. one hierarchy up in the folder-hierarchy) in the dialog's list of entries in form of a Resource id.
+     * @param folderUpIcon The Resource id of the drawable used to indicate the up-navigation (i.e. one hierarchy up in the folder-hierarchy) in the dialog's list of entries.
+     * @return The OpenFileDialog-object
+     */
+    public OpenFileDialog setFolderUpIcon(int folderUpIcon){
+        this.mFolderUpIcon = folderUpIcon;
+        return this;
+    }
+
+    /***
+     * Returns if folders can be selected. If true, folders can be selected instead of files in the dialog.
+     * @return The boolean indicating if folders can be selected. If true, folders can be selected instead of files in the dialog.
+     */
+    public boolean isFolderSelectable() {
+        return mFolderSelectable;
+    }
+
+    /***
+     * Sets if folders can be selected. If the argument is true, folders can be selected instead of files in the dialog.
+     * @param folderSelectable The boolean indicating if folders can be selected. If true, folders can be selected instead of files in the dialog.
+     * @return The OpenFileDialog-object.
+     */
+    public OpenFileDialog setFolderSelectable(boolean folderSelectable) {
+        this.mFolderSelectable = folderSelectable;
+        return this;
+    }
+
+    /***
+     * Returns if the field that filters the entries of the current folder by name is shown.
+     * @return True if the filter field is shown.
+     */
+    public boolean isFilterEnabled() {
+        return mFilterEnabled;
+    }
+
+    /***
+     * Sets if a field is shown that filters the entries of the current folder while the user types: only entries whose name contains the text, ignoring case, are
+     * shown. The filter is cleared when the user navigates to another folder. By default the field is shown.
+     * @param filterEnabled True to show the filter field.
+     * @return The OpenFileDialog-object.
+     */
+    public OpenFileDialog setFilterEnabled(boolean filterEnabled) {
+        this.mFilterEnabled = filterEnabled;
+        if(mFilterEditText!=null){
+            mFilterEditText.setVisibility(filterEnabled ? View.VISIBLE : View.GONE);
+            if(!filterEnabled){
+                mFilterEditText.setText("");
+            }
+        }
+        return this;
+    }
+
+    /***
+     * Returns the text color that is used for selected files.
+     * @return The text color that is used for selected files.
+     */
+    public int getFileSelectedColor() {
+        return mFileSelectedColor;
+    }
+
+    /***
+     * Sets the text color used for selected files. This should be a color value not a resource id.
+     * @param fileSelectedColor The text color used for selected files.
+     * @return The OpenFileDialog-object
+     */
+    public OpenFileDialog setFileSelectedColor(int fileSelectedColor) {
+        this.mFileSelectedColor = fileSelectedColor;
+        return this;
+    }
+
+    /***
+     * Returns the background color that is used for selected files.
+     * @return The background color that is used for selected files.
+     */
+    public int getFileSelectedBackgroundColor() {
+        return mFileSelectedBackgroundColor;
+    }
+
+    /***
+     * Sets the background color used for selected files. This should be a color value not a resource id.
+     * @param fileSelectedBackgroundColor The text color used for selected files.
+     * @return The OpenFileDialog-object
+     */
+    public OpenFileDialog setFileSelectedBackgroundColor(int fileSelectedBackgroundColor) {
+        this.mFileSelectedBackgroundColor = fileSelectedBackgroundColor;
+        return this;
+    }
+
+    /***
+     * Returns the text that will be displayed as the title of the dialog.
+     * @return The text that will be displayed as the title of the dialog.
+     */
+    public String getTitle(){
+        return mTitle;
+    }
+
+    /***
+     * Sets the text that will be displayed as the title of the dialog.
+     * @param title The text that will be displayed as the title of the dialog.
+     */
+    @Override
+    public void setTitle(CharSequence title) {
+        if(title!=null) {
+            mTitle = title.toString();
+            if(mTitleTextView!=null){
+                mTitleTextView.setText(mTitle);
+                mTitleTextView.setVisibility(View.VISIBLE);
+            }else{
+                requestWindowFeature(Window.FEATURE_NO_TITLE);
+            }
+        }
+    }
+
+    /***
+     * Sets the text that will be displayed as the title of the dialog in form of a Resource id.
+     * @param titleId The text that will be displayed as the title of the dialog in form of a Resource id.
+     */
+    @Override
+    public void setTitle(int titleId) {
+        setTitle(getContext().getString(titleId));
+    }
+
+    /***
+     * Sets the OnCloseListener that's methods will be called when the dialog is closed by the user.
+     * @param onCloseListener The OnCloseListener-object that's methods will be called when the dialog is closed by the user.
+     * @return
+     */
+    public OpenFileDialog setOnCloseListener(OnCloseListener onCloseListener){
+        this.mOnCloseListener = onCloseListener;
+        return this;
+    }
+
+    /***
+     * Enables or disables the multi-select mode, in which the user picks any number of files in any number of folders: touching a file selects or deselects
+     * it, long-pressing a file selects all files from the one touched last to it. The selection is kept while the user navigates. When OK is touched the
+     * selected files are handed to the OnMultiSelectListener in batches, instead of a single file to {@link OnCloseListener#onOk(String)}. Disabled by default.
+     * @param multiSelectEnabled True to enable the multi-select mode.
+     * @return The OpenFileDialog-object
+     */
+    public OpenFileDialog setMultiSelectEnabled(boolean multiSelectEnabled){
+        this.mMultiSelectEnabled = multiSelectEnabled;
+        mSelectedFile = null;
+        if(mFileListAdapter!=null){
+            mOkButton.setEnabled(isOkEnabledWithoutFile());
+            mFileListAdapter.notifyDataSetChanged();
+        }
+        return this;
+    }
+
+    /***
+     * Returns if the user can pick several files.
+     * @return True if the multi-select mode is enabled.
+     */
+    public boolean isMultiSelectEnabled(){
+        return mMultiSelectEnabled;
+    }
+
+    /***
+     * Sets the listener that receives the selected files in multi-select mode, see {@link #setMultiSelectEnabled(boolean)}.
+     * @param onMultiSelectListener The listener.
+     * @return The OpenFileDialog-object
+     */
+    public OpenFileDialog setOnMultiSelectListener(OnMultiSelectListener onMultiSelectListener){
+        this.mOnMultiSelectListener = onMultiSelectListener;
+        return this;
+    }
+
+    /***
+     * Selects all files of the current folder in multi-select mode, including the ones that are added while it is shown. While the filter field holds a
+     * query, only the files that match it are selected, and while search results are shown, the files among them that have been found so far.
+     * @return The OpenFileDialog-object
+     */
+    public OpenFileDialog selectAll(){
+        if(mMultiSelectEnabled&&mFileListAdapter!=null){
+            mFileListAdapter.selectAllShown();
+        }
+        return this;
+    }
+
+    /***
+     * Deselects all files in all folders in multi-select mode.
+     * @return The OpenFileDialog-object
+     */
+    public OpenFileDialog clearSelection(){
+        mBrowser.clearSelection();
+        if(mFileListAdapter!=null){
+            mOkButton.setEnabled(isOkEnabledWithoutFile());
+            mFileListAdapter.notifyDataSetChanged();
+        }
+        return this;
+    }
+
+    /***
+     * Returns the files that are selected in multi-select mode, e.g. to select some of them before the dialog is shown. It is cleared when the dialog is
+     * closed.
+     * @return The selection.
+     */
+    public SelectionSet getSelection(){
+        return mBrowser.getSelection();
+    }
+
+    /***
+     * Returns if OK can be touched while no single file is selected: in multi-select mode once a file has been selected, otherwise if folders can be selected.
+     */
+    private boolean isOkEnabledWithoutFile(){
+        return mMultiSelectEnabled ? !mBrowser.getSelection().isEmpty() : mFolderSelectable;
+    }
+
+    /***
+     * Lists the folders with selected files in the background and hands the files that are still there to the OnMultiSelectListener in batches, on the UI
+     * thread. The selection is cleared for the next time the dialog is shown.
+     */
+    private void deliverSelection(){
+        final SelectionSet selection = mBrowser.getSelection().copy();
+        mBrowser.clearSelection();
+        final OnMultiSelectListener listener = mOnMultiSelectListener;
+        if(listener==null){
+            return;
+        }
+        final DirectoryLister directoryLister = getDirectoryLister();
+        final EntryFilter entryFilter = mBrowser.getEntryFilter();
+        final Executor mainThreadExecutor = getMainThreadExecutor();
+        (mExecutor!=null?mExecutor:getDefaultExecutor()).execute(new Runnable() {
+            @Override
+            public void run() {
+                selection.collect(directoryLister, entryFilter, MULTI_SELECT_BATCH_SIZE, new SelectionSet.BatchListener() {
+                    @Override
+                    public void onBatch(final List<String> paths, final boolean last) {
+                        mainThreadExecutor.execute(new Runnable() {
+                            @Override
+                            public void run() {
+                                listener.onSelected(paths, last);
+                            }
+                        });
+                    }
+                }, new Prefetcher.Cancellation() {
+                    @Override
+                    public boolean isCancelled() {
+                        return false;
+                    }
+                });
+            }
+        });
+    }
+
+    private static int convertDpToPixels(int dp){
+        return Math.round(TypedValue.applyDimension(TypedValue.COMPLEX_UNIT_DIP, dp, Resources.getSystem().getDisplayMetrics()));
+    }
+
+    private class FileListRecyclerViewAdapter extends RecyclerView.Adapter<ItemViewHolder> implements ListDiff.ItemCallback<FileItem>, Browser.ChangeCallback, FolderWatcher.Listener{
+        private List<FileItem> mFileList = new ArrayList<>();
+        //mFileList while it holds a paged listing, otherwise null. It can't be modified, changes replace it.
+        private CompactFileList mPagedList = null;
+        //The folder whose content mFileList holds, to tell a refresh of the same folder from navigating to another one
+        private String mShownPath = null;
+        //The probe of the storage volumes while they are shown instead of a folder, null otherwise
+        private StorageRootProber.Probe mStorageRootProbe = null;
+        //Filters the children by the text of the filter field. The ".." entry is always shown.
+        private final NameFilter mNameFilter = new NameFilter();
+        //When the folder that is being shown has been requested and when its first child has been bound after that, only measured for the MetricsListener
+        private long mNavigationStartNanos = 0;
+        private long mTimeToFirstBindNanos = -1;
+        private final NameFilter.Names mNames = new NameFilter.Names() {
+            @Override
+            public int size() {
+                return mFileList.size()-getParentFolderOffset();
+            }
+
+            @Override
+            public boolean contains(int position, String foldedQuery) {
+                if(mPagedList!=null){
+                    return mPagedList.getListing().nameContains(position, foldedQuery);
+                }
+                return mFileList.get(getParentFolderOffset()+position).foldedName.contains(foldedQuery);
+            }
+        };
+
+        public FileListRecyclerViewAdapter(){
+            setHasStableIds(true);
+        }
+
+        @Override
+        public ItemViewHolder onCreateViewHolder(ViewGroup parent, int viewType) {
+            View view = LayoutInflater.from(parent.getContext())
+                    .inflate(R.layout.open_file_dialog_item_layout, parent, false);
+            return new ItemViewHolder(view);
+        }
+
+        @Override
+        public void onBindViewHolder(final ItemViewHolder holder, int position) {
+            long bindStartNanos = mMetricsListener!=MetricsListener.NONE ? System.nanoTime() : 0;
+            holder.mAdapter = this;
+            holder.mFileItem = getShownItem(position);
+
+            cancelThumbnail(holder);
+            holder.mIconImageView.setImageResource(holder.mFileItem.name.equals(PARENT_FOLDER) ? mFolderUpIcon : holder.mFileItem.isDirectory ? mFolderIcon : mFileIcon);
+            if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.JELLY_BEAN) {
+                holder.mIconImageView.setImageAlpha(138);
+            }
+            if(mThumbnailsEnabled&&!holder.mFileItem.isDirectory&&BitmapThumbnailDecoder.isSupported(holder.mFileItem.name)){
+                showThumbnail(holder);
+            }
+
+            holder.mPathTextView.setText(holder.mFileItem.name);
+            cancelDetails(holder);
+            if(mDetailsEnabled&&!holder.mFileItem.name.equals(PARENT_FOLDER)){
+                holder.mDetailsTextView.setVisibility(View.VISIBLE);
+                showDetails(holder);
+            }else{
+                holder.mDetailsTextView.setVisibility(View.GONE);
+            }
+
+            //Rows are recycled, so the colors have to be reset for rows that aren't selected
+            if(mMultiSelectEnabled ? !holder.mFileItem.isDirectory&&mBrowser.getSelection().isSelected(holder.mFileItem.absolutePath) : isSelected(holder.mFileItem)&&!mFolderSelectable){
+                holder.mView.setBackgroundColor(mFileSelectedBackgroundColor);
+                holder.mPathTextView.setTextColor(mFileSelectedColor);
+                holder.mDetailsTextView.setTextColor(mFileSelectedColor);
+            }else{
+                holder.mView.setBackgroundColor(Color.TRANSPARENT);
+                holder.mPathTextView.setTextColor(holder.mDefaultTextColors);
+                holder.mDetailsTextView.setTextColor(holder.mDefaultDetailsTextColors);
+            }
+
+            if(mMetricsListener!=MetricsListener.NONE){
+                long bindEndNanos = System.nanoTime();
+                mMetricsListener.onRowBound(bindEndNanos-bindStartNanos);
+                if(mTimeToFirstBindNanos<0&&!holder.mFileItem.name.equals(PARENT_FOLDER)){
+                    mTimeToFirstBindNanos = bindEndNanos-mNavigationStartNanos;
+                }
+            }
+        }
 
-            holder.mPathTextView.setText(holder.mFileItem.name);
+        @Override
+        public void onViewRecycled(ItemViewHolder holder) {
+            //A thumbnail or details that are still being loaded for a row that has scrolled out of view aren't needed anymore
+            cancelThumbnail(holder);
+            cancelDetails(holder);
+            //The row may be taken by another dialog that shares the RecycledViewPool, it mustn't keep this one
+            holder.mAdapter = null;
+            holder.mFileItem = null;
+        }
 
-            if(mSelectedFile!=null&&mSelectedFile.absolutePath==holder.mFileItem.absolutePath&&!mFolderSelectable){
-                holder.mView.setBackgroundColor(mFileSelectedBackgroundColor);
-                holder.mPathTextView.setTextColor(mFileSelectedColor);
+        /***
+         * Shows the thumbnail of the item of a row if it is in memory, otherwise loads it in the background. The row keeps its icon until then.
+         */
+        private void showThumbnail(final ItemViewHolder holder){
+            final FileItem item = holder.mFileItem;
+            int targetSize = convertDpToPixels(THUMBNAIL_SIZE_DP);
+            ThumbnailLoader<Bitmap> loader = getThumbnailLoader();
+            Bitmap thumbnail = loader.getCached(item.absolutePath, targetSize, item.lastModified, item.size);
+            if(thumbnail!=null){
+                setThumbnail(holder, thumbnail);
+                return;
+            }
+            holder.mThumbnailRequest = loader.load(item.absolutePath, targetSize, item.lastModified, item.size, new ThumbnailLoader.Target<Bitmap>() {
+                @Override
+                public void onThumbnail(String path, Bitmap thumbnail) {
+                    //The row may have been bound to another item in the meantime
+                    if(holder.mFileItem==item){
+                        holder.mThumbnailRequest = null;
+                        setThumbnail(holder, thumbnail);
+                    }
+                }
+            });
+        }
+
+        private void setThumbnail(ItemViewHolder holder, Bitmap thumbnail){
+            holder.mIconImageView.setImageBitmap(thumbnail);
+            if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.JELLY_BEAN) {
+                holder.mIconImageView.setImageAlpha(255);
+            }
+        }
+
+        private void cancelThumbnail(ItemViewHolder holder){
+            if(holder.mThumbnailRequest!=null){
+                holder.mThumbnailRequest.cancel();
+                holder.mThumbnailRequest = null;
             }
+        }
 
-            holder.mView.setOnClickListener(new View.OnClickListener() {
+        /***
+         * Shows the details of the item of a row: a file that has been listed with its metadata at once, otherwise the details that have been read
+         * already, or reads them in the background. The line stays empty until then, so the row doesn't change its height.
+         */
+        private void showDetails(final ItemViewHolder holder){
+            final FileItem item = holder.mFileItem;
+            if(!item.isDirectory&&item.size!=DirectoryEntry.UNKNOWN&&item.lastModified!=DirectoryEntry.UNKNOWN){
+                holder.mDetailsTextView.setText(formatDetails(Formatter.formatShortFileSize(getContext(), item.size), item.lastModified));
+                return;
+            }
+            FileDetailsLoader loader = getFileDetailsLoader();
+            FileDetailsLoader.Details details = loader.getCached(item.absolutePath, mFolderSizeEnabled);
+            if(details!=null){
+                holder.mDetailsTextView.setText(formatDetails(details));
+                return;
+            }
+            holder.mDetailsTextView.setText("");
+            holder.mDetailsRequest = loader.load(item.absolutePath, item.isDirectory, mBrowser.getEntryFilter(), mFolderSizeEnabled, new RequestQueue.Callback<FileDetailsLoader.Details>() {
                 @Override
-                public void onClick(View v) {
-                    if (holder.mFileItem.isDirectory) {
-                        mSelectedFile =null;
-                        navigate(holder.mFileItem.name);
-                        mOkButton.setEnabled(mFolderSelectable);
-                    } else {
-                        if (mSelectedFile!=null&&holder.mFileItem.absolutePath==mSelectedFile.absolutePath) {
-                            mOkButton.setEnabled(false);
-                            mSelectedFile=null;
-                        } else {
-                            mOkButton.setEnabled(true);
-                            mSelectedFile = holder.mFileItem;
-                        }
-                        notifyDataSetChanged();
+                public void onResult(FileDetailsLoader.Details details) {
+                    //Only this row is updated. It may have been bound to another item in the meantime.
+                    if(holder.mFileItem==item){
+                        holder.mDetailsRequest = null;
+                        holder.mDetailsTextView.setText(formatDetails(details));
                     }
                 }
             });
         }
 
+        private String formatDetails(FileDetailsLoader.Details details){
+            String size = details.getSize()!=DirectoryEntry.UNKNOWN ? Formatter.formatShortFileSize(getContext(), details.getSize()) : null;
+            if(details.isDirectory()){
+                String children = getContext().getResources().getQuantityString(R.plurals.open_file_dialog_item_count, details.getChildCount(), details.getChildCount());
+                size = size!=null ? getContext().getString(R.string.open_file_dialog_item_details, children, size) : children;
+            }
+            return formatDetails(size, details.getLastModified());
+        }
+
+        private String formatDetails(String size, long lastModified){
+            Date date = new Date(lastModified);
+            String time = DateFormat.getDateFormat(getContext()).format(date)+" "+DateFormat.getTimeFormat(getContext()).format(date);
+            return getContext().getString(R.string.open_file_dialog_item_details, size, time);
+        }
+
+        private void cancelDetails(ItemViewHolder holder){
+            if(holder.mDetailsRequest!=null){
+                holder.mDetailsRequest.cancel();
+                holder.mDetailsRequest = null;
+            }
+        }
+
+        @Override
+        public long getItemId(int position) {
+            return getShownItem(position).getId();
+        }
+
+        /***
+         * Returns the item in a row, which differs from the position in mFileList while the filter is active.
+         */
+        private FileItem getShownItem(int position){
+            int offset = getParentFolderOffset();
+            return position<offset ? mFileList.get(position) : mFileList.get(offset+mNameFilter.getPosition(position-offset));
+        }
+
+        private List<FileItem> getShownItems(){
+            List<FileItem> items = new ArrayList<>(getItemCount());
+            for(int i=0;i<getItemCount();i++){
+                items.add(getShownItem(i));
+            }
+            return items;
+        }
+
+        /***
+         * Filters the children again after mFileList has changed while the filter is active and applies the differences to the rows.
+         * @param shownBefore The items that were shown before mFileList changed.
+         */
+        private void refilter(List<FileItem> shownBefore){
+            mNameFilter.refresh(mNames);
+            if(!ListDiff.dispatch(shownBefore, getShownItems(), this, this)){
+                notifyDataSetChanged();
+            }
+        }
+
+        /***
+         * Shows only the children whose name contains the query. A query that narrows the previous one only checks the children that matched before.
+         */
+        private void setQuery(String query){
+            mNameFilter.setQuery(query, mNames, getParentFolderOffset(), this);
+        }
+
+        private boolean isSelected(FileItem fileItem){
+            return mSelectedFile!=null&&mSelectedFile.absolutePath.equals(fileItem.absolutePath);
+        }
+
+        /***
+         * Returns the row of the selected file, or -1 if no file is selected or it is hidden by the filter.
+         */
+        private int indexOfSelectedFile(){
+            return mSelectedFile!=null ? indexOfShownPath(mSelectedFile.absolutePath) : -1;
+        }
+
+        /***
+         * Returns the row of a child of the current folder, or -1 if it isn't there or is hidden by the filter.
+         */
+        private int indexOfShownPath(String absolutePath){
+            int offset = getParentFolderOffset();
+            int index = indexOfPath(absolutePath);
+            if(index<offset)return -1;
+            int row = mNameFilter.indexOf(index-offset);
+            return row<0 ? -1 : offset+row;
+        }
+
+        private boolean containsSelectedFile(){
+            return mSelectedFile!=null&&indexOfPath(mSelectedFile.absolutePath)>=0;
+        }
+
+        /***
+         * Returns the row of a child of the current folder in mFileList, or -1 if it isn't there.
+         */
+        private int indexOfPath(String absolutePath){
+            if(mPagedList!=null){
+                return mPagedList.indexOfPath(absolutePath);
+            }
+            for(int i=getParentFolderOffset();i<mFileList.size();i++){
+                if(mFileList.get(i).absolutePath.equals(absolutePath))return i;
+            }
+            return -1;
+        }
+
+        private void onItemClick(int position){
+            FileItem fileItem = getShownItem(position);
+            if (fileItem.isDirectory) {
+                mSelectedFile =null;
+                if(mBrowser.getSearchQuery()!=null||mBrowser.isShowingStorageRoots()){
+                    //The results are shown with their path below the search root and the volumes with their label, a folder is opened by its absolute path
+                    if(!fileItem.name.equals(PARENT_FOLDER)){
+                        mBrowser.navigateTo(fileItem.absolutePath);
+                    }
+                    leaveStorageRoots();
+                    loadFolder();
+                }else{
+                    navigate(fileItem.name);
+                }
+                mOkButton.setEnabled(isOkEnabledWithoutFile());
+            } else if (mMultiSelectEnabled) {
+                mBrowser.toggleSelected(fileItem.absolutePath);
+                mOkButton.setEnabled(isOkEnabledWithoutFile());
+                notifyItemChanged(position);
+            } else if (isSelected(fileItem)) {
+                mOkButton.setEnabled(false);
+                mSelectedFile=null;
+                notifyItemChanged(position);
+            } else {
+                int previousPosition = indexOfSelectedFile();
+                mOkButton.setEnabled(true);
+                mSelectedFile = fileItem;
+                if(previousPosition>=0){
+                    notifyItemChanged(previousPosition);
+                }
+                notifyItemChanged(position);
+            }
+        }
+
+        /***
+         * Selects the files from the one that has been touched last to the one that has been long-pressed in multi-select mode, see
+         * {@link Browser#selectRange(List, int)}. A paged list is passed as it is while all of its rows are shown, so its FileItems aren't created.
+         * @return True if the long press has been handled.
+         */
+        private boolean onItemLongClick(int position){
+            if(!mMultiSelectEnabled||getShownItem(position).isDirectory){
+                return false;
+            }
+            List<FileItem> rows = mNameFilter.isActive() ? new AbstractList<FileItem>() {
+                @Override
+                public FileItem get(int index) {
+                    return getShownItem(index);
+                }
+
+                @Override
+                public int size() {
+                    return getItemCount();
+                }
+            } : mFileList;
+            int[] range = mBrowser.selectRange(rows, position);
+            mOkButton.setEnabled(isOkEnabledWithoutFile());
+            notifyItemRangeChanged(range[0], range[1]-range[0]+1);
+            return true;
+        }
+
+        /***
+         * Selects all files that are shown: all files of the folder in constant time, or the rows one by one while search results are shown or the filter
+         * field holds a query.
+         */
+        private void selectAllShown(){
+            if(mShownPath==null&&mBrowser.getSearchQuery()==null){
+                return;
+            }
+            if(mBrowser.getSearchQuery()!=null||mNameFilter.isActive()){
+                for(int i=getParentFolderOffset();i<getItemCount();i++){
+                    FileItem item = getShownItem(i);
+                    if(!item.isDirectory){
+                        mBrowser.getSelection().setSelected(item.absolutePath, true);
+                    }
+                }
+            }else{
+                mBrowser.getSelection().selectAll(mShownPath);
+            }
+            mOkButton.setEnabled(isOkEnabledWithoutFile());
+            notifyItemRangeChanged(0, getItemCount());
+        }
+
         private void navigate(String fileName){
             if(fileName.equals(PARENT_FOLDER)){
-                if(mPath.lastIndexOf(File.separator)==0){
-                    mPath = File.separator;
-                }else {
-                    mPath = mPath.substring(0, mPath.lastIndexOf(File.separator));
+                if(mStorageRootsEnabled&&isStorageRoot(mBrowser.getPath())){
+                    showStorageRoots();
+                    return;
+                }
+                if(!mBrowser.navigateUp()){
+                    mBrowser.navigateTo(File.separator);
                 }
             }else{
-                mPath = mPath + File.separator + fileName;
+                mBrowser.navigateToChild(fileName);
             }
-            mFileList.clear();
+            loadFolder();
+        }
 
-            mPathTextView.setText(mPath);
+        /***
+         * Shows the current folder of the Browser.
+         * <p>When navigating to another folder, the ".." entry is shown right away so the user can navigate up while the content is still being listed
+         * in the background, and the content is inserted batch by batch. When the folder that is already shown is loaded again, the old content stays
+         * visible until the new one is complete and only the differences are applied.</p>
+         */
+        private void loadFolder(){
+            if(mBrowser.isShowingStorageRoots()){
+                //E.g. the sort order has changed, the volumes are probed again
+                showStorageRoots();
+                return;
+            }
+            final String folderPath = mBrowser.getPath();
+            mPathTextView.setText(folderPath);
+            if(mMetricsListener!=MetricsListener.NONE){
+                mNavigationStartNanos = System.nanoTime();
+                mTimeToFirstBindNanos = -1;
+            }
 
-            if(!mPath.equals(File.separator)){
-                mFileList.add(new FileItem(PARENT_FOLDER, true));
+            if(mBrowser.getSearchQuery()!=null){
+                //Leaving the search, mFileList holds the results
+                mShownPath = null;
             }
-            mFileList.addAll(new FileItem(mPath, true).listChildren());
-            mFileListAdapter.notifyDataSetChanged();
+            final boolean refresh = folderPath.equals(mShownPath);
+            if(!refresh){
+                int oldSize = getItemCount();
+                mFileList = new ArrayList<>();
+                mPagedList = null;
+                mNameFilter.clear();
+                if(mFilterEditText.getText().length()>0){
+                    mFilterEditText.setText("");
+                }
+                notifyItemRangeRemoved(0, oldSize);
+                if(!folderPath.equals(File.separator)){
+                    mFileList.add(new FileItem(PARENT_FOLDER, true));
+                    notifyItemInserted(0);
+                }
+                mShownPath = folderPath;
+                recordRecentLocation(folderPath);
+            }
+
+            mBrowser.cancelPrefetch();
+
+            //Watch from before the listing starts, so no change gets lost between listing and watching. The load drops the changes of the
+            //folder that has been shown before.
+            if(mWatchEnabled){
+                getFolderWatcher().watch(folderPath, mBrowser.getSortOrder(), mBrowser.getEntryFilter(), this);
+            }else if(mFolderWatcher!=null){
+                mFolderWatcher.stop();
+            }
+
+            mLoadingProgressBar.setVisibility(View.VISIBLE);
+            final int offset = getParentFolderOffset();
+            final boolean paged = mPagedListing;
+            //A snapshot is shown like the old content of a refresh, until the listing is complete
+            final boolean[] snapshotShown = {false};
+            DirectoryLoader.SnapshotListener snapshotListener = refresh ? null : new DirectoryLoader.SnapshotListener() {
+                @Override
+                public void onSnapshot(String path, List<FileItem> children) {
+                    snapshotShown[0] = true;
+                    if (paged) {
+                        showPagedList((CompactFileList) children, false);
+                    } else {
+                        showList(children, Collections.singletonList(new int[]{0, children.size()}), false);
+                    }
+                }
+            };
+            mBrowser.load(snapshotListener, new DirectoryLoader.Listener() {
+                @Override
+                public void onBatch(String path, List<FileItem> children, List<int[]> insertedRanges, boolean finished) {
+                    boolean replace = refresh || snapshotShown[0];
+                    if (replace && !finished) return;
+                    if (paged) {
+                        showPagedList((CompactFileList) children, replace);
+                    } else {
+                        showList(children, insertedRanges, replace);
+                    }
+                    if (finished) {
+                        mLoadingProgressBar.setVisibility(View.GONE);
+                        applyPendingChanges();
+                        //After the next layout, when the visible rows are known
+                        mFileListView.post(new Runnable() {
+                            @Override
+                            public void run() {
+                                updateWindow();
+                                prefetchLikelyFolders();
+                                reportNavigation();
+                            }
+                        });
+                    }
+                }
+            });
         }
 
-        @Override
-        public int getItemCount() {
-            return mFileList.size();
-        }
-
-        public class ViewHolder extends RecyclerView.ViewHolder{
-            public final View mView;
-            public final ImageView mIconImageView;
-            public final TextView mPathTextView;
-            public FileItem mFileItem;
-            public ViewHolder(View itemView) {
-                super(itemView);
-                mView = itemView;
-                mIconImageView = (ImageView)itemView.findViewById(R.id.open_file_dialog_item_image_view);
-                mPathTextView = (TextView)itemView.findViewById(R.id.open_file_dialog_item_text_view);
-            }
-        }
-    }
-
-    private class FileItem{
-        FileItem(String absolutePath, boolean isDirectory){
-            this.absolutePath = absolutePath;
-            this.isDirectory = isDirectory;
-            this.name = absolutePath.substring(absolutePath.lastIndexOf(File.separator)+1);
-        }
-        String absolutePath;
-        String name;
-        boolean isDirectory;
-        List<FileItem> listChildren(){
-            List<FileItem> list = new ArrayList<>();
-            File parent = new File(absolutePath);
-            if(parent.listFiles()==null)return list;
-            File[] fileArr =parent.listFiles();
-            Arrays.sort(fileArr, new Comparator<File>() {
+        /***
+         * Reports the measurements of the folder that has just been shown to the MetricsListener.
+         */
+        private void reportNavigation(){
+            DirectoryLoader.LoadStats stats = mBrowser.getLoadStats();
+            //Not measured, or another folder is being loaded already
+            if(mMetricsListener==MetricsListener.NONE||stats==null||isLoading()){
+                return;
+            }
+            mMetricsListener.onNavigation(stats.toMetrics(mShownPath, mTimeToFirstBindNanos));
+        }
+
+        /***
+         * Shows a batch of the children of the current folder. A refresh applies the differences to the complete old content, otherwise the children are
+         * inserted after the ".." entry.
+         */
+        private void showList(List<FileItem> children, List<int[]> insertedRanges, boolean refresh){
+            int offset = getParentFolderOffset();
+            List<FileItem> shownBefore = mNameFilter.isActive()&&mPagedList==null ? getShownItems() : null;
+            if(refresh){
+                List<FileItem> oldList = mFileList;
+                mFileList = new ArrayList<>(offset+children.size());
+                mFileList.addAll(oldList.subList(0, offset));
+                mFileList.addAll(children);
+                if(mPagedList!=null){
+                    //Leaving the paged mode, the old rows aren't compared so they aren't all created
+                    mPagedList = null;
+                    mNameFilter.refresh(mNames);
+                    notifyDataSetChanged();
+                }else if(shownBefore==null&&!ListDiff.dispatch(oldList, mFileList, this, this)){
+                    notifyDataSetChanged();
+                }
+                if(mSelectedFile!=null&&!containsSelectedFile()){
+                    mSelectedFile = null;
+                    mOkButton.setEnabled(isOkEnabledWithoutFile());
+                }
+            }else{
+                mFileList.subList(offset, mFileList.size()).clear();
+                mFileList.addAll(children);
+                for(int i=0;shownBefore==null&&i<insertedRanges.size();i++){
+                    notifyItemRangeInserted(offset+insertedRanges.get(i)[0], insertedRanges.get(i)[1]);
+                }
+            }
+            if(shownBefore!=null){
+                refilter(shownBefore);
+            }
+        }
+
+        /***
+         * Shows the complete children of the current folder as a paged list, replacing the old content. No rows are compared, the rows are bound again.
+         */
+        private void showPagedList(CompactFileList children, boolean refresh){
+            int offset = getParentFolderOffset();
+            mPagedList = new CompactFileList(offset>0 ? mFileList.get(0) : null, children.getListing(), mBrowser.getSortOrder());
+            mFileList = mPagedList;
+            if(mNameFilter.isActive()){
+                mNameFilter.refresh(mNames);
+            }
+            if(refresh){
+                notifyDataSetChanged();
+                if(mSelectedFile!=null&&!containsSelectedFile()){
+                    mSelectedFile = null;
+                    mOkButton.setEnabled(isOkEnabledWithoutFile());
+                }
+            }else{
+                notifyItemRangeInserted(offset, getItemCount()-offset);
+            }
+            updateWindow();
+        }
+
+        /***
+         * Moves the window of the paged list to the visible rows and the rows around them, so only their items are kept.
+         */
+        private void updateWindow(){
+            if(mPagedList==null)return;
+            LinearLayoutManager layoutManager = (LinearLayoutManager)mFileListView.getLayoutManager();
+            int first = layoutManager.findFirstVisibleItemPosition();
+            int last = layoutManager.findLastVisibleItemPosition();
+            int offset = getParentFolderOffset();
+            if(getItemCount()<=offset){
+                mPagedList.setWindow(0, -1);
+                return;
+            }
+            if(first==RecyclerView.NO_POSITION){
+                first = offset;
+                last = offset;
+            }
+            //The rows are positions in the filtered list, the window is over the positions in mPagedList
+            first = offset+mNameFilter.getPosition(Math.min(Math.max(first, offset), getItemCount()-1)-offset);
+            last = offset+mNameFilter.getPosition(Math.min(Math.max(last, offset), getItemCount()-1)-offset);
+            mPagedList.setWindow(first-PAGED_WINDOW_MARGIN, last+PAGED_WINDOW_MARGIN);
+        }
+
+        /***
+         * Searches the search root and its subfolders and shows the matches as they are found, after a ".." entry that ends the search. The current folder
+         * isn't watched and nothing is prefetched while the results are shown.
+         */
+        private void searchFolders(String query){
+            leaveStorageRoots();
+            String root = mSearchRoot!=null ? mSearchRoot : Environment.getExternalStorageDirectory().getAbsolutePath();
+            mPathTextView.setText(getContext().getString(R.string.open_file_dialog_search_title, root, query.trim()));
+
+            int oldSize = getItemCount();
+            mFileList = new ArrayList<>();
+            mPagedList = null;
+            mNameFilter.clear();
+            notifyItemRangeRemoved(0, oldSize);
+            mFileList.add(new FileItem(PARENT_FOLDER, true));
+            notifyItemInserted(0);
+            mShownPath = null;
+            if(mSelectedFile!=null){
+                mSelectedFile = null;
+                mOkButton.setEnabled(isOkEnabledWithoutFile());
+            }
+
+            mBrowser.cancelPrefetch();
+            if(mFolderWatcher!=null){
+                mFolderWatcher.stop();
+            }
+
+            mLoadingProgressBar.setVisibility(View.VISIBLE);
+            mBrowser.search(root, query, mSearchMaxDepth, mSearchMaxResults, getDirectoryWalker(), new DirectoryLoader.Listener() {
+                @Override
+                public void onBatch(String path, List<FileItem> children, List<int[]> insertedRanges, boolean finished) {
+                    //The filter field still holds the query, so typing more narrows the results without another search
+                    List<FileItem> shownBefore = mNameFilter.isActive() ? getShownItems() : null;
+                    mFileList.subList(1, mFileList.size()).clear();
+                    mFileList.addAll(children);
+                    if (shownBefore != null) {
+                        refilter(shownBefore);
+                    } else {
+                        for (int i = 0; i < insertedRanges.size(); i++) {
+                            notifyItemRangeInserted(1 + insertedRanges.get(i)[0], insertedRanges.get(i)[1]);
+                        }
+                    }
+                    if (finished) {
+                        mLoadingProgressBar.setVisibility(View.GONE);
+                    }
+                }
+            });
+        }
+
+        /***
+         * Returns if ".." leads from a folder to the storage volumes: the folder is the root of the primary external storage, of a volume that has been found
+         * before, or of a volume mounted below /storage.
+         */
+        private boolean isStorageRoot(String path){
+            return path.equals(Environment.getExternalStorageDirectory().getAbsolutePath())||sStorageRootPaths.contains(path)
+                    ||"/storage".equals(BrowserPaths.parentPath(path));
+        }
+
+        /***
+         * Shows the storage volumes instead of a folder, each one as soon as it has answered, in the order of the candidates. The current folder isn't
+         * watched and nothing is prefetched while they are shown, and the OK button stays disabled until a volume has been opened.
+         */
+        private void showStorageRoots(){
+            cancelStorageRoots();
+            mBrowser.showStorageRoots();
+            mPathTextView.setText(R.string.open_file_dialog_storage_title);
+
+            int oldSize = getItemCount();
+            mFileList = new ArrayList<>();
+            mPagedList = null;
+            mNameFilter.clear();
+            if(mFilterEditText.getText().length()>0){
+                mFilterEditText.setText("");
+            }
+            notifyItemRangeRemoved(0, oldSize);
+            mShownPath = null;
+            mSelectedFile = null;
+            mOkButton.setEnabled(false);
+
+            if(mFolderWatcher!=null){
+                mFolderWatcher.stop();
+            }
+
+            mLoadingProgressBar.setVisibility(View.VISIBLE);
+            mStorageRootProbe = getStorageRootProber().probe(new StorageRootProber.Listener() {
                 @Override
-                public int compare(File lhs, File rhs) {
-                    return lhs.getName().toLowerCase().compareTo(rhs.getName().toLowerCase());
+                public void onRoots(List<StorageRootProber.Root> roots, boolean finished) {
+                    List<FileItem> shownBefore = mNameFilter.isActive() ? getShownItems() : null;
+                    List<FileItem> oldList = mFileList;
+                    mFileList = new ArrayList<>(roots.size());
+                    for(StorageRootProber.Root root : roots){
+                        FileItem item = new FileItem(root.getPath(), true);
+                        //Shown and filtered by the label
+                        item.name = root.getLabel();
+                        item.foldedName = NameFilter.fold(item.name);
+                        mFileList.add(item);
+                        sStorageRootPaths.add(root.getPath());
+                    }
+                    if(shownBefore!=null){
+                        refilter(shownBefore);
+                    }else if(!ListDiff.dispatch(oldList, mFileList, FileListRecyclerViewAdapter.this, FileListRecyclerViewAdapter.this)){
+                        notifyDataSetChanged();
+                    }
+                    if(finished){
+                        mStorageRootProbe = null;
+                        mLoadingProgressBar.setVisibility(View.GONE);
+                    }
                 }
             });
-            for(File file:fileArr){
-                if(!file.getName().startsWith(".")) {
-                    list.add(new FileItem(file.getAbsolutePath(), file.isDirectory()));
+        }
+
+        /***
+         * Stops probing the storage volumes.
+         * @return True if the volumes were still being probed.
+         */
+        private boolean cancelStorageRoots(){
+            if(mStorageRootProbe==null){
+                return false;
+            }
+            mStorageRootProbe.cancel();
+            mStorageRootProbe = null;
+            mLoadingProgressBar.setVisibility(View.GONE);
+            return true;
+        }
+
+        /***
+         * Stops showing the storage volumes, so the next call of loadFolder() shows the current folder of the Browser.
+         */
+        private void leaveStorageRoots(){
+            cancelStorageRoots();
+            mBrowser.leaveStorageRoots();
+        }
+
+        /***
+         * Prefetches the folders the user is likely to open next, most likely first: the parent folder, the visible folders from top to bottom, the remaining
+         * ancestors and the quick jumps.
+         */
+        private void prefetchLikelyFolders(){
+            if(!mPrefetchEnabled||mShownPath==null||isLoading()){
+                return;
+            }
+            List<String> paths = new ArrayList<>();
+            String parentPath = BrowserPaths.parentPath(mShownPath);
+            if(parentPath!=null){
+                paths.add(parentPath);
+            }
+            LinearLayoutManager layoutManager = (LinearLayoutManager)mFileListView.getLayoutManager();
+            int first = layoutManager.findFirstVisibleItemPosition();
+            int last = layoutManager.findLastVisibleItemPosition();
+            if(first!=RecyclerView.NO_POSITION){
+                int folders = 0;
+                for(int i=Math.max(first, getParentFolderOffset());i<=last&&i<getItemCount()&&folders<PREFETCH_MAX_VISIBLE_FOLDERS;i++){
+                    FileItem item = getShownItem(i);
+                    if(item.isDirectory){
+                        paths.add(item.absolutePath);
+                        folders++;
+                    }
+                }
+            }
+            while(parentPath!=null){
+                parentPath = BrowserPaths.parentPath(parentPath);
+                if(parentPath!=null){
+                    paths.add(parentPath);
                 }
             }
-            return list;
+            paths.addAll(mQuickJumpPaths);
+            mBrowser.prefetch(paths);
+        }
+
+        private int getParentFolderOffset(){
+            return !mFileList.isEmpty()&&mFileList.get(0).absolutePath.equals(PARENT_FOLDER) ? 1 : 0;
+        }
+
+        @Override
+        public void onChanges(String path, List<FileItem> updated, List<String> removedPaths, boolean reload) {
+            if(!path.equals(mShownPath))return;
+            //The cached listing doesn't know about these changes, e.g. the new size of a modified file
+            mBrowser.invalidate(path);
+            if(mFileDetailsLoader!=null){
+                mFileDetailsLoader.clear();
+            }
+            if(reload){
+                loadFolder();
+                return;
+            }
+            mBrowser.addChanges(updated, removedPaths);
+            //While the folder is being listed the rows are replaced batch by batch, the changes are applied to the complete listing
+            if(!isLoading()){
+                applyPendingChanges();
+            }
+        }
+
+        /***
+         * Applies the changes of the watched folder one row at a time, see {@link Browser#applyChanges(List, int, Browser.ChangeCallback)}, and updates
+         * the rows that have changed.
+         */
+        private void applyPendingChanges(){
+            if(!mBrowser.hasChanges())return;
+            //While the filter is active the rows don't match the positions in mFileList, the differences are applied after all changes
+            List<FileItem> shownBefore = mNameFilter.isActive()&&mPagedList==null ? getShownItems() : null;
+            if(!mBrowser.applyChanges(mFileList, getParentFolderOffset(), shownBefore==null ? this : null)){
+                //A paged list can't be changed row by row, the folder is listed again
+                loadFolder();
+                return;
+            }
+            if(shownBefore!=null){
+                refilter(shownBefore);
+            }
+            if (mSelectedFile != null && !containsSelectedFile()) {
+                mSelectedFile = null;
+                mOkButton.setEnabled(isOkEnabledWithoutFile());
+            }
+        }
+
+        @Override
+        public int getItemCount() {
+            return getParentFolderOffset()+mNameFilter.getCount(mNames);
+        }
+
+        @Override
+        public Object getKey(FileItem item) {
+            return item.absolutePath;
+        }
+
+        @Override
+        public boolean isSameContent(FileItem oldItem, FileItem newItem) {
+            return oldItem.isDirectory==newItem.isDirectory;
+        }
+
+        @Override
+        public void onInserted(int position, int count) {
+            notifyItemRangeInserted(position, count);
+        }
+
+        @Override
+        public void onRemoved(int position, int count) {
+            notifyItemRangeRemoved(position, count);
+        }
+
+        @Override
+        public void onChanged(int position, int count) {
+            notifyItemRangeChanged(position, count);
+        }
+
+        @Override
+        public void onMoved(int fromPosition, int toPosition) {
+            notifyItemMoved(fromPosition, toPosition);
+        }
+    }
+
+    /***
+     * A row of the list. It isn't tied to an adapter, so rows can be created ahead of time and be taken over by other dialogs that share their
+     * RecycledViewPool: a click goes to the adapter that has bound the row last.
+     */
+    static class ItemViewHolder extends RecyclerView.ViewHolder implements View.OnClickListener, View.OnLongClickListener{
+        public final View mView;
+        public final ImageView mIconImageView;
+        public final TextView mPathTextView;
+        public final TextView mDetailsTextView;
+        public final ColorStateList mDefaultTextColors;
+        public final ColorStateList mDefaultDetailsTextColors;
+        public FileItem mFileItem;
+        //The thumbnail that is being loaded for the row, or null
+        public RequestQueue<Bitmap>.Request mThumbnailRequest;
+        //The details that are being read for the row, or null
+        public RequestQueue<FileDetailsLoader.Details>.Request mDetailsRequest;
+        //The adapter that has bound the row last, or null if it hasn't been bound yet
+        private FileListRecyclerViewAdapter mAdapter;
+        public ItemViewHolder(View itemView) {
+            super(itemView);
+            mView = itemView;
+            mIconImageView = (ImageView)itemView.findViewById(R.id.open_file_dialog_item_image_view);
+            mPathTextView = (TextView)itemView.findViewById(R.id.open_file_dialog_item_text_view);
+            mDetailsTextView = (TextView)itemView.findViewById(R.id.open_file_dialog_item_details_text_view);
+            mDefaultTextColors = mPathTextView.getTextColors();
+            mDefaultDetailsTextColors = mDetailsTextView.getTextColors();
+            //One listener per ViewHolder instead of a new one on every bind
+            mView.setOnClickListener(this);
+            mView.setOnLongClickListener(this);
+        }
+
+        @Override
+        public void onClick(View v) {
+            int position = getAdapterPosition();
+            if(position!=RecyclerView.NO_POSITION&&mAdapter!=null){
+                mAdapter.onItemClick(position);
+            }
+        }
+
+        @Override
+        public boolean onLongClick(View v) {
+            int position = getAdapterPosition();
+            return position!=RecyclerView.NO_POSITION&&mAdapter!=null&&mAdapter.onItemLongClick(position);
         }
     }
 
@@ -611,4 +2651,17 @@ public class OpenFileDialog extends Dialog {
          */
         void onOk(String selectedFile);
     }
+
+    /***
+     * This interface offers a method that receives the files the user has selected in multi-select mode.
+     */
+    public interface OnMultiSelectListener {
+        /***
+         * This method will be called on the UI thread for every batch of selected files after the user has touched the OK button, once with an
+         * empty last batch if no selected file is left.
+         * @param selectedFiles The absolute paths of the files in this batch.
+         * @param last True for the last batch.
+         */
+        void onSelected(List<String> selectedFiles, boolean last);
+    }
 }
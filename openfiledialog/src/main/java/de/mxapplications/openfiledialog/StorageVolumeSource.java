@@ -0,0 +1,97 @@
+package de.mxapplications.openfiledialog;
+
+import android.os.Environment;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileReader;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import de.mxapplications.openfiledialog.core.StorageRootProber;
+
+/**
+ * Finds the storage volumes that may be mounted: the primary external storage, the folders below /storage, where SD cards and USB
+ * drives are mounted since Android 4.4 (4.2 on some devices), and the mount points of removable file systems in /proc/mounts, where
+ * older devices mount them, e.g. below /mnt. Neither reads the volumes themselves, only the folder and the mount table in memory,
+ * so a slow card only holds back its own probe.
+ */
+class StorageVolumeSource implements StorageRootProber.Source {
+    private static final String STORAGE_FOLDER = "/storage";
+    private static final String MOUNTS_FILE = "/proc/mounts";
+    //Below /storage: the links to the primary storage of the current user, which is added by its own path
+    private static final List<String> IGNORED_NAMES = Arrays.asList("self", "emulated", "enc_emulated", "container");
+    //The internal views of the volumes, only readable by the system
+    private static final List<String> IGNORED_MOUNT_PREFIXES = Arrays.asList("/mnt/media_rw/", "/mnt/runtime/", "/mnt/user/", "/mnt/pass_through/",
+            "/mnt/secure/", "/mnt/asec/", "/mnt/obb/");
+    private static final List<String> REMOVABLE_FILE_SYSTEMS = Arrays.asList("vfat", "exfat", "sdfat", "texfat", "ntfs", "fuseblk", "fuse", "sdcardfs");
+
+    private final String mInternalStorageLabel;
+
+    /***
+     * Constructs a StorageVolumeSource.
+     * @param internalStorageLabel The name the primary external storage is shown with. The others are shown with the name of their folder.
+     */
+    StorageVolumeSource(String internalStorageLabel) {
+        this.mInternalStorageLabel = internalStorageLabel;
+    }
+
+    @Override
+    public List<StorageRootProber.Root> getCandidates() {
+        List<StorageRootProber.Root> candidates = new ArrayList<>();
+        candidates.add(new StorageRootProber.Root(Environment.getExternalStorageDirectory().getAbsolutePath(), mInternalStorageLabel));
+        String[] names = new File(STORAGE_FOLDER).list();
+        if (names != null) {
+            Arrays.sort(names);
+            for (String name : names) {
+                if (!IGNORED_NAMES.contains(name)) {
+                    candidates.add(new StorageRootProber.Root(STORAGE_FOLDER + File.separator + name, name));
+                }
+            }
+        }
+        for (String mountPoint : readRemovableMountPoints()) {
+            candidates.add(new StorageRootProber.Root(mountPoint, mountPoint.substring(mountPoint.lastIndexOf(File.separatorChar) + 1)));
+        }
+        return candidates;
+    }
+
+    /***
+     * Returns the mount points of the removable file systems below /mnt and /storage, in the order of the mount table.
+     */
+    private static List<String> readRemovableMountPoints() {
+        List<String> mountPoints = new ArrayList<>();
+        BufferedReader reader = null;
+        try {
+            reader = new BufferedReader(new FileReader(MOUNTS_FILE));
+            for (String line; (line = reader.readLine()) != null; ) {
+                //Device, mount point, type, options; spaces in the mount point are escaped as \040
+                String[] fields = line.split(" ");
+                if (fields.length < 3 || !REMOVABLE_FILE_SYSTEMS.contains(fields[2])) continue;
+                String mountPoint = fields[1].replace("\\040", " ");
+                if (!(mountPoint.startsWith("/mnt/") || mountPoint.startsWith(STORAGE_FOLDER + File.separator)) || isIgnored(mountPoint)) continue;
+                mountPoints.add(mountPoint);
+            }
+        } catch (IOException e) {
+            //No mount table, the folders below /storage have to do
+        } finally {
+            if (reader != null) {
+                try {
+                    reader.close();
+                } catch (IOException e) {
+                    //Ignore
+                }
+            }
+        }
+        return mountPoints;
+    }
+
+    private static boolean isIgnored(String mountPoint) {
+        for (String prefix : IGNORED_MOUNT_PREFIXES) {
+            if (mountPoint.startsWith(prefix)) return true;
+        }
+        String name = mountPoint.substring(mountPoint.lastIndexOf(File.separatorChar) + 1);
+        return mountPoint.startsWith(STORAGE_FOLDER + File.separator) && IGNORED_NAMES.contains(name);
+    }
+}